@@ -0,0 +1,60 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.web.server.ColumnConfigProvider;
+import org.sagebionetworks.web.shared.ColumnsForType;
+
+/**
+ * The column model lookups every search makes, from several threads at once
+ * (the provider is a singleton shared by all requests). Run with
+ * -prof gc to see the allocation per call.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class ColumnConfigBenchmark {
+
+	ColumnConfigProvider columnConfig;
+	List<String> visibleColumns;
+
+	@Setup
+	public void setup() {
+		columnConfig = new ColumnConfigProvider("ColumnConfigurationV2.xml");
+		columnConfig.setDefaultDatasetColumns("dataset.NameLink, dataset.numSamples, dataset.species, dataset.tissueType, dataset.disease, dataset.createdBy, dataset.modifiedOn");
+		columnConfig.setAdditionalDatasetColumns("dataset.name, dataset.Institution, dataset.status, dataset.version");
+		visibleColumns = columnConfig.getDefaultColumnIds("dataset");
+	}
+
+	@Benchmark
+	public List<String> addAllDependancies() {
+		return columnConfig.addAllDependancies(visibleColumns);
+	}
+
+	@Benchmark
+	public List<String> getColumnDependancies() {
+		return columnConfig.getColumnDependancies("dataset.NameLink");
+	}
+
+	@Benchmark
+	public ColumnsForType getColumnsForType() {
+		return columnConfig.getColumnsForType("dataset");
+	}
+}
@@ -0,0 +1,51 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.web.server.servlet.filter.CrawlFilter;
+
+/**
+ * Rewriting of the escaped fragment urls requested by crawlers, which runs
+ * before every snapshot (cached or not).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CrawlFilterBenchmark {
+
+	public static final String ENTITY_QUERY = CrawlFilter.ESCAPED_FRAGMENT + "Synapse:syn1234567";
+	public static final String SEARCH_QUERY = CrawlFilter.ESCAPED_FRAGMENT
+			+ "Search:%7B%22queryTerm%22%3A%5B%22cancer%22%5D%2C%22start%22%3A200%2C%22size%22%3A100%7D";
+
+	CrawlFilter filter;
+
+	@Setup
+	public void setup() {
+		// rewriteQueryString does not need the filter to be initialized
+		filter = new CrawlFilter();
+	}
+
+	@Benchmark
+	public String rewriteEntityQuery() {
+		return filter.rewriteQueryString(ENTITY_QUERY);
+	}
+
+	@Benchmark
+	public String rewriteSearchQuery() {
+		return filter.rewriteQueryString(SEARCH_QUERY);
+	}
+}
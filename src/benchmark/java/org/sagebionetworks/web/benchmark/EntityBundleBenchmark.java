@@ -0,0 +1,67 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.repo.model.EntityBundle;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
+import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
+import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.util.SimulatedSynapseConfig;
+import org.sagebionetworks.web.util.SimulatedSynapseRepository;
+
+/**
+ * The two ways an entity bundle response from the repository becomes an
+ * EntityBundleTransport (parsed into model objects and written back to json,
+ * or sliced into parts as sent).
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityBundleBenchmark {
+
+	static final int MASK = EntityBundleTransport.ENTITY | EntityBundleTransport.ANNOTATIONS
+			| EntityBundleTransport.PERMISSIONS | EntityBundleTransport.ENTITY_PATH
+			| EntityBundleTransport.HAS_CHILDREN | EntityBundleTransport.ACL
+			| EntityBundleTransport.ACCESS_REQUIREMENTS | EntityBundleTransport.UNMET_ACCESS_REQUIREMENTS;
+
+	String bundleJson;
+
+	@Setup
+	public void setup() throws Exception {
+		SimulatedSynapseConfig config = new SimulatedSynapseConfig();
+		config.setNumberOfEntities(1000);
+		config.setWikiPagesPerOwner(1);
+		SimulatedSynapseRepository repository = new SimulatedSynapseRepository(config, null);
+		// deep in the entity tree, so the path has a few ancestors
+		String entityId = SimulatedSynapseRepository.getEntityId(config.getNumberOfEntities() - 1);
+		bundleJson = EntityFactory.createJSONStringForEntity(repository.getEntityBundle(entityId));
+	}
+
+	@Benchmark
+	public EntityBundleTransport parseAndReserialize() throws Exception {
+		EntityBundle bundle = new EntityBundle();
+		bundle.initializeFromJSONObject(new JSONObjectAdapterImpl(bundleJson));
+		return SynapseClientImpl.createEntityBundleTransport(bundle, MASK);
+	}
+
+	@Benchmark
+	public EntityBundleTransport passthrough() throws Exception {
+		return SynapseClientImpl.createEntityBundleTransport(new JSONObject(bundleJson), MASK);
+	}
+}
@@ -0,0 +1,90 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.repo.model.Entity;
+import org.sagebionetworks.repo.model.EntityPath;
+import org.sagebionetworks.repo.model.Study;
+import org.sagebionetworks.repo.model.UserProfile;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.web.util.SimulatedSynapseConfig;
+import org.sagebionetworks.web.util.SimulatedSynapseRepository;
+
+/**
+ * JSON round-trips of the model objects the portal relays most, taken from
+ * a simulated repository: every RPC serializes repository objects to JSON
+ * strings for the client.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EntityJsonBenchmark {
+
+	Entity entity;
+	EntityPath path;
+	UserProfile profile;
+	RowSet rowSet;
+	String entityJson;
+	String rowSetJson;
+
+	@Setup
+	public void setup() throws Exception {
+		SimulatedSynapseConfig config = new SimulatedSynapseConfig();
+		config.setNumberOfEntities(1000);
+		config.setWikiPagesPerOwner(1);
+		SimulatedSynapseRepository repository = new SimulatedSynapseRepository(config, null);
+		// deep in the entity tree, so the path has a few ancestors
+		String entityId = SimulatedSynapseRepository.getEntityId(config.getNumberOfEntities() - 1);
+		entity = repository.getEntity(entityId);
+		path = repository.getEntityBundle(entityId).getPath();
+		profile = repository.getUserProfile(Long.toString(SimulatedSynapseRepository.FIRST_USER_ID));
+		rowSet = repository.queryTable("SELECT * FROM " + SimulatedSynapseRepository.TABLE_ID + " LIMIT 25", false);
+		entityJson = EntityFactory.createJSONStringForEntity(entity);
+		rowSetJson = EntityFactory.createJSONStringForEntity(rowSet);
+	}
+
+	@Benchmark
+	public Study entityRoundTrip() throws Exception {
+		return EntityFactory.createEntityFromJSONString(EntityFactory.createJSONStringForEntity(entity), Study.class);
+	}
+
+	@Benchmark
+	public EntityPath entityPathRoundTrip() throws Exception {
+		return EntityFactory.createEntityFromJSONString(EntityFactory.createJSONStringForEntity(path), EntityPath.class);
+	}
+
+	@Benchmark
+	public UserProfile userProfileRoundTrip() throws Exception {
+		return EntityFactory.createEntityFromJSONString(EntityFactory.createJSONStringForEntity(profile), UserProfile.class);
+	}
+
+	@Benchmark
+	public String rowSetToJson() throws Exception {
+		return EntityFactory.createJSONStringForEntity(rowSet);
+	}
+
+	@Benchmark
+	public RowSet rowSetFromJson() throws Exception {
+		return EntityFactory.createEntityFromJSONString(rowSetJson, RowSet.class);
+	}
+
+	@Benchmark
+	public Study entityFromJson() throws Exception {
+		return EntityFactory.createEntityFromJSONString(entityJson, Study.class);
+	}
+}
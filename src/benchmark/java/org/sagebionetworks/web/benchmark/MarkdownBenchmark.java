@@ -0,0 +1,75 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.markdown.SynapseMarkdownProcessor;
+import org.sagebionetworks.web.util.RandomStrings;
+
+/**
+ * Server-side rendering of wiki pages (uncached pages and crawler
+ * snapshots). The pages are generated locally and mix the constructs real
+ * project wikis use: headings, emphasis, links, entity references, lists,
+ * tables, code blocks and widgets.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MarkdownBenchmark {
+
+	/**
+	 * Number of sections in the page.
+	 */
+	@Param({ "5", "50" })
+	public int sections;
+
+	String markdown;
+
+	@Setup
+	public void setup() {
+		StringBuilder page = new StringBuilder();
+		for (int i = 0; i < sections; i++) {
+			page.append("## ").append(RandomStrings.generateRandomString(4, 10)).append("\n\n");
+			page.append(RandomStrings.generateRandomString(40, 10));
+			page.append(" **").append(RandomStrings.generateRandomString(2, 8)).append("** and _");
+			page.append(RandomStrings.generateRandomString(2, 8)).append("_, see syn").append(1000000 + i);
+			page.append(" or [the protocol](http://example.org/protocol/").append(i).append(").\n\n");
+			for (int j = 0; j < 4; j++) {
+				page.append("* ").append(RandomStrings.generateRandomString(8, 10)).append("\n");
+			}
+			page.append("\n| Sample | Tissue | Count |\n|---|---|---|\n");
+			for (int j = 0; j < 5; j++) {
+				page.append("| S").append(j).append(" | ").append(RandomStrings.generateRandomString(1, 10)).append(" | ").append(j * 17).append(" |\n");
+			}
+			page.append("\n```\nlibrary(synapseClient)\nentity <- synGet('syn").append(1000000 + i).append("')\n```\n\n");
+			if (i % 5 == 0)
+				page.append("${image?fileName=figure").append(i).append(".png&align=None}\n\n");
+			page.append("> ").append(RandomStrings.generateRandomString(20, 10)).append("\n\n");
+		}
+		markdown = page.toString();
+	}
+
+	@Benchmark
+	public String markdown2Html() throws Exception {
+		return SynapseMarkdownProcessor.getInstance().markdown2Html(markdown, false, "");
+	}
+
+	@Benchmark
+	public String markdown2HtmlPreview() throws Exception {
+		return SynapseMarkdownProcessor.getInstance().markdown2Html(markdown, true, "");
+	}
+}
@@ -0,0 +1,90 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.io.StringReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.web.server.servlet.RssFeedUtils;
+import org.sagebionetworks.web.util.RandomStrings;
+
+import com.sun.syndication.feed.synd.SyndFeed;
+import com.sun.syndication.io.SyndFeedInput;
+
+/**
+ * Converting a news feed (a locally generated RSS 2.0 document the size of
+ * the blog feed shown on the home page) into the JSON sent to the client.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RssFeedBenchmark {
+
+	public static final int ENTRY_COUNT = 20;
+	public static final int SUMMARY_LIMIT = 5;
+
+	String xml;
+	SyndFeed feed;
+
+	@Setup
+	public void setup() throws Exception {
+		SimpleDateFormat rfc822 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+		rfc822.setTimeZone(TimeZone.getTimeZone("GMT"));
+		long published = 1405000000000L;
+		StringBuilder builder = new StringBuilder();
+		builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		builder.append("<rss version=\"2.0\" xmlns:content=\"http://purl.org/rss/1.0/modules/content/\"><channel>\n");
+		builder.append("<title>Synapse News</title><link>http://example.org/news</link><description>News</description>\n");
+		for (int i = 0; i < ENTRY_COUNT; i++) {
+			builder.append("<item><title>").append(RandomStrings.generateRandomString(6, 10)).append("</title>");
+			builder.append("<link>http://example.org/news/").append(i).append("</link>");
+			builder.append("<author>author").append(i % 4).append("@example.org</author>");
+			builder.append("<pubDate>").append(rfc822.format(new Date(published - TimeUnit.DAYS.toMillis(i)))).append("</pubDate>");
+			builder.append("<description><![CDATA[");
+			appendParagraphs(builder, 3);
+			builder.append("]]></description><content:encoded><![CDATA[");
+			appendParagraphs(builder, 12);
+			builder.append("]]></content:encoded></item>\n");
+		}
+		builder.append("</channel></rss>");
+		xml = builder.toString();
+		feed = new SyndFeedInput().build(new StringReader(xml));
+	}
+
+	private static void appendParagraphs(StringBuilder builder, int count) {
+		for (int i = 0; i < count; i++) {
+			builder.append("<p>").append(RandomStrings.generateRandomString(60, 10)).append("</p>");
+		}
+	}
+
+	@Benchmark
+	public String getFeed() {
+		return RssFeedUtils.getFeed(feed, null, false);
+	}
+
+	@Benchmark
+	public String getFeedSummaries() {
+		return RssFeedUtils.getFeed(feed, SUMMARY_LIMIT, true);
+	}
+
+	@Benchmark
+	public String parseAndGetFeed() throws Exception {
+		return RssFeedUtils.getFeed(new SyndFeedInput().build(new StringReader(xml)), null, false);
+	}
+}
@@ -0,0 +1,141 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.web.client.SearchService;
+import org.sagebionetworks.web.server.ColumnConfigProvider;
+import org.sagebionetworks.web.server.UrlTemplateUtil;
+import org.sagebionetworks.web.server.servlet.SearchResultsReader;
+import org.sagebionetworks.web.server.servlet.TypeValidation;
+import org.sagebionetworks.web.shared.ColumnInfo;
+import org.sagebionetworks.web.shared.ColumnarRows;
+import org.sagebionetworks.web.shared.HeaderData;
+import org.sagebionetworks.web.shared.UrlTemplate;
+import org.sagebionetworks.web.util.RandomColumnData;
+
+/**
+ * The post-processing SearchServiceImpl applies to every page of query
+ * results, over the columns of the real column configuration.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SearchResultsBenchmark {
+
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+	@Param({ "10", "100" })
+	public int rowCount;
+
+	ColumnConfigProvider columnConfig;
+	List<String> visibleColumns;
+	List<HeaderData> allColumns;
+	Map<String, HeaderData> columnMap;
+	List<Map<String, Object>> jsonRows;
+	List<Map<String, Object>> validatedRows;
+	byte[] responseBody;
+
+	@Setup
+	public void setup() throws IOException {
+		columnConfig = new ColumnConfigProvider("ColumnConfigurationV2.xml");
+		columnConfig.setDefaultDatasetColumns("dataset.NameLink, dataset.numSamples, dataset.species, dataset.tissueType, dataset.disease, dataset.createdBy, dataset.modifiedOn");
+		visibleColumns = columnConfig.getDefaultColumnIds("dataset");
+
+		allColumns = new ArrayList<HeaderData>();
+		List<ColumnInfo> valueColumns = new ArrayList<ColumnInfo>();
+		Iterator<String> it = columnConfig.getKeyIterator();
+		while (it.hasNext()) {
+			HeaderData header = columnConfig.get(it.next());
+			allColumns.add(header);
+			if (header instanceof ColumnInfo && !(header instanceof UrlTemplate))
+				valueColumns.add((ColumnInfo) header);
+		}
+		columnMap = new HashMap<String, HeaderData>();
+		for (HeaderData header : allColumns) {
+			columnMap.put(header.getId(), header);
+		}
+		// the repository's JSON arrives as lists, not arrays
+		jsonRows = RandomColumnData.createRandomRows(rowCount, valueColumns);
+		for (Map<String, Object> row : jsonRows) {
+			for (Map.Entry<String, Object> entry : row.entrySet()) {
+				if (entry.getValue() instanceof Object[])
+					entry.setValue(new ArrayList<Object>(Arrays.asList((Object[]) entry.getValue())));
+			}
+		}
+		validatedRows = TypeValidation.validateTypes(jsonRows, columnMap);
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put(SearchService.KEY_TOTAL_NUMBER_OF_RESULTS, rowCount);
+		body.put(SearchService.KEY_RESULTS, jsonRows);
+		responseBody = JSON_MAPPER.writeValueAsBytes(body);
+	}
+
+	/**
+	 * The response body as it used to be handled: mapped to untyped maps,
+	 * copied into typed rows, then the url templates expanded.
+	 */
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public List<Map<String, Object>> mapResponse() throws IOException {
+		Map<String, Object> body = JSON_MAPPER.readValue(responseBody, Map.class);
+		List<Map<String, Object>> rows = TypeValidation.validateTypes((List<Map<String, Object>>) body.get(SearchService.KEY_RESULTS), columnMap);
+		UrlTemplateUtil.processUrlTemplates(allColumns, rows);
+		return rows;
+	}
+
+	/**
+	 * The same body read straight into typed columns.
+	 */
+	@Benchmark
+	public ColumnarRows readColumnarResponse() throws IOException {
+		SearchResultsReader reader = new SearchResultsReader(allColumns, rowCount);
+		reader.read(new ByteArrayInputStream(responseBody));
+		reader.expandUrlTemplates();
+		return reader.getRows();
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> validateTypes() {
+		return TypeValidation.validateTypes(jsonRows, columnMap);
+	}
+
+	@Benchmark
+	public List<Map<String, Object>> processUrlTemplates() {
+		// templates write their column into each row, so every run starts from a fresh copy
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(validatedRows.size());
+		for (Map<String, Object> row : validatedRows) {
+			rows.add(new HashMap<String, Object>(row));
+		}
+		UrlTemplateUtil.processUrlTemplates(allColumns, rows);
+		return rows;
+	}
+
+	@Benchmark
+	public List<String> addAllDependancies() {
+		return columnConfig.addAllDependancies(visibleColumns);
+	}
+}
@@ -0,0 +1,70 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.web.server.servlet.SynapseProviderImpl;
+
+/**
+ * What an RPC pays for its Synapse client before the repository call goes
+ * out: create and configure a client the way the services do, then make one
+ * (local) call on it. A new profiled client per call (as before) against the
+ * reused clients. Run with -prof gc to see the allocation per call.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+@Fork(1)
+public class SynapseProviderBenchmark {
+
+	SynapseProviderImpl newClients;
+	SynapseProviderImpl reusedClients;
+	SynapseProviderImpl reusedProfiledClients;
+
+	@Setup
+	public void setup() {
+		newClients = new SynapseProviderImpl(false, true);
+		reusedClients = new SynapseProviderImpl(true, false);
+		reusedProfiledClients = new SynapseProviderImpl(true, true);
+	}
+
+	private static String call(SynapseProviderImpl provider) {
+		SynapseClient client = provider.createNewClient();
+		client.setSessionToken("session-token");
+		client.setRepositoryEndpoint("https://repo-prod.prod.sagebase.org/repo/v1");
+		client.setAuthEndpoint("https://repo-prod.prod.sagebase.org/auth/v1");
+		client.setFileEndpoint("https://repo-prod.prod.sagebase.org/file/v1");
+		client.appendUserAgent("Synapse-Web-Client/benchmark");
+		return client.getUserAgent();
+	}
+
+	@Benchmark
+	public String newClientPerCall() {
+		return call(newClients);
+	}
+
+	@Benchmark
+	public String reusedClient() {
+		return call(reusedClients);
+	}
+
+	@Benchmark
+	public String reusedProfiledClient() {
+		return call(reusedProfiledClients);
+	}
+}
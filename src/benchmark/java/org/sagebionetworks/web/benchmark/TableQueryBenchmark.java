@@ -0,0 +1,66 @@
+package org.sagebionetworks.web.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sagebionetworks.table.query.TableQueryParser;
+import org.sagebionetworks.table.query.model.QuerySpecification;
+import org.sagebionetworks.web.server.servlet.ServiceUtils;
+import org.sagebionetworks.web.shared.table.QueryDetails;
+import org.sagebionetworks.web.shared.table.QueryDetails.SortDirection;
+
+/**
+ * Parsing and rewriting of table queries, as done for every page of a table
+ * widget. The String methods of ServiceUtils go through its parsed query
+ * cache; parse shows the cost of a miss.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TableQueryBenchmark {
+
+	public static final String QUERY = "SELECT name, age, species, \"tissue type\", score FROM syn123 "
+			+ "WHERE age > 21 AND species = 'human' ORDER BY score DESC LIMIT 25 OFFSET 50";
+
+	QueryDetails pageRequest;
+	QuerySpecification parsed;
+
+	@Setup
+	public void setup() throws Exception {
+		pageRequest = new QueryDetails(75L, 25L, "age", SortDirection.ASC);
+		parsed = TableQueryParser.parserQuery(QUERY);
+	}
+
+	@Benchmark
+	public QuerySpecification parse() throws Exception {
+		return TableQueryParser.parserQuery(QUERY);
+	}
+
+	@Benchmark
+	public QueryDetails extractQueryDetails() throws Exception {
+		return ServiceUtils.extractQueryDetails(QUERY);
+	}
+
+	@Benchmark
+	public String modifyQuery() throws Exception {
+		return ServiceUtils.modifyQuery(QUERY, pageRequest);
+	}
+
+	@Benchmark
+	public String modifyParsedQuery() throws Exception {
+		return ServiceUtils.toSQL(ServiceUtils.modifyQuery(parsed, pageRequest));
+	}
+}
@@ -28,6 +28,12 @@ public interface GWTWrapper {
 	
 	void scheduleExecution(Callback callback, int delay);
 	
+	/**
+	 * Run the callback once the current event loop has finished (after the browser event that is being handled now).
+	 * @param callback
+	 */
+	void scheduleDeferred(Callback callback);
+	
 	String getUserAgent();
 	
 	String getAppVersion();
@@ -3,6 +3,8 @@ package org.sagebionetworks.web.client;
 import org.sagebionetworks.web.client.utils.Callback;
 
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.core.client.Scheduler.ScheduledCommand;
 import com.google.gwt.http.client.URL;
 import com.google.gwt.i18n.client.DateTimeFormat;
 import com.google.gwt.i18n.client.NumberFormat;
@@ -69,6 +71,16 @@ public class GWTWrapperImpl implements GWTWrapper {
 		timer.schedule(delayMillis);
 	}
 	
+	@Override
+	public void scheduleDeferred(final Callback callback) {
+		Scheduler.get().scheduleDeferred(new ScheduledCommand() {
+			@Override
+			public void execute() {
+				callback.invoke();
+			}
+		});
+	}
+	
 	@Override
 	public String getUserAgent() {
 		return Navigator.getUserAgent();
@@ -96,6 +96,8 @@ public interface PortalGinInjector extends Ginjector {
 	
 	public GlobalApplicationState getGlobalApplicationState();
 	
+	public GWTWrapper getGWTWrapper();
+	
 	public PresenterProxy<HomePresenter, Home> getHomePresenter();
 
 	public EntityPresenter getEntityPresenter();
@@ -274,6 +274,8 @@ import org.sagebionetworks.web.client.widget.team.TeamListWidgetView;
 import org.sagebionetworks.web.client.widget.team.TeamListWidgetViewImpl;
 import org.sagebionetworks.web.client.widget.team.WizardProgressWidgetView;
 import org.sagebionetworks.web.client.widget.team.WizardProgressWidgetViewImpl;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoaderImpl;
 import org.sagebionetworks.web.client.widget.user.BigUserBadgeView;
 import org.sagebionetworks.web.client.widget.user.BigUserBadgeViewImpl;
 import org.sagebionetworks.web.client.widget.user.UserBadgeView;
@@ -367,6 +369,10 @@ public class PortalGinModule extends AbstractGinModule {
 		bind(ClientCacheImpl.class).in(Singleton.class);
 		bind(ClientCache.class).to(ClientCacheImpl.class);
 
+		// Badge lookups (batched)
+		bind(BadgeBatchLoaderImpl.class).in(Singleton.class);
+		bind(BadgeBatchLoader.class).to(BadgeBatchLoaderImpl.class);
+
 		// Storage wrapper
 		bind(StorageImpl.class).in(Singleton.class);
 		bind(StorageWrapper.class).to(StorageImpl.class);
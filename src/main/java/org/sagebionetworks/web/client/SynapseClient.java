@@ -12,13 +12,16 @@ import org.sagebionetworks.client.exceptions.SynapseException;
 import org.sagebionetworks.repo.model.table.RowReferenceSet;
 import org.sagebionetworks.web.shared.AccessRequirementsTransport;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
 import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.MembershipInvitationBundle;
 import org.sagebionetworks.web.shared.MembershipRequestBundle;
 import org.sagebionetworks.web.shared.SerializableWhitelist;
 import org.sagebionetworks.web.shared.TeamBundle;
+import org.sagebionetworks.web.shared.WikiHtmlBundle;
 import org.sagebionetworks.web.shared.WikiPageKey;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.table.QueryDetails;
 import org.sagebionetworks.web.shared.table.QueryResult;
 
@@ -68,6 +71,15 @@ public interface SynapseClient extends RemoteService {
 	 * @throws SynapseException 
 	 */
 	public EntityBundleTransport getEntityBundle(String entityId, int partsMask) throws RestServiceException;
+	
+	/**
+	 * Get the bundles for many entities in one call.  The result lists are in the order of the given ids.
+	 * @param entityIds
+	 * @param partsMask
+	 * @return
+	 * @throws RestServiceException
+	 */
+	public EntityBundleTransportList getEntityBundles(List<String> entityIds, int partsMask) throws RestServiceException;
 
 	/**
 	 * Get a bundle of information about an entity in a single call
@@ -146,6 +158,22 @@ public interface SynapseClient extends RemoteService {
 	 * @throws RestServiceException
 	 */
 	public EntityWrapper getUserGroupHeadersById(List<String> ids) throws RestServiceException;
+	
+	/**
+	 * Get many user profiles (json) in one call.  The result is in the order of the given ids, with null for any profile that could not be retrieved.
+	 * @param userIds
+	 * @return
+	 * @throws RestServiceException
+	 */
+	public List<String> getUserProfiles(List<String> userIds) throws RestServiceException;
+	
+	/**
+	 * Get many teams (json) in one call.  The result is in the order of the given ids, with null for any team that could not be retrieved.
+	 * @param teamIds
+	 * @return
+	 * @throws RestServiceException
+	 */
+	public List<String> getTeams(List<String> teamIds) throws RestServiceException;
 
 	/**
 	 * Updates the user's profile json object 
@@ -219,6 +247,15 @@ public interface SynapseClient extends RemoteService {
 	 */
 	public String markdown2Html(String markdown, Boolean isPreview, Boolean isAlpha, String clientHostString) throws RestServiceException;
 	
+	/**
+	 * Render a wiki page to html on the server, without sending the markdown to the client.
+	 * Results are cached by wiki key and etag.
+	 * @param key
+	 * @param version null for the current version
+	 * @return the resolved wiki page id and the html
+	 */
+	public WikiHtmlBundle getWikiPageHtml(WikiPageKey key, Long version, Boolean isPreview, String clientHostString) throws RestServiceException;
+	
 	public String getActivityForEntity(String entityId) throws RestServiceException;
 	
 	public String getActivityForEntityVersion(String entityId, Long versionNumber) throws RestServiceException;
@@ -226,6 +263,15 @@ public interface SynapseClient extends RemoteService {
 	public String getActivity(String activityId) throws RestServiceException;
 	
 	public String getEntitiesGeneratedBy(String activityId, Integer limit, Integer offset) throws RestServiceException;
+	
+	/**
+	 * Walk the provenance graph from the given start references on the server.
+	 * @param startReferencesJson ReferenceList json. References without a version refer to the current version.
+	 * @param maxDepth
+	 * @return
+	 * @throws RestServiceException
+	 */
+	public ProvGraphBundle getProvenanceGraph(String startReferencesJson, int maxDepth) throws RestServiceException;
 
 	public EntityWrapper removeAttachmentFromEntity(String entityId, String attachmentName) throws RestServiceException;
 	public String getJSONEntity(String repoUri) throws RestServiceException;
@@ -300,6 +346,10 @@ public interface SynapseClient extends RemoteService {
 	
 	public String getChunkedFileToken(String fileName, String contentType, String contentMD5) throws RestServiceException;
 	public String getChunkedPresignedUrl(String requestJson) throws RestServiceException;
+	/**
+	 * Pre-signed urls for a batch of chunk requests, in the same order.
+	 */
+	public List<String> getChunkedPresignedUrls(List<String> requestJsons) throws RestServiceException;
 	public String combineChunkedFileUpload(List<String> requests) throws RestServiceException;
 	public String getUploadDaemonStatus(String daemonId) throws RestServiceException;
 	public String getFileEntityIdWithSameName(String fileName, String parentEntityId) throws RestServiceException;
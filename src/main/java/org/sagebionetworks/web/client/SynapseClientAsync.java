@@ -9,13 +9,16 @@ import java.util.Set;
 import org.sagebionetworks.repo.model.table.RowReferenceSet;
 import org.sagebionetworks.web.shared.AccessRequirementsTransport;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
 import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.MembershipInvitationBundle;
 import org.sagebionetworks.web.shared.MembershipRequestBundle;
 import org.sagebionetworks.web.shared.SerializableWhitelist;
 import org.sagebionetworks.web.shared.TeamBundle;
+import org.sagebionetworks.web.shared.WikiHtmlBundle;
 import org.sagebionetworks.web.shared.WikiPageKey;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.table.QueryDetails;
 import org.sagebionetworks.web.shared.table.QueryResult;
 
@@ -29,6 +32,8 @@ public interface SynapseClientAsync {
 	
 	void getEntityBundle(String entityId, int partsMask, AsyncCallback<EntityBundleTransport> callback);
 	
+	void getEntityBundles(List<String> entityIds, int partsMask, AsyncCallback<EntityBundleTransportList> callback);
+	
 	void getEntityBundleForVersion(String entityId, Long versionNumber, int partsMask, AsyncCallback<EntityBundleTransport> callback);
 
 	void getEntityVersions(String entityId, int offset, int limit, AsyncCallback<String> callback);
@@ -76,6 +81,10 @@ public interface SynapseClientAsync {
 	
 	void getUserGroupHeadersById(List<String> ids, AsyncCallback<EntityWrapper> headers);
 	
+	void getUserProfiles(List<String> userIds, AsyncCallback<List<String>> callback);
+	
+	void getTeams(List<String> teamIds, AsyncCallback<List<String>> callback);
+	
 	void updateUserProfile(String userProfileJson, AsyncCallback<Void> callback);
 	
 	void createUserProfileAttachmentPresignedUrl(String id, String tokenOrPreviewId, AsyncCallback<String> callback);
@@ -131,6 +140,8 @@ public interface SynapseClientAsync {
 
 	public void markdown2Html(String markdown, Boolean isPreview, Boolean isAlpha, String clientHostString, AsyncCallback<String> callback);
 	
+	public void getWikiPageHtml(WikiPageKey key, Long version, Boolean isPreview, String clientHostString, AsyncCallback<WikiHtmlBundle> callback);
+	
 	void getActivityForEntityVersion(String entityId, Long versionNumber, AsyncCallback<String> callback);
 
 	void getActivityForEntity(String entityId, AsyncCallback<String> callback);
@@ -175,6 +186,8 @@ public interface SynapseClientAsync {
 	public void getPlainTextWikiPage(WikiPageKey key, AsyncCallback<String> callback);	
 	
 	void getEntitiesGeneratedBy(String activityId, Integer limit, Integer offset, AsyncCallback<String> callback);
+	
+	void getProvenanceGraph(String startReferencesJson, int maxDepth, AsyncCallback<ProvGraphBundle> callback);
 
 	void addFavorite(String entityId, AsyncCallback<String> callback);
 
@@ -223,6 +236,7 @@ public interface SynapseClientAsync {
 	void getDescendants(String nodeId, int pageSize, String lastDescIdExcl, AsyncCallback<String> callback);
 	void getChunkedFileToken(String fileName,  String contentType, String contentMD5, AsyncCallback<String> callback) throws RestServiceException;
 	void getChunkedPresignedUrl(String requestJson, AsyncCallback<String> callback) throws RestServiceException;
+	void getChunkedPresignedUrls(List<String> requestJsons, AsyncCallback<List<String>> callback) throws RestServiceException;
 	void combineChunkedFileUpload(List<String> requests, AsyncCallback<String> callback) throws RestServiceException;
 	void getUploadDaemonStatus(String daemonId,AsyncCallback<String> callback) throws RestServiceException;
 	void getFileEntityIdWithSameName(String fileName, String parentEntityId, AsyncCallback<String> callback);
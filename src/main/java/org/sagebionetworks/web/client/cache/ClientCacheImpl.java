@@ -10,6 +10,8 @@ public class ClientCacheImpl implements ClientCache {
 
 	//default to an hour
 	private static final Long DEFAULT_CACHE_TIME_MS = 1000L*60L*60L;
+	//the expire time is kept in storage too, so that values survive a page reload
+	public static final String EXPIRE_TIME_SUFFIX = "_EXPIRE_TIME";
 	
 	@Inject
 	public ClientCacheImpl(StorageWrapper storage) {
@@ -20,18 +22,36 @@ public class ClientCacheImpl implements ClientCache {
 	
 	@Override
 	public String get(String key) {
-		Long expireTime = key2ExpireTime.get(key);
-		if (storage.isStorageSupported() && expireTime != null) {
+		if (!storage.isStorageSupported())
+			return null;
+		Long expireTime = getExpireTime(key);
+		if (expireTime != null) {
 			if (System.currentTimeMillis() < expireTime) {
 				return storage.getItem(key); 
 			} else {
 				//expired, clean up
-				storage.removeItem(key);
-				key2ExpireTime.remove(key);
+				remove(key);
 			}
 		}
 		return null;
 	}
+	
+	private Long getExpireTime(String key) {
+		Long expireTime = key2ExpireTime.get(key);
+		if (expireTime == null) {
+			//put before this page was loaded?
+			String storedExpireTime = storage.getItem(key + EXPIRE_TIME_SUFFIX);
+			if (storedExpireTime != null) {
+				try {
+					expireTime = Long.parseLong(storedExpireTime);
+					key2ExpireTime.put(key, expireTime);
+				} catch (NumberFormatException e) {
+					//not ours
+				}
+			}
+		}
+		return expireTime;
+	}
 
 	@Override
 	public void put(String key, String value) {
@@ -43,6 +63,7 @@ public class ClientCacheImpl implements ClientCache {
 		if (storage.isStorageSupported()) {
 			key2ExpireTime.put(key, expireTime);
 			storage.setItem(key, value);
+			storage.setItem(key + EXPIRE_TIME_SUFFIX, expireTime.toString());
 		}
 	}
 	
@@ -50,6 +71,8 @@ public class ClientCacheImpl implements ClientCache {
 	public void remove(String key) {
 		if (storage.isStorageSupported()) {
 			storage.removeItem(key);
+			storage.removeItem(key + EXPIRE_TIME_SUFFIX);
+			key2ExpireTime.remove(key);
 		}
 	}
 	@Override
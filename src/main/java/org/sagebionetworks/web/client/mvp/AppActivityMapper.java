@@ -2,12 +2,15 @@ package org.sagebionetworks.web.client.mvp;
 
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.sagebionetworks.web.client.AppLoadingView;
 import org.sagebionetworks.web.client.ClientProperties;
 import org.sagebionetworks.web.client.DisplayConstants;
+import org.sagebionetworks.web.client.GWTWrapper;
 import org.sagebionetworks.web.client.GlobalApplicationState;
 import org.sagebionetworks.web.client.PortalGinInjector;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
@@ -35,6 +38,7 @@ import org.sagebionetworks.web.client.presenter.BulkPresenterProxy;
 import org.sagebionetworks.web.client.presenter.HomePresenter;
 import org.sagebionetworks.web.client.presenter.PresenterProxy;
 import org.sagebionetworks.web.client.security.AuthenticationController;
+import org.sagebionetworks.web.client.utils.Callback;
 
 import com.google.gwt.activity.shared.Activity;
 import com.google.gwt.activity.shared.ActivityMapper;
@@ -51,6 +55,10 @@ public class AppActivityMapper implements ActivityMapper {
 	AppLoadingView loading;
 	Activity lastActivity;
 	private static boolean isFirstTime = false;
+	//wait for the page to finish loading before downloading code for the next one
+	public static final int PREFETCH_DELAY_MS = 3000;
+	@SuppressWarnings("rawtypes")
+	private Set<Class> prefetched = new HashSet<Class>();
 
 	/**
 	 * AppActivityMapper associates each Place with its corresponding
@@ -135,6 +143,7 @@ public class AppActivityMapper implements ActivityMapper {
 			presenter.setPlace((Home)place);
 			presenter.setGinInjector(ginjector);
 			lastActivity = presenter;
+			prefetchNextPlace(place);
 			return presenter;
 		} else {
 			// check if this is a no-restart place change
@@ -147,9 +156,45 @@ public class AppActivityMapper implements ActivityMapper {
 			bulkPresenterProxy.setloader(loading);
 			bulkPresenterProxy.setPlace(place);
 			lastActivity = bulkPresenterProxy;
+			prefetchNextPlace(place);
 			return bulkPresenterProxy;
 		}
 	}
+	
+	/**
+	 * Download the code for the page the user is most likely to visit next, once the current page has loaded.
+	 * @param place
+	 */
+	@SuppressWarnings("rawtypes")
+	private void prefetchNextPlace(Place place) {
+		final Place next = getLikelyNextPlace(place);
+		if (next == null || next.getClass().equals(place.getClass()) || prefetched.contains(next.getClass()))
+			return;
+		prefetched.add(next.getClass());
+		GWTWrapper gwt = ginjector.getGWTWrapper();
+		gwt.scheduleExecution(new Callback() {
+			@Override
+			public void invoke() {
+				BulkPresenterProxy bulkPresenterProxy = ginjector.getBulkPresenterProxy();
+				bulkPresenterProxy.setGinjector(ginjector);
+				bulkPresenterProxy.setPlace(next);
+				bulkPresenterProxy.start(null, null);
+			}
+		}, PREFETCH_DELAY_MS);
+	}
+	
+	/**
+	 * Most visits to the portal go from the home, search, and project list pages to an entity, and from an entity to a profile (and back). 
+	 * @param place
+	 * @return
+	 */
+	public static Place getLikelyNextPlace(Place place) {
+		if (place instanceof Home || place instanceof Search || place instanceof ProjectsHome || place instanceof Profile)
+			return new Synapse("");
+		if (place instanceof Synapse || place instanceof Team || place instanceof TeamSearch || place instanceof LoginPlace)
+			return new Profile("");
+		return null;
+	}
 
 	/**
 	 * Get the default place
@@ -42,8 +42,11 @@ import com.google.gwt.user.client.ui.AcceptsOneWidget;
 import com.google.inject.Inject;
 
 /**
- * A block of presenters in the same code split that dynamically
- * starts the correct presenter given the place
+ * Starts the correct presenter given the place.  Each major place (entity, profile, team, search, wiki, settings)
+ * is behind its own code split, so the first visit to a page only downloads the code for that page.  The remaining
+ * (smaller) places share one split.
+ * 
+ * Starting with a null panel and event bus only loads the code for the place (prefetch).
  * 
  * @author Dave
  *
@@ -63,120 +66,187 @@ public class BulkPresenterProxy extends AbstractActivity {
 
 	@Override
 	public void start(final AcceptsOneWidget panel, final EventBus eventBus) {
-		globalApplicationState.setIsEditing(false);
-		GWT.runAsync(new RunAsyncCallback() {
-			@Override
-			public void onSuccess() {
-				// detect prefetch
-				if(panel == null && eventBus == null) return; 
-				if(loading != null) loading.hide();
-				
-				 if(place instanceof Synapse){
+		// detect prefetch
+		final boolean isPrefetch = panel == null && eventBus == null;
+		if (!isPrefetch)
+			globalApplicationState.setIsEditing(false);
+		
+		// Every split point must be a separate GWT.runAsync call
+		if (place instanceof Synapse) {
+			GWT.runAsync(EntityPresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
 					EntityPresenter presenter = ginjector.getEntityPresenter();
 					presenter.setPlace((Synapse)place);
 					presenter.start(panel, eventBus);
-				}else if (place instanceof ProjectsHome) {
-					// Projects Home 
-					ProjectsHomePresenter presenter = ginjector.getProjectsHomePresenter();
-					presenter.setPlace((ProjectsHome)place);
-					presenter.start(panel, eventBus);
-				}else if (place instanceof LoginPlace) {
-					// login view
-					LoginPresenter presenter = ginjector.getLoginPresenter();
-					presenter.setPlace((LoginPlace)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof PasswordReset) {
-					// reset passwords
-					PasswordResetPresenter presenter = ginjector.getPasswordResetPresenter();
-					presenter.setPlace((PasswordReset)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof RegisterAccount) {
-					// register for a new account
-					RegisterAccountPresenter presenter = ginjector.getRegisterAccountPresenter();
-					presenter.setPlace((RegisterAccount)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Profile) {
+				}
+			});
+		} else if (place instanceof Profile) {
+			GWT.runAsync(ProfilePresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
 					// user's profile page
 					ProfilePresenter presenter = ginjector.getProfilePresenter();
 					presenter.setPlace((Profile)place);
 					presenter.start(panel, eventBus);
-				} else if (place instanceof Settings) {
-					// user's profile page
-					SettingsPresenter presenter = ginjector.getSettingsPresenter();
-					presenter.setPlace((Settings)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof ComingSoon) {
-					// user's profile page
-					ComingSoonPresenter presenter = ginjector.getComingSoonPresenter();
-					presenter.setPlace((ComingSoon)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Challenges) {
-					// user's profile page
-					ChallengeOverviewPresenter presenter = ginjector.getChallengeOverviewPresenter();
-					presenter.setPlace((Challenges)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Help) {
-					HelpPresenter presenter = ginjector.getHelpPresenter();
-					presenter.setPlace((Help)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Search) {
+				}
+			});
+		} else if (place instanceof Team || place instanceof TeamSearch) {
+			GWT.runAsync(TeamPresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
+					if (place instanceof Team) {
+						// Team page
+						TeamPresenter presenter = ginjector.getTeamPresenter();
+						presenter.setPlace((Team)place);
+						presenter.start(panel, eventBus);
+					} else {
+						// Team Search page
+						TeamSearchPresenter presenter = ginjector.getTeamSearchPresenter();
+						presenter.setPlace((TeamSearch)place);
+						presenter.start(panel, eventBus);
+					}
+				}
+			});
+		} else if (place instanceof Search) {
+			GWT.runAsync(SearchPresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
 					// search results page
 					SearchPresenter presenter = ginjector.getSearchPresenter();
 					presenter.setPlace((Search)place);
 					presenter.start(panel, eventBus);
-				} else if (place instanceof WikiPlace) {
-					// wiki page
-					WikiPresenter presenter = ginjector.getWikiPresenter();
-					presenter.setPlace((WikiPlace)place);
-					presenter.start(panel, eventBus);
-				} else if(place instanceof Wiki){
-					SynapseWikiPresenter presenter = ginjector.getSynapseWikiPresenter();
-					presenter.setPlace((Wiki)place);
-					presenter.start(panel, eventBus);
-				} else if(place instanceof Down) {
-					DownPresenter presenter = ginjector.getDownPresenter();
-					presenter.setPlace((Down) place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Team) {
-					// Team page
-					TeamPresenter presenter = ginjector.getTeamPresenter();
-					presenter.setPlace((Team)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof TeamSearch) {
-					// Team Search page
-					TeamSearchPresenter presenter = ginjector.getTeamSearchPresenter();
-					presenter.setPlace((TeamSearch)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Quiz) {
-					// Test page
-					QuizPresenter presenter = ginjector.getQuizPresenter();
-					presenter.setPlace((Quiz)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof Account) {
-					AccountPresenter presenter = ginjector.getAccountPresenter();
-					presenter.setPlace((Account)place);
-					presenter.start(panel, eventBus);
-				} else if (place instanceof ChangeUsername) {
-					ChangeUsernamePresenter presenter = ginjector.getChangeUsernamePresenter();
-					presenter.setPlace((ChangeUsername)place);
-					presenter.start(panel, eventBus);
-				} else {
-					// Log that we have an unknown place but send the user to the default
-					log.log(Level.WARNING, "Unknown Place: "+place.getClass().getName());
-					// Go to the default place
-					place = getDefaultPlace();
-					onSuccess();
-					return;
 				}
-			}
-
-			@Override
-			public void onFailure(Throwable caught) {
-				// Not sure what to do here.
-				DisplayUtils.showErrorMessage(caught.getMessage());
-			}
+			});
+		} else if (place instanceof WikiPlace || place instanceof Wiki) {
+			GWT.runAsync(WikiPresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
+					if (place instanceof WikiPlace) {
+						// wiki page
+						WikiPresenter presenter = ginjector.getWikiPresenter();
+						presenter.setPlace((WikiPlace)place);
+						presenter.start(panel, eventBus);
+					} else {
+						SynapseWikiPresenter presenter = ginjector.getSynapseWikiPresenter();
+						presenter.setPlace((Wiki)place);
+						presenter.start(panel, eventBus);
+					}
+				}
+			});
+		} else if (place instanceof Settings || place instanceof Account || place instanceof ChangeUsername) {
+			GWT.runAsync(SettingsPresenter.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
+					if (place instanceof Settings) {
+						SettingsPresenter presenter = ginjector.getSettingsPresenter();
+						presenter.setPlace((Settings)place);
+						presenter.start(panel, eventBus);
+					} else if (place instanceof Account) {
+						AccountPresenter presenter = ginjector.getAccountPresenter();
+						presenter.setPlace((Account)place);
+						presenter.start(panel, eventBus);
+					} else {
+						ChangeUsernamePresenter presenter = ginjector.getChangeUsernamePresenter();
+						presenter.setPlace((ChangeUsername)place);
+						presenter.start(panel, eventBus);
+					}
+				}
+			});
+		} else {
+			GWT.runAsync(BulkPresenterProxy.class, new PlaceCallback(isPrefetch) {
+				@Override
+				public void startPresenter() {
+					startOtherPresenter(panel, eventBus);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * The places that share the last code split.
+	 */
+	private void startOtherPresenter(AcceptsOneWidget panel, EventBus eventBus) {
+		if (place instanceof ProjectsHome) {
+			// Projects Home 
+			ProjectsHomePresenter presenter = ginjector.getProjectsHomePresenter();
+			presenter.setPlace((ProjectsHome)place);
+			presenter.start(panel, eventBus);
+		}else if (place instanceof LoginPlace) {
+			// login view
+			LoginPresenter presenter = ginjector.getLoginPresenter();
+			presenter.setPlace((LoginPlace)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof PasswordReset) {
+			// reset passwords
+			PasswordResetPresenter presenter = ginjector.getPasswordResetPresenter();
+			presenter.setPlace((PasswordReset)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof RegisterAccount) {
+			// register for a new account
+			RegisterAccountPresenter presenter = ginjector.getRegisterAccountPresenter();
+			presenter.setPlace((RegisterAccount)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof ComingSoon) {
+			ComingSoonPresenter presenter = ginjector.getComingSoonPresenter();
+			presenter.setPlace((ComingSoon)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof Challenges) {
+			ChallengeOverviewPresenter presenter = ginjector.getChallengeOverviewPresenter();
+			presenter.setPlace((Challenges)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof Help) {
+			HelpPresenter presenter = ginjector.getHelpPresenter();
+			presenter.setPlace((Help)place);
+			presenter.start(panel, eventBus);
+		} else if(place instanceof Down) {
+			DownPresenter presenter = ginjector.getDownPresenter();
+			presenter.setPlace((Down) place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof Quiz) {
+			// Test page
+			QuizPresenter presenter = ginjector.getQuizPresenter();
+			presenter.setPlace((Quiz)place);
+			presenter.start(panel, eventBus);
+		} else if (place instanceof Home) {
+			PresenterProxy<HomePresenter, Home> presenter = ginjector.getHomePresenter();
+			presenter.setPlace((Home)place);
+			presenter.setGinInjector(ginjector);
+			presenter.start(panel, eventBus);
+		} else {
+			// Log that we have an unknown place but send the user to the default
+			log.log(Level.WARNING, "Unknown Place: "+place.getClass().getName());
+			// Go to the default place
+			place = getDefaultPlace();
+			startOtherPresenter(panel, eventBus);
+		}
+	}
+	
+	/**
+	 * Hides the loading view and starts the presenter once the code for the place has been downloaded.
+	 */
+	private abstract class PlaceCallback implements RunAsyncCallback {
+		boolean isPrefetch;
+		
+		PlaceCallback(boolean isPrefetch) {
+			this.isPrefetch = isPrefetch;
+		}
+		
+		public abstract void startPresenter();
+		
+		@Override
+		public void onSuccess() {
+			if (isPrefetch) return;
+			if(loading != null) loading.hide();
+			startPresenter();
+		}
 
-		});
+		@Override
+		public void onFailure(Throwable caught) {
+			if (isPrefetch) return;
+			if(loading != null) loading.hide();
+			DisplayUtils.showErrorMessage(caught.getMessage());
+		}
 	}
 
 	public void setPlace(Place place) {
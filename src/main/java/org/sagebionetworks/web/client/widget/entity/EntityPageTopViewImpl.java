@@ -53,6 +53,7 @@ import com.extjs.gxt.ui.client.widget.Label;
 import com.extjs.gxt.ui.client.widget.LayoutContainer;
 import com.extjs.gxt.ui.client.widget.layout.MarginData;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.dom.client.DivElement;
 import com.google.gwt.dom.client.LIElement;
 import com.google.gwt.event.dom.client.ClickEvent;
@@ -691,7 +692,7 @@ public class EntityPageTopViewImpl extends Composite implements EntityPageTopVie
 		filesTabContainer.add(createBottomPadding());
 	}
 
-	private void renderTableEntity(EntityBundle bundle, String entityTypeDisplay, boolean isAdministrator, boolean canEdit, EntityHeader projectHeader, String areaToken) {
+	private void renderTableEntity(final EntityBundle bundle, String entityTypeDisplay, boolean isAdministrator, final boolean canEdit, EntityHeader projectHeader, String areaToken) {
 		// tab container
 		fullWidthContainer.add(currentTabContainer);		
 		setTabSelected(EntityArea.TABLES, false); 
@@ -720,23 +721,34 @@ public class EntityPageTopViewImpl extends Composite implements EntityPageTopVie
 		String wikiPageId = null; // TODO : pull from entity
 		addWikiPageWidget(tablesTabContainer, bundle, canEdit, wikiPageId, null);
 
-		// Table
-		SimpleTableWidget tableWidget = ginInjector.getSimpleTableWidget();
-		QueryChangeHandler qch = new QueryChangeHandler() {			
+		// Table (in its own code split)
+		final SimplePanel tableContainer = new SimplePanel();
+		tableContainer.addStyleName("margin-top-15");
+		tablesTabContainer.add(tableContainer);
+		GWT.runAsync(SimpleTableWidget.class, new RunAsyncCallback() {
 			@Override
-			public void onQueryChange(String newQuery) {
-				presenter.setTableQuery(newQuery);				
+			public void onSuccess() {
+				SimpleTableWidget tableWidget = ginInjector.getSimpleTableWidget();
+				QueryChangeHandler qch = new QueryChangeHandler() {			
+					@Override
+					public void onQueryChange(String newQuery) {
+						presenter.setTableQuery(newQuery);				
+					}
+				};		
+				TableRowHeader rowHeader = presenter.getTableRowHeader();
+				if(rowHeader != null) {
+					tableWidget.configure((TableEntity) bundle.getEntity(), canEdit, rowHeader, qch);									
+				} else {
+					tableWidget.configure((TableEntity) bundle.getEntity(), canEdit, presenter.getTableQuery(), qch);						
+				}
+				tableContainer.setWidget(tableWidget.asWidget());
 			}
-		};		
-		TableRowHeader rowHeader = presenter.getTableRowHeader();
-		if(rowHeader != null) {
-			tableWidget.configure((TableEntity) bundle.getEntity(), canEdit, rowHeader, qch);									
-		} else {
-			tableWidget.configure((TableEntity) bundle.getEntity(), canEdit, presenter.getTableQuery(), qch);						
-		}
-		Widget tableW = tableWidget.asWidget();
-		tableW.addStyleName("margin-top-15");
-		tablesTabContainer.add(tableW);
+			
+			@Override
+			public void onFailure(Throwable reason) {
+				DisplayUtils.showErrorMessage(reason.getMessage());
+			}
+		});
 		
 		// TODO (maybe):
 //		// Programmatic Clients
@@ -749,30 +761,40 @@ public class EntityPageTopViewImpl extends Composite implements EntityPageTopVie
 	}
 
 	
-	private Widget createProvenanceWidget(EntityBundle bundle, boolean fullWidth) {
+	private Widget createProvenanceWidget(final EntityBundle bundle, boolean fullWidth) {
 		final LayoutContainer lc = new LayoutContainer();
 		lc.setAutoWidth(true);
 		lc.addStyleName("highlight-box");
 		lc.setTitle(DisplayConstants.PROVENANCE);
 		
-	    // Create the property body
-	    // the headers for properties.
-		ProvenanceWidget provenanceWidget = ginInjector.getProvenanceRenderer();						
-		
-		Map<String,String> configMap = new HashMap<String,String>();
-		Long version = bundle.getEntity() instanceof Versionable ? ((Versionable)bundle.getEntity()).getVersionNumber() : null; 
-		configMap.put(WidgetConstants.PROV_WIDGET_ENTITY_LIST_KEY, DisplayUtils.createEntityVersionString(bundle.getEntity().getId(), version));
-		configMap.put(WidgetConstants.PROV_WIDGET_EXPAND_KEY, Boolean.toString(true));
-		configMap.put(WidgetConstants.PROV_WIDGET_UNDEFINED_KEY, Boolean.toString(true));
-		configMap.put(WidgetConstants.PROV_WIDGET_DEPTH_KEY, Integer.toString(1));		
-		configMap.put(WidgetConstants.PROV_WIDGET_DISPLAY_HEIGHT_KEY, Integer.toString(WIDGET_HEIGHT_PX-84));
-	    provenanceWidget.configure(null, configMap, null, null);
-	    final Widget provViewWidget = provenanceWidget.asWidget(); 
 	    final LayoutContainer border = new LayoutContainer();
-	    border.add(provViewWidget);
-		
 	    lc.add(border);
 	    lc.layout();
+	    
+	    // Create the property body (in its own code split)
+		GWT.runAsync(ProvenanceWidget.class, new RunAsyncCallback() {
+			@Override
+			public void onSuccess() {
+				ProvenanceWidget provenanceWidget = ginInjector.getProvenanceRenderer();						
+				
+				Map<String,String> configMap = new HashMap<String,String>();
+				Long version = bundle.getEntity() instanceof Versionable ? ((Versionable)bundle.getEntity()).getVersionNumber() : null; 
+				configMap.put(WidgetConstants.PROV_WIDGET_ENTITY_LIST_KEY, DisplayUtils.createEntityVersionString(bundle.getEntity().getId(), version));
+				configMap.put(WidgetConstants.PROV_WIDGET_EXPAND_KEY, Boolean.toString(true));
+				configMap.put(WidgetConstants.PROV_WIDGET_UNDEFINED_KEY, Boolean.toString(true));
+				configMap.put(WidgetConstants.PROV_WIDGET_DEPTH_KEY, Integer.toString(1));		
+				configMap.put(WidgetConstants.PROV_WIDGET_DISPLAY_HEIGHT_KEY, Integer.toString(WIDGET_HEIGHT_PX-84));
+			    provenanceWidget.configure(null, configMap, null, null);
+			    border.add(provenanceWidget.asWidget());
+			    lc.layout(true);
+			}
+			
+			@Override
+			public void onFailure(Throwable reason) {
+				DisplayUtils.showErrorMessage(reason.getMessage());
+			}
+		});
+		
 	    SimplePanel wrapper = new SimplePanel(lc);
 	    String width = fullWidth ? "col-md-12" : "col-md-6";
 	    wrapper.addStyleName(width);
@@ -5,7 +5,6 @@ import java.util.Map;
 import java.util.Set;
 
 import org.sagebionetworks.markdown.constants.WidgetConstants;
-import org.sagebionetworks.repo.model.wiki.WikiPage;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.web.client.ClientProperties;
 import org.sagebionetworks.web.client.DisplayConstants;
@@ -24,6 +23,7 @@ import org.sagebionetworks.web.client.transform.NodeModelCreator;
 import org.sagebionetworks.web.client.utils.Callback;
 import org.sagebionetworks.web.client.widget.WidgetRendererPresenter;
 import org.sagebionetworks.web.client.widget.entity.registration.WidgetRegistrar;
+import org.sagebionetworks.web.shared.WikiHtmlBundle;
 import org.sagebionetworks.web.shared.WikiPageKey;
 
 import com.extjs.gxt.ui.client.widget.LayoutContainer;
@@ -85,28 +85,46 @@ public class MarkdownWidget extends LayoutContainer implements SynapseView {
 	}
 	
 	public void loadMarkdownFromWikiPage(final WikiPageKey wikiKey, final boolean isPreview) {
-		//get the wiki page
-		synapseClient.getV2WikiPageAsV1(wikiKey, new AsyncCallback<String>() {
+		loadMarkdownFromWikiPage(wikiKey, isPreview, null);
+	}
+	
+	/**
+	 * Render the wiki page on the server (where the html is cached by wiki etag), without transferring the markdown.
+	 * @param wikiKey
+	 * @param isPreview
+	 * @param wikiVersionInView null for the current version
+	 */
+	public void loadMarkdownFromWikiPage(final WikiPageKey wikiKey, final boolean isPreview, final Long wikiVersionInView) {
+		final SynapseView view = this;
+		this.md = null;
+		this.wikiKey = wikiKey;
+		this.isWiki = true;
+		this.isPreview = isPreview;
+		this.wikiVersionInView = wikiVersionInView;
+		synapseClient.getWikiPageHtml(wikiKey, wikiVersionInView, isPreview, gwt.getHostPrefix(), new AsyncCallback<WikiHtmlBundle>() {
 			@Override
-			public void onSuccess(String result) {
+			public void onSuccess(WikiHtmlBundle result) {
+				wikiKey.setWikiPageId(result.getWikiPageId());
 				try {
-					WikiPage page = nodeModelCreator.createJSONEntity(result, WikiPage.class);
-					wikiKey.setWikiPageId(page.getId());
-					setMarkdown(page.getMarkdown(), wikiKey, true, isPreview, null);
+					showHtml(result.getHtml(), wikiKey, true, isPreview, wikiVersionInView);
 				} catch (JSONObjectAdapterException e) {
 					onFailure(e);
 				}
 			}
 			@Override
 			public void onFailure(Throwable caught) {
-				if(!DisplayUtils.handleServiceException(caught, globalApplicationState, authenticationController.isLoggedIn(), MarkdownWidget.this))
-					MarkdownWidget.this.showErrorMessage(DisplayConstants.ERROR_LOADING_WIKI_FAILED+caught.getMessage());
+				removeAll();
+				if(!DisplayUtils.handleServiceException(caught, globalApplicationState, authenticationController.isLoggedIn(), view))
+					showErrorMessage(DisplayConstants.ERROR_LOADING_WIKI_FAILED+caught.getMessage());
 			}
-		});				
+		});
 	}
 
 	public void refresh() {
-		setMarkdown(md, wikiKey, isWiki, isPreview, null);
+		if (md == null && isWiki && wikiKey != null)
+			loadMarkdownFromWikiPage(wikiKey, isPreview, wikiVersionInView);
+		else
+			setMarkdown(md, wikiKey, isWiki, isPreview, null);
 	}
 	
 	/**
@@ -125,33 +143,7 @@ public class MarkdownWidget extends LayoutContainer implements SynapseView {
 			@Override
 			public void onSuccess(String result) {
 				try {
-					removeAll();
-					String content = "";
-					
-					if(result == null || result.isEmpty()) {
-						content += SafeHtmlUtils.fromSafeConstant("<div style=\"font-size: 80%;\">" + DisplayConstants.LABEL_NO_MARKDOWN + "</div>").asString();
-					}
-					
-					if (result != null) {
-						content += result;
-					}
-					FlowPanel wikiSubpagesPanel = new FlowPanel();
-					add(wikiSubpagesPanel);
-
-					HTMLPanel panel = new HTMLPanel(content);
-					add(panel);
-					layout();
-					synapseJSNIUtils.highlightCodeBlocks();
-					DisplayUtils.loadTableSorters(panel, synapseJSNIUtils);
-					MarkdownWidget.loadMath(panel, synapseJSNIUtils, isPreview, resourceLoader);
-					Callback widgetRefreshRequired = new Callback() {
-						@Override
-						public void invoke() {
-							refresh();
-						}
-					};
-					//asynchronously load the widgets
-					Set<String> contentTypes = loadWidgets(panel, wikiKey, isWiki, widgetRegistrar, synapseClient, iconsImageBundle, isPreview, widgetRefreshRequired, wikiVersionInView);
+					showHtml(result, wikiKey, isWiki, isPreview, wikiVersionInView);
 				} catch (JSONObjectAdapterException e) {
 					onFailure(e);
 				}
@@ -165,6 +157,36 @@ public class MarkdownWidget extends LayoutContainer implements SynapseView {
 		});
 	}
 	
+	private void showHtml(String result, WikiPageKey wikiKey, boolean isWiki, boolean isPreview, Long wikiVersionInView) throws JSONObjectAdapterException {
+		removeAll();
+		String content = "";
+		
+		if(result == null || result.isEmpty()) {
+			content += SafeHtmlUtils.fromSafeConstant("<div style=\"font-size: 80%;\">" + DisplayConstants.LABEL_NO_MARKDOWN + "</div>").asString();
+		}
+		
+		if (result != null) {
+			content += result;
+		}
+		FlowPanel wikiSubpagesPanel = new FlowPanel();
+		add(wikiSubpagesPanel);
+
+		HTMLPanel panel = new HTMLPanel(content);
+		add(panel);
+		layout();
+		synapseJSNIUtils.highlightCodeBlocks();
+		DisplayUtils.loadTableSorters(panel, synapseJSNIUtils);
+		MarkdownWidget.loadMath(panel, synapseJSNIUtils, isPreview, resourceLoader);
+		Callback widgetRefreshRequired = new Callback() {
+			@Override
+			public void invoke() {
+				refresh();
+			}
+		};
+		//asynchronously load the widgets
+		loadWidgets(panel, wikiKey, isWiki, widgetRegistrar, synapseClient, iconsImageBundle, isPreview, widgetRefreshRequired, wikiVersionInView);
+	}
+	
 	
 	/**
 	 * Shared method for loading the widgets into the html returned by the service (used to render the entity page, and to generate a preview of the description)
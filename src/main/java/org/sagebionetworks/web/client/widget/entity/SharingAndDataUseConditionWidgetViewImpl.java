@@ -15,6 +15,7 @@ import org.sagebionetworks.web.client.widget.sharing.PublicPrivateBadge;
 import com.extjs.gxt.ui.client.widget.LayoutContainer;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.inject.client.AsyncProvider;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Anchor;
 import com.google.gwt.user.client.ui.FlowPanel;
@@ -33,6 +34,7 @@ public class SharingAndDataUseConditionWidgetViewImpl extends LayoutContainer im
 	IconsImageBundle iconsImageBundle;
 	FlowPanel container;
 	PublicPrivateBadge publicPrivateBadge;
+	AsyncProvider<AccessControlListEditor> aclEditorProvider;
 	AccessControlListEditor aclEditor;
 	RestrictionWidget restrictionWidget;
 	
@@ -42,14 +44,14 @@ public class SharingAndDataUseConditionWidgetViewImpl extends LayoutContainer im
 			SageImageBundle sageImageBundle, 
 			IconsImageBundle iconsImageBundle, 
 			PublicPrivateBadge publicPrivateBadge, 
-			AccessControlListEditor aclEditor,
+			AsyncProvider<AccessControlListEditor> aclEditorProvider,
 			RestrictionWidget restrictionWidget) {
 		this.synapseJSNIUtils = synapseJSNIUtils;
 		this.globalApplicationState = globalApplicationState;
 		this.sageImageBundle = sageImageBundle;
 		this.iconsImageBundle = iconsImageBundle;
 		this.publicPrivateBadge = publicPrivateBadge;
-		this.aclEditor = aclEditor;
+		this.aclEditorProvider = aclEditorProvider;
 		this.restrictionWidget = restrictionWidget;
 		container = new FlowPanel();
 		container.addStyleName("margin-top-left-10");
@@ -57,7 +59,7 @@ public class SharingAndDataUseConditionWidgetViewImpl extends LayoutContainer im
 	}
 	
 	@Override
-	public void configure(EntityBundle bundle, boolean showChangeLink) {
+	public void configure(final EntityBundle bundle, boolean showChangeLink) {
 		container.clear();
 		
 		//add share settings
@@ -86,14 +88,23 @@ public class SharingAndDataUseConditionWidgetViewImpl extends LayoutContainer im
 			Anchor change = new Anchor();
 			change.setText(DisplayConstants.CHANGE);
 			change.addStyleName("link");
-			aclEditor.setResource(bundle.getEntity(), true);
 			change.addClickHandler(new ClickHandler(){
 				@Override
 				public void onClick(ClickEvent event) {
-					DisplayUtils.showSharingDialog(aclEditor, true, new Callback() {
+					getAclEditor(new AsyncCallback<AccessControlListEditor>() {
 						@Override
-						public void invoke() {
-							presenter.entityUpdated();
+						public void onSuccess(AccessControlListEditor editor) {
+							editor.setResource(bundle.getEntity(), true);
+							DisplayUtils.showSharingDialog(editor, true, new Callback() {
+								@Override
+								public void invoke() {
+									presenter.entityUpdated();
+								}
+							});
+						}
+						@Override
+						public void onFailure(Throwable caught) {
+							showErrorMessage(caught.getMessage());
 						}
 					});
 				}
@@ -157,5 +168,27 @@ public class SharingAndDataUseConditionWidgetViewImpl extends LayoutContainer im
 	/*
 	 * Private Methods
 	 */
+	
+	/**
+	 * The sharing editor is in its own code split, and is only downloaded the first time it is needed.
+	 */
+	private void getAclEditor(final AsyncCallback<AccessControlListEditor> callback) {
+		if (aclEditor != null) {
+			callback.onSuccess(aclEditor);
+			return;
+		}
+		aclEditorProvider.get(new AsyncCallback<AccessControlListEditor>() {
+			@Override
+			public void onSuccess(AccessControlListEditor editor) {
+				aclEditor = editor;
+				callback.onSuccess(editor);
+			}
+			@Override
+			public void onFailure(Throwable caught) {
+				callback.onFailure(caught);
+			}
+		});
+	}
+	
 
 }
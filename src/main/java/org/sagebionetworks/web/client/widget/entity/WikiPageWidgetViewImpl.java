@@ -36,9 +36,11 @@ import com.extjs.gxt.ui.client.widget.LayoutContainer;
 import com.extjs.gxt.ui.client.widget.layout.FitLayout;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.inject.client.AsyncProvider;
 import com.google.gwt.place.shared.Place;
 import com.google.gwt.resources.client.ImageResource;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
+import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.AbstractImagePrototype;
 import com.google.gwt.user.client.ui.Anchor;
 import com.google.gwt.user.client.ui.Button;
@@ -62,6 +64,7 @@ import com.google.inject.Inject;
 public class WikiPageWidgetViewImpl extends FlowPanel implements WikiPageWidgetView {
 
 	private MarkdownWidget markdownWidget;
+	private AsyncProvider<MarkdownEditorWidget> markdownEditorWidgetProvider;
 	private MarkdownEditorWidget markdownEditorWidget;
 	private IconsImageBundle iconsImageBundle;
 //	private Button editButton, addPageButton; 
@@ -99,12 +102,12 @@ public class WikiPageWidgetViewImpl extends FlowPanel implements WikiPageWidgetV
 	}
 	
 	@Inject
-	public WikiPageWidgetViewImpl(MarkdownWidget markdownWidget, MarkdownEditorWidget markdownEditorWidget, 
+	public WikiPageWidgetViewImpl(MarkdownWidget markdownWidget, AsyncProvider<MarkdownEditorWidget> markdownEditorWidgetProvider, 
 			IconsImageBundle iconsImageBundle, Breadcrumb breadcrumb, WikiAttachments wikiAttachments,
 			WidgetRegistrar widgetRegistrar, WikiHistoryWidget historyWidget, PortalGinInjector ginInjector) {
 		super();
 		this.markdownWidget = markdownWidget;
-		this.markdownEditorWidget = markdownEditorWidget;
+		this.markdownEditorWidgetProvider = markdownEditorWidgetProvider;
 		this.iconsImageBundle = iconsImageBundle;
 		this.breadcrumb = breadcrumb;
 		this.wikiAttachments = wikiAttachments;
@@ -151,11 +154,12 @@ public class WikiPageWidgetViewImpl extends FlowPanel implements WikiPageWidgetV
 		this.isCurrentVersion = isCurrentVersion;
 		this.versionInView = versionInView;
 		this.isEmbeddedInOwnerPage = isEmbeddedInOwnerPage;
-		isAttachmentsWidgetConfigured = false;
+		isAttachmentsWidgetConfigured = false;
+		//render from the wiki key so the server can serve cached html
 		if(!isCurrentVersion) {
-			markdownWidget.setMarkdown(markdown, wikiKey, true, false, versionInView);
+			markdownWidget.loadMarkdownFromWikiPage(wikiKey, false, versionInView);
 		} else {
-			markdownWidget.setMarkdown(markdown, wikiKey, true, false, null);
+			markdownWidget.loadMarkdownFromWikiPage(wikiKey, false, null);
 		}
 		showDefaultViewWithWiki();
 	}
@@ -408,7 +412,7 @@ public class WikiPageWidgetViewImpl extends FlowPanel implements WikiPageWidgetV
 				mdField.setValue(presenter.getWikiPage().getMarkdown());
 				mdField.addStyleName("markdownEditor");
 				
-				LayoutContainer form = new LayoutContainer();
+				final LayoutContainer form = new LayoutContainer();
 				final TextBox titleField = new TextBox();
 				if (!isRootWiki) {
 					titleField.setValue(presenter.getWikiPage().getTitle());
@@ -416,21 +420,49 @@ public class WikiPageWidgetViewImpl extends FlowPanel implements WikiPageWidgetV
 					titleField.setHeight("35px");					
 					form.add(titleField);
 				}
-				//also add commands at the bottom
-				markdownEditorWidget.configure(wikiKey, mdField, form, false, true, new WidgetDescriptorUpdatedHandler() {
+				//the editor is in its own code split, and is only downloaded the first time it is needed
+				getMarkdownEditorWidget(new AsyncCallback<MarkdownEditorWidget>() {
 					@Override
-					public void onUpdate(WidgetDescriptorUpdatedEvent event) {
-						presenter.addFileHandles(event.getNewFileHandleIds());
+					public void onSuccess(MarkdownEditorWidget editor) {
+						//also add commands at the bottom
+						editor.configure(wikiKey, mdField, form, false, true, new WidgetDescriptorUpdatedHandler() {
+							@Override
+							public void onUpdate(WidgetDescriptorUpdatedEvent event) {
+								presenter.addFileHandles(event.getNewFileHandleIds());
+							}
+						}, getCloseHandler(titleField, mdField), getManagementHandler());
+						form.addStyleName("margin-bottom-40 margin-top-10");
+						add(form);
+					}
+					@Override
+					public void onFailure(Throwable caught) {
+						showErrorMessage(caught.getMessage());
 					}
-				}, getCloseHandler(titleField, mdField), getManagementHandler());
-				form.addStyleName("margin-bottom-40 margin-top-10");
-				add(form);
+				});
 			}
 		});
 
 		return btn;
 	}
 
+	private void getMarkdownEditorWidget(final AsyncCallback<MarkdownEditorWidget> callback) {
+		if (markdownEditorWidget != null) {
+			callback.onSuccess(markdownEditorWidget);
+			return;
+		}
+		markdownEditorWidgetProvider.get(new AsyncCallback<MarkdownEditorWidget>() {
+			@Override
+			public void onSuccess(MarkdownEditorWidget editor) {
+				markdownEditorWidget = editor;
+				callback.onSuccess(editor);
+			}
+			@Override
+			public void onFailure(Throwable caught) {
+				callback.onFailure(caught);
+			}
+		});
+	}
+
 	private Button createInsertOrAddPageButton(final boolean isFirstPage) {
 		Button btn = DisplayUtils.createIconButton(getInsertBtnText(isFirstPage), DisplayUtils.ButtonType.DEFAULT, "glyphicon-plus");
 		btn.addStyleName("display-inline");
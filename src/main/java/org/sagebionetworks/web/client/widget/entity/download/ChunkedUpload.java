@@ -0,0 +1,288 @@
+package org.sagebionetworks.web.client.widget.entity.download;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sagebionetworks.repo.model.file.ChunkedFileToken;
+import org.sagebionetworks.schema.adapter.JSONArrayAdapter;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapter;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.web.client.ClientProperties;
+
+/**
+ * The chunks of one direct upload: which byte range went out as which chunk
+ * number, and which chunks are done. Chunks are handed out in order, but
+ * several can be in flight (and finish) at once.
+ *
+ * The size of the next chunk follows the measured throughput, so that a
+ * chunk takes about {@link #TARGET_CHUNK_MS} to upload (within the limits of
+ * a multipart upload). The state is written to JSON so that an upload can
+ * carry on after a page reload.
+ */
+public class ChunkedUpload {
+	/**
+	 * All chunks but the last must be at least 5MB
+	 */
+	public static final long MIN_CHUNK_SIZE = (long)ClientProperties.MB * 5;
+	public static final long MAX_CHUNK_SIZE = (long)ClientProperties.MB * 50;
+	/**
+	 * The most chunks a file can be split into
+	 */
+	public static final int MAX_CHUNK_COUNT = 10000;
+	public static final long TARGET_CHUNK_MS = 30000;
+
+	private ChunkedFileToken token;
+	private long fileSize;
+	private long chunkSize = MIN_CHUNK_SIZE;
+	private long nextOffset = 0;
+	private long nextChunkNumber = 1;
+	private List<Chunk> chunks = new ArrayList<Chunk>();
+	//true if this upload was restored from a previous page
+	private boolean isResumed = false;
+
+	public ChunkedUpload(ChunkedFileToken token, long fileSize) {
+		this.token = token;
+		this.fileSize = fileSize;
+		chunkSize = Math.max(MIN_CHUNK_SIZE, getMinChunkSize());
+	}
+
+	/**
+	 * @return the chunk to upload next (a chunk that failed or was cut off by a
+	 *         reload, or else the next byte range), or null if every chunk is
+	 *         done or in flight
+	 */
+	public Chunk nextChunk() {
+		for (Chunk chunk : chunks) {
+			if (!chunk.isDone && !chunk.isInFlight) {
+				chunk.isInFlight = true;
+				return chunk;
+			}
+		}
+		//an empty file is still uploaded as one (empty) chunk
+		if (nextOffset >= fileSize && nextChunkNumber > 1)
+			return null;
+		long end = Math.min(nextOffset + chunkSize, fileSize) - 1;
+		Chunk chunk = new Chunk(nextChunkNumber++, nextOffset, end);
+		nextOffset = end + 1;
+		chunk.isInFlight = true;
+		chunks.add(chunk);
+		return chunk;
+	}
+
+	/**
+	 * The numbers of the chunks that are likely to be uploaded next, to fetch
+	 * their pre-signed urls ahead of time.
+	 *
+	 * @param count
+	 * @return
+	 */
+	public List<Long> getUpcomingChunkNumbers(int count) {
+		List<Long> numbers = new ArrayList<Long>();
+		for (Chunk chunk : chunks) {
+			if (numbers.size() < count && !chunk.isDone && !chunk.isInFlight)
+				numbers.add(chunk.number);
+		}
+		long remaining = fileSize - nextOffset;
+		long number = nextChunkNumber;
+		while (numbers.size() < count && (remaining > 0 || number == 1)) {
+			numbers.add(number++);
+			remaining -= chunkSize;
+		}
+		return numbers;
+	}
+
+	/**
+	 * Call when a chunk upload finished.
+	 *
+	 * @param chunk
+	 * @param elapsedMs
+	 *            how long the upload took
+	 */
+	public void chunkUploaded(Chunk chunk, long elapsedMs) {
+		chunk.isDone = true;
+		chunk.isInFlight = false;
+		chunk.progress = 0;
+		long size = chunk.getSize();
+		if (size >= MIN_CHUNK_SIZE && elapsedMs > 0) {
+			//move half way towards the size that would take the target time
+			long targetSize = (long)((double)size * TARGET_CHUNK_MS / elapsedMs);
+			long newSize = (chunkSize + targetSize) / 2;
+			//whole MBs
+			newSize = newSize - newSize % (long)ClientProperties.MB;
+			chunkSize = Math.max(getMinChunkSize(), Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, newSize)));
+		}
+	}
+
+	/**
+	 * Call when a chunk upload failed (it will be handed out again).
+	 *
+	 * @param chunk
+	 */
+	public void chunkFailed(Chunk chunk) {
+		chunk.isInFlight = false;
+		chunk.progress = 0;
+	}
+
+	/**
+	 * The smallest chunk that keeps the rest of the file within the chunk count
+	 * limit.
+	 */
+	private long getMinChunkSize() {
+		long chunksLeft = MAX_CHUNK_COUNT - (nextChunkNumber - 1);
+		if (chunksLeft <= 0)
+			return fileSize;
+		long remaining = fileSize - nextOffset;
+		return (remaining + chunksLeft - 1) / chunksLeft;
+	}
+
+	public boolean isComplete() {
+		if (nextOffset < fileSize || chunks.isEmpty())
+			return false;
+		for (Chunk chunk : chunks) {
+			if (!chunk.isDone)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the uploaded fraction of the file, counting the progress of the
+	 *         chunks in flight
+	 */
+	public double getProgress() {
+		if (fileSize == 0)
+			return isComplete() ? 1 : 0;
+		double uploaded = 0;
+		for (Chunk chunk : chunks) {
+			if (chunk.isDone)
+				uploaded += chunk.getSize();
+			else if (chunk.isInFlight)
+				uploaded += chunk.progress * chunk.getSize();
+		}
+		return uploaded / fileSize;
+	}
+
+	/**
+	 * @return the numbers of the uploaded chunks, in order
+	 */
+	public List<Long> getDoneChunkNumbers() {
+		List<Long> numbers = new ArrayList<Long>();
+		for (Chunk chunk : chunks) {
+			if (chunk.isDone)
+				numbers.add(chunk.number);
+		}
+		return numbers;
+	}
+
+	/**
+	 * @return every chunk handed out so far, in order
+	 */
+	public List<Chunk> getChunks() {
+		return chunks;
+	}
+
+	public ChunkedFileToken getToken() {
+		return token;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	public boolean isResumed() {
+		return isResumed;
+	}
+
+	public String toJSON(JSONObjectAdapter adapter) throws JSONObjectAdapterException {
+		JSONObjectAdapter json = adapter.createNew();
+		json.put("token", token.writeToJSONObject(adapter.createNew()));
+		json.put("fileSize", fileSize);
+		json.put("chunkSize", chunkSize);
+		json.put("nextOffset", nextOffset);
+		json.put("nextChunkNumber", nextChunkNumber);
+		JSONArrayAdapter array = adapter.createNewArray();
+		int i = 0;
+		for (Chunk chunk : chunks) {
+			JSONObjectAdapter chunkJson = adapter.createNew();
+			chunkJson.put("number", chunk.number);
+			chunkJson.put("start", chunk.start);
+			chunkJson.put("end", chunk.end);
+			chunkJson.put("done", chunk.isDone);
+			array.put(i++, chunkJson);
+		}
+		json.put("chunks", array);
+		return json.toJSONString();
+	}
+
+	/**
+	 * Restore an upload saved by {@link #toJSON(JSONObjectAdapter)}. The chunks
+	 * that were in flight are uploaded again.
+	 */
+	public static ChunkedUpload fromJSON(String jsonString, JSONObjectAdapter adapter) throws JSONObjectAdapterException {
+		JSONObjectAdapter json = adapter.createNew(jsonString);
+		ChunkedFileToken token = new ChunkedFileToken();
+		token.initializeFromJSONObject(json.getJSONObject("token"));
+		ChunkedUpload upload = new ChunkedUpload(token, json.getLong("fileSize"));
+		upload.chunkSize = json.getLong("chunkSize");
+		upload.nextOffset = json.getLong("nextOffset");
+		upload.nextChunkNumber = json.getLong("nextChunkNumber");
+		JSONArrayAdapter array = json.getJSONArray("chunks");
+		for (int i = 0; i < array.length(); i++) {
+			JSONObjectAdapter chunkJson = array.getJSONObject(i);
+			Chunk chunk = new Chunk(chunkJson.getLong("number"), chunkJson.getLong("start"), chunkJson.getLong("end"));
+			chunk.isDone = chunkJson.getBoolean("done");
+			upload.chunks.add(chunk);
+		}
+		upload.isResumed = true;
+		return upload;
+	}
+
+	public static class Chunk {
+		private long number, start, end;
+		private boolean isDone = false;
+		private boolean isInFlight = false;
+		private double progress = 0;
+		//consecutive failed attempts
+		private int failures = 0;
+
+		public Chunk(long number, long start, long end) {
+			this.number = number;
+			this.start = start;
+			this.end = end;
+		}
+		public long getNumber() {
+			return number;
+		}
+		public long getStart() {
+			return start;
+		}
+		/**
+		 * @return the last byte of the chunk (inclusive)
+		 */
+		public long getEnd() {
+			return end;
+		}
+		public long getSize() {
+			return end - start + 1;
+		}
+		public boolean isDone() {
+			return isDone;
+		}
+		/**
+		 * @param progress 0 to 1
+		 */
+		public void setProgress(double progress) {
+			this.progress = progress;
+		}
+		public int getFailures() {
+			return failures;
+		}
+		public int addFailure() {
+			return ++failures;
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package org.sagebionetworks.web.client.widget.entity.download;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.sagebionetworks.repo.model.AccessRequirement;
 import org.sagebionetworks.repo.model.Entity;
@@ -21,6 +23,7 @@ import org.sagebionetworks.web.client.GWTWrapper;
 import org.sagebionetworks.web.client.ProgressCallback;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
+import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.callback.MD5Callback;
 import org.sagebionetworks.web.client.events.CancelEvent;
 import org.sagebionetworks.web.client.events.CancelHandler;
@@ -63,7 +66,12 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 	public static final double UPLOADING_TOTAL_PERCENT = .9d;
 	public static final double COMBINING_TOTAL_PERCENT = .1d;
 	public static final long OLD_BROWSER_MAX_SIZE = (long)ClientProperties.MB * 5; //5MB
-	public static final long BYTES_PER_CHUNK = (long)ClientProperties.MB * 5; //5MB
+	public static final long BYTES_PER_CHUNK = ChunkedUpload.MIN_CHUNK_SIZE; //5MB, the starting chunk size
+	public static final int DEFAULT_MAX_CONCURRENT_CHUNKS = 3;
+	//pre-signed urls are fetched for this many times the concurrent chunks
+	public static final int URL_PREFETCH_FACTOR = 2;
+	//how long an unfinished upload can be resumed
+	public static final long SAVED_UPLOAD_TIME_MS = 1000L*60L*60L*24L;
 	public static final int MAX_RETRY = 5;
 	public static final int RETRY_DELAY = 1000;
 	
@@ -81,7 +89,13 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 	private SynapseJSNIUtils synapseJsniUtils;
 	private GWTWrapper gwt;
 	AuthenticationController authenticationController;
+	private ClientCache clientCache;
 	private ChunkedFileToken token;
+	private ChunkedUpload upload;
+	private String uploadCacheKey;
+	private int maxConcurrentChunks = DEFAULT_MAX_CONCURRENT_CHUNKS;
+	private int activeChunkCount;
+	private Map<Long, String> presignedUrls = new HashMap<Long, String>();
 	private boolean isUploadRestricted;
 	NumberFormat percentFormat;
 	private boolean isDirectUploadSupported;
@@ -97,7 +111,8 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 			JSONObjectAdapter jsonObjectAdapter,
 			SynapseJSNIUtils synapseJsniUtils,
 			GWTWrapper gwt,
-			AuthenticationController authenticationController
+			AuthenticationController authenticationController,
+			ClientCache clientCache
 			) {
 	
 		this.view = view;		
@@ -107,6 +122,7 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 		this.synapseJsniUtils = synapseJsniUtils;
 		this.gwt = gwt;
 		this.authenticationController = authenticationController;
+		this.clientCache = clientCache;
 		view.setPresenter(this);
 		percentFormat = gwt.getNumberFormat("##");
 		clearHandlers();
@@ -258,6 +274,9 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 	 */
 	public void directUploadStep2(final String fileName) {
 		this.token = null;
+		this.upload = null;
+		activeChunkCount = 0;
+		presignedUrls.clear();
 		uploadLog = new StringBuilder();
 		uploadLog.append(gwt.getUserAgent() + "\n" + gwt.getAppVersion() + "\nDirectly uploading " + fileName + " - calculating MD5\n");
 		
@@ -274,17 +293,33 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 		});
 	}
 	public void directUploadStep3(final String fileName, final String contentType, String md5){
+		final long fileSize = (long)synapseJsniUtils.getFileSize(UploaderViewImpl.FILE_FIELD_ID);
+		uploadCacheKey = fileName + "_" + md5 + "_" + fileSize + WebConstants.CHUNKED_UPLOAD_SUFFIX;
+		//carry on with an upload of the same file that was cut off (by a page reload for example)
+		String savedUpload = clientCache.get(uploadCacheKey);
+		if (savedUpload != null) {
+			try {
+				upload = ChunkedUpload.fromJSON(savedUpload, jsonObjectAdapter);
+				token = upload.getToken();
+				view.showProgressBar();
+				uploadLog.append("resuming upload: fileSize="+fileSize + " uploadedChunks=" + upload.getDoneChunkNumbers().size()+"\n");
+				directUploadStep4(contentType);
+				return;
+			} catch (JSONObjectAdapterException e) {
+				//start over
+				clientCache.remove(uploadCacheKey);
+			}
+		}
 		try {
 			synapseClient.getChunkedFileToken(fileName, contentType, md5, new AsyncCallback<String>() {
 				@Override
 				public void onSuccess(String result) {
 					try {
 						token = nodeModelCreator.createJSONEntity(result, ChunkedFileToken.class);
-						long fileSize = (long)synapseJsniUtils.getFileSize(UploaderViewImpl.FILE_FIELD_ID);
-						long totalChunkCount = getChunkCount(fileSize);
+						upload = new ChunkedUpload(token, fileSize);
 						view.showProgressBar();
-						uploadLog.append("fileSize="+fileSize + " totalChunkCount=" + totalChunkCount+"\n");
-						directUploadStep4(contentType, 1, 1, totalChunkCount, fileSize, new ArrayList<String>());
+						uploadLog.append("fileSize="+fileSize + " maxChunkCount=" + getChunkCount(fileSize)+"\n");
+						directUploadStep4(contentType);
 					} catch (JSONObjectAdapterException e) {
 						onFailure(e);
 					}
@@ -299,135 +334,223 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 		}
 	}
 	
+	/**
+	 * @return the number of chunks at the smallest chunk size
+	 */
 	public long getChunkCount(long fileSize) {
 		return (long)Math.ceil((double)fileSize / (double)BYTES_PER_CHUNK);
 	}
+	
+	/**
+	 * Up to the configured number of chunks are uploaded at once.
+	 * @param maxConcurrentChunks
+	 */
+	public void setMaxConcurrentChunks(int maxConcurrentChunks) {
+		this.maxConcurrentChunks = Math.max(1, maxConcurrentChunks);
+	}
+	
 	/**
-	 * 
-	 * @param currentChunkNumber The chunk number that should be uploaded
-	 * @param currentAttempt This is our nth attempt at uploading this chunk (starting at 1, trying up to MAX_RETRY times)
-	 * @param totalChunkCount The total number of chunks to complete upload of the file
+	 * Start uploading chunks until the configured number are in flight (or there are none left).
+	 * Once every chunk is uploaded, goes on to combine them (step 5).
+	 * The pre-signed urls of the chunks that are started (and the next few) are fetched in one call.
+	 * @param contentType
 	 */
-	public void directUploadStep4(final String contentType, final int currentChunkNumber, final int currentAttempt, final long totalChunkCount, final long fileSize, final List<String> requestList){
-		//get the presigned upload url
-		//and upload the file
+	public void directUploadStep4(final String contentType){
+		final ChunkedUpload currentUpload = upload;
+		if (currentUpload == null)
+			return;
+		if (currentUpload.isComplete()) {
+			combineChunks(currentUpload);
+			return;
+		}
+		List<ChunkedUpload.Chunk> chunksWithoutUrl = new ArrayList<ChunkedUpload.Chunk>();
+		while (activeChunkCount < maxConcurrentChunks) {
+			ChunkedUpload.Chunk chunk = currentUpload.nextChunk();
+			if (chunk == null)
+				break;
+			activeChunkCount++;
+			String url = presignedUrls.remove(chunk.getNumber());
+			if (url != null)
+				uploadChunk(contentType, chunk, url);
+			else
+				chunksWithoutUrl.add(chunk);
+		}
+		if (!chunksWithoutUrl.isEmpty())
+			getPresignedUrls(contentType, chunksWithoutUrl);
+	}
+	
+	private void combineChunks(ChunkedUpload currentUpload) {
 		try {
-			//create a request for each chunk, and try to upload each one
-			uploadLog.append("directUploadStep4: currentChunkNumber="+currentChunkNumber + " currentAttempt=" + currentAttempt+"\n");
-			ChunkRequest request = new ChunkRequest();
-			request.setChunkedFileToken(token);
-			request.setChunkNumber((long) currentChunkNumber);
-			JSONObjectAdapter json = jsonObjectAdapter.createNew();
-			request.writeToJSONObject(json);
-			final String requestJson = json.toJSONString();
-			synapseClient.getChunkedPresignedUrl(requestJson, new AsyncCallback<String>() {
+			List<String> requestList = new ArrayList<String>();
+			for (Long number : currentUpload.getDoneChunkNumbers()) {
+				requestList.add(createChunkRequestJson(number));
+			}
+			directUploadStep5(false, requestList, 1);
+		} catch (JSONObjectAdapterException e) {
+			view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
+			fireCancelEvent();
+		}
+	}
+	
+	private void getPresignedUrls(final String contentType, final List<ChunkedUpload.Chunk> chunks) {
+		final ChunkedUpload currentUpload = upload;
+		//the urls for the chunks to upload now, and the ones that will follow them
+		final List<Long> numbers = new ArrayList<Long>();
+		for (ChunkedUpload.Chunk chunk : chunks) {
+			numbers.add(chunk.getNumber());
+		}
+		for (Long number : currentUpload.getUpcomingChunkNumbers(maxConcurrentChunks * URL_PREFETCH_FACTOR)) {
+			if (!numbers.contains(number) && !presignedUrls.containsKey(number))
+				numbers.add(number);
+		}
+		uploadLog.append("directUploadStep4: getting pre-signed urls for chunks " + numbers + "\n");
+		try {
+			List<String> requests = new ArrayList<String>();
+			for (Long number : numbers) {
+				requests.add(createChunkRequestJson(number));
+			}
+			synapseClient.getChunkedPresignedUrls(requests, new AsyncCallback<List<String>>() {
 				@Override
-				public void onSuccess(String urlString) {
-					XMLHttpRequest xhr = gwt.createXMLHttpRequest();
-					if (xhr != null) {
-						xhr.setOnReadyStateChange(new ReadyStateChangeHandler() {
-							@Override
-							public void onReadyStateChange(XMLHttpRequest xhr) {
-								uploadLog.append("XMLHttpRequest.setOnReadyStateChange:  readyState="+xhr.getReadyState() + " status=" + xhr.getStatus()+"\n");
-								if (xhr.getReadyState() == 4) { //XMLHttpRequest.DONE=4, posts suggest this value is not resolved in some browsers
-									if (xhr.getStatus() == 200) { //OK
-										uploadLog.append("XMLHttpRequest.setOnReadyStateChange: OK\n");
-										chunkUploadSuccess(requestJson, contentType, currentChunkNumber, totalChunkCount, fileSize, requestList);
-									} else {
-										uploadLog.append("XMLHttpRequest.setOnReadyStateChange: Failure\n");
-										chunkUploadFailure(contentType, currentChunkNumber, currentAttempt, totalChunkCount, fileSize, requestList, xhr.getStatusText());
-									}
-								}
-							}
-						});
+				public void onSuccess(List<String> urls) {
+					if (currentUpload != upload)
+						return;
+					for (int i = chunks.size(); i < numbers.size(); i++) {
+						presignedUrls.put(numbers.get(i), urls.get(i));
+					}
+					for (int i = 0; i < chunks.size(); i++) {
+						uploadChunk(contentType, chunks.get(i), urls.get(i));
 					}
-					ByteRange range = getByteRange(currentChunkNumber, fileSize);
-					uploadLog.append("directUploadStep2: uploading file chunk.  ByteRange="+range.getStart()+"-"+range.getEnd()+" \n");
-					synapseJsniUtils.uploadFileChunk(contentType, UploaderViewImpl.FILE_FIELD_ID, range.getStart(), range.getEnd(), urlString, xhr, new ProgressCallback() {
-						@Override
-						public void updateProgress(double value) {
-							//Note:  0 <= value <= 1
-							//And we need to add this to the chunks that have already been uploaded.  And divide by the total chunk count
-							double currentProgress = (((double)(currentChunkNumber-1)) + value)/((double)totalChunkCount) * UPLOADING_TOTAL_PERCENT;
-							String progressText = percentFormat.format(currentProgress*100.0) + "%";
-							view.updateProgress(currentProgress, progressText);
-						}
-					});
 				}
 				@Override
 				public void onFailure(Throwable t) {
-					chunkUploadFailure(contentType, currentChunkNumber, currentAttempt, totalChunkCount, fileSize, requestList, t.getMessage());
+					for (ChunkedUpload.Chunk chunk : chunks) {
+						chunkUploadFailure(contentType, currentUpload, chunk, t.getMessage());
+					}
 				}
 			});
 		} catch (RestServiceException e) {
-			chunkUploadFailure(contentType, currentChunkNumber, currentAttempt, totalChunkCount, fileSize, requestList, e.getMessage());
+			for (ChunkedUpload.Chunk chunk : chunks) {
+				chunkUploadFailure(contentType, currentUpload, chunk, e.getMessage());
+			}
 		} catch (JSONObjectAdapterException e) {
 			view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
 			fireCancelEvent();
 		}
 	}
 	
+	private void uploadChunk(final String contentType, final ChunkedUpload.Chunk chunk, String urlString) {
+		final ChunkedUpload currentUpload = upload;
+		if (currentUpload == null)
+			return;
+		final long startTime = System.currentTimeMillis();
+		XMLHttpRequest xhr = gwt.createXMLHttpRequest();
+		if (xhr != null) {
+			xhr.setOnReadyStateChange(new ReadyStateChangeHandler() {
+				@Override
+				public void onReadyStateChange(XMLHttpRequest xhr) {
+					uploadLog.append("XMLHttpRequest.setOnReadyStateChange: chunk="+chunk.getNumber()+" readyState="+xhr.getReadyState() + " status=" + xhr.getStatus()+"\n");
+					if (xhr.getReadyState() == 4) { //XMLHttpRequest.DONE=4, posts suggest this value is not resolved in some browsers
+						if (xhr.getStatus() == 200) { //OK
+							uploadLog.append("XMLHttpRequest.setOnReadyStateChange: OK\n");
+							chunkUploadSuccess(contentType, currentUpload, chunk, System.currentTimeMillis() - startTime);
+						} else {
+							uploadLog.append("XMLHttpRequest.setOnReadyStateChange: Failure\n");
+							chunkUploadFailure(contentType, currentUpload, chunk, xhr.getStatusText());
+						}
+					}
+				}
+			});
+		}
+		uploadLog.append("directUploadStep4: uploading file chunk "+chunk.getNumber()+".  ByteRange="+chunk.getStart()+"-"+chunk.getEnd()+" \n");
+		synapseJsniUtils.uploadFileChunk(contentType, UploaderViewImpl.FILE_FIELD_ID, chunk.getStart(), chunk.getEnd(), urlString, xhr, new ProgressCallback() {
+			@Override
+			public void updateProgress(double value) {
+				//Note:  0 <= value <= 1
+				chunk.setProgress(value);
+				updateUploadProgress(currentUpload);
+			}
+		});
+	}
+	
+	private void updateUploadProgress(ChunkedUpload currentUpload) {
+		if (currentUpload != upload)
+			return;
+		double currentProgress = currentUpload.getProgress() * UPLOADING_TOTAL_PERCENT;
+		String progressText = percentFormat.format(currentProgress*100.0) + "%";
+		view.updateProgress(currentProgress, progressText);
+	}
+	
+	private String createChunkRequestJson(long chunkNumber) throws JSONObjectAdapterException {
+		ChunkRequest request = new ChunkRequest();
+		request.setChunkedFileToken(token);
+		request.setChunkNumber(chunkNumber);
+		JSONObjectAdapter json = jsonObjectAdapter.createNew();
+		request.writeToJSONObject(json);
+		return json.toJSONString();
+	}
+	
 	/**
-	 * Called when a chunk is successfully uploaded
-	 * @param requestJson
+	 * Called when a chunk is successfully uploaded.  Saves the progress, then continues with step 4.
 	 * @param contentType
-	 * @param currentChunkNumber
-	 * @param totalChunkCount
-	 * @param fileSize
-	 * @param requestList
+	 * @param currentUpload
+	 * @param chunk
+	 * @param elapsedMs
 	 */
-	public void chunkUploadSuccess(String requestJson, String contentType, int currentChunkNumber, long totalChunkCount, long fileSize, List<String> requestList){
-		//are there more chunks to upload?
-		requestList.add(requestJson);
-		if (currentChunkNumber >= totalChunkCount)
-			directUploadStep5(false, requestList, 1);
-		else
-			directUploadStep4(contentType, currentChunkNumber+1, 1, totalChunkCount, fileSize, requestList);
+	public void chunkUploadSuccess(String contentType, ChunkedUpload currentUpload, ChunkedUpload.Chunk chunk, long elapsedMs){
+		if (currentUpload != upload)
+			return;
+		activeChunkCount--;
+		currentUpload.chunkUploaded(chunk, elapsedMs);
+		uploadLog.append("chunk " + chunk.getNumber() + " uploaded in " + elapsedMs + "ms, next chunk size=" + currentUpload.getChunkSize() + "\n");
+		saveUpload();
+		updateUploadProgress(currentUpload);
+		//upload the next chunk, or combine them if that was the last one
+		directUploadStep4(contentType);
 	}
 	
 	/**
-	 * Called when chunk upload fails
+	 * Called when a chunk upload fails.  The chunk is tried again after a delay (with a fresh pre-signed url).
 	 * @param contentType
-	 * @param currentChunkNumber
-	 * @param currentAttempt
-	 * @param totalChunkCount
-	 * @param fileSize
-	 * @param requestList
+	 * @param currentUpload
+	 * @param chunk
+	 * @param detailedMessage
 	 */
-	public void chunkUploadFailure(final String contentType, final int currentChunkNumber, final int currentAttempt, final long totalChunkCount, final long fileSize, final List<String> requestList, String detailedMessage) {
-		if (currentAttempt >= MAX_RETRY)
+	public void chunkUploadFailure(final String contentType, final ChunkedUpload currentUpload, final ChunkedUpload.Chunk chunk, String detailedMessage) {
+		if (currentUpload != upload)
+			return;
+		presignedUrls.remove(chunk.getNumber());
+		if (chunk.addFailure() >= MAX_RETRY)
 			uploadError("Exceeded the maximum number of attempts to upload a single file chunk. " + detailedMessage);
 		else { //retry
-			//sleep for a second on the client, then try again.
+			//wait a second on the client, then try again.
 			gwt.scheduleExecution(new Callback() {
 				@Override
 				public void invoke() {
-					directUploadStep4(contentType, currentChunkNumber, currentAttempt+1, totalChunkCount, fileSize, requestList);
+					if (currentUpload != upload)
+						return;
+					activeChunkCount--;
+					currentUpload.chunkFailed(chunk);
+					directUploadStep4(contentType);
 				}
 			}, RETRY_DELAY);
 		}
 	}
 	
-	public class ByteRange {
-		private long start, end;
-		public ByteRange(long start, long end) {
-			this.start = start;
-			this.end = end;
-		}
-		public long getEnd() {
-			return end;
-		}
-		public long getStart() {
-			return start;
+	private void saveUpload() {
+		try {
+			clientCache.put(uploadCacheKey, upload.toJSON(jsonObjectAdapter), System.currentTimeMillis() + SAVED_UPLOAD_TIME_MS);
+		} catch (JSONObjectAdapterException e) {
+			//the upload can still complete, it just can't be resumed
+			uploadLog.append("failed to save the upload state: " + e.getMessage() + "\n");
 		}
 	}
 	
-	public ByteRange getByteRange(int currentChunkNumber, Long fileSize) {
-		long startByte = (currentChunkNumber-1) * BYTES_PER_CHUNK;
-		long endByte = currentChunkNumber * BYTES_PER_CHUNK - 1;
-		if (endByte >= fileSize)
-			endByte = fileSize-1;
-		return new ByteRange(startByte, endByte);
+	/**
+	 * For testing purposes
+	 * @return
+	 */
+	public ChunkedUpload getUpload() {
+		return upload;
 	}
 	
 	public void directUploadStep5(final boolean isNewlyRestricted, final List<String> requestList, final int currentAttempt){
@@ -459,6 +582,8 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 	public void processDaemonStatus(UploadDaemonStatus status, final String entityId, final String parentEntityId, final boolean isUploadRestricted, final boolean isNewlyRestricted, List<String> requestList, int currentAttempt){
 		State state = status.getState();
 		if (State.COMPLETED == state) {
+			if (uploadCacheKey != null)
+				clientCache.remove(uploadCacheKey);
 			view.updateProgress(.99d, "99%");
 			if (entityId != null || parentEntityId != null)
 				setFileEntityFileHandle(status.getFileHandleId(), entityId, parentEntityId, isUploadRestricted, isNewlyRestricted);
@@ -751,12 +876,17 @@ public class Uploader implements UploaderView.Presenter, SynapseWidgetPresenter,
 		//TODO: send full log to server logs (once service is available)
 		synapseJsniUtils.consoleError(uploadLog.toString());
 		uploadLog = new StringBuilder();
+		//a saved upload that fails again is started over next time
+		if (upload != null && upload.isResumed())
+			clientCache.remove(uploadCacheKey);
 		fireCancelEvent();
 	}
 	
 	private void fireCancelEvent(){
 		//Verified that when this method is called, the input field used for direct upload is no longer available, 
 		//so that this effectively cancels chunked upload too (after the current chunk upload completes)
+		//chunks still in flight are ignored
+		upload = null;
 		view.hideLoading();
 		view.clear();
 		handlerManager.fireEvent(new CancelEvent());
@@ -40,6 +40,7 @@ import com.extjs.gxt.ui.client.widget.layout.FitLayout;
 import com.extjs.gxt.ui.client.widget.layout.MarginData;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.inject.client.AsyncProvider;
 import com.google.gwt.safehtml.shared.SafeHtmlUtils;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.AbstractImagePrototype;
@@ -53,6 +54,7 @@ public class ActionMenuViewImpl extends FlowPanel implements ActionMenuView, Upl
 
 	private Presenter presenter;
 	private SageImageBundle sageImageBundle;
+	private AsyncProvider<AccessControlListEditor> accessControlListEditorProvider;
 	private AccessControlListEditor accessControlListEditor;
 	private Uploader uploader;
 	private EntityTypeProvider typeProvider;
@@ -74,7 +76,7 @@ public class ActionMenuViewImpl extends FlowPanel implements ActionMenuView, Upl
 	
 	@Inject
 	public ActionMenuViewImpl(SageImageBundle sageImageBundle,
-			AccessControlListEditor accessControlListEditor,
+			AsyncProvider<AccessControlListEditor> accessControlListEditorProvider,
 			Uploader locationableUploader, 
 			EntityTypeProvider typeProvider,
 			EntityFinder entityFinder,
@@ -86,7 +88,7 @@ public class ActionMenuViewImpl extends FlowPanel implements ActionMenuView, Upl
 			CookieProvider cookies,
 			AuthenticationController authenticationController) {
 		this.sageImageBundle = sageImageBundle;
-		this.accessControlListEditor = accessControlListEditor;
+		this.accessControlListEditorProvider = accessControlListEditorProvider;
 		this.uploader = locationableUploader;
 		this.typeProvider = typeProvider;
 		this.entityFinder = entityFinder;
@@ -158,7 +160,7 @@ public class ActionMenuViewImpl extends FlowPanel implements ActionMenuView, Upl
 	/*
 	 * Private Methods
 	 */	
-	private void configureShareButton(Entity entity, final boolean isAdministrator) { 
+	private void configureShareButton(final Entity entity, final boolean isAdministrator) { 
 		final String shareButtonText = isAdministrator ? DisplayConstants.BUTTON_SHARE : DisplayConstants.BUTTON_SHARING;
 		publicPrivateBadge.configure(entity, new AsyncCallback<Boolean>() {
 			@Override
@@ -175,20 +177,50 @@ public class ActionMenuViewImpl extends FlowPanel implements ActionMenuView, Upl
 			}
 		});
 		
-		accessControlListEditor.setResource(entity, isAdministrator);  
 		shareButton.addClickHandler(new ClickHandler() {			
 			@Override
 			public void onClick(ClickEvent event) {
-				DisplayUtils.showSharingDialog(accessControlListEditor, isAdministrator, new Callback() {
+				getAccessControlListEditor(new AsyncCallback<AccessControlListEditor>() {
 					@Override
-					public void invoke() {
-						presenter.fireEntityUpdatedEvent();
+					public void onSuccess(AccessControlListEditor editor) {
+						editor.setResource(entity, isAdministrator);
+						DisplayUtils.showSharingDialog(editor, isAdministrator, new Callback() {
+							@Override
+							public void invoke() {
+								presenter.fireEntityUpdatedEvent();
+							}
+						});
+					}
+					@Override
+					public void onFailure(Throwable caught) {
+						showErrorMessage(caught.getMessage());
 					}
 				});
 			}
 		});
 	}
 	
+	/**
+	 * The sharing editor is in its own code split, and is only downloaded the first time it is needed.
+	 */
+	private void getAccessControlListEditor(final AsyncCallback<AccessControlListEditor> callback) {
+		if (accessControlListEditor != null) {
+			callback.onSuccess(accessControlListEditor);
+			return;
+		}
+		accessControlListEditorProvider.get(new AsyncCallback<AccessControlListEditor>() {
+			@Override
+			public void onSuccess(AccessControlListEditor editor) {
+				accessControlListEditor = editor;
+				callback.onSuccess(editor);
+			}
+			@Override
+			public void onFailure(Throwable caught) {
+				callback.onFailure(caught);
+			}
+		});
+	}
+	
 	private void configureToolsMenu(EntityBundle entityBundle,
 			EntityType entityType, boolean isAdministrator, boolean canEdit) {
 		boolean authenticated = presenter.isUserLoggedIn();
@@ -21,14 +21,15 @@ import org.sagebionetworks.web.client.widget.entity.AnnotationsWidget;
 import org.sagebionetworks.web.client.widget.entity.editor.APITableColumnConfig;
 import org.sagebionetworks.web.client.widget.entity.row.EntityRow;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
-import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
+import org.sagebionetworks.web.shared.exceptions.RestServiceException;
 
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.inject.Inject;
 
 /**
  * Given an Entity ID to render, this renderer will generate a column for each annotation
- * This is an expensive renderer, as it requires a call per ID.
+ * The bundles for all IDs are fetched with a single batch call.
  * @author jayhodgson
  *
  */
@@ -73,52 +74,47 @@ public class APITableColumnRendererEntityIdAnnotations implements APITableColumn
 		masterAnnotationList = null;
 		finalCallback = callback;
 		if (entityIds.size() > 0)
-			columnDataInit(entityIds, 0);
+			columnDataInit(entityIds);
 	}
 	
 	/**
-	 * Recursive serially initializes the column renderers
-	 * @param columnData
-	 * @param columnNames
-	 * @param displayColumnNames
-	 * @param renderers
-	 * @param currentIndex
+	 * Initializes the column data from the bundles of all entities, fetched in a single batch call
+	 * @param columnData unique entity ids
 	 */
-	private void columnDataInit(final List<String> columnData, final int currentIndex) {
-		AsyncCallback<EntityBundleTransport> callback = new AsyncCallback<EntityBundleTransport>() {
+	private void columnDataInit(final List<String> columnData) {
+		AsyncCallback<EntityBundleTransportList> callback = new AsyncCallback<EntityBundleTransportList>() {
 			@Override
-			public void onSuccess(EntityBundleTransport result) {
-				
-				try {
-					EntityBundle bundle = nodeModelCreator.createEntityBundle(result);
-					List<EntityRow<?>> entityRowList =  AnnotationsWidget.getRows(bundle.getEntity(), bundle.getAnnotations(), factory, cache);
+			public void onSuccess(EntityBundleTransportList result) {
+				for (int i = 0; i < columnData.size(); i++) {
+					EntityBundleTransport transport = result.getBundles().get(i);
+					if (transport == null) {
+						RestServiceException error = result.getErrors().get(i);
+						value2Error.put(columnData.get(i), error == null ? null : error.getMessage());
+						continue;
+					}
+					try {
+						EntityBundle bundle = nodeModelCreator.createEntityBundle(transport);
+						List<EntityRow<?>> entityRowList =  AnnotationsWidget.getRows(bundle.getEntity(), bundle.getAnnotations(), factory, cache);
 
-					if (masterAnnotationList == null && entityRowList.size() > 0)
-						masterAnnotationList = entityRowList;
-					value2Annotations.put(columnData.get(currentIndex), entityRowList);
-				} catch (JSONObjectAdapterException e) {
-					onFailure(new UnknownErrorException(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION));
+						if (masterAnnotationList == null && entityRowList.size() > 0)
+							masterAnnotationList = entityRowList;
+						value2Annotations.put(columnData.get(i), entityRowList);
+					} catch (JSONObjectAdapterException e) {
+						value2Error.put(columnData.get(i), DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
+					}
 				}
-
-				processNext();
+				finalCallback.onSuccess(getOutputColumnRenderer());
 			}
 			@Override
 			public void onFailure(Throwable caught) {
-				try{
-					value2Error.put(columnData.get(currentIndex), caught.getMessage());
-				} catch (Throwable t) {};
-				//keep going
-				processNext();
-			}
-			private void processNext() {
-				//after all values have initialized, then do the final callback
-				if (currentIndex == columnData.size()-1) {
-					finalCallback.onSuccess(getOutputColumnRenderer());
-				} else
-					columnDataInit(columnData, currentIndex+1);
+				//report the error for every value
+				for (String value : columnData) {
+					value2Error.put(value, caught.getMessage());
+				}
+				finalCallback.onSuccess(getOutputColumnRenderer());
 			}
 		};
-		synapseClient.getEntityBundle(columnData.get(currentIndex), ENTITY| ANNOTATIONS, callback);
+		synapseClient.getEntityBundles(columnData, ENTITY| ANNOTATIONS, callback);
 	}
 	
 	private APITableInitializedColumnRenderer getOutputColumnRenderer() {
@@ -22,9 +22,8 @@ import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.web.client.DisplayConstants;
 import org.sagebionetworks.web.client.DisplayUtils;
 import org.sagebionetworks.web.client.SynapseClientAsync;
-import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
-import org.sagebionetworks.web.client.widget.user.UserBadge;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
 import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.KeyValueDisplay;
 import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
@@ -241,12 +240,13 @@ public class ProvUtils {
 	 * @param callback
 	 * @param synapseClient
 	 * @param nodeModelCreator
+	 * @param batchLoader looks up the modified by user profile
 	 * @param idToNode mapping from id to ProvGraphNode
 	 */
 	public static void getInfo(String nodeId,			
 			SynapseClientAsync synapseClient,
 			final NodeModelCreator nodeModelCreator,
-			ClientCache clientCache,
+			BadgeBatchLoader batchLoader,
 			Map<String, ProvGraphNode> idToNode,
 			final AsyncCallback<KeyValueDisplay<String>> callback) {
 		if(callback == null) return;
@@ -256,9 +256,9 @@ public class ProvUtils {
 		if(node == null) callback.onFailure(null);
 		
 		if(node instanceof EntityGraphNode) {
-			getInfoEntityTreeNode(synapseClient, nodeModelCreator, clientCache, callback, (EntityGraphNode)node);
+			getInfoEntityTreeNode(synapseClient, nodeModelCreator, batchLoader, callback, (EntityGraphNode)node);
 		} else if(node instanceof ActivityGraphNode) { 
-			getInfoActivityTreeNode(synapseClient, nodeModelCreator, clientCache, callback, (ActivityGraphNode)node);
+			getInfoActivityTreeNode(synapseClient, nodeModelCreator, batchLoader, callback, (ActivityGraphNode)node);
 		} else if(node instanceof ExternalGraphNode) {
 			callback.onSuccess(ProvUtils.externalNodeToKeyValueDisplay((ExternalGraphNode) node));
 		}
@@ -271,7 +271,7 @@ public class ProvUtils {
 	private static void getInfoActivityTreeNode(
 			final SynapseClientAsync synapseClient,
 			final NodeModelCreator nodeModelCreator,
-			final ClientCache clientCache,
+			final BadgeBatchLoader batchLoader,
 			final AsyncCallback<KeyValueDisplay<String>> callback,
 			ActivityGraphNode atNode) {
 		synapseClient.getActivity(atNode.getActivityId(), new AsyncCallback<String>() {
@@ -279,7 +279,7 @@ public class ProvUtils {
 			public void onSuccess(String result) {
 				try {
 					final Activity activity = nodeModelCreator.createJSONEntity(result, Activity.class);
-					UserBadge.getUserProfile(activity.getModifiedBy(), nodeModelCreator, synapseClient, clientCache, new AsyncCallback<UserProfile>() {
+					batchLoader.getUserProfile(activity.getModifiedBy(), new AsyncCallback<UserProfile>() {
 						@Override
 						public void onSuccess(UserProfile profile) {
 							callback.onSuccess(ProvUtils.activityToKeyValueDisplay(activity, DisplayUtils.getDisplayName(profile)));		
@@ -304,7 +304,7 @@ public class ProvUtils {
 
 	private static void getInfoEntityTreeNode(final SynapseClientAsync synapseClient,
 			final NodeModelCreator nodeModelCreator,
-			final ClientCache clientCache,
+			final BadgeBatchLoader batchLoader,
 			final AsyncCallback<KeyValueDisplay<String>> callback,
 			EntityGraphNode etNode) {
 		synapseClient.getEntityForVersion(etNode.getEntityId(), etNode.getVersionNumber(), new AsyncCallback<EntityWrapper>() {
@@ -312,7 +312,7 @@ public class ProvUtils {
 			public void onSuccess(EntityWrapper result) {
 				try {
 					final Entity entity = nodeModelCreator.createEntity(result);
-					UserBadge.getUserProfile(entity.getModifiedBy(), nodeModelCreator, synapseClient, clientCache, new AsyncCallback<UserProfile>() {
+					batchLoader.getUserProfile(entity.getModifiedBy(), new AsyncCallback<UserProfile>() {
 						@Override
 						public void onSuccess(UserProfile profile) {
 							callback.onSuccess(ProvUtils.entityToKeyValueDisplay(entity, DisplayUtils.getDisplayName(profile)));		
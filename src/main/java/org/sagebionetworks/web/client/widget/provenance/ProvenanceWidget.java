@@ -6,17 +6,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import org.sagebionetworks.markdown.constants.WidgetConstants;
 import org.sagebionetworks.repo.model.BatchResults;
-import org.sagebionetworks.repo.model.Entity;
 import org.sagebionetworks.repo.model.EntityHeader;
 import org.sagebionetworks.repo.model.Reference;
-import org.sagebionetworks.repo.model.Versionable;
 import org.sagebionetworks.repo.model.provenance.Activity;
-import org.sagebionetworks.repo.model.provenance.Used;
-import org.sagebionetworks.repo.model.provenance.UsedEntity;
 import org.sagebionetworks.repo.model.request.ReferenceList;
 import org.sagebionetworks.schema.adapter.AdapterFactory;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
@@ -26,7 +21,6 @@ import org.sagebionetworks.web.client.GlobalApplicationState;
 import org.sagebionetworks.web.client.PortalGinInjector;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
-import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.security.AuthenticationController;
 import org.sagebionetworks.web.client.services.LayoutServiceAsync;
 import org.sagebionetworks.web.client.transform.JsoProvider;
@@ -37,16 +31,15 @@ import org.sagebionetworks.web.client.widget.provenance.nchart.LayoutResult;
 import org.sagebionetworks.web.client.widget.provenance.nchart.NChartCharacters;
 import org.sagebionetworks.web.client.widget.provenance.nchart.NChartLayersArray;
 import org.sagebionetworks.web.client.widget.provenance.nchart.NChartUtil;
-import org.sagebionetworks.web.shared.EntityWrapper;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
 import org.sagebionetworks.web.shared.KeyValueDisplay;
-import org.sagebionetworks.web.shared.PaginatedResults;
 import org.sagebionetworks.web.shared.WikiPageKey;
 import org.sagebionetworks.web.shared.exceptions.ForbiddenException;
 import org.sagebionetworks.web.shared.exceptions.NotFoundException;
-import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
 import org.sagebionetworks.web.shared.provenance.EntityGraphNode;
 import org.sagebionetworks.web.shared.provenance.ExpandGraphNode;
 import org.sagebionetworks.web.shared.provenance.ProvGraph;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.provenance.ProvGraphNode;
 
 import com.google.gwt.user.client.rpc.AsyncCallback;
@@ -69,9 +62,6 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 	private JsoProvider jsoProvider;
 	
 
-	private interface ProcessCallback {
-		public void onComplete();
-	}
 	Map<Reference,String> generatedByActivityId = new HashMap<Reference, String>();
 	Map<String,Activity> processedActivities = new HashMap<String, Activity>();
 	Set<Reference> references = new HashSet<Reference>();
@@ -80,12 +70,9 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 	boolean showExpand;
 	boolean showUndefinedAndErrorActivity;
 	int maxDepth = 1; 
-	Stack<ProcessItem> toProcess;
-	ProcessCallback doneCallback;
 	Set<Reference> noExpandNode;
-	Stack<String> lookupVersion;
 	ProvGraph currentGraph;
-	ClientCache clientCache;
+	BadgeBatchLoader batchLoader;
 	
 	@Inject
 	public ProvenanceWidget(ProvenanceWidgetView view, SynapseClientAsync synapseClient,
@@ -95,7 +82,7 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 			AdapterFactory adapterFactory,
 			SynapseJSNIUtils synapseJSNIUtils,
 			JsoProvider jsoProvider, 
-			ClientCache clientCache) {
+			BadgeBatchLoader batchLoader) {
 		this.view = view;
 		this.synapseClient = synapseClient;
 		this.nodeModelCreator = nodeModelCreator;
@@ -105,7 +92,7 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 		this.adapterFactory = adapterFactory;
 		this.synapseJSNIUtils = synapseJSNIUtils;
 		this.jsoProvider = jsoProvider;
-		this.clientCache = clientCache;
+		this.batchLoader = batchLoader;
 		view.setPresenter(this);
 	}	
 	
@@ -116,8 +103,8 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 		//set up view based on descriptor parameters
 		descriptor = widgetDescriptor;		
 
-		// parse referenced entities and put into start refs
-		lookupVersion = new Stack<String>();
+		// parse referenced entities. References without a version are resolved to the current version on the server
+		List<Reference> requestedRefs = new ArrayList<Reference>();
 		startRefs = new HashSet<Reference>();		
 		String entityListStr = null;
 		if(descriptor.containsKey(WidgetConstants.PROV_WIDGET_ENTITY_LIST_KEY)) entityListStr = descriptor.get(WidgetConstants.PROV_WIDGET_ENTITY_LIST_KEY);
@@ -128,19 +115,16 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 					// Only add valid References
 					Reference ref = DisplayUtils.parseEntityVersionString(refString);
 					if(ref != null && ref.getTargetId() != null) {
-						if(ref.getTargetVersionNumber() == null) {
-							// if any current versions are requested then we need to look them up before proceeding. 
-							lookupVersion.add(ref.getTargetId());
-						} else {
-							startRefs.add(ref);							
-						}
+						requestedRefs.add(ref);
 					}					 											
 				}
 			}
 		}
 		// backwards compatibility for original ProvenanceWidget API
 		if(descriptor.containsKey(WidgetConstants.PROV_WIDGET_ENTITY_ID_KEY)) {
-			lookupVersion.add(descriptor.get(WidgetConstants.PROV_WIDGET_ENTITY_ID_KEY));
+			Reference ref = new Reference();
+			ref.setTargetId(descriptor.get(WidgetConstants.PROV_WIDGET_ENTITY_ID_KEY));
+			requestedRefs.add(ref);
 		}
 		
 		// Set max depth (default 1), undefined (false) and expand (false)		
@@ -152,32 +136,8 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 		// do not create expand nodes for these (generally for previously expanded/discovered nodes without an activity)
 		noExpandNode = new HashSet<Reference>();		
 		
-		// callback after all starting references have their current version looked up (if Versionable)
-		AsyncCallback<Void> lookupCurrentVersionCallback = new AsyncCallback<Void>() {
-			@Override
-			public void onSuccess(Void result) {
-				// load stack with starting nodes at depth 0
-				toProcess = new Stack<ProvenanceWidget.ProcessItem>();
-				for(Reference ref : startRefs) {			
-					toProcess.push(new ReferenceProcessItem(ref, 0));
-				}
-				
-				doneCallback = new ProcessCallback() {			
-					@Override
-					public void onComplete() { 
-						lookupReferencesThenBuildGraph();
-					}
-				};
-				// start processing the stack of start references
-				processNext();		
-			}
-			@Override
-			public void onFailure(Throwable caught) {
-				view.showErrorMessage(DisplayConstants.ERROR_PROVENANCE);
-			}
-		};
-		// lookup versions for the start references, if needed
-		lookupVersion(lookupCurrentVersionCallback);
+		// the server walks the graph and returns it in one response
+		loadGraph(requestedRefs, maxDepth, true);
 	}
 
 	public void setHeight(int height) {
@@ -186,7 +146,7 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 			
 	@Override
 	public void getInfo(String nodeId, final AsyncCallback<KeyValueDisplay<String>> callback) {
-		ProvUtils.getInfo(nodeId, synapseClient, nodeModelCreator, clientCache, idToNode, callback);
+		ProvUtils.getInfo(nodeId, synapseClient, nodeModelCreator, batchLoader, idToNode, callback);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -207,8 +167,9 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 		Reference ref = new Reference();
 		ref.setTargetId(node.getEntityId());
 		ref.setTargetVersionNumber(node.getVersionNumber());		
-		toProcess.push(new ReferenceProcessItem(ref, 0));
-		processNext();		
+		List<Reference> refs = new ArrayList<Reference>();
+		refs.add(ref);
+		loadGraph(refs, maxDepth, false);
 	}
 
 	
@@ -217,193 +178,78 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 	 */
 
 	/**
-	 * Recursively look up versions, adding the references to the startRefs until the lookupVersion stack is empty
-	 * @param doneCallback
-	 */
-	private void lookupVersion(final AsyncCallback<Void> doneCallback) {
-		if(lookupVersion.size() == 0) {
-			doneCallback.onSuccess(null);
-			return;
-		}
-		String nextEntityId = lookupVersion.pop();
-		synapseClient.getEntity(nextEntityId, new AsyncCallback<EntityWrapper>() {
-			@Override
-			public void onSuccess(EntityWrapper result) {
-				try {
-					Entity entity = nodeModelCreator.createEntity(result);
-					Reference ref = new Reference();
-					ref.setTargetId(entity.getId());
-					if(entity instanceof Versionable) {
-						ref.setTargetVersionNumber(((Versionable) entity).getVersionNumber());
-					}
-					startRefs.add(ref);
-					lookupVersion(doneCallback);
-				} catch (JSONObjectAdapterException e) {
-					doneCallback.onFailure(e);
-				}				
-			}
-			@Override
-			public void onFailure(Throwable caught) {
-				doneCallback.onFailure(caught);
-			}
-		});
-	}
-	
-	/**
-	 * Process the next ProcessItem in the stack until we're done
+	 * Get the provenance graph for the given references from the server, add it to the current graph, and display the result
+	 * @param refs
+	 * @param depth
+	 * @param isStart true if these are the starting references of the graph
 	 */
-	private void processNext() {	
-		if(toProcess.size() == 0) {
-			doneCallback.onComplete();
-			return;
-		}
-		
-		ProcessItem next = toProcess.pop();
-		if(next instanceof ReferenceProcessItem) {
-			processUsed((ReferenceProcessItem) next);
-		} else if(next instanceof ActivityProcessItem) {
-			processActivity((ActivityProcessItem) next);
-		}
-	}
-
-	private void processUsed(final ReferenceProcessItem item) {
-		if(item.getReference() == null) {
-			processNext();
-			return;
-		}
-		// add entry to references		
-		references.add(item.getReference());
-		
-		// if at the max depth then do not lookup activity 		
-		if(item.getDepth() >= maxDepth) {
-			processNext();
-			return;
-		}
-				
-		// lookup generatedBy activity for ref
-		synapseClient.getActivityForEntityVersion(item.getReference().getTargetId(), item.getReference().getTargetVersionNumber(), new AsyncCallback<String>() {
-			@Override
-			public void onSuccess(String result) {
-				try {
-					Activity activity = new Activity(adapterFactory.createNew(result));
-					addActivityToStack(activity);
-				} catch (JSONObjectAdapterException e) {
-					view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);				
-					onFailure(e);
-				}
-			}
-			@Override
-			public void onFailure(Throwable caught) {
-				if(caught instanceof NotFoundException && showExpand) {
-					noExpandNode.add(item.getReference());
-				}
-				
-				Activity activity = null;
-				if(showUndefinedAndErrorActivity)
-					activity = createErrorActivity(caught); // Display empty, fake provenance record				
-				addActivityToStack(activity);
-			}
-			
-			private void addActivityToStack(Activity activity) {
-				if(activity != null) {
-					// add entry to generatedByActivityId
-					generatedByActivityId.put(item.getReference(), activity.getId());					
-					// add activity to toProcess and process it as next level in the depth of graph
-					toProcess.push(new ActivityProcessItem(activity, item.getDepth()+1));					
-				}
-				processNext();				
-			}			
-		});
-		
-	}
-	
-	private void processActivity(final ActivityProcessItem item) { 
-		//  TODO : remove this check if depth becomes specified for each entity in the start list
-		// check if activity has already been processed
-		if(processedActivities.containsKey(item.getActivity().getId())) {			
-			processNext();
-			return;
-		}
-		
-		// add activity to processedActivites
-		processedActivities.put(item.getActivity().getId(), item.getActivity());
-		
-		// if this activity errored then no need to lookup its generatedBy or used list
-		if(item.getActivity().getId().startsWith(FAKE_ID_PREFIX)) {
-			processNext();
-			return;
-		}
-
-		// Lookup entities generated by this activity
-		synapseClient.getEntitiesGeneratedBy(item.getActivity().getId(), Integer.MAX_VALUE, 0, new AsyncCallback<String>() {
-			@Override
-			public void onSuccess(String result) {
-				try {
-					PaginatedResults<Reference> generated = nodeModelCreator.createPaginatedResults(result, Reference.class);
-					// add references to generatedByActivityId & references
-					if(generated != null && generated.getResults() != null) {
-						for(Reference ref : generated.getResults()) {
-							generatedByActivityId.put(ref, item.getActivity().getId());
-							references.add(ref);
-						}
-					} 
-				} catch (JSONObjectAdapterException e) {
-					view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
-				}				
-				addUsedToStack();
-			}
-			
-			@Override
-			public void onFailure(Throwable caught) {
-				addUsedToStack();
-			}
-
-			// process used list
-			private void addUsedToStack() {							
-				// add used references to process stack
-				if(item.getActivity().getUsed() != null) {
-					Set<Used> used = item.getActivity().getUsed();
-					for(Used u : used) {
-						if(u instanceof UsedEntity) { // ignore UsedUrl, nothing to process
-							UsedEntity ue = (UsedEntity) u;
-							if(ue.getReference() != null) {
-								toProcess.push(new ReferenceProcessItem(ue.getReference(), item.getDepth())); // same depth as activity
-							}
-						}
-					}
-				}
-				processNext();
-			}
-		});
-	}
-		
-	private void lookupReferencesThenBuildGraph() {			
+	private void loadGraph(List<Reference> refs, int depth, final boolean isStart) {
 		ReferenceList list = new ReferenceList();
-		list.setReferences(new ArrayList<Reference>(references));		
+		list.setReferences(refs);
 		try {
-			synapseClient.getEntityHeaderBatch(list.writeToJSONObject(adapterFactory.createNew()).toJSONString(), new AsyncCallback<String>() {
+			synapseClient.getProvenanceGraph(list.writeToJSONObject(adapterFactory.createNew()).toJSONString(), depth, new AsyncCallback<ProvGraphBundle>() {
 				@Override
-				public void onSuccess(String result) {					
-					BatchResults<EntityHeader> headers;
+				public void onSuccess(ProvGraphBundle result) {
 					try {
-						headers = nodeModelCreator.createBatchResults(result, EntityHeader.class);
-						refToHeader = ProvUtils.mapReferencesToHeaders(headers);
+						addToGraph(result, isStart);
 						buildGraphLayoutSendToView();
 					} catch (JSONObjectAdapterException e) {
-						onFailure(new UnknownErrorException(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION));
+						view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
 					}
 				}
-				
 				@Override
-				public void onFailure(Throwable caught) {					
-					buildGraphLayoutSendToView();
+				public void onFailure(Throwable caught) {
+					view.showErrorMessage(DisplayConstants.ERROR_PROVENANCE);
 				}
 			});
 		} catch (JSONObjectAdapterException e) {
 			view.showErrorMessage(DisplayConstants.ERROR_INCOMPATIBLE_CLIENT_VERSION);
 		}
 	}
-
+	
+	private void addToGraph(ProvGraphBundle bundle, boolean isStart) throws JSONObjectAdapterException {
+		if(isStart) {
+			startRefs.addAll(parseReferences(bundle.getStartReferencesJson()));
+		}
+		references.addAll(parseReferences(bundle.getReferencesJson()));
+		if(bundle.getActivitiesJson() != null) {
+			for(String activityJson : bundle.getActivitiesJson()) {
+				Activity activity = new Activity(adapterFactory.createNew(activityJson));
+				if(!processedActivities.containsKey(activity.getId())) {
+					processedActivities.put(activity.getId(), activity);
+				}
+			}
+		}
+		List<Reference> generated = parseReferences(bundle.getGeneratedByReferencesJson());
+		for(int i = 0; i < generated.size(); i++) {
+			generatedByActivityId.put(generated.get(i), bundle.getGeneratedByActivityIds().get(i));
+		}
+		// references whose generatedBy activity could not be found
+		List<Reference> failed = parseReferences(bundle.getFailedReferencesJson());
+		for(int i = 0; i < failed.size(); i++) {
+			Throwable caught = bundle.getFailures().get(i);
+			if(caught instanceof NotFoundException && showExpand) {
+				noExpandNode.add(failed.get(i));
+			}
+			if(showUndefinedAndErrorActivity) {
+				// Display empty, fake provenance record
+				Activity activity = createErrorActivity(caught);
+				generatedByActivityId.put(failed.get(i), activity.getId());
+				processedActivities.put(activity.getId(), activity);
+			}
+		}
+		if(bundle.getEntityHeadersJson() != null) {
+			BatchResults<EntityHeader> headers = nodeModelCreator.createBatchResults(bundle.getEntityHeadersJson(), EntityHeader.class);
+			refToHeader.putAll(ProvUtils.mapReferencesToHeaders(headers));
+		}
+	}
+	
+	private List<Reference> parseReferences(String referenceListJson) throws JSONObjectAdapterException {
+		if(referenceListJson == null) return new ArrayList<Reference>();
+		ReferenceList list = new ReferenceList(adapterFactory.createNew(referenceListJson));
+		if(list.getReferences() == null) return new ArrayList<Reference>();
+		return list.getReferences();
+	}
 	
 	private void buildGraphLayoutSendToView() {
 		// make sure that any references that were not returned in the header list are incorporated in the map
@@ -445,58 +291,6 @@ public class ProvenanceWidget implements ProvenanceWidgetView.Presenter, WidgetR
 
 
 
-	/*
-	 * Stack Classes
-	 */
-	private abstract class ProcessItem {
-		int depth;
-
-		public int getDepth() {
-			return depth;
-		}
-
-		public void setDepth(int depth) {
-			this.depth = depth;
-		}
-		
-	}
-	
-	private class ReferenceProcessItem extends ProcessItem {
-		Reference reference;
-
-		public ReferenceProcessItem(Reference reference, int depth) {
-			super();
-			this.setDepth(depth);
-			this.reference = reference;
-		}
-
-		public Reference getReference() {
-			return reference;
-		}
-
-		public void setReference(Reference reference) {
-			this.reference = reference;
-		}
-	}
-
-	private class ActivityProcessItem extends ProcessItem {
-		Activity activity;
-
-		public ActivityProcessItem(Activity activity, int depth) {
-			super();
-			this.setDepth(depth);
-			this.activity = activity;
-		}
-
-		public Activity getActivity() {
-			return activity;
-		}
-
-		public void setActivity(Activity activity) {
-			this.activity = activity;
-		}		
-	}
-
 	@Override
 	public void findOldVersions() {
 		if(currentGraph == null) return;
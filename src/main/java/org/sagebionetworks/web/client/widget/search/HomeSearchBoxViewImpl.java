@@ -2,7 +2,6 @@ package org.sagebionetworks.web.client.widget.search;
 
 import org.sagebionetworks.web.client.DisplayConstants;
 import org.sagebionetworks.web.client.DisplayUtils;
-import org.sagebionetworks.web.client.widget.sharing.AccessControlListEditor;
 
 import com.extjs.gxt.ui.client.event.MenuEvent;
 import com.extjs.gxt.ui.client.event.SelectionListener;
@@ -32,7 +31,7 @@ public class HomeSearchBoxViewImpl extends LayoutContainer implements HomeSearch
 	private TextBox searchField;
 	
 	@Inject
-	public HomeSearchBoxViewImpl(AccessControlListEditor accessControlListEditor) {			
+	public HomeSearchBoxViewImpl() {			
 		simplePanel = new LayoutContainer();
 		simplePanel.setId("simplePanelLC");
 		simplePanel.addStyleName("row");
@@ -1,10 +1,10 @@
 package org.sagebionetworks.web.client.widget.team;
 
 import org.sagebionetworks.repo.model.Team;
-import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
 import org.sagebionetworks.web.client.widget.SynapseWidgetPresenter;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
 
 import com.google.gwt.user.client.rpc.AsyncCallback;
 import com.google.gwt.user.client.ui.Widget;
@@ -16,12 +16,14 @@ public class TeamBadge implements TeamBadgeView.Presenter, SynapseWidgetPresente
 	SynapseClientAsync synapseClient;
 	NodeModelCreator nodeModelCreator;
 	private Integer maxNameLength;
+	BadgeBatchLoader batchLoader;
 	
 	@Inject
-	public TeamBadge(TeamBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator) {
+	public TeamBadge(TeamBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, BadgeBatchLoader batchLoader) {
 		this.view = view;
 		this.synapseClient = synapseClient;
 		this.nodeModelCreator = nodeModelCreator;
+		this.batchLoader = batchLoader;
 		view.setPresenter(this);
 	}
 	
@@ -32,15 +34,10 @@ public class TeamBadge implements TeamBadgeView.Presenter, SynapseWidgetPresente
 	public void configure(final String teamId) {
 		if (teamId != null && teamId.trim().length() > 0) {
 			view.showLoading();
-			synapseClient.getTeam(teamId, new AsyncCallback<String>() {
+			batchLoader.getTeam(teamId, new AsyncCallback<Team>() {
 				@Override
-				public void onSuccess(String teamString) {
-					try {
-						Team team = nodeModelCreator.createJSONEntity(teamString, Team.class);
-						configure(team);
-					} catch (JSONObjectAdapterException e) {
-						onFailure(e);
-					}
+				public void onSuccess(Team team) {
+					configure(team);
 				}
 				@Override
 				public void onFailure(Throwable caught) {
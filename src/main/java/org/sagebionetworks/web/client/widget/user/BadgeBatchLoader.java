@@ -0,0 +1,26 @@
+package org.sagebionetworks.web.client.widget.user;
+
+import org.sagebionetworks.repo.model.Team;
+import org.sagebionetworks.repo.model.UserProfile;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+/**
+ * Resolves the user profiles and teams shown by badges.  Lookups made while handling the same browser event are
+ * collected, de-duplicated, and sent to the server in one batch call.
+ *
+ */
+public interface BadgeBatchLoader {
+	
+	/**
+	 * @param principalId
+	 * @param callback fails with a NotFoundException if the profile could not be retrieved
+	 */
+	void getUserProfile(String principalId, AsyncCallback<UserProfile> callback);
+	
+	/**
+	 * @param teamId
+	 * @param callback fails with a NotFoundException if the team could not be retrieved
+	 */
+	void getTeam(String teamId, AsyncCallback<Team> callback);
+}
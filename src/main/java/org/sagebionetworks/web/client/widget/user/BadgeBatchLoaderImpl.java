@@ -0,0 +1,206 @@
+package org.sagebionetworks.web.client.widget.user;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sagebionetworks.repo.model.Team;
+import org.sagebionetworks.repo.model.UserProfile;
+import org.sagebionetworks.schema.adapter.JSONEntity;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.web.client.GWTWrapper;
+import org.sagebionetworks.web.client.SynapseClientAsync;
+import org.sagebionetworks.web.client.cache.ClientCache;
+import org.sagebionetworks.web.client.transform.NodeModelCreator;
+import org.sagebionetworks.web.client.utils.Callback;
+import org.sagebionetworks.web.shared.WebConstants;
+import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+import com.google.inject.Inject;
+
+/**
+ * Pages like the team member list or a wiki full of user badges used to make one call per badge.  Lookups are now
+ * queued, and the queue is flushed once the current browser event has been handled, as batch calls of up to
+ * MAX_BATCH_SIZE ids.
+ * 
+ * Parsed objects are kept in a small in-memory LRU in front of the ClientCache (which holds the json), so badges that
+ * are shown again are not parsed again.
+ *
+ */
+public class BadgeBatchLoaderImpl implements BadgeBatchLoader {
+	
+	public static final int MAX_BATCH_SIZE = 100;
+	public static final int MAX_RECENT = 500;
+	//same lifetime as the ClientCache default
+	public static final long RECENT_TIME_MS = 1000L*60L*60L;
+	
+	SynapseClientAsync synapseClient;
+	NodeModelCreator nodeModelCreator;
+	ClientCache clientCache;
+	GWTWrapper gwt;
+	private Batch<UserProfile> profiles;
+	private Batch<Team> teams;
+	
+	@Inject
+	public BadgeBatchLoaderImpl(SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, ClientCache clientCache, GWTWrapper gwt) {
+		this.synapseClient = synapseClient;
+		this.nodeModelCreator = nodeModelCreator;
+		this.clientCache = clientCache;
+		this.gwt = gwt;
+		profiles = new Batch<UserProfile>(UserProfile.class, WebConstants.USER_PROFILE_SUFFIX) {
+			@Override
+			void load(List<String> ids, AsyncCallback<List<String>> callback) {
+				BadgeBatchLoaderImpl.this.synapseClient.getUserProfiles(ids, callback);
+			}
+		};
+		teams = new Batch<Team>(Team.class, WebConstants.TEAM_SUFFIX) {
+			@Override
+			void load(List<String> ids, AsyncCallback<List<String>> callback) {
+				BadgeBatchLoaderImpl.this.synapseClient.getTeams(ids, callback);
+			}
+		};
+	}
+	
+	@Override
+	public void getUserProfile(String principalId, AsyncCallback<UserProfile> callback) {
+		profiles.get(principalId, callback);
+	}
+	
+	@Override
+	public void getTeam(String teamId, AsyncCallback<Team> callback) {
+		teams.get(teamId, callback);
+	}
+	
+	/**
+	 * The queue, recent objects, and batch call for one type of badge.
+	 */
+	private abstract class Batch<T extends JSONEntity> {
+		private Class<T> clazz;
+		private String cacheSuffix;
+		private Map<String, Recent<T>> recent;
+		private Map<String, List<AsyncCallback<T>>> pending;
+		private boolean isFlushScheduled;
+		
+		Batch(Class<T> clazz, String cacheSuffix) {
+			this.clazz = clazz;
+			this.cacheSuffix = cacheSuffix;
+			pending = new LinkedHashMap<String, List<AsyncCallback<T>>>();
+			//access ordered, so the least recently shown badge is dropped first
+			recent = new LinkedHashMap<String, Recent<T>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Recent<T>> eldest) {
+					return size() > MAX_RECENT;
+				}
+			};
+		}
+		
+		abstract void load(List<String> ids, AsyncCallback<List<String>> callback);
+		
+		void get(String id, AsyncCallback<T> callback) {
+			Recent<T> value = recent.get(id);
+			if (value != null) {
+				if (System.currentTimeMillis() < value.expireTime) {
+					callback.onSuccess(value.object);
+					return;
+				}
+				recent.remove(id);
+			}
+			String json = clientCache.get(id + cacheSuffix);
+			if (json != null) {
+				try {
+					callback.onSuccess(remember(id, json));
+					return;
+				} catch (JSONObjectAdapterException e) {
+					//fetch it again
+				}
+			}
+			
+			List<AsyncCallback<T>> callbacks = pending.get(id);
+			if (callbacks == null) {
+				callbacks = new ArrayList<AsyncCallback<T>>();
+				pending.put(id, callbacks);
+			}
+			callbacks.add(callback);
+			if (!isFlushScheduled) {
+				isFlushScheduled = true;
+				gwt.scheduleDeferred(new Callback() {
+					@Override
+					public void invoke() {
+						flush();
+					}
+				});
+			}
+		}
+		
+		void flush() {
+			isFlushScheduled = false;
+			Map<String, List<AsyncCallback<T>>> callbacks = pending;
+			pending = new LinkedHashMap<String, List<AsyncCallback<T>>>();
+			List<String> ids = new ArrayList<String>(callbacks.keySet());
+			for (int start = 0; start < ids.size(); start += MAX_BATCH_SIZE) {
+				//sublists are not serializable by GWT
+				send(new ArrayList<String>(ids.subList(start, Math.min(start + MAX_BATCH_SIZE, ids.size()))), callbacks);
+			}
+		}
+		
+		private void send(final List<String> ids, final Map<String, List<AsyncCallback<T>>> callbacks) {
+			load(ids, new AsyncCallback<List<String>>() {
+				@Override
+				public void onSuccess(List<String> results) {
+					for (int i = 0; i < ids.size(); i++) {
+						String id = ids.get(i);
+						String json = i < results.size() ? results.get(i) : null;
+						List<AsyncCallback<T>> waiting = callbacks.get(id);
+						if (json == null) {
+							fail(waiting, new NotFoundException(id));
+							continue;
+						}
+						T object;
+						try {
+							object = remember(id, json);
+						} catch (JSONObjectAdapterException e) {
+							fail(waiting, e);
+							continue;
+						}
+						clientCache.put(id + cacheSuffix, json);
+						for (AsyncCallback<T> callback : waiting) {
+							callback.onSuccess(object);
+						}
+					}
+				}
+				
+				@Override
+				public void onFailure(Throwable caught) {
+					for (String id : ids) {
+						fail(callbacks.get(id), caught);
+					}
+				}
+			});
+		}
+		
+		private T remember(String id, String json) throws JSONObjectAdapterException {
+			T object = nodeModelCreator.createJSONEntity(json, clazz);
+			recent.put(id, new Recent<T>(object, System.currentTimeMillis() + RECENT_TIME_MS));
+			return object;
+		}
+		
+		private void fail(List<AsyncCallback<T>> callbacks, Throwable caught) {
+			for (AsyncCallback<T> callback : callbacks) {
+				callback.onFailure(caught);
+			}
+		}
+	}
+	
+	private static class Recent<T> {
+		T object;
+		long expireTime;
+		
+		Recent(T object, long expireTime) {
+			this.object = object;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -16,13 +16,15 @@ public class BigUserBadge implements BigUserBadgeView.Presenter, SynapseWidgetPr
 	SynapseClientAsync synapseClient;
 	NodeModelCreator nodeModelCreator;
 	ClientCache clientCache;
+	BadgeBatchLoader batchLoader;
 	
 	@Inject
-	public BigUserBadge(BigUserBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, ClientCache clientCache) {
+	public BigUserBadge(BigUserBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, ClientCache clientCache, BadgeBatchLoader batchLoader) {
 		this.view = view;
 		this.synapseClient = synapseClient;
 		this.nodeModelCreator = nodeModelCreator;
 		this.clientCache = clientCache;
+		this.batchLoader = batchLoader;
 		view.setPresenter(this);
 	}
 	
@@ -37,7 +39,7 @@ public class BigUserBadge implements BigUserBadgeView.Presenter, SynapseWidgetPr
 	public void configure(final String principalId, final String description) {
 		view.showLoading();
 		
-		UserBadge.getUserProfile(principalId, nodeModelCreator, synapseClient, clientCache, new AsyncCallback<UserProfile>() {
+		batchLoader.getUserProfile(principalId, new AsyncCallback<UserProfile>() {
 			@Override
 			public void onSuccess(UserProfile profile) {
 				String desc = description != null ? description : profile.getCompany();
@@ -4,14 +4,12 @@ import java.util.Map;
 
 import org.sagebionetworks.markdown.constants.WidgetConstants;
 import org.sagebionetworks.repo.model.UserProfile;
-import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
 import org.sagebionetworks.web.client.utils.Callback;
 import org.sagebionetworks.web.client.widget.SynapseWidgetPresenter;
 import org.sagebionetworks.web.client.widget.WidgetRendererPresenter;
-import org.sagebionetworks.web.shared.WebConstants;
 import org.sagebionetworks.web.shared.WikiPageKey;
 
 import com.google.gwt.event.dom.client.ClickHandler;
@@ -26,13 +24,15 @@ public class UserBadge implements UserBadgeView.Presenter, SynapseWidgetPresente
 	NodeModelCreator nodeModelCreator;
 	private Integer maxNameLength;
 	ClientCache clientCache;
+	BadgeBatchLoader batchLoader;
 	
 	@Inject
-	public UserBadge(UserBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, ClientCache clientCache) {
+	public UserBadge(UserBadgeView view, SynapseClientAsync synapseClient, NodeModelCreator nodeModelCreator, ClientCache clientCache, BadgeBatchLoader batchLoader) {
 		this.view = view;
 		this.synapseClient = synapseClient;
 		this.nodeModelCreator = nodeModelCreator;
 		this.clientCache = clientCache;
+		this.batchLoader = batchLoader;
 		view.setPresenter(this);
 	}
 	
@@ -54,7 +54,7 @@ public class UserBadge implements UserBadgeView.Presenter, SynapseWidgetPresente
 		if (principalId != null && principalId.trim().length() > 0) {
 			view.showLoading();
 			
-			UserBadge.getUserProfile(principalId, nodeModelCreator, synapseClient, clientCache, new AsyncCallback<UserProfile>() {
+			batchLoader.getUserProfile(principalId, new AsyncCallback<UserProfile>() {
 				@Override
 				public void onSuccess(UserProfile profile) {
 					view.setProfile(profile, maxNameLength);
@@ -75,36 +75,6 @@ public class UserBadge implements UserBadgeView.Presenter, SynapseWidgetPresente
 		view.setCustomClickHandler(clickHandler);
 	}	
 
-	public static void getUserProfile(final String principalId, final NodeModelCreator nodeModelCreator, SynapseClientAsync synapseClient, final ClientCache clientCache, final AsyncCallback<UserProfile> callback) {
-		String profileString = clientCache.get(principalId + WebConstants.USER_PROFILE_SUFFIX);
-		if (profileString != null) {
-			parseProfile(profileString, nodeModelCreator, callback);
-		} else {
-		synapseClient.getUserProfile(principalId, new AsyncCallback<String>() {			
-			@Override
-			public void onSuccess(String result) {
-					clientCache.put(principalId + WebConstants.USER_PROFILE_SUFFIX, result);
-					parseProfile(result, nodeModelCreator, callback);
-				}
-			
-			@Override
-			public void onFailure(Throwable caught) {
-				callback.onFailure(caught);
-			}
-		});
-	}
-	}
-	
-	public static void parseProfile(String profileString, NodeModelCreator nodeModelCreator, AsyncCallback<UserProfile> callback) {
-		try {
-			UserProfile profile = nodeModelCreator.createJSONEntity(profileString, UserProfile.class);
-			callback.onSuccess(profile);
-		} catch (JSONObjectAdapterException e) {
-			callback.onFailure(e);
-		}
-
-	}
-	
 	@SuppressWarnings("unchecked")
 	public void clearState() {
 	}
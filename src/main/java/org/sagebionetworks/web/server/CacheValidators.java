@@ -0,0 +1,37 @@
+package org.sagebionetworks.web.server;
+
+/**
+ * The validators (ETag and Last-Modified) of the last copy of a resource we
+ * fetched, sent back with the next GET so an unchanged source can answer
+ * "304 Not Modified" instead of the whole body.
+ * 
+ */
+public class CacheValidators {
+
+	private volatile String etag;
+	private volatile String lastModified;
+
+	public String getEtag() {
+		return etag;
+	}
+
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+
+	public CacheValidators() {
+	}
+
+	public CacheValidators(String etag, String lastModified) {
+		this.etag = etag;
+		this.lastModified = lastModified;
+	}
+}
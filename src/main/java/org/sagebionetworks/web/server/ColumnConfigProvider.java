@@ -4,11 +4,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -26,6 +27,11 @@ import com.google.inject.name.Named;
 
 /**
  * Loads the column configuration from the classpath.
+ * 
+ * The configuration is compiled up front and never changes once injection is
+ * done: each column's transitive dependencies and each type's
+ * {@link ColumnsForType} are computed once, so the (concurrent) searches only
+ * read immutable data, without locks or graph walks.
  * @author jmhill
  *
  */
@@ -45,9 +51,15 @@ public class ColumnConfigProvider {
 	
 	
 	/**
-	 * Cache of the columns for a given type.
+	 * The transitive dependencies of each column, in depth first order.
 	 */
-	private Map<String, ColumnsForType> columnsForTypeCache = new TreeMap<String, ColumnsForType>();
+	private Map<String, List<String>> dependencyClosures = Collections.emptyMap();
+	
+	/**
+	 * The columns for each type. Rebuilt (and swapped) whenever the type columns
+	 * are injected.
+	 */
+	private volatile Map<String, ColumnsForType> columnsForTypeCache = Collections.emptyMap();
 	
 	/**
 	 * Will load the column configuration from an XML file.
@@ -91,6 +103,18 @@ public class ColumnConfigProvider {
 			// Map the id to info
 			map.put(info.getId(), info);
 		}
+		// Walk the dependency graph once for each column.
+		Map<String, List<String>> closures = new HashMap<String, List<String>>();
+		for(String id: map.keySet()){
+			LinkedHashSet<String> result = new LinkedHashSet<String>();
+			getColumnDependanciesRecursive(result, new HashSet<String>(), id);
+			List<String> closure = Collections.emptyList();
+			if(!result.isEmpty()){
+				closure = Collections.unmodifiableList(new ArrayList<String>(result));
+			}
+			closures.put(id, closure);
+		}
+		dependencyClosures = Collections.unmodifiableMap(closures);
 	}
 	
 	/**
@@ -113,14 +137,12 @@ public class ColumnConfigProvider {
 	/**
 	 * Get all dependencies for a given column.
 	 * @param id
-	 * @return
+	 * @return the precomputed (unmodifiable) dependencies
 	 */
 	public List<String> getColumnDependancies(String id){
-		LinkedHashSet<String> result = new LinkedHashSet<String>();
-		HashSet<String> visted = new HashSet<String>();
-		getColumnDependanciesRecursive(result, visted, id);
-		// Convert back to a list		
-		return new ArrayList<String>(result);
+		List<String> closure = dependencyClosures.get(id);
+		if(closure == null) return Collections.emptyList();
+		return closure;
 	}
 	
 	/**
@@ -132,10 +154,10 @@ public class ColumnConfigProvider {
 		// To preserve the original order, we start by adding all of the
 		// columns to the set.
 		LinkedHashSet<String> result = new LinkedHashSet<String>(ids);
-		HashSet<String> visted = new HashSet<String>();
-		// Process each column
+		// Process each column. The closures are in depth first order, so
+		// this matches a walk of the graph.
 		for(String id: ids){
-			getColumnDependanciesRecursive(result, visted, id);			
+			result.addAll(getColumnDependancies(id));
 		}
 		// Convert back to a list		
 		return new ArrayList<String>(result);
@@ -190,6 +212,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.dataset.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -197,6 +220,7 @@ public class ColumnConfigProvider {
 		// convert from a string to a list
 		List<String> keyList = splitCommaSeparatedString(additional);
 		additoinalColumns.put(ObjectType.dataset.name(), keyList);
+		compileColumnsForTypes();
 	}
 
 	@Inject
@@ -205,6 +229,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.project.name(), keyList);
+		compileColumnsForTypes();
 	}
 		
 	@Inject
@@ -213,6 +238,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.analysis.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -221,6 +247,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.step.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -229,6 +256,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.code.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -237,6 +265,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.link.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -245,6 +274,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.expressiondata.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -253,6 +283,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.genotypedata.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -261,6 +292,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.phenotypedata.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	@Inject
@@ -269,6 +301,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.robject.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	/**
@@ -316,7 +349,7 @@ public class ColumnConfigProvider {
 	 */
 	private List<String> splitCommaSeparatedString(String defaults) {
 		String[] split = defaults.split(",");
-		List<String> keyList = new LinkedList<String>();
+		List<String> keyList = new ArrayList<String>(split.length);
 		for (int i = 0; i < split.length; i++) {
 			keyList.add(split[i].trim());
 		}
@@ -334,6 +367,7 @@ public class ColumnConfigProvider {
 		List<String> keyList = splitCommaSeparatedString(defaults);
 		// Add this list to the map
 		defaultColumns.put(ObjectType.layer.name(), keyList);
+		compileColumnsForTypes();
 	}
 	
 	/**
@@ -362,15 +396,34 @@ public class ColumnConfigProvider {
 	public ColumnsForType getColumnsForType(String type){
 		ColumnsForType cft = columnsForTypeCache.get(type);
 		if(cft == null){
+			// Not a valid type, this throws the reason.
 			cft = buildCache(type);
-			columnsForTypeCache.put(type, cft);
 		}
 		return cft;
 		
 	}
+	
+	/**
+	 * Build the columns of every type that has (valid) default columns. The
+	 * setters are only called at startup, so the map is replaced rather than
+	 * updated.
+	 */
+	private synchronized void compileColumnsForTypes() {
+		// No column configuration was found.
+		if(map == null) return;
+		Map<String, ColumnsForType> compiled = new TreeMap<String, ColumnsForType>();
+		for(String type: defaultColumns.keySet()){
+			try{
+				compiled.put(type, buildCache(type));
+			}catch(IllegalArgumentException e){
+				// Reported when the type is requested.
+			}
+		}
+		columnsForTypeCache = Collections.unmodifiableMap(compiled);
+	}
 
 	/**
-	 * Used for lazy initialization
+	 * Build the columns for a type.
 	 * @param type
 	 * @return
 	 */
@@ -384,10 +437,10 @@ public class ColumnConfigProvider {
 		List<String> additionatlColumns = getAdditionalColumnIds(type);
 		// Additional columns is optional
 		if(additionatlColumns == null){
-			additionatlColumns = new LinkedList<String>();
+			additionatlColumns = Collections.emptyList();
 		}
-		List<HeaderData> defaultHeaders = new LinkedList<HeaderData>();
-		List<HeaderData> additionalHeaders = new LinkedList<HeaderData>();
+		List<HeaderData> defaultHeaders = new ArrayList<HeaderData>();
+		List<HeaderData> additionalHeaders = new ArrayList<HeaderData>();
 
 		// First the defaults
 		for(String id: defaultColumns){
@@ -0,0 +1,120 @@
+package org.sagebionetworks.web.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.util.UriTemplate;
+
+/**
+ * A url template split once into its literal parts and variables, so it can
+ * be expanded for every row of a page with a single StringBuilder.
+ * 
+ * Values made only of characters that no part of a URI ever encodes
+ * (letters, digits and "-._~", which covers ids) are copied as they are.
+ * Anything else is expanded by Spring's {@link UriTemplate}, exactly as
+ * before.
+ * 
+ */
+public class CompiledUrlTemplate {
+
+	private String template;
+	private List<String> literals = new ArrayList<String>();
+	private List<String> variableNames = new ArrayList<String>();
+	private UriTemplate uriTemplate;
+	private boolean isLiteralSafe = true;
+
+	public CompiledUrlTemplate(String template) {
+		if (template == null)
+			throw new IllegalArgumentException("Template cannot be null");
+		this.template = template;
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while (i < template.length()) {
+			char c = template.charAt(i);
+			int end = c == '{' ? template.indexOf('}', i) : -1;
+			if (end < 0) {
+				literal.append(c);
+				i++;
+				continue;
+			}
+			String variable = template.substring(i + 1, end);
+			// {name:pattern}
+			int colon = variable.indexOf(':');
+			variableNames.add((colon < 0 ? variable : variable.substring(0, colon)).trim());
+			literals.add(literal.toString());
+			literal.setLength(0);
+			i = end + 1;
+		}
+		// the text after the last variable
+		literals.add(literal.toString());
+		for (String part : literals) {
+			isLiteralSafe &= isLegal(part);
+		}
+	}
+
+	/**
+	 * @return the variables, in the order {@link #expand(Object[])} expects
+	 *         their values
+	 */
+	public List<String> getVariableNames() {
+		return variableNames;
+	}
+
+	/**
+	 * @param values
+	 *            one per variable name (null for no value)
+	 * @return
+	 */
+	public String expand(Object[] values) {
+		if (!isLiteralSafe)
+			return expandWithSpring(values);
+		StringBuilder builder = new StringBuilder(template.length() + 16);
+		for (int i = 0; i < variableNames.size(); i++) {
+			builder.append(literals.get(i));
+			String value = values[i] == null ? "" : values[i].toString();
+			if (!isUnreserved(value))
+				return expandWithSpring(values);
+			builder.append(value);
+		}
+		builder.append(literals.get(variableNames.size()));
+		return builder.toString();
+	}
+
+	private String expandWithSpring(Object[] values) {
+		if (uriTemplate == null)
+			uriTemplate = new UriTemplate(template);
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < variableNames.size(); i++) {
+			map.put(variableNames.get(i), values[i]);
+		}
+		return uriTemplate.expand(map).toString();
+	}
+
+	/**
+	 * Characters that may appear in a URI as they are.
+	 */
+	private static boolean isLegal(String literal) {
+		for (int i = 0; i < literal.length(); i++) {
+			char c = literal.charAt(i);
+			if (!isUnreserved(String.valueOf(c)) && ":/?#@!$&'()*+,;=".indexOf(c) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Unreserved characters (RFC 3986) are never encoded.
+	 */
+	public static boolean isUnreserved(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			boolean unreserved = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+					|| c == '-' || c == '.' || c == '_' || c == '~';
+			if (!unreserved)
+				return false;
+		}
+		return true;
+	}
+}
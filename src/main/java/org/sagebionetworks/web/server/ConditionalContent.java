@@ -0,0 +1,26 @@
+package org.sagebionetworks.web.server;
+
+/**
+ * Content fetched with a conditional GET, with the validators of the response
+ * that carried it. The validators only describe this content, so they are
+ * kept once the content is (and not before).
+ * 
+ */
+public class ConditionalContent {
+
+	private final String content;
+	private final CacheValidators validators;
+
+	public ConditionalContent(String content, CacheValidators validators) {
+		this.content = content;
+		this.validators = validators;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public CacheValidators getValidators() {
+		return validators;
+	}
+}
@@ -0,0 +1,33 @@
+package org.sagebionetworks.web.server;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * The single pool of HTTP connections used for every outbound call the portal
+ * makes (other than those made by the Synapse Java client).
+ * 
+ */
+public interface HttpClientPool {
+
+	/**
+	 * A thread-safe client backed by the shared connection pool. Callers must
+	 * consume or close each response so its connection is returned to the pool.
+	 * 
+	 * @return
+	 */
+	public HttpClient getHttpClient();
+
+	/**
+	 * Current totals across all routes (leased, pending, available and max),
+	 * used to spot saturation under load.
+	 * 
+	 * @return
+	 */
+	public PoolStats getTotalStats();
+
+	/**
+	 * Close all pooled connections and stop idle eviction.
+	 */
+	public void shutdown();
+}
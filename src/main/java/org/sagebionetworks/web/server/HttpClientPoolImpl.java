@@ -0,0 +1,143 @@
+package org.sagebionetworks.web.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Sets up the shared connection pool in a thread-safe manner. Guice will
+ * inject the configuration properties.
+ * 
+ * Connections are kept alive for reuse (for no longer than the configured
+ * keep-alive time, even when the server allows more), and a background task
+ * closes expired and idle connections so that stale sockets are not handed out.
+ * 
+ */
+public class HttpClientPoolImpl implements HttpClientPool {
+
+	private static Logger logger = Logger.getLogger(HttpClientPoolImpl.class.getName());
+
+	public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+	public static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+	public static final int DEFAULT_READ_TIMEOUT_MS = 20000;
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS = 10000;
+	public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+	public static final long DEFAULT_KEEP_ALIVE_MS = 30000;
+
+	private PoolingHttpClientConnectionManager connectionManager;
+	private CloseableHttpClient client;
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Used when a pool is needed outside of Guice (static utilities and tests).
+	 */
+	public HttpClientPoolImpl() {
+		this(DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE,
+				DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS,
+				DEFAULT_CONNECTION_REQUEST_TIMEOUT_MS, DEFAULT_IDLE_TIMEOUT_MS,
+				DEFAULT_KEEP_ALIVE_MS);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public HttpClientPoolImpl(
+			@Named("org.sagebionetworks.portal.http.max.total.connections") int maxTotalConnections,
+			@Named("org.sagebionetworks.portal.http.max.connections.per.route") int maxConnectionsPerRoute,
+			@Named("org.sagebionetworks.portal.http.connect.timeout.ms") int connectTimeoutMs,
+			@Named("org.sagebionetworks.portal.http.read.timeout.ms") int readTimeoutMs,
+			@Named("org.sagebionetworks.portal.http.connection.request.timeout.ms") int connectionRequestTimeoutMs,
+			@Named("org.sagebionetworks.portal.http.idle.timeout.ms") final long idleTimeoutMs,
+			@Named("org.sagebionetworks.portal.http.keep.alive.ms") final long keepAliveMs) {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxTotalConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		connectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(readTimeoutMs).build());
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeoutMs)
+				.setSocketTimeout(readTimeoutMs)
+				.setConnectionRequestTimeout(connectionRequestTimeoutMs)
+				.build();
+
+		ConnectionKeepAliveStrategy keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				// honor the server's Keep-Alive header, but never hold a connection longer than our own limit
+				long serverKeepAlive = super.getKeepAliveDuration(response, context);
+				if (serverKeepAlive > 0 && serverKeepAlive < keepAliveMs) {
+					return serverKeepAlive;
+				}
+				return keepAliveMs;
+			}
+		};
+
+		client = HttpClientBuilder.create()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.setKeepAliveStrategy(keepAliveStrategy)
+				.build();
+
+		evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "portal-http-idle-evictor");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		long evictionPeriodMs = Math.max(idleTimeoutMs / 2, 1000);
+		evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					connectionManager.closeExpiredConnections();
+					connectionManager.closeIdleConnections(idleTimeoutMs, TimeUnit.MILLISECONDS);
+					PoolStats stats = connectionManager.getTotalStats();
+					if (stats.getPending() > 0) {
+						// requests are waiting on a connection, so the pool is too small for the load
+						logger.warning("HTTP connection pool is saturated: " + stats);
+					}
+				} catch (Throwable e) {
+					logger.throwing(HttpClientPoolImpl.class.getName(), "evictIdleConnections()", e);
+				}
+			}
+		}, evictionPeriodMs, evictionPeriodMs, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public HttpClient getHttpClient() {
+		return client;
+	}
+
+	@Override
+	public PoolStats getTotalStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	@Override
+	public void shutdown() {
+		evictor.shutdownNow();
+		connectionManager.shutdown();
+	}
+
+}
@@ -8,23 +8,50 @@ import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.BasicResponseHandler;
-import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.util.EntityUtils;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.google.inject.Inject;
+
 public class HttpUtils {
 	private static Logger logger = Logger.getLogger(HttpUtils.class.getName());
 
+	private static HttpClientPool httpClientPool;
+
+	/**
+	 * Injected via Guice (static injection) so these utilities share the portal's connection pool.
+	 * @param pool
+	 */
+	@Inject
+	public static void setHttpClientPool(HttpClientPool pool) {
+		httpClientPool = pool;
+	}
+
+	/**
+	 * The shared connection pool. Outside of Guice (tests), a default pool is created on first use.
+	 * @return
+	 */
+	public static synchronized HttpClientPool getHttpClientPool() {
+		if (httpClientPool == null) {
+			httpClientPool = new HttpClientPoolImpl();
+		}
+		return httpClientPool;
+	}
 	
     public static String httpGet(String url) throws ClientProtocolException, IOException {
     	return httpGet(url, null);
@@ -33,37 +60,77 @@ public class HttpUtils {
 	public static String httpGet(String url, Map<String,String> params) throws ClientProtocolException, IOException {
         String responseString = null;
 
-        HttpClient httpclient = new DefaultHttpClient();        
-        try {        	
-        	String fullUrl = url + "?" + paramsToString(params);
-        	logger.info("GET:" + fullUrl);
-            HttpGet httpGet = new HttpGet(fullUrl);                      
-            ResponseHandler<String> responseHandler = new BasicResponseHandler();
-            responseString = httpclient.execute(httpGet, responseHandler);            
-        } finally {
-            httpclient.getConnectionManager().shutdown();
-        }
+        HttpClient httpclient = getHttpClientPool().getHttpClient();
+        String fullUrl = url + "?" + paramsToString(params);
+        logger.info("GET:" + fullUrl);
+        HttpGet httpGet = new HttpGet(fullUrl);                      
+        // the response handler consumes the entity, which returns the connection to the pool
+        ResponseHandler<String> responseHandler = new BasicResponseHandler();
+        responseString = httpclient.execute(httpGet, responseHandler);            
         
         return responseString;
 	}
 
+	/**
+	 * GET that only transfers the body when it changed since the copy the
+	 * validators describe (If-None-Match / If-Modified-Since). The given
+	 * validators are not changed: the ones of the response come back with the
+	 * body, for the caller to keep once it has stored the body.
+	 * 
+	 * @param url
+	 * @param params
+	 *            may be null
+	 * @param validators
+	 * @return the body and its validators, or null when the source answered
+	 *         304 Not Modified
+	 * @throws IOException
+	 */
+	public static ConditionalContent httpGetIfModified(String url, Map<String,String> params, CacheValidators validators) throws IOException {
+		HttpClient httpclient = getHttpClientPool().getHttpClient();
+		String fullUrl = params == null || params.isEmpty() ? url : url + "?" + paramsToString(params);
+		logger.info("Conditional GET:" + fullUrl);
+		HttpGet httpGet = new HttpGet(fullUrl);
+		if (validators.getEtag() != null)
+			httpGet.setHeader("If-None-Match", validators.getEtag());
+		if (validators.getLastModified() != null)
+			httpGet.setHeader("If-Modified-Since", validators.getLastModified());
+		// the response handler consumes the entity, which returns the connection to the pool
+		return httpclient.execute(httpGet, new ResponseHandler<ConditionalContent>() {
+			@Override
+			public ConditionalContent handleResponse(HttpResponse response) throws IOException {
+				int status = response.getStatusLine().getStatusCode();
+				if (status == HttpStatus.SC_NOT_MODIFIED) {
+					EntityUtils.consume(response.getEntity());
+					return null;
+				}
+				if (status >= 300) {
+					EntityUtils.consume(response.getEntity());
+					throw new HttpResponseException(status, response.getStatusLine().getReasonPhrase());
+				}
+				String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+				return new ConditionalContent(body, new CacheValidators(getHeaderValue(response, "ETag"), getHeaderValue(response, "Last-Modified")));
+			}
+		});
+	}
+
+	private static String getHeaderValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
     public static String httpPost(String url, Map<String,String> params) throws ClientProtocolException, IOException {
         String responseString = null;
 
-        HttpClient httpclient = new DefaultHttpClient();
-        try {
-        	logger.info("GET:" + url + " params: " + paramsToString(params));
-            HttpPost httppost = new HttpPost(url);
-            List <NameValuePair> nvps = new ArrayList <NameValuePair>();
-            for(String key : params.keySet()) {
-                nvps.add(new BasicNameValuePair(key, params.get(key)));
-            }
-            httppost.setEntity(new UrlEncodedFormEntity(nvps, HTTP.UTF_8));
-            ResponseHandler<String> responseHandler = new BasicResponseHandler();
-            responseString = httpclient.execute(httppost, responseHandler);            
-        } finally {
-            httpclient.getConnectionManager().shutdown();
+        HttpClient httpclient = getHttpClientPool().getHttpClient();
+        logger.info("GET:" + url + " params: " + paramsToString(params));
+        HttpPost httppost = new HttpPost(url);
+        List <NameValuePair> nvps = new ArrayList <NameValuePair>();
+        for(String key : params.keySet()) {
+            nvps.add(new BasicNameValuePair(key, params.get(key)));
         }
+        httppost.setEntity(new UrlEncodedFormEntity(nvps, HTTP.UTF_8));
+        ResponseHandler<String> responseHandler = new BasicResponseHandler();
+        responseString = httpclient.execute(httppost, responseHandler);            
             
         return responseString;
     }
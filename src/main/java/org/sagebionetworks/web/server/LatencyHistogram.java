@@ -0,0 +1,109 @@
+package org.sagebionetworks.web.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lock-free latency histogram with fixed, roughly logarithmic buckets, so
+ * recording is a couple of atomic increments and memory does not grow with
+ * traffic. Percentiles are reported as the upper bound of the bucket they
+ * fall in (never more than the largest value seen).
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds (inclusive) of the buckets in milliseconds. A last,
+	 * unbounded bucket holds anything slower.
+	 */
+	public static final long[] BUCKET_BOUNDS_MS = new long[] {
+		1, 2, 3, 5, 7, 10, 15, 20, 30, 50, 70, 100, 150, 200, 300, 500, 700,
+		1000, 1500, 2000, 3000, 5000, 7000, 10000, 15000, 20000, 30000, 60000
+	};
+
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKET_BOUNDS_MS.length + 1);
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong errorCount = new AtomicLong();
+	private AtomicLong totalMs = new AtomicLong();
+	private AtomicLong maxMs = new AtomicLong();
+
+	public void record(long elapsedMs, boolean isError) {
+		buckets.incrementAndGet(getBucket(elapsedMs));
+		count.incrementAndGet();
+		if (isError)
+			errorCount.incrementAndGet();
+		totalMs.addAndGet(elapsedMs);
+		long max;
+		while (elapsedMs > (max = maxMs.get())) {
+			if (maxMs.compareAndSet(max, elapsedMs))
+				break;
+		}
+	}
+
+	private static int getBucket(long elapsedMs) {
+		for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+			if (elapsedMs <= BUCKET_BOUNDS_MS[i])
+				return i;
+		}
+		return BUCKET_BOUNDS_MS.length;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	public long getMaxMs() {
+		return maxMs.get();
+	}
+
+	public double getMeanMs() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) totalMs.get() / n;
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, or zero
+	 *         when nothing was recorded
+	 */
+	public long getPercentileMs(double percentile) {
+		long total = 0;
+		long[] snapshot = new long[buckets.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100.0 * total);
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0) {
+				long max = maxMs.get();
+				return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], max) : max;
+			}
+		}
+		return maxMs.get();
+	}
+
+	public JSONObject toJSON() throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put("count", getCount());
+		json.put("errors", getErrorCount());
+		json.put("meanMs", Math.round(getMeanMs() * 10) / 10.0);
+		json.put("p50Ms", getPercentileMs(50));
+		json.put("p90Ms", getPercentileMs(90));
+		json.put("p99Ms", getPercentileMs(99));
+		json.put("maxMs", getMaxMs());
+		return json;
+	}
+}
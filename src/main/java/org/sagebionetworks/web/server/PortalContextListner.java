@@ -1,5 +1,12 @@
 package org.sagebionetworks.web.server;
 
+import javax.servlet.ServletContextEvent;
+
+import org.sagebionetworks.web.server.servlet.ExternalContentCache;
+import org.sagebionetworks.web.server.servlet.FanOutExecutor;
+import org.sagebionetworks.web.server.servlet.SynapseProvider;
+import org.sagebionetworks.web.server.servlet.WikiPageCache;
+
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.servlet.GuiceServletContextListener;
@@ -12,11 +19,26 @@ import com.google.inject.servlet.GuiceServletContextListener;
  */
 public class PortalContextListner extends GuiceServletContextListener {
 
+	private Injector injector;
+
 	@Override
 	protected Injector getInjector() {
 		// This is where we get to set the injector for our servlets
-		return Guice.createInjector(new PortalServletModule());
+		injector = Guice.createInjector(new PortalServletModule());
+		return injector;
 	}
 
+	@Override
+	public void contextDestroyed(ServletContextEvent servletContextEvent) {
+		// release the shared thread pools before the container unloads our classes
+		if (injector != null) {
+			injector.getInstance(FanOutExecutor.class).shutdown();
+			injector.getInstance(HttpClientPool.class).shutdown();
+			injector.getInstance(WikiPageCache.class).shutdown();
+			injector.getInstance(ExternalContentCache.class).shutdown();
+			injector.getInstance(SynapseProvider.class).shutdown();
+		}
+		super.contextDestroyed(servletContextEvent);
+	}
 
 }
@@ -0,0 +1,67 @@
+package org.sagebionetworks.web.server;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-memory request metrics of this portal instance: latency histograms,
+ * in-flight gauges, error counts and payload sizes per request (GWT RPC
+ * calls are named after their method), latency histograms of the calls
+ * made to the Synapse repository, and counts of notable events.
+ *
+ */
+public interface PortalMetrics {
+
+	/**
+	 * A request started (in-flight gauge).
+	 *
+	 * @param name
+	 *            the servlet path, plus the method for RPC calls
+	 */
+	public void requestStarted(String name);
+
+	/**
+	 * A request finished.
+	 *
+	 * @param name
+	 * @param elapsedMs
+	 * @param requestBytes
+	 *            unknown sizes are negative and not counted
+	 * @param responseBytes
+	 * @param isError
+	 */
+	public void requestFinished(String name, long elapsedMs, long requestBytes, long responseBytes, boolean isError);
+
+	/**
+	 * Time of a step inside a request (markdown rendering, for example).
+	 *
+	 * @param name
+	 * @param elapsedMs
+	 */
+	public void recordTime(String name, long elapsedMs);
+
+	/**
+	 * Count an event (a fallback taken, for example).
+	 *
+	 * @param name
+	 */
+	public void increment(String name);
+
+	/**
+	 * A call to the Synapse repository finished.
+	 *
+	 * @param method
+	 *            the client method
+	 * @param elapsedMs
+	 * @param isError
+	 */
+	public void recordSynapseCall(String method, long elapsedMs, boolean isError);
+
+	/**
+	 * Everything recorded so far, with percentiles.
+	 *
+	 * @return
+	 * @throws JSONException
+	 */
+	public JSONObject toJSON() throws JSONException;
+}
@@ -0,0 +1,133 @@
+package org.sagebionetworks.web.server;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Metrics are kept per name for the life of the instance. The number of
+ * names is capped (request paths come from the outside), anything past the
+ * cap is recorded under {@link #OTHER}.
+ *
+ */
+public class PortalMetricsImpl implements PortalMetrics {
+
+	public static final int MAX_NAMES = 1000;
+	public static final String OTHER = "other";
+
+	private ConcurrentMap<String, RequestMetric> requests = new ConcurrentHashMap<String, RequestMetric>();
+	private ConcurrentMap<String, LatencyHistogram> synapseCalls = new ConcurrentHashMap<String, LatencyHistogram>();
+	private ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<String, LatencyHistogram>();
+	private ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private long startedOn = System.currentTimeMillis();
+
+	@Override
+	public void requestStarted(String name) {
+		getRequestMetric(name).inFlight.incrementAndGet();
+	}
+
+	@Override
+	public void requestFinished(String name, long elapsedMs, long requestBytes, long responseBytes, boolean isError) {
+		RequestMetric metric = getRequestMetric(name);
+		metric.inFlight.decrementAndGet();
+		metric.latency.record(elapsedMs, isError);
+		if (requestBytes > 0)
+			metric.requestBytes.addAndGet(requestBytes);
+		if (responseBytes > 0)
+			metric.responseBytes.addAndGet(responseBytes);
+	}
+
+	@Override
+	public void recordTime(String name, long elapsedMs) {
+		getHistogram(timers, name).record(elapsedMs, false);
+	}
+
+	@Override
+	public void increment(String name) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			if (counters.size() >= MAX_NAMES)
+				name = OTHER;
+			AtomicLong created = new AtomicLong();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null)
+				counter = created;
+		}
+		counter.incrementAndGet();
+	}
+
+	@Override
+	public void recordSynapseCall(String method, long elapsedMs, boolean isError) {
+		getHistogram(synapseCalls, method).record(elapsedMs, isError);
+	}
+
+	private RequestMetric getRequestMetric(String name) {
+		RequestMetric metric = requests.get(name);
+		if (metric == null) {
+			if (requests.size() >= MAX_NAMES)
+				name = OTHER;
+			RequestMetric created = new RequestMetric();
+			metric = requests.putIfAbsent(name, created);
+			if (metric == null)
+				metric = created;
+		}
+		return metric;
+	}
+
+	private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> map, String name) {
+		LatencyHistogram histogram = map.get(name);
+		if (histogram == null) {
+			if (map.size() >= MAX_NAMES)
+				name = OTHER;
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = map.putIfAbsent(name, created);
+			if (histogram == null)
+				histogram = created;
+		}
+		return histogram;
+	}
+
+	@Override
+	public JSONObject toJSON() throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put("startedOn", startedOn);
+		JSONObject requestsJson = new JSONObject();
+		for (Map.Entry<String, RequestMetric> entry : requests.entrySet()) {
+			RequestMetric metric = entry.getValue();
+			JSONObject metricJson = metric.latency.toJSON();
+			metricJson.put("inFlight", metric.inFlight.get());
+			metricJson.put("requestBytes", metric.requestBytes.get());
+			metricJson.put("responseBytes", metric.responseBytes.get());
+			requestsJson.put(entry.getKey(), metricJson);
+		}
+		json.put("requests", requestsJson);
+		json.put("synapseCalls", toJSON(synapseCalls));
+		json.put("timers", toJSON(timers));
+		JSONObject countersJson = new JSONObject();
+		for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+			countersJson.put(entry.getKey(), entry.getValue().get());
+		}
+		json.put("counters", countersJson);
+		return json;
+	}
+
+	private static JSONObject toJSON(Map<String, LatencyHistogram> map) throws JSONException {
+		JSONObject json = new JSONObject();
+		for (Map.Entry<String, LatencyHistogram> entry : map.entrySet()) {
+			json.put(entry.getKey(), entry.getValue().toJSON());
+		}
+		return json;
+	}
+
+	private static class RequestMetric {
+		LatencyHistogram latency = new LatencyHistogram();
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicLong requestBytes = new AtomicLong();
+		AtomicLong responseBytes = new AtomicLong();
+	}
+}
@@ -9,6 +9,12 @@ import java.util.logging.Logger;
 
 import org.sagebionetworks.schema.adapter.JSONObjectAdapter;
 import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
+import org.sagebionetworks.web.server.servlet.ExternalContentCache;
+import org.sagebionetworks.web.server.servlet.ExternalContentCacheImpl;
+import org.sagebionetworks.web.server.servlet.ChallengeAggregator;
+import org.sagebionetworks.web.server.servlet.ChallengeAggregatorImpl;
+import org.sagebionetworks.web.server.servlet.FanOutExecutor;
+import org.sagebionetworks.web.server.servlet.FanOutExecutorImpl;
 import org.sagebionetworks.web.server.servlet.FileAttachmentServlet;
 import org.sagebionetworks.web.server.servlet.FileHandleServlet;
 import org.sagebionetworks.web.server.servlet.FileUpload;
@@ -19,6 +25,7 @@ import org.sagebionetworks.web.server.servlet.JiraJavaClientImpl;
 import org.sagebionetworks.web.server.servlet.LayoutServiceImpl;
 import org.sagebionetworks.web.server.servlet.LicenseServiceImpl;
 import org.sagebionetworks.web.server.servlet.LinkedInServiceImpl;
+import org.sagebionetworks.web.server.servlet.MetricsServlet;
 import org.sagebionetworks.web.server.servlet.NcboSearchService;
 import org.sagebionetworks.web.server.servlet.ProjectServiceImpl;
 import org.sagebionetworks.web.server.servlet.RssServiceImpl;
@@ -27,8 +34,18 @@ import org.sagebionetworks.web.server.servlet.SimpleFileHandleUploadServlet;
 import org.sagebionetworks.web.server.servlet.SimpleSearchService;
 import org.sagebionetworks.web.server.servlet.StackConfigServiceImpl;
 import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
+import org.sagebionetworks.web.server.servlet.SynapseProvider;
+import org.sagebionetworks.web.server.servlet.SynapseProviderImpl;
 import org.sagebionetworks.web.server.servlet.UserAccountServiceImpl;
 import org.sagebionetworks.web.server.servlet.UserProfileAttachmentServlet;
+import org.sagebionetworks.web.server.servlet.PresignedUrlCache;
+import org.sagebionetworks.web.server.servlet.PresignedUrlCacheImpl;
+import org.sagebionetworks.web.server.servlet.ProxyDownloader;
+import org.sagebionetworks.web.server.servlet.ProxyDownloaderImpl;
+import org.sagebionetworks.web.server.servlet.StreamingFileUploader;
+import org.sagebionetworks.web.server.servlet.StreamingFileUploaderImpl;
+import org.sagebionetworks.web.server.servlet.WikiPageCache;
+import org.sagebionetworks.web.server.servlet.WikiPageCacheImpl;
 import org.sagebionetworks.web.server.servlet.filter.DreamFilter;
 import org.sagebionetworks.web.server.servlet.filter.RPCValidationFilter;
 import org.sagebionetworks.web.server.servlet.filter.TimingFilter;
@@ -139,15 +156,50 @@ public class PortalServletModule extends ServletModule {
 		// Setup the Rss service mapping
 		bind(RssServiceImpl.class).in(Singleton.class);
 		serve("/Portal/rss").with(RssServiceImpl.class);
+		
+		// Setup the metrics endpoint (internal addresses only, see MetricsServlet)
+		bind(MetricsServlet.class).in(Singleton.class);
+		serve("/Portal/metrics").with(MetricsServlet.class);
 				
 		// Setup the OpenID service mapping
 		bind(OpenIDServlet.class).in(Singleton.class);
 		serve(WebConstants.OPEN_ID_URI).with(OpenIDServlet.class);
 		serve(OpenIDUtils.OPENID_CALLBACK_URI).with(OpenIDServlet.class);
 		
+		// One connection pool is shared by every outbound call.
+		bind(HttpClientPoolImpl.class).in(Singleton.class);
+		bind(HttpClientPool.class).to(HttpClientPoolImpl.class);
+		requestStaticInjection(HttpUtils.class);
 		// The Rest template provider should be a singleton.
 		bind(RestTemplateProviderImpl.class).in(Singleton.class);
 		bind(RestTemplateProvider.class).to(RestTemplateProviderImpl.class);
+		// The fan-out pool is shared by all services.
+		bind(FanOutExecutorImpl.class).in(Singleton.class);
+		bind(FanOutExecutor.class).to(FanOutExecutorImpl.class);
+		// Wiki page json is cached across all users.
+		bind(WikiPageCacheImpl.class).in(Singleton.class);
+		bind(WikiPageCache.class).to(WikiPageCacheImpl.class);
+		// Streaming uploads share one memory budget.
+		bind(StreamingFileUploaderImpl.class).in(Singleton.class);
+		bind(StreamingFileUploader.class).to(StreamingFileUploaderImpl.class);
+		// Proxied downloads share one set of concurrency and buffer limits.
+		bind(ProxyDownloaderImpl.class).in(Singleton.class);
+		bind(ProxyDownloader.class).to(ProxyDownloaderImpl.class);
+		// Resolved pre-signed urls are shared across requests (keyed by user).
+		bind(PresignedUrlCacheImpl.class).in(Singleton.class);
+		bind(PresignedUrlCache.class).to(PresignedUrlCacheImpl.class);
+		// Challenge participant answers are shared across requests (keyed by user).
+		bind(ChallengeAggregatorImpl.class).in(Singleton.class);
+		bind(ChallengeAggregator.class).to(ChallengeAggregatorImpl.class);
+		// Configured Synapse clients are reused across requests.
+		bind(SynapseProviderImpl.class).in(Singleton.class);
+		bind(SynapseProvider.class).to(SynapseProviderImpl.class);
+		// Request and repository call metrics are kept for the whole instance.
+		bind(PortalMetricsImpl.class).in(Singleton.class);
+		bind(PortalMetrics.class).to(PortalMetricsImpl.class);
+		// External content (news feed, Confluence pages) is refreshed once for all users.
+		bind(ExternalContentCacheImpl.class).in(Singleton.class);
+		bind(ExternalContentCache.class).to(ExternalContentCacheImpl.class);
 		// Bind the properties from the config file
 		bindPropertiesFromFile("ServerConstants.properties");
 		
@@ -54,16 +54,20 @@ public class UrlTemplateUtil {
 	 */
 	public static void processUrlTempalte(UrlTemplate meta, List<Map<String, Object>> rows){
 		if (meta.getUrlTemplate() != null) {
-			UriTemplate template = new UriTemplate(meta.getUrlTemplate());
-			List<String> variables = template.getVariableNames(); 
-			if (variables != null) {
-				// Now process each row
-				for(Map<String, Object> row: rows){
-					// Bind the variables to their values for this row
-					URI uri = template.expand(row);
-					// Add this value back to the row
-					row.put(meta.getId(), uri.toString());
+			CompiledUrlTemplate template = new CompiledUrlTemplate(meta.getUrlTemplate());
+			List<String> variables = template.getVariableNames();
+			Object[] values = new Object[variables.size()];
+			// Now process each row
+			for(Map<String, Object> row: rows){
+				// Bind the variables to their values for this row
+				for(int i=0; i<values.length; i++){
+					String name = variables.get(i);
+					// A missing variable is an error
+					if(!row.containsKey(name)) throw new IllegalArgumentException("Map has no value for '" + name + "'");
+					values[i] = row.get(name);
 				}
+				// Add this value back to the row
+				row.put(meta.getId(), template.expand(values));
 			}
 		}
 	}
@@ -0,0 +1,76 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.evaluation.model.Evaluation;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Answers the challenge participant questions that need one repository call
+ * per evaluation, making those calls concurrently. Answers are kept briefly
+ * per user (session), so the pages that ask the same question again do not
+ * repeat the calls. Anonymous requests are never cached.
+ *
+ */
+public interface ChallengeAggregator {
+
+	/**
+	 * Creates clients configured for the user. Only called on the request
+	 * thread: once for the first call, then once for each call fanned out.
+	 */
+	public interface ClientFactory {
+		public SynapseClient createClient();
+	}
+
+	/**
+	 * Has the user made a submission to any of the evaluations they can
+	 * submit to?
+	 *
+	 * @param clients
+	 * @return
+	 * @throws ExecutionException
+	 *             if a repository call failed (the cause is the call's
+	 *             exception, or a TimeoutException)
+	 */
+	public boolean hasSubmitted(ClientFactory clients) throws ExecutionException;
+
+	/**
+	 * The distinct submitter aliases the user has used across the evaluations
+	 * they can submit to, most recently used first. Null and empty aliases are
+	 * left out.
+	 *
+	 * @param clients
+	 * @return
+	 * @throws ExecutionException
+	 */
+	public List<String> getSubmitterAliases(ClientFactory clients) throws ExecutionException;
+
+	/**
+	 * The evaluations of the given entity for which the user can change
+	 * permissions.
+	 *
+	 * @param clients
+	 * @param entityId
+	 * @return
+	 * @throws ExecutionException
+	 */
+	public List<Evaluation> getSharableEvaluations(ClientFactory clients, String entityId) throws ExecutionException;
+
+	/**
+	 * Forget the answers kept for a user, after a change they made (a new
+	 * submission, an evaluation ACL update).
+	 *
+	 * @param sessionToken
+	 */
+	public void invalidate(String sessionToken);
+
+	/**
+	 * Hit, miss and eviction counts.
+	 *
+	 * @return
+	 */
+	public CacheStats getStats();
+}
@@ -0,0 +1,235 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.evaluation.model.Evaluation;
+import org.sagebionetworks.evaluation.model.Submission;
+import org.sagebionetworks.evaluation.model.UserEvaluationPermissions;
+import org.sagebionetworks.repo.model.PaginatedResults;
+
+import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Fans the per-evaluation calls out on the shared FanOutExecutor, each with
+ * its own client. hasSubmitted stops at the first evaluation with a
+ * submission, and the submitter aliases are merged into the latest use of
+ * each one, so only the distinct aliases are sorted rather than every
+ * submission.
+ *
+ * Answers are cached by session token, method and parameters for the
+ * configured time to live (a max size of 0 turns caching off).
+ *
+ */
+public class ChallengeAggregatorImpl implements ChallengeAggregator {
+
+	public static final long DEFAULT_MAX_SIZE = 10000;
+	public static final long DEFAULT_TTL_SECONDS = 30;
+
+	private static final int ALL_OFFSET = 0;
+	private static final int ALL_LIMIT = Integer.MAX_VALUE;
+
+	private FanOutExecutor fanOutExecutor;
+	private Cache<String, Object> cache;
+
+	/**
+	 * Used when the servlet is not created by Guice (tests).
+	 */
+	public ChallengeAggregatorImpl() {
+		this(new FanOutExecutorImpl(), DEFAULT_MAX_SIZE, DEFAULT_TTL_SECONDS);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public ChallengeAggregatorImpl(FanOutExecutor fanOutExecutor,
+			@Named("org.sagebionetworks.portal.challenge.cache.max.size") long maxSize,
+			@Named("org.sagebionetworks.portal.challenge.cache.ttl.seconds") long ttlSeconds) {
+		this.fanOutExecutor = fanOutExecutor;
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public boolean hasSubmitted(final ClientFactory clients) throws ExecutionException {
+		final SynapseClient client = clients.createClient();
+		return get(client, new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				List<Callable<PaginatedResults<Submission>>> calls = new ArrayList<Callable<PaginatedResults<Submission>>>();
+				for (Evaluation evaluation : client.getAvailableEvaluationsPaginated(ALL_OFFSET, ALL_LIMIT).getResults()) {
+					// only the count is needed
+					calls.add(createGetMySubmissionsCall(clients.createClient(), evaluation.getId(), 0));
+				}
+				FanOutResult<PaginatedResults<Submission>> result = fanOutExecutor.invokeFirst(calls, new Predicate<PaginatedResults<Submission>>() {
+					@Override
+					public boolean apply(PaginatedResults<Submission> submissions) {
+						return submissions.getTotalNumberOfResults() > 0;
+					}
+				});
+				PaginatedResults<Submission> submissions = getValue(result);
+				return submissions != null && submissions.getTotalNumberOfResults() > 0;
+			}
+		}, "hasSubmitted");
+	}
+
+	@Override
+	public List<String> getSubmitterAliases(final ClientFactory clients) throws ExecutionException {
+		final SynapseClient client = clients.createClient();
+		return get(client, new Callable<List<String>>() {
+			@Override
+			public List<String> call() throws Exception {
+				List<Callable<PaginatedResults<Submission>>> calls = new ArrayList<Callable<PaginatedResults<Submission>>>();
+				for (Evaluation evaluation : client.getAvailableEvaluationsPaginated(ALL_OFFSET, ALL_LIMIT).getResults()) {
+					calls.add(createGetMySubmissionsCall(clients.createClient(), evaluation.getId(), ALL_LIMIT));
+				}
+				// the latest use of each alias
+				Map<String, Long> lastUsed = new HashMap<String, Long>();
+				for (FanOutResult<PaginatedResults<Submission>> result : fanOutExecutor.invokeAll(calls)) {
+					for (Submission submission : getValue(result).getResults()) {
+						String alias = submission.getSubmitterAlias();
+						if (alias == null || alias.length() == 0)
+							continue;
+						long createdOn = submission.getCreatedOn() == null ? 0 : submission.getCreatedOn().getTime();
+						Long previous = lastUsed.get(alias);
+						if (previous == null || previous < createdOn)
+							lastUsed.put(alias, createdOn);
+					}
+				}
+				return sortByLastUsed(lastUsed);
+			}
+		}, "getSubmitterAliases");
+	}
+
+	@Override
+	public List<Evaluation> getSharableEvaluations(final ClientFactory clients, final String entityId) throws ExecutionException {
+		final SynapseClient client = clients.createClient();
+		return get(client, new Callable<List<Evaluation>>() {
+			@Override
+			public List<Evaluation> call() throws Exception {
+				List<Evaluation> evaluations = client.getEvaluationByContentSource(entityId, ALL_OFFSET, ALL_LIMIT).getResults();
+				List<Callable<UserEvaluationPermissions>> calls = new ArrayList<Callable<UserEvaluationPermissions>>();
+				for (final Evaluation evaluation : evaluations) {
+					final SynapseClient evaluationClient = clients.createClient();
+					calls.add(new Callable<UserEvaluationPermissions>() {
+						@Override
+						public UserEvaluationPermissions call() throws Exception {
+							return evaluationClient.getUserEvaluationPermissions(evaluation.getId());
+						}
+					});
+				}
+				List<FanOutResult<UserEvaluationPermissions>> permissions = fanOutExecutor.invokeAll(calls);
+				List<Evaluation> sharable = new ArrayList<Evaluation>();
+				for (int i = 0; i < evaluations.size(); i++) {
+					if (getValue(permissions.get(i)).getCanChangePermissions())
+						sharable.add(evaluations.get(i));
+				}
+				return sharable;
+			}
+		}, "getSharableEvaluations", entityId);
+	}
+
+	@Override
+	public void invalidate(String sessionToken) {
+		if (sessionToken == null)
+			return;
+		String prefix = ServiceUtils.createCacheKey(sessionToken);
+		for (Iterator<String> keys = cache.asMap().keySet().iterator(); keys.hasNext();) {
+			if (keys.next().startsWith(prefix))
+				keys.remove();
+		}
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	/**
+	 * Every alias, latest last use first (by name among equal times).
+	 *
+	 * @param lastUsed
+	 * @return
+	 */
+	public static List<String> sortByLastUsed(Map<String, Long> lastUsed) {
+		List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(lastUsed.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+			@Override
+			public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+				int result = o2.getValue().compareTo(o1.getValue());
+				return result != 0 ? result : o1.getKey().compareTo(o2.getKey());
+			}
+		});
+		List<String> aliases = new ArrayList<String>();
+		for (Map.Entry<String, Long> entry : entries) {
+			aliases.add(entry.getKey());
+		}
+		return aliases;
+	}
+
+	private static Callable<PaginatedResults<Submission>> createGetMySubmissionsCall(final SynapseClient client, final String evaluationId, final long limit) {
+		return new Callable<PaginatedResults<Submission>>() {
+			@Override
+			public PaginatedResults<Submission> call() throws Exception {
+				return client.getMySubmissions(evaluationId, 0, limit);
+			}
+		};
+	}
+
+	private static <T> T getValue(FanOutResult<T> result) throws ExecutionException {
+		if (result.isSuccess())
+			return result.getValue();
+		if (result.isTimedOut())
+			throw new ExecutionException(new TimeoutException("Timed out waiting for a response from Synapse"));
+		throw new ExecutionException(result.getError());
+	}
+
+	/**
+	 * The cached answer for the client's user, running the loader on a miss
+	 * (or every time for anonymous requests).
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T get(SynapseClient client, Callable<T> loader, String... request) throws ExecutionException {
+		String sessionToken = client.getCurrentSessionToken();
+		String key = null;
+		if (sessionToken != null) {
+			String[] parts = new String[request.length + 1];
+			parts[0] = sessionToken;
+			System.arraycopy(request, 0, parts, 1, request.length);
+			key = ServiceUtils.createCacheKey(parts);
+			Object cached = cache.getIfPresent(key);
+			if (cached != null)
+				return (T) cached;
+		}
+		T value;
+		try {
+			value = loader.call();
+		} catch (ExecutionException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ExecutionException(e);
+		}
+		if (key != null)
+			cache.put(key, value);
+		return value;
+	}
+}
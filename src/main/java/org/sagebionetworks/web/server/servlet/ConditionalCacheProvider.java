@@ -0,0 +1,19 @@
+package org.sagebionetworks.web.server.servlet;
+
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
+
+/**
+ * A {@link CacheProvider} whose source supports conditional GETs, so a
+ * refresh of unchanged content costs a "304 Not Modified" round trip.
+ */
+public interface ConditionalCacheProvider extends CacheProvider {
+	/**
+	 * @param validators
+	 *            describe the cached value (empty when there is none); not
+	 *            changed
+	 * @return the new value with the validators that describe it, or null
+	 *         when the source did not change
+	 */
+	ConditionalContent getValueToCacheIfModified(CacheValidators validators);
+}
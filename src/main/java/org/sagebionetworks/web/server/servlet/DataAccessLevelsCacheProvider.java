@@ -1,8 +1,10 @@
 package org.sagebionetworks.web.server.servlet;
 
 import org.sagebionetworks.web.client.ClientProperties;
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
 
-public class DataAccessLevelsCacheProvider implements CacheProvider {
+public class DataAccessLevelsCacheProvider implements ConditionalCacheProvider {
 	@Override
 	public String getCacheProviderId() {
 		return ClientProperties.DATA_ACCESS_LEVELS_PROVIDER_ID;
@@ -13,4 +15,9 @@ public class DataAccessLevelsCacheProvider implements CacheProvider {
 	 	return RssFeedUtils.getWikiPageSourceContent(ClientProperties.DATA_ACCESS_LEVELS_CONTENT_PAGE_ID);
 	}
 
+	@Override
+	public ConditionalContent getValueToCacheIfModified(CacheValidators validators) {
+		return RssFeedUtils.getWikiPageSourceContentIfModified(ClientProperties.DATA_ACCESS_LEVELS_CONTENT_PAGE_ID, validators);
+	}
+
 }
@@ -0,0 +1,47 @@
+package org.sagebionetworks.web.server.servlet;
+
+/**
+ * Content from outside of Synapse (the news feed, Confluence pages) kept in
+ * memory and refreshed in the background. Readers always get the last good
+ * copy, even when it is stale and the source is down, so a slow or failing
+ * source never holds up a page.
+ * 
+ */
+public interface ExternalContentCache {
+
+	/**
+	 * Load the provider's content now, and refresh it every interval. Each
+	 * provider is refreshed on its own schedule, and failing sources are
+	 * retried with an exponential back off.
+	 * 
+	 * @param provider
+	 * @param refreshIntervalMs
+	 */
+	public void register(CacheProvider provider, long refreshIntervalMs);
+
+	/**
+	 * @param cacheProviderId
+	 * @return true if a provider with the given id was registered
+	 */
+	public boolean isRegistered(String cacheProviderId);
+
+	/**
+	 * The last good copy of the content. If the provider was registered but
+	 * its first load is still running, waits for it (no longer than the
+	 * refresh timeout).
+	 * 
+	 * @param cacheProviderId
+	 * @return null if nothing was loaded (yet)
+	 */
+	public String get(String cacheProviderId);
+
+	/**
+	 * Refresh every provider now (in parallel), and wait for them.
+	 */
+	public void refreshAll();
+
+	/**
+	 * Stop the refresh threads.
+	 */
+	public void shutdown();
+}
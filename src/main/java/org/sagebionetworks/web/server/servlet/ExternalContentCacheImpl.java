@@ -0,0 +1,242 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Each provider is refreshed on its own schedule by a small pool, and every
+ * load is bounded by a timeout. A failed or timed out refresh keeps the last
+ * good copy and is retried after {@link #INITIAL_BACKOFF_MS}, doubling with
+ * each consecutive failure (up to the max back off).
+ *
+ */
+public class ExternalContentCacheImpl implements ExternalContentCache {
+	static private Log log = LogFactory.getLog(ExternalContentCacheImpl.class);
+
+	public static final int DEFAULT_REFRESH_THREADS = 2;
+	public static final long DEFAULT_REFRESH_TIMEOUT_MS = 30000;
+	public static final long DEFAULT_MAX_BACKOFF_MINUTES = 60;
+	/**
+	 * Wait before the first retry of a failed refresh.
+	 */
+	public static final long INITIAL_BACKOFF_MS = 15000;
+
+	private ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private ScheduledThreadPoolExecutor scheduler;
+	private ExecutorService loader;
+	private long refreshTimeoutMs;
+	private long maxBackoffMs;
+
+	/**
+	 * Used when the servlet is not created by Guice (tests).
+	 */
+	public ExternalContentCacheImpl() {
+		this(DEFAULT_REFRESH_THREADS, DEFAULT_REFRESH_TIMEOUT_MS, DEFAULT_MAX_BACKOFF_MINUTES);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public ExternalContentCacheImpl(
+			@Named("org.sagebionetworks.portal.external.content.refresh.threads") int refreshThreads,
+			@Named("org.sagebionetworks.portal.external.content.refresh.timeout.ms") long refreshTimeoutMs,
+			@Named("org.sagebionetworks.portal.external.content.max.backoff.minutes") long maxBackoffMinutes) {
+		this.refreshTimeoutMs = refreshTimeoutMs;
+		this.maxBackoffMs = TimeUnit.MINUTES.toMillis(maxBackoffMinutes);
+		scheduler = new ScheduledThreadPoolExecutor(refreshThreads, new ContentThreadFactory("portal-content-refresh-"));
+		// loads run apart from the schedule, so a hung source can be abandoned at the timeout
+		loader = Executors.newCachedThreadPool(new ContentThreadFactory("portal-content-load-"));
+	}
+
+	/**
+	 * @param refreshIntervalMs
+	 * @param consecutiveFailures
+	 * @param maxBackoffMs
+	 * @return how long to wait before the next refresh
+	 */
+	public static long getNextDelayMs(long refreshIntervalMs, int consecutiveFailures, long maxBackoffMs) {
+		if (consecutiveFailures == 0)
+			return refreshIntervalMs;
+		long backoff = INITIAL_BACKOFF_MS << Math.min(consecutiveFailures - 1, 30);
+		return Math.min(backoff, maxBackoffMs);
+	}
+
+	@Override
+	public void register(CacheProvider provider, long refreshIntervalMs) {
+		Entry entry = new Entry(provider, refreshIntervalMs);
+		Entry replaced = entries.put(provider.getCacheProviderId(), entry);
+		if (replaced != null)
+			replaced.isCancelled = true;
+		schedule(entry, 0);
+	}
+
+	@Override
+	public boolean isRegistered(String cacheProviderId) {
+		return entries.containsKey(cacheProviderId);
+	}
+
+	@Override
+	public String get(String cacheProviderId) {
+		Entry entry = entries.get(cacheProviderId);
+		if (entry == null)
+			return null;
+		if (entry.value == null) {
+			try {
+				entry.firstAttempt.await(refreshTimeoutMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return entry.value;
+	}
+
+	@Override
+	public void refreshAll() {
+		List<Future<?>> refreshes = new ArrayList<Future<?>>();
+		for (final Entry entry : entries.values()) {
+			refreshes.add(loader.submit(new Runnable() {
+				@Override
+				public void run() {
+					refresh(entry);
+				}
+			}));
+		}
+		for (Future<?> refresh : refreshes) {
+			try {
+				refresh.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				// refresh() handles its own failures
+			}
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		scheduler.shutdownNow();
+		loader.shutdownNow();
+	}
+
+	private void schedule(final Entry entry, long delayMs) {
+		try {
+			scheduler.schedule(new Runnable() {
+				@Override
+				public void run() {
+					if (entry.isCancelled)
+						return;
+					refresh(entry);
+					schedule(entry, getNextDelayMs(entry.refreshIntervalMs, entry.consecutiveFailures, maxBackoffMs));
+				}
+			}, delayMs, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// shut down
+		}
+	}
+
+	/**
+	 * Load the content, keeping the old copy on failure. One refresh per
+	 * provider runs at a time.
+	 */
+	private void refresh(final Entry entry) {
+		synchronized (entry) {
+			// the validators of the value we have (an abandoned load may still read them)
+			final CacheValidators validators = entry.value == null ? new CacheValidators() : entry.validators;
+			Future<ConditionalContent> load;
+			try {
+				load = loader.submit(new Callable<ConditionalContent>() {
+					@Override
+					public ConditionalContent call() throws Exception {
+						if (entry.provider instanceof ConditionalCacheProvider)
+							return ((ConditionalCacheProvider) entry.provider).getValueToCacheIfModified(validators);
+						return new ConditionalContent(entry.provider.getValueToCache(), new CacheValidators());
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// shut down
+				return;
+			}
+			try {
+				ConditionalContent content = load.get(refreshTimeoutMs, TimeUnit.MILLISECONDS);
+				// null when the source did not change
+				if (content != null) {
+					entry.value = content.getContent();
+					// only now that the value they describe is stored
+					entry.validators = content.getValidators();
+				}
+				entry.consecutiveFailures = 0;
+			} catch (TimeoutException e) {
+				load.cancel(true);
+				failed(entry, "timed out after " + refreshTimeoutMs + " ms");
+			} catch (ExecutionException e) {
+				failed(entry, String.valueOf(e.getCause()));
+			} catch (InterruptedException e) {
+				load.cancel(true);
+				Thread.currentThread().interrupt();
+			} finally {
+				entry.firstAttempt.countDown();
+			}
+		}
+	}
+
+	private void failed(Entry entry, String reason) {
+		entry.consecutiveFailures++;
+		log.warn("Refresh of " + entry.provider.getCacheProviderId() + " failed " + entry.consecutiveFailures
+				+ " time(s) in a row (" + reason + "), " + (entry.value == null ? "nothing to serve" : "serving the last good copy"));
+	}
+
+	private static class Entry {
+		final CacheProvider provider;
+		final long refreshIntervalMs;
+		volatile CacheValidators validators = new CacheValidators();
+		final CountDownLatch firstAttempt = new CountDownLatch(1);
+		volatile String value;
+		volatile int consecutiveFailures = 0;
+		volatile boolean isCancelled = false;
+
+		Entry(CacheProvider provider, long refreshIntervalMs) {
+			this.provider = provider;
+			this.refreshIntervalMs = refreshIntervalMs;
+		}
+	}
+
+	private static class ContentThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger(0);
+		private final String prefix;
+
+		ContentThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
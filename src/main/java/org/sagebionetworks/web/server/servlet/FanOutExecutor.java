@@ -0,0 +1,55 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Predicate;
+
+/**
+ * Abstraction for running independent repository calls concurrently.
+ * 
+ * Tasks run on pool threads, so they must not look up anything bound to the
+ * request thread (such as the session token). Create the Synapse clients on
+ * the request thread and capture them in the tasks.
+ */
+public interface FanOutExecutor {
+
+	/**
+	 * Run all of the given tasks concurrently and wait for them using the
+	 * configured default deadline.
+	 * 
+	 * @param tasks
+	 * @return One result per task, in the same order as the tasks.
+	 */
+	public <T> List<FanOutResult<T>> invokeAll(List<? extends Callable<T>> tasks);
+
+	/**
+	 * Run all of the given tasks concurrently and wait at most the given time
+	 * for them to finish. Tasks still running at the deadline are cancelled
+	 * and reported as timed out.
+	 * 
+	 * @param tasks
+	 * @param timeout
+	 * @param unit
+	 * @return One result per task, in the same order as the tasks.
+	 */
+	public <T> List<FanOutResult<T>> invokeAll(List<? extends Callable<T>> tasks, long timeout, TimeUnit unit);
+
+	/**
+	 * Run all of the given tasks concurrently and return the first value (in
+	 * completion order) that meets the condition, cancelling the tasks still
+	 * running. Waits using the configured default deadline.
+	 * 
+	 * @param tasks
+	 * @param condition
+	 * @return The first value that meets the condition. When none does, the
+	 *         first failure or time out, or else a success with a null value.
+	 */
+	public <T> FanOutResult<T> invokeFirst(List<? extends Callable<T>> tasks, Predicate<? super T> condition);
+
+	/**
+	 * Stop accepting new work and release the pool threads.
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,190 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Predicate;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Runs fan-out tasks on a single bounded pool shared by every RPC. When the
+ * pool and its queue are saturated the calling request thread runs the task
+ * itself, so a burst of traffic degrades to the old serial behavior instead
+ * of failing. A fan-out started from a pool thread (a task that fans out
+ * again) also runs on that thread, so tasks never wait on the pool they hold.
+ * 
+ */
+public class FanOutExecutorImpl implements FanOutExecutor {
+
+	public static final int DEFAULT_MAX_THREADS = 20;
+	public static final int DEFAULT_QUEUE_SIZE = 500;
+	public static final long DEFAULT_TIMEOUT_MS = 30000;
+	private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+	private ThreadPoolExecutor executor;
+	private long defaultTimeoutMs;
+
+	/**
+	 * Used when the servlet is not created by Guice (tests).
+	 */
+	public FanOutExecutorImpl() {
+		this(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_SIZE, DEFAULT_TIMEOUT_MS);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public FanOutExecutorImpl(
+			@Named("org.sagebionetworks.portal.fanout.max.threads") int maxThreads,
+			@Named("org.sagebionetworks.portal.fanout.queue.size") int queueSize,
+			@Named("org.sagebionetworks.portal.fanout.timeout.ms") long defaultTimeoutMs) {
+		if (maxThreads < 1)
+			throw new IllegalArgumentException("Max threads must be at least 1");
+		this.defaultTimeoutMs = defaultTimeoutMs;
+		executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+				IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(queueSize),
+				new FanOutThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		// do not hold on to threads when the portal is idle
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	public <T> List<FanOutResult<T>> invokeAll(List<? extends Callable<T>> tasks) {
+		return invokeAll(tasks, defaultTimeoutMs, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public <T> List<FanOutResult<T>> invokeAll(List<? extends Callable<T>> tasks, long timeout, TimeUnit unit) {
+		List<FanOutResult<T>> results = new ArrayList<FanOutResult<T>>(tasks.size());
+		if (tasks.size() == 1 || isPoolThread()) {
+			// nothing to overlap (or nested), so skip the hand-off to the pool
+			for (Callable<T> task : tasks) {
+				results.add(call(task));
+			}
+			return results;
+		}
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		for (Callable<T> task : tasks) {
+			futures.add(executor.submit(task));
+		}
+		for (Future<T> future : futures) {
+			long remaining = deadline - System.nanoTime();
+			try {
+				results.add(FanOutResult.success(future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS)));
+			} catch (ExecutionException e) {
+				results.add(FanOutResult.<T>failure(e.getCause()));
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				results.add(FanOutResult.<T>timeout());
+			} catch (InterruptedException e) {
+				// the request thread is going away, so give up on the rest
+				future.cancel(true);
+				results.add(FanOutResult.<T>failure(e));
+				Thread.currentThread().interrupt();
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public <T> FanOutResult<T> invokeFirst(List<? extends Callable<T>> tasks, Predicate<? super T> condition) {
+		if (isPoolThread()) {
+			FanOutResult<T> firstError = null;
+			for (Callable<T> task : tasks) {
+				FanOutResult<T> result = call(task);
+				if (result.isSuccess() && condition.apply(result.getValue()))
+					return result;
+				if (!result.isSuccess() && firstError == null)
+					firstError = result;
+			}
+			return firstError != null ? firstError : FanOutResult.<T>success(null);
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(defaultTimeoutMs);
+		CompletionService<T> completionService = new ExecutorCompletionService<T>(executor);
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		FanOutResult<T> firstError = null;
+		try {
+			for (Callable<T> task : tasks) {
+				futures.add(completionService.submit(task));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				long remaining = deadline - System.nanoTime();
+				Future<T> future = completionService.poll(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+				if (future == null)
+					return firstError != null ? firstError : FanOutResult.<T>timeout();
+				try {
+					T value = future.get();
+					if (condition.apply(value))
+						return FanOutResult.success(value);
+				} catch (ExecutionException e) {
+					if (firstError == null)
+						firstError = FanOutResult.<T>failure(e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			// the request thread is going away, so give up on the rest
+			Thread.currentThread().interrupt();
+			return FanOutResult.<T>failure(e);
+		} finally {
+			// the answer is known, so the rest are not needed (no-op for those that are done)
+			for (Future<T> future : futures) {
+				future.cancel(true);
+			}
+		}
+		return firstError != null ? firstError : FanOutResult.<T>success(null);
+	}
+
+	private static <T> FanOutResult<T> call(Callable<T> task) {
+		try {
+			return FanOutResult.success(task.call());
+		} catch (Exception e) {
+			return FanOutResult.<T>failure(e);
+		}
+	}
+
+	private static boolean isPoolThread() {
+		return Thread.currentThread() instanceof FanOutThread;
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Names the pool threads so they are easy to find in a thread dump, and
+	 * marks them as daemons so they never hold up a container shutdown.
+	 */
+	private static class FanOutThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new FanOutThread(r, "portal-fanout-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	private static class FanOutThread extends Thread {
+		FanOutThread(Runnable r, String name) {
+			super(r, name);
+		}
+	}
+}
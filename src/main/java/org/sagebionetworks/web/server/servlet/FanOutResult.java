@@ -0,0 +1,58 @@
+package org.sagebionetworks.web.server.servlet;
+
+/**
+ * The outcome of a single call made through a {@link FanOutExecutor}. A
+ * fan-out never fails as a whole; each call either produced a value, threw, or
+ * did not finish before the deadline.
+ * 
+ * @param <T>
+ */
+public class FanOutResult<T> {
+
+	private T value;
+	private Throwable error;
+	private boolean timedOut;
+
+	private FanOutResult(T value, Throwable error, boolean timedOut) {
+		this.value = value;
+		this.error = error;
+		this.timedOut = timedOut;
+	}
+
+	public static <T> FanOutResult<T> success(T value) {
+		return new FanOutResult<T>(value, null, false);
+	}
+
+	public static <T> FanOutResult<T> failure(Throwable error) {
+		return new FanOutResult<T>(null, error, false);
+	}
+
+	public static <T> FanOutResult<T> timeout() {
+		return new FanOutResult<T>(null, null, true);
+	}
+
+	/**
+	 * @return true if the call completed without throwing.
+	 */
+	public boolean isSuccess() {
+		return !timedOut && error == null;
+	}
+
+	/**
+	 * @return true if the call was cancelled because the deadline passed.
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the exception thrown by the call, or null.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+}
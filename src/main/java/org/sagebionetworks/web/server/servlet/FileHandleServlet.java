@@ -1,13 +1,12 @@
 package org.sagebionetworks.web.server.servlet;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
-import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
@@ -21,14 +20,8 @@ import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.methods.HttpGet;
-import org.sagebionetworks.StackConfiguration;
-import org.sagebionetworks.client.HttpClientProviderImpl;
 import org.sagebionetworks.client.SynapseClient;
-import org.sagebionetworks.client.SynapseClientImpl;
 import org.sagebionetworks.client.exceptions.SynapseException;
 import org.sagebionetworks.client.exceptions.SynapseNotFoundException;
 import org.sagebionetworks.repo.model.AccessRequirement;
@@ -47,7 +40,6 @@ import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
 import org.sagebionetworks.web.shared.WebConstants;
 
-import com.google.common.io.Files;
 import com.google.inject.Inject;
 
 /**
@@ -69,6 +61,9 @@ public class FileHandleServlet extends HttpServlet {
 	@SuppressWarnings("unused")
 	private ServiceUrlProvider urlProvider;
 	private SynapseProvider synapseProvider = new SynapseProviderImpl();
+	private ProxyDownloader proxyDownloader = new ProxyDownloaderImpl();
+	private PresignedUrlCache presignedUrlCache = new PresignedUrlCacheImpl();
+	private StreamingFileUploader streamingFileUploader = new StreamingFileUploaderImpl();
 	private TokenProvider tokenProvider = new TokenProvider() {
 		@Override
 		public String getSessionToken() {
@@ -81,6 +76,7 @@ public class FileHandleServlet extends HttpServlet {
 	 *
 	 * @param provider
 	 */
+	@Inject
 	public void setSynapseProvider(SynapseProvider synapseProvider) {
 		this.synapseProvider = synapseProvider;
 	}
@@ -95,6 +91,36 @@ public class FileHandleServlet extends HttpServlet {
 		this.urlProvider = provider;
 	}
 
+	/**
+	 * Injected with Guice. Proxied downloads share the portal's download limits.
+	 *
+	 * @param proxyDownloader
+	 */
+	@Inject
+	public void setProxyDownloader(ProxyDownloader proxyDownloader) {
+		this.proxyDownloader = proxyDownloader;
+	}
+
+	/**
+	 * Injected with Guice. Resolved urls are shared across requests.
+	 *
+	 * @param presignedUrlCache
+	 */
+	@Inject
+	public void setPresignedUrlCache(PresignedUrlCache presignedUrlCache) {
+		this.presignedUrlCache = presignedUrlCache;
+	}
+
+	/**
+	 * Injected with Guice. Uploads share the portal's upload memory budget.
+	 *
+	 * @param streamingFileUploader
+	 */
+	@Inject
+	public void setStreamingFileUploader(StreamingFileUploader streamingFileUploader) {
+		this.streamingFileUploader = streamingFileUploader;
+	}
+
 	/**
 	 * Unit test uses this to provide a mock token provider
 	 *
@@ -127,77 +153,88 @@ public class FileHandleServlet extends HttpServlet {
 		response.setHeader(WebConstants.PRAGMA_KEY, WebConstants.NO_CACHE_VALUE); // Set standard HTTP/1.0 no-cache header.
 		response.setDateHeader(WebConstants.EXPIRES_KEY, 0L); // Proxy
 
-		String token = getSessionToken(request);
-		SynapseClient client = createNewClient(token);
+		final String token = getSessionToken(request);
+		final SynapseClient client = createNewClient(token);
 		boolean isProxy = false;
 		String proxy = request.getParameter(WebConstants.PROXY_PARAM_KEY);
 		if (proxy != null)
 			isProxy = Boolean.parseBoolean(proxy);
 		
-		String teamId = request.getParameter(WebConstants.TEAM_PARAM_KEY);
+		final String teamId = request.getParameter(WebConstants.TEAM_PARAM_KEY);
 		
-		String entityId = request.getParameter(WebConstants.ENTITY_PARAM_KEY);
-		String entityVersion = request.getParameter(WebConstants.ENTITY_VERSION_PARAM_KEY);
+		final String entityId = request.getParameter(WebConstants.ENTITY_PARAM_KEY);
+		final String entityVersion = request.getParameter(WebConstants.ENTITY_VERSION_PARAM_KEY);
 		
 		// table params
-		String tableColumnId = request.getParameter(WebConstants.TABLE_COLUMN_ID);
-		String tableRowId = request.getParameter(WebConstants.TABLE_ROW_ID);
-		String tableRowVersionNumbrer = request.getParameter(WebConstants.TABLE_ROW_VERSION_NUMBER);
+		final String tableColumnId = request.getParameter(WebConstants.TABLE_COLUMN_ID);
+		final String tableRowId = request.getParameter(WebConstants.TABLE_ROW_ID);
+		final String tableRowVersionNumbrer = request.getParameter(WebConstants.TABLE_ROW_VERSION_NUMBER);
 		
-		String ownerId = request.getParameter(WebConstants.WIKI_OWNER_ID_PARAM_KEY);
-		String ownerType = request.getParameter(WebConstants.WIKI_OWNER_TYPE_PARAM_KEY);
-		String fileName = request.getParameter(WebConstants.WIKI_FILENAME_PARAM_KEY);
-		Boolean isPreview = Boolean.parseBoolean(request.getParameter(WebConstants.FILE_HANDLE_PREVIEW_PARAM_KEY));
+		final String ownerId = request.getParameter(WebConstants.WIKI_OWNER_ID_PARAM_KEY);
+		final String ownerType = request.getParameter(WebConstants.WIKI_OWNER_TYPE_PARAM_KEY);
+		final String wikiId = request.getParameter(WebConstants.WIKI_ID_PARAM_KEY);
+		final String wikiVersion = request.getParameter(WebConstants.WIKI_VERSION_PARAM_KEY);
+		final String fileName = request.getParameter(WebConstants.WIKI_FILENAME_PARAM_KEY);
+		final Boolean isPreview = Boolean.parseBoolean(request.getParameter(WebConstants.FILE_HANDLE_PREVIEW_PARAM_KEY));
 		String redirectUrlString = request.getParameter(WebConstants.REDIRECT_URL_KEY);		
 		URL resolvedUrl = null;
 		
 		try {
-			resolveUrlAndRedirect(request, response, client, isProxy, teamId,
-					entityId, entityVersion, tableColumnId, tableRowId,
-					tableRowVersionNumbrer, ownerId, ownerType, fileName,
-					isPreview, redirectUrlString, resolvedUrl);
+			if (redirectUrlString != null) {
+				//simple redirect
+				resolvedUrl = new URL(URLDecoder.decode(redirectUrlString, "UTF-8"));
+			}
+			if ((ownerId != null && ownerType != null) || entityId != null || teamId != null) {
+				// the same previews and icons are requested on every view, so reuse the url while it is valid
+				String cacheKey = ServiceUtils.createCacheKey(token, isPreview.toString(), teamId,
+						entityId, entityVersion, tableColumnId, tableRowId, tableRowVersionNumbrer,
+						ownerId, ownerType, wikiId, wikiVersion, fileName);
+				resolvedUrl = getPresignedUrl(cacheKey, new Callable<URL>() {
+					@Override
+					public URL call() throws Exception {
+						return resolveUrl(client, teamId, entityId, entityVersion,
+								tableColumnId, tableRowId, tableRowVersionNumbrer,
+								ownerId, ownerType, wikiId, wikiVersion, fileName,
+								isPreview);
+					}
+				});
+			}
+			doRedirect(request, response, isProxy, resolvedUrl);
 		} catch (SynapseNotFoundException e) {
-			// Retry preview once, after 1.5 seconds
 			if(isPreview) {
-				try {
-					Thread.sleep(1500);
-					resolveUrlAndRedirect(request, response, client, isProxy, teamId,
-							entityId, entityVersion, tableColumnId, tableRowId,
-							tableRowVersionNumbrer, ownerId, ownerType, fileName,
-							isPreview, redirectUrlString, resolvedUrl);					
-				} catch (InterruptedException e1) { 
-					// ...
-				} catch (SynapseNotFoundException e1) {
-					// show generic image
-					doRedirect(request, response, isProxy, new URL(getBaseUrl(request) + WebConstants.PREVIEW_UNAVAILABLE_PATH));
-				} catch (SynapseException e1) { 
-					throw new ServletException(e);
-				}				
-			}			
+				// The preview may not have been generated yet. Show the generic image
+				// rather than hold this thread for a retry; failures are not cached,
+				// so the next view asks again.
+				doRedirect(request, response, isProxy, new URL(getBaseUrl(request) + WebConstants.PREVIEW_UNAVAILABLE_PATH));
+			}
 		} catch (SynapseException e) {
 			throw new ServletException(e);
 		}
 	}
 
-	private void resolveUrlAndRedirect(HttpServletRequest request,
-			HttpServletResponse response, SynapseClient client,
-			boolean isProxy, String teamId, String entityId,
-			String entityVersion, String tableColumnId, String tableRowId,
-			String tableRowVersionNumbrer, String ownerId, String ownerType,
-			String fileName, Boolean isPreview, String redirectUrlString,
-			URL resolvedUrl) throws MalformedURLException,
-			UnsupportedEncodingException, ClientProtocolException, IOException,
-			SynapseException, ServletException {
-		if (redirectUrlString != null) {
-			//simple redirect
-			resolvedUrl = new URL(URLDecoder.decode(redirectUrlString, "UTF-8"));
+	private URL getPresignedUrl(String cacheKey, Callable<URL> loader) throws SynapseException, ServletException {
+		try {
+			return presignedUrlCache.get(cacheKey, loader);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SynapseException)
+				throw (SynapseException) cause;
+			if (cause instanceof ServletException)
+				throw (ServletException) cause;
+			throw new ServletException(cause);
 		}
-		
+	}
+
+	private URL resolveUrl(SynapseClient client, String teamId,
+			String entityId, String entityVersion, String tableColumnId,
+			String tableRowId, String tableRowVersionNumbrer, String ownerId,
+			String ownerType, String wikiId, String wikiVersion,
+			String fileName, Boolean isPreview) throws SynapseException,
+			ServletException {
+		URL resolvedUrl = null;
 		if (ownerId != null && ownerType != null) {
 			ObjectType type = ObjectType.valueOf(ownerType);
-			String wikiId = request.getParameter(WebConstants.WIKI_ID_PARAM_KEY);
 			WikiPageKey properKey = WikiPageKeyHelper.createWikiPageKey(ownerId, type, wikiId);
-			String wikiVersion = request.getParameter(WebConstants.WIKI_VERSION_PARAM_KEY);
 			
 			// Redirect the user to the url
 			// If we're rendering a version of a wiki page, 
@@ -253,11 +290,12 @@ public class FileHandleServlet extends HttpServlet {
 			try {
 				resolvedUrl = client.getTeamIcon(teamId);
 			} catch (SynapseException e) {
-				return;
+				// no icon
+				return null;
 			}
 		}
 		
-		doRedirect(request, response, isProxy, resolvedUrl);
+		return resolvedUrl;
 	}
 
 	private void doRedirect(HttpServletRequest request,
@@ -265,53 +303,28 @@ public class FileHandleServlet extends HttpServlet {
 			throws ClientProtocolException, IOException {
 		if (resolvedUrl != null){
 			if (isProxy) {
-				//do the get
-				HttpGet httpGet = new HttpGet(resolvedUrl.toString());
-				//copy headers
-				Enumeration<?> headerValues = request.getHeaders("Cookie");
-				while (headerValues.hasMoreElements()) {
-					String headerValue = (String) headerValues.nextElement();
-					httpGet.addHeader("Cookie", headerValue);
-				}
-				HttpResponse newResponse = new HttpClientProviderImpl().execute(httpGet);
-				HttpEntity responseEntity = (null != newResponse.getEntity()) ? newResponse.getEntity() : null;
-				if (responseEntity != null) {
-					responseEntity.writeTo(response.getOutputStream());
-				}
+				proxyDownloader.proxy(request, response, resolvedUrl);
 			}else
 				response.sendRedirect(resolvedUrl.toString());	
 		}
 	}
 
-	public static FileHandle uploadFile(SynapseClient client, HttpServletRequest request) throws FileUploadException, IOException, SynapseException {
+	public static FileHandle uploadFile(StreamingFileUploader uploader, SynapseClient client, HttpServletRequest request) throws FileUploadException, IOException, SynapseException {
 		FileHandle newFileHandle = null;
 		ServletFileUpload upload = new ServletFileUpload();
 		FileItemIterator iter = upload.getItemIterator(request);
 		while (iter.hasNext()) {
 			FileItemStream item = iter.next();
-			String name = item.getFieldName();
-			InputStream stream = item.openStream();
 			String fileName = item.getName();
 			if (fileName.contains("\\")){
 				fileName = fileName.substring(fileName.lastIndexOf("\\")+1);
 			}
-            File tempDir = Files.createTempDir();
-			File temp = new File(tempDir.getAbsolutePath() + File.separator + fileName);
-
-			ServiceUtils.writeToFile(temp, stream, Long.MAX_VALUE);
-			try{
-				// Now upload the file
-				String contentType = item.getContentType();
-				if (SynapseClientImpl.APPLICATION_OCTET_STREAM.equals(contentType.toLowerCase())){
-					//see if we can make a better guess based on the file stream
-					contentType = SynapseClientImpl.guessContentTypeFromStream(temp);
-					//some source code files still register as application/octet-stream, but the preview manager in the backend should recognize those specific file extensions
-				}
-				client.setFileEndpoint(StackConfiguration.getFileServiceEndpoint());
-				newFileHandle = client.createFileHandle(temp, contentType);
-			}finally{
-				// Unconditionally delete the tmp file
-				temp.delete();
+			// Stream the item straight to the file service (no temp file)
+			InputStream stream = item.openStream();
+			try {
+				newFileHandle = uploader.uploadFile(client, fileName, item.getContentType(), stream);
+			} finally {
+				stream.close();
 			}
 		}
 		return newFileHandle;
@@ -331,7 +344,7 @@ public class FileHandleServlet extends HttpServlet {
 			//Connect to synapse
 			SynapseClient client = createNewClient(token);
 			String entityId = null;
-			FileHandle newFileHandle = uploadFile(client, request);
+			FileHandle newFileHandle = uploadFile(streamingFileUploader, client, request);
 
 			//and update the wiki page (if the wiki key info was given as parameters) or FileEntity (if entity id was given)
 			if (newFileHandle != null) {
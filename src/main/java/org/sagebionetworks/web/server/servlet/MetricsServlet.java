@@ -0,0 +1,177 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.pool.PoolStats;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.sagebionetworks.web.server.HttpClientPool;
+import org.sagebionetworks.web.server.PortalMetrics;
+
+import com.google.common.cache.CacheStats;
+import com.google.inject.Inject;
+
+/**
+ * Read-only JSON view of this portal instance: request and repository call
+ * latency percentiles (see {@link PortalMetrics}), the connection pool, the
+ * server-side caches, streamed uploads and proxied downloads. Holds no user
+ * data, but is only served to internal addresses (see
+ * {@link #isInternalRequest(HttpServletRequest)}).
+ *
+ */
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Set by the load balancer on every request it forwards.
+	 */
+	public static final String HEADER_X_FORWARDED_FOR = "X-Forwarded-For";
+
+	private PortalMetrics portalMetrics;
+	private HttpClientPool httpClientPool;
+	private WikiPageCache wikiPageCache;
+	private PresignedUrlCache presignedUrlCache;
+	private ChallengeAggregator challengeAggregator;
+	private StreamingFileUploader streamingFileUploader;
+	private ProxyDownloader proxyDownloader;
+	private SynapseClientImpl synapseClient;
+
+	/**
+	 * Injected with Guice
+	 */
+	@Inject
+	public void setPortalMetrics(PortalMetrics portalMetrics) {
+		this.portalMetrics = portalMetrics;
+	}
+
+	@Inject
+	public void setHttpClientPool(HttpClientPool httpClientPool) {
+		this.httpClientPool = httpClientPool;
+	}
+
+	@Inject
+	public void setWikiPageCache(WikiPageCache wikiPageCache) {
+		this.wikiPageCache = wikiPageCache;
+	}
+
+	@Inject
+	public void setPresignedUrlCache(PresignedUrlCache presignedUrlCache) {
+		this.presignedUrlCache = presignedUrlCache;
+	}
+
+	@Inject
+	public void setChallengeAggregator(ChallengeAggregator challengeAggregator) {
+		this.challengeAggregator = challengeAggregator;
+	}
+
+	@Inject
+	public void setStreamingFileUploader(StreamingFileUploader streamingFileUploader) {
+		this.streamingFileUploader = streamingFileUploader;
+	}
+
+	@Inject
+	public void setProxyDownloader(ProxyDownloader proxyDownloader) {
+		this.proxyDownloader = proxyDownloader;
+	}
+
+	@Inject
+	public void setSynapseClient(SynapseClientImpl synapseClient) {
+		this.synapseClient = synapseClient;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+		if (!isInternalRequest(request)) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+		String json;
+		try {
+			json = getMetrics().toString();
+		} catch (JSONException e) {
+			throw new ServletException(e);
+		}
+		response.setContentType("application/json");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		response.getWriter().write(json);
+	}
+
+	public JSONObject getMetrics() throws JSONException {
+		JSONObject json = portalMetrics.toJSON();
+
+		PoolStats poolStats = httpClientPool.getTotalStats();
+		JSONObject pool = new JSONObject();
+		pool.put("leased", poolStats.getLeased());
+		pool.put("available", poolStats.getAvailable());
+		pool.put("pending", poolStats.getPending());
+		pool.put("max", poolStats.getMax());
+		json.put("connectionPool", pool);
+
+		JSONObject caches = new JSONObject();
+		JSONObject wikiPages = toJSON(wikiPageCache.getStats());
+		wikiPages.put("weightInBytes", wikiPageCache.getWeightInBytes());
+		caches.put("wikiPage", wikiPages);
+		caches.put("wikiHtml", toJSON(synapseClient.getWikiHtmlCacheStats()));
+		caches.put("benefactorAcl", toJSON(synapseClient.getAclCacheStats()));
+		caches.put("presignedUrl", toJSON(presignedUrlCache.getStats()));
+		caches.put("challenge", toJSON(challengeAggregator.getStats()));
+		caches.put("parsedQuery", toJSON(ServiceUtils.getParsedQueryCacheStats()));
+		json.put("caches", caches);
+
+		JSONObject uploads = new JSONObject();
+		uploads.put("count", streamingFileUploader.getUploadCount());
+		uploads.put("failures", streamingFileUploader.getFailureCount());
+		uploads.put("bytes", streamingFileUploader.getUploadedBytes());
+		uploads.put("bytesPerSecond", streamingFileUploader.getBytesPerSecond());
+		json.put("uploads", uploads);
+
+		JSONObject downloads = new JSONObject();
+		downloads.put("active", proxyDownloader.getActiveDownloads());
+		downloads.put("rejected", proxyDownloader.getRejectedCount());
+		downloads.put("bytes", proxyDownloader.getDownloadedBytes());
+		json.put("proxyDownloads", downloads);
+		return json;
+	}
+
+	/**
+	 * A request made from this host or the private network, and not forwarded
+	 * by the load balancer (which would make the caller's address that of the
+	 * balancer).
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public static boolean isInternalRequest(HttpServletRequest request) {
+		if (request.getHeader(HEADER_X_FORWARDED_FOR) != null)
+			return false;
+		String remoteAddr = request.getRemoteAddr();
+		if (remoteAddr == null)
+			return false;
+		try {
+			// a literal address, so there is no lookup
+			InetAddress address = InetAddress.getByName(remoteAddr);
+			return address.isLoopbackAddress() || address.isSiteLocalAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+	private static JSONObject toJSON(CacheStats stats) throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put("hits", stats.hitCount());
+		json.put("misses", stats.missCount());
+		json.put("hitRate", stats.hitRate());
+		json.put("evictions", stats.evictionCount());
+		json.put("averageLoadMs", stats.averageLoadPenalty() / 1000000.0);
+		return json;
+	}
+}
@@ -1,8 +1,10 @@
 package org.sagebionetworks.web.server.servlet;
 
 import org.sagebionetworks.web.client.ClientProperties;
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
 
-public class NewsFeedCacheProvider implements CacheProvider {
+public class NewsFeedCacheProvider implements ConditionalCacheProvider {
 	@Override
 	public String getCacheProviderId() {
 		return ClientProperties.NEWS_FEED_PROVIDER_ID;
@@ -13,4 +15,9 @@ public class NewsFeedCacheProvider implements CacheProvider {
 	 	return RssFeedUtils.getFeedData(ClientProperties.NEWS_FEED_URL, 4, true);
 	}
 
+	@Override
+	public ConditionalContent getValueToCacheIfModified(CacheValidators validators) {
+		return RssFeedUtils.getFeedDataIfModified(ClientProperties.NEWS_FEED_URL, 4, true, validators);
+	}
+
 }
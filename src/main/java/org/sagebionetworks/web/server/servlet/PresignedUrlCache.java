@@ -0,0 +1,39 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Short-lived cache of resolved pre-signed (temporary) file URLs, so that a
+ * page that shows the same previews and icons again does not ask the
+ * repository for a new URL each time.
+ *
+ * Keys must include the user (session), since access to a file depends on who
+ * is asking. An entry is never kept past the expiry of its URL.
+ */
+public interface PresignedUrlCache {
+
+	/**
+	 * Get the resolved URL, running the loader on a miss. The loader may
+	 * return null (for example, a team without an icon), which is returned
+	 * but not cached.
+	 *
+	 * @param key
+	 *            the session token and every parameter of the request
+	 * @param loader
+	 * @return
+	 * @throws ExecutionException
+	 *             if the loader failed (the cause is the loader exception)
+	 */
+	public URL get(String key, Callable<URL> loader) throws ExecutionException;
+
+	/**
+	 * Hit, miss and eviction counts.
+	 *
+	 * @return
+	 */
+	public CacheStats getStats();
+}
@@ -0,0 +1,158 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Entries live for at most the configured time to live, and are dropped
+ * earlier when the pre-signed URL itself expires sooner (less a safety
+ * margin, so a redirect is never sent with a URL that is about to expire).
+ * URLs with no recognizable expiry (external files) use the configured time
+ * to live.
+ *
+ * Concurrent misses for the same key wait for a single load. The earlier,
+ * per URL expiry is checked when an entry is read.
+ *
+ */
+public class PresignedUrlCacheImpl implements PresignedUrlCache {
+
+	public static final long DEFAULT_MAX_SIZE = 10000;
+	public static final long DEFAULT_TTL_SECONDS = 60;
+	public static final long DEFAULT_EXPIRY_MARGIN_SECONDS = 10;
+
+	private Cache<String, CachedUrl> cache;
+	private long ttlMs;
+	private long expiryMarginMs;
+
+	/**
+	 * Used when a cache is needed outside of Guice (servlet defaults and
+	 * tests).
+	 */
+	public PresignedUrlCacheImpl() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_TTL_SECONDS, DEFAULT_EXPIRY_MARGIN_SECONDS);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public PresignedUrlCacheImpl(
+			@Named("org.sagebionetworks.portal.presigned.url.cache.max.size") long maxSize,
+			@Named("org.sagebionetworks.portal.presigned.url.cache.ttl.seconds") long ttlSeconds,
+			@Named("org.sagebionetworks.portal.presigned.url.cache.expiry.margin.seconds") long expiryMarginSeconds) {
+		this.ttlMs = TimeUnit.SECONDS.toMillis(ttlSeconds);
+		this.expiryMarginMs = TimeUnit.SECONDS.toMillis(expiryMarginSeconds);
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+	}
+
+	@Override
+	public URL get(String key, final Callable<URL> loader) throws ExecutionException {
+		Callable<CachedUrl> urlLoader = new Callable<CachedUrl>() {
+			@Override
+			public CachedUrl call() throws Exception {
+				URL url = loader.call();
+				long loadedOn = System.currentTimeMillis();
+				long expiresOn = loadedOn + ttlMs;
+				Long urlExpiresOn = getExpiresOn(url);
+				if (urlExpiresOn != null)
+					expiresOn = Math.min(expiresOn, urlExpiresOn - expiryMarginMs);
+				// a missing url (for example, an icon that failed to load) is not kept
+				if (url == null)
+					expiresOn = loadedOn;
+				return new CachedUrl(url, loadedOn, expiresOn);
+			}
+		};
+		while (true) {
+			long now = System.currentTimeMillis();
+			CachedUrl cached;
+			try {
+				cached = cache.get(key, urlLoader);
+			} catch (UncheckedExecutionException e) {
+				throw new ExecutionException(e.getCause());
+			}
+			if (cached.expiresOn > now)
+				return cached.url;
+			// drop it (but not an entry loaded since)
+			cache.asMap().remove(key, cached);
+			// loaded for this call, so it is as good as it gets
+			if (cached.loadedOn >= now)
+				return cached.url;
+		}
+	}
+
+	/**
+	 * When the pre-signed url expires, from its signature parameters
+	 * (Expires for S3 signature version 2, X-Amz-Date plus X-Amz-Expires for
+	 * version 4).
+	 *
+	 * @param url
+	 * @return the expiry in epoch milliseconds, or null if not pre-signed
+	 */
+	public static Long getExpiresOn(URL url) {
+		if (url == null || url.getQuery() == null)
+			return null;
+		String expires = null;
+		String amzDate = null;
+		String amzExpires = null;
+		for (String param : url.getQuery().split("&")) {
+			int index = param.indexOf('=');
+			if (index < 0)
+				continue;
+			String name = param.substring(0, index);
+			String value = param.substring(index + 1);
+			if ("Expires".equals(name))
+				expires = value;
+			else if ("X-Amz-Date".equals(name))
+				amzDate = value;
+			else if ("X-Amz-Expires".equals(name))
+				amzExpires = value;
+		}
+		try {
+			if (expires != null)
+				return TimeUnit.SECONDS.toMillis(Long.parseLong(expires));
+			if (amzDate != null && amzExpires != null) {
+				SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+				format.setTimeZone(TimeZone.getTimeZone("UTC"));
+				return format.parse(amzDate).getTime() + TimeUnit.SECONDS.toMillis(Long.parseLong(amzExpires));
+			}
+		} catch (NumberFormatException e) {
+			// not a signature we understand
+		} catch (ParseException e) {
+			// not a signature we understand
+		}
+		return null;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	private static class CachedUrl {
+		URL url;
+		long loadedOn;
+		long expiresOn;
+
+		CachedUrl(URL url, long loadedOn, long expiresOn) {
+			this.url = url;
+			this.loadedOn = loadedOn;
+			this.expiresOn = expiresOn;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.IOException;
+import java.net.URL;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Streams a resolved file URL through the portal (used when the browser
+ * cannot follow a redirect to the file itself, for example for previews).
+ */
+public interface ProxyDownloader {
+
+	/**
+	 * Fetch the url and write it to the response. Range and conditional
+	 * request headers are forwarded, and the status, content and validation
+	 * headers of the upstream response are passed back.
+	 *
+	 * If the concurrency limit is reached, responds with 503 (Service
+	 * Unavailable) instead.
+	 *
+	 * @param request
+	 * @param response
+	 * @param url
+	 * @throws IOException
+	 */
+	public void proxy(HttpServletRequest request, HttpServletResponse response, URL url) throws IOException;
+
+	/**
+	 * Number of proxied downloads currently in progress.
+	 *
+	 * @return
+	 */
+	public int getActiveDownloads();
+
+	/**
+	 * Number of downloads turned away because the concurrency limit was
+	 * reached.
+	 *
+	 * @return
+	 */
+	public long getRejectedCount();
+
+	/**
+	 * Total bytes written to clients.
+	 *
+	 * @return
+	 */
+	public long getDownloadedBytes();
+}
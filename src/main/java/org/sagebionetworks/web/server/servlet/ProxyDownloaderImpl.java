@@ -0,0 +1,213 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.sagebionetworks.web.server.HttpClientPool;
+import org.sagebionetworks.web.server.HttpUtils;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Proxies downloads through the shared connection pool.
+ *
+ * Each download copies through a buffer borrowed from a bounded pool, and is
+ * throttled to a maximum rate so that one large download cannot monopolize
+ * the portal's bandwidth. The number of concurrent downloads is capped; a
+ * request that cannot get a slot in time is turned away with a 503.
+ *
+ * If the client goes away mid-download the upstream request is aborted,
+ * rather than read to the end to return the connection to the pool.
+ *
+ */
+public class ProxyDownloaderImpl implements ProxyDownloader {
+
+	// below HttpClientPoolImpl.DEFAULT_MAX_CONNECTIONS_PER_ROUTE, so downloads cannot take every connection to the file host
+	public static final int DEFAULT_MAX_CONCURRENT = 10;
+	public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+	public static final long DEFAULT_MAX_BYTES_PER_SECOND = 5 * 1024 * 1024;
+	public static final long DEFAULT_PERMIT_WAIT_MS = 5000;
+	public static final String RETRY_AFTER_SECONDS = "5";
+
+	/**
+	 * Client request headers forwarded upstream (ranges and conditional gets).
+	 */
+	public static final String[] FORWARDED_REQUEST_HEADERS = new String[] {
+		"Cookie", "Range", "If-Range", "If-None-Match", "If-Modified-Since"
+	};
+
+	/**
+	 * Upstream response headers passed back to the client.
+	 */
+	public static final String[] FORWARDED_RESPONSE_HEADERS = new String[] {
+		"Content-Type", "Content-Length", "Content-Range", "Content-Disposition",
+		"Content-Encoding", "Accept-Ranges", "ETag", "Last-Modified",
+		"Cache-Control", "Expires"
+	};
+
+	private int bufferBytes;
+	private long maxBytesPerSecond;
+	private long permitWaitMs;
+	private int maxConcurrent;
+	private Semaphore downloadPermits;
+	private BlockingQueue<byte[]> bufferPool;
+	private HttpClientPool httpClientPool;
+
+	private AtomicLong rejectedCount = new AtomicLong();
+	private AtomicLong downloadedBytes = new AtomicLong();
+
+	/**
+	 * Used when a downloader is needed outside of Guice (servlet defaults and
+	 * tests).
+	 */
+	public ProxyDownloaderImpl() {
+		this(DEFAULT_MAX_CONCURRENT, DEFAULT_BUFFER_BYTES, DEFAULT_MAX_BYTES_PER_SECOND,
+				DEFAULT_PERMIT_WAIT_MS, HttpUtils.getHttpClientPool());
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 *
+	 * @param maxBytesPerSecond
+	 *            per download, zero or less for no limit
+	 */
+	@Inject
+	public ProxyDownloaderImpl(
+			@Named("org.sagebionetworks.portal.proxy.max.concurrent") int maxConcurrent,
+			@Named("org.sagebionetworks.portal.proxy.buffer.bytes") int bufferBytes,
+			@Named("org.sagebionetworks.portal.proxy.max.bytes.per.second") long maxBytesPerSecond,
+			@Named("org.sagebionetworks.portal.proxy.permit.wait.ms") long permitWaitMs,
+			HttpClientPool httpClientPool) {
+		this.maxConcurrent = maxConcurrent;
+		this.bufferBytes = bufferBytes;
+		this.maxBytesPerSecond = maxBytesPerSecond;
+		this.permitWaitMs = permitWaitMs;
+		this.downloadPermits = new Semaphore(maxConcurrent, true);
+		this.bufferPool = new LinkedBlockingQueue<byte[]>(Math.max(1, maxConcurrent));
+		this.httpClientPool = httpClientPool;
+	}
+
+	@Override
+	public void proxy(HttpServletRequest request, HttpServletResponse response, URL url) throws IOException {
+		if (!acquirePermit()) {
+			rejectedCount.incrementAndGet();
+			response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many downloads are in progress, please try again later.");
+			return;
+		}
+		byte[] buffer = borrowBuffer();
+		HttpGet httpGet = new HttpGet(url.toString());
+		try {
+			for (String name : FORWARDED_REQUEST_HEADERS) {
+				Enumeration<?> values = request.getHeaders(name);
+				while (values != null && values.hasMoreElements()) {
+					httpGet.addHeader(name, (String) values.nextElement());
+				}
+			}
+			HttpResponse upstream = httpClientPool.getHttpClient().execute(httpGet);
+			response.setStatus(upstream.getStatusLine().getStatusCode());
+			for (String name : FORWARDED_RESPONSE_HEADERS) {
+				Header header = upstream.getFirstHeader(name);
+				if (header != null)
+					response.setHeader(name, header.getValue());
+			}
+			HttpEntity entity = upstream.getEntity();
+			if (entity == null)
+				return;
+			boolean isComplete = false;
+			try {
+				copy(entity.getContent(), response.getOutputStream(), buffer);
+				isComplete = true;
+			} finally {
+				if (isComplete) {
+					// make sure the connection goes back to the pool
+					EntityUtils.consumeQuietly(entity);
+				} else {
+					// do not read the rest of the file just to reuse the connection
+					httpGet.abort();
+				}
+			}
+		} finally {
+			bufferPool.offer(buffer);
+			downloadPermits.release();
+		}
+	}
+
+	private boolean acquirePermit() throws IOException {
+		try {
+			return downloadPermits.tryAcquire(permitWaitMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to start the download.");
+		}
+	}
+
+	private byte[] borrowBuffer() {
+		byte[] buffer = bufferPool.poll();
+		return buffer == null ? new byte[bufferBytes] : buffer;
+	}
+
+	private void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+		long start = System.nanoTime();
+		long total = 0;
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+			total += length;
+			downloadedBytes.addAndGet(length);
+			throttle(total, System.nanoTime() - start);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Sleep long enough to keep the average rate of this download at or below
+	 * the limit.
+	 */
+	private void throttle(long bytes, long elapsedNanos) throws IOException {
+		if (maxBytesPerSecond <= 0)
+			return;
+		long expectedNanos = (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / maxBytesPerSecond);
+		long sleepMs = TimeUnit.NANOSECONDS.toMillis(expectedNanos - elapsedNanos);
+		if (sleepMs > 0) {
+			try {
+				Thread.sleep(sleepMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted during the download.");
+			}
+		}
+	}
+
+	@Override
+	public int getActiveDownloads() {
+		return maxConcurrent - downloadPermits.availablePermits();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	@Override
+	public long getDownloadedBytes() {
+		return downloadedBytes.get();
+	}
+}
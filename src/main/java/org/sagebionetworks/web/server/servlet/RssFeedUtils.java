@@ -3,6 +3,7 @@ package org.sagebionetworks.web.server.servlet;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
@@ -21,6 +22,8 @@ import org.sagebionetworks.repo.model.RSSFeed;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
 import org.sagebionetworks.web.client.ClientProperties;
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
 import org.sagebionetworks.web.server.HttpUtils;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
 import org.w3c.dom.Document;
@@ -57,6 +60,27 @@ public class RssFeedUtils {
 		return jsonResponse;
 	}
 	
+	/**
+	 * Like {@link #getFeedData(String, Integer, boolean)}, but asks the source
+	 * whether the feed changed since the copy described by the validators.
+	 * 
+	 * @return the feed json with the validators of the response, or null when
+	 *         the feed did not change
+	 */
+	public static ConditionalContent getFeedDataIfModified(String feedUrl, Integer limit, boolean summariesOnly, CacheValidators validators) {
+		try {
+			ConditionalContent xml = HttpUtils.httpGetIfModified(feedUrl, null, validators);
+			if (xml == null)
+				return null;
+			SyndFeed feed = new SyndFeedInput().build(new StringReader(xml.getContent()));
+			return new ConditionalContent(getFeed(feed, limit, summariesOnly), xml.getValidators());
+		} catch (FeedException e) {
+			throw new IllegalArgumentException("Could not parse the given feed: " + feedUrl, e);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Could not read the feed source: " + feedUrl, e);
+		}
+	}
+	
 	public static String getFeed(SyndFeed feed, Integer limit, boolean summariesOnly) {
 		RSSFeed jsonFeed = new RSSFeed();
 		jsonFeed.setAuthor(feed.getAuthor());
@@ -133,6 +157,25 @@ public class RssFeedUtils {
 		return trimWikiSourceHtml(sourceHtml);
 	}
 	
+	/**
+	 * Like {@link #getWikiPageSourceContent(String)}, but asks the source
+	 * whether the page changed since the copy described by the validators.
+	 * 
+	 * @return the page content with the validators of the response, or null
+	 *         when the page did not change
+	 */
+	public static ConditionalContent getWikiPageSourceContentIfModified(String pageId, CacheValidators validators) {
+		ConditionalContent sourceHtml;
+		try {
+			Map<String, String> params = new HashMap<String, String>();
+			params.put("pageId", pageId);
+			sourceHtml = HttpUtils.httpGetIfModified(ClientProperties.WIKI_PAGE_SOURCE_CONTENT_URL, params, validators);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Could not read from the source: " + ClientProperties.WIKI_PAGE_SOURCE_CONTENT_URL + " for pageId " + pageId, e);
+		}
+		return sourceHtml == null ? null : new ConditionalContent(trimWikiSourceHtml(sourceHtml.getContent()), sourceHtml.getValidators());
+	}
+	
 	public static String trimWikiSourceHtml(String sourceHtml) {
 		String returnHtml = "";
 		if (sourceHtml != null) {
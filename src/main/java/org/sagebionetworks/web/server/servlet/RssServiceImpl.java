@@ -1,96 +1,99 @@
 package org.sagebionetworks.web.server.servlet;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
 
 import org.sagebionetworks.web.client.DisplayConstants;
 import org.sagebionetworks.web.client.RssService;
-import org.sagebionetworks.web.shared.exceptions.RestServiceException;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 public class RssServiceImpl extends RemoteServiceServlet implements RssService {
 	private static final long serialVersionUID = 1L;
-	
+
+	public static final long DEFAULT_NEWS_FEED_REFRESH_MINUTES = 5;
+	public static final long DEFAULT_DATA_ACCESS_LEVELS_REFRESH_MINUTES = 60;
+
 	// Cache all known responses!
-	private Map<String, String> cache = new ConcurrentHashMap<String, String>();
-	private Collection<CacheProvider> registeredCacheProviders = Collections.synchronizedCollection(new ArrayList<CacheProvider>());
-	private static Logger logger = Logger.getLogger(RssServiceImpl.class.getName());
-	
+	private ExternalContentCache contentCache = new ExternalContentCacheImpl();
+	private List<CacheProvider> registeredCacheProviders = new ArrayList<CacheProvider>();
+	private long newsFeedRefreshMinutes = DEFAULT_NEWS_FEED_REFRESH_MINUTES;
+	private long dataAccessLevelsRefreshMinutes = DEFAULT_DATA_ACCESS_LEVELS_REFRESH_MINUTES;
+
 	public RssServiceImpl() {
-		//register all known cache providers
-		registerKnownCacheProviders();
+		//the known cache providers are registered in init(), once the cache is injected
 	}
-	
+
 	public RssServiceImpl(List<CacheProvider> providers) {
 		//register the given CacheProviders and update the cache once (used for testing purposes)
 		registerCacheProviders(providers);
-		try {
-			updateCache();
-		} catch (Throwable e) {
-			logger.throwing(RssServiceImpl.class.getName(), "RssServiceImpl(List<CacheProvider> providers)", e);
-		}
+		contentCache.refreshAll();
 	}
-	
+
+	/**
+	 * Injected with Guice. Shared by every instance, and shut down with the
+	 * context.
+	 *
+	 * @param contentCache
+	 */
+	@Inject
+	public void setExternalContentCache(ExternalContentCache contentCache) {
+		this.contentCache = contentCache;
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 *
+	 * @param newsFeedRefreshMinutes
+	 * @param dataAccessLevelsRefreshMinutes
+	 */
+	@Inject
+	public void configureRefreshIntervals(
+			@Named("org.sagebionetworks.portal.external.content.news.feed.refresh.minutes") long newsFeedRefreshMinutes,
+			@Named("org.sagebionetworks.portal.external.content.data.access.levels.refresh.minutes") long dataAccessLevelsRefreshMinutes) {
+		this.newsFeedRefreshMinutes = newsFeedRefreshMinutes;
+		this.dataAccessLevelsRefreshMinutes = dataAccessLevelsRefreshMinutes;
+	}
+
 	protected void registerCacheProviders(List<CacheProvider> providers) {
-		registeredCacheProviders.addAll(providers);
+		for (CacheProvider provider : providers) {
+			//on the news feed schedule (every provider used to refresh every 5 minutes)
+			registerCacheProvider(provider, TimeUnit.MINUTES.toMillis(DEFAULT_NEWS_FEED_REFRESH_MINUTES));
+		}
 	}
-	
+
 	protected void registerKnownCacheProviders(){
 		//add all known cache providers to the list
 		if (registeredCacheProviders.isEmpty()) {
-			registeredCacheProviders.add(new NewsFeedCacheProvider());
-			registeredCacheProviders.add(new DataAccessLevelsCacheProvider());
+			registerCacheProvider(new NewsFeedCacheProvider(), TimeUnit.MINUTES.toMillis(newsFeedRefreshMinutes));
+			registerCacheProvider(new DataAccessLevelsCacheProvider(), TimeUnit.MINUTES.toMillis(dataAccessLevelsRefreshMinutes));
 		}
 	}
-	
+
+	private void registerCacheProvider(CacheProvider provider, long refreshIntervalMs) {
+		registeredCacheProviders.add(provider);
+		contentCache.register(provider, refreshIntervalMs);
+	}
+
 	@Override
 	public void init() throws ServletException {
 		super.init();
-		//update the cache now, and every 5 minutes
-		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-		ScheduledFuture<?> scheduleHandle = scheduler.scheduleAtFixedRate(new Runnable() {
-			
-			@Override
-			public void run() {
-				try {
-					updateCache();
-				} catch (Throwable e) {
-					logger.throwing(RssServiceImpl.class.getName(), "updateCache()", e);
-				}
-			}
-		}, 0, 5, TimeUnit.MINUTES);
-	}
-	
-	private void updateCache() throws RestServiceException{
-		//initialize all of the feeds/pages that our app supports
-		logger.info("updating cache");
-		//go through all cache providers, and update the content
-		for (Iterator it = registeredCacheProviders.iterator(); it.hasNext();) {
-			CacheProvider cacheProvider = (CacheProvider) it.next();
-			cache.put(cacheProvider.getCacheProviderId(), cacheProvider.getValueToCache());
-		}
-		logger.info("finished cache update");
+		//load the content now, then refresh it in the background
+		registerKnownCacheProviders();
 	}
+
 	@Override
 	public String getCachedContent(String cacheproviderId) {
-		String cacheValue = cache.get(cacheproviderId);
+		//possibly stale, never blocked on a refresh (other than the very first load)
+		String cacheValue = contentCache.get(cacheproviderId);
 		if (cacheValue == null)
 			throw new IllegalArgumentException(DisplayConstants.ERROR_EXTERNAL_CONTENT_NOT_IN_CACHE + cacheproviderId);
 		return cacheValue;
 	}
-	
-}
 
+}
@@ -0,0 +1,429 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.sagebionetworks.web.client.SearchService;
+import org.sagebionetworks.web.server.CompiledUrlTemplate;
+import org.sagebionetworks.web.shared.ColumnInfo;
+import org.sagebionetworks.web.shared.ColumnInfo.Type;
+import org.sagebionetworks.web.shared.ColumnarRows;
+import org.sagebionetworks.web.shared.HeaderData;
+import org.sagebionetworks.web.shared.ResultColumn;
+import org.sagebionetworks.web.shared.UrlTemplate;
+
+/**
+ * Reads a page of query service results straight from the response stream
+ * into one typed array per column: values are converted to their column's
+ * type as they are parsed (see {@link TypeValidation} for the rules), and
+ * anything that is not one of the expected columns is skipped without being
+ * built.
+ *
+ */
+public class SearchResultsReader {
+
+	private static Logger logger = Logger.getLogger(SearchResultsReader.class.getName());
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	private static final int MAX_INITIAL_CAPACITY = 1000;
+
+	private Map<String, ColumnBuffer> columnsById = new HashMap<String, ColumnBuffer>();
+	private List<ColumnBuffer> columns = new ArrayList<ColumnBuffer>();
+	private List<UrlTemplate> urlTemplates = new ArrayList<UrlTemplate>();
+	private int capacity;
+	private int rowCount = 0;
+	private int totalNumberOfResults = 0;
+
+	/**
+	 * @param expectedColumns
+	 *            the columns to keep
+	 * @param expectedRows
+	 *            the page size
+	 */
+	public SearchResultsReader(List<HeaderData> expectedColumns, int expectedRows) {
+		capacity = Math.max(1, Math.min(expectedRows, MAX_INITIAL_CAPACITY));
+		for (HeaderData header : expectedColumns) {
+			if (columnsById.containsKey(header.getId()))
+				continue;
+			ColumnBuffer column;
+			if (header instanceof UrlTemplate) {
+				// Filled in by expandUrlTemplates()
+				urlTemplates.add((UrlTemplate) header);
+				column = new ColumnBuffer(header.getId(), Type.String, capacity);
+			} else if (header instanceof ColumnInfo) {
+				column = new ColumnBuffer(header.getId(), ((ColumnInfo) header).fetchType(), capacity);
+			} else {
+				column = new ColumnBuffer(header.getId(), null, capacity);
+			}
+			add(column);
+		}
+	}
+
+	private void add(ColumnBuffer column) {
+		columnsById.put(column.id, column);
+		columns.add(column);
+	}
+
+	public void read(String json) throws IOException {
+		read(JSON_FACTORY.createJsonParser(json));
+	}
+
+	public void read(InputStream in) throws IOException {
+		read(JSON_FACTORY.createJsonParser(in));
+	}
+
+	private void read(JsonParser parser) throws IOException {
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				throw new IOException("Expected a JSON object");
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if (SearchService.KEY_TOTAL_NUMBER_OF_RESULTS.equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+					totalNumberOfResults = parser.getIntValue();
+				} else if (SearchService.KEY_RESULTS.equals(field) && token == JsonToken.START_ARRAY) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						readRow(parser);
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		} finally {
+			parser.close();
+		}
+		for (ColumnBuffer column : columns) {
+			if (column.failures > 0)
+				logger.info("Failed to convert " + column.failures + " value(s) of " + column.id + " to " + column.type);
+		}
+	}
+
+	private void readRow(JsonParser parser) throws IOException {
+		int row = rowCount++;
+		if (rowCount > capacity) {
+			capacity *= 2;
+			for (ColumnBuffer column : columns) {
+				column.grow(capacity);
+			}
+		}
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			ColumnBuffer column = columnsById.get(parser.getCurrentName());
+			parser.nextToken();
+			if (column == null) {
+				//Filter out columns that are not expected
+				parser.skipChildren();
+			} else {
+				column.read(parser, row);
+			}
+		}
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getTotalNumberOfResults() {
+		return totalNumberOfResults;
+	}
+
+	/**
+	 * Give every row without a value for the column the given value (PLFM-77,
+	 * the where clause columns can be missing from the results).
+	 *
+	 * @param id
+	 * @param value
+	 */
+	public void fillMissing(String id, String value) {
+		ColumnBuffer column = columnsById.get(id);
+		if (column == null) {
+			column = new ColumnBuffer(id, Type.String, capacity);
+			add(column);
+		}
+		Object converted = value;
+		if (column.type != null) {
+			try {
+				converted = TypeValidation.convert(value, column.type);
+			} catch (IllegalArgumentException e) {
+				logger.info("Failed to convert the where clause value of " + id + " to " + column.type);
+				return;
+			}
+		}
+		for (int row = 0; row < rowCount; row++) {
+			if (!column.hasValue(row))
+				column.set(row, converted);
+		}
+	}
+
+	/**
+	 * Expand the url template columns of every row.
+	 */
+	public void expandUrlTemplates() {
+		for (UrlTemplate urlTemplate : urlTemplates) {
+			if (urlTemplate.getUrlTemplate() == null)
+				continue;
+			CompiledUrlTemplate template = new CompiledUrlTemplate(urlTemplate.getUrlTemplate());
+			List<String> names = template.getVariableNames();
+			ColumnBuffer[] variables = new ColumnBuffer[names.size()];
+			for (int i = 0; i < variables.length; i++) {
+				variables[i] = columnsById.get(names.get(i));
+			}
+			ColumnBuffer target = columnsById.get(urlTemplate.getId());
+			Object[] values = new Object[variables.length];
+			for (int row = 0; row < rowCount; row++) {
+				for (int i = 0; i < variables.length; i++) {
+					values[i] = variables[i] == null ? null : variables[i].get(row);
+				}
+				target.strings[row] = template.expand(values);
+				target.present[row] = true;
+			}
+		}
+	}
+
+	/**
+	 * @return the rows read so far, sized to the row count
+	 */
+	public ColumnarRows getRows() {
+		List<ResultColumn> result = new ArrayList<ResultColumn>(columns.size());
+		for (ColumnBuffer column : columns) {
+			result.add(column.toResultColumn(rowCount));
+		}
+		return new ColumnarRows(rowCount, result);
+	}
+
+	/**
+	 * Mirrors the objects Jackson's untyped mapping builds (the input of
+	 * {@link TypeValidation}).
+	 */
+	static Object readValue(JsonParser parser) throws IOException {
+		switch (parser.getCurrentToken()) {
+		case START_OBJECT:
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				parser.nextToken();
+				map.put(name, readValue(parser));
+			}
+			return map;
+		case START_ARRAY:
+			List<Object> list = new ArrayList<Object>();
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				list.add(readValue(parser));
+			}
+			return list;
+		case VALUE_STRING:
+			return parser.getText();
+		case VALUE_NUMBER_INT:
+			return parser.getNumberValue();
+		case VALUE_NUMBER_FLOAT:
+			return parser.getDoubleValue();
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * The growing values of one column. Only the array for the column's type
+	 * is allocated.
+	 */
+	private static class ColumnBuffer {
+		String id;
+		Type type;
+		boolean[] present;
+		long[] longs;
+		int[] ints;
+		double[] doubles;
+		boolean[] booleans;
+		String[] strings;
+		Object[] objects;
+		int failures = 0;
+
+		ColumnBuffer(String id, Type type, int capacity) {
+			this.id = id;
+			this.type = type;
+			present = new boolean[capacity];
+			if (type == Type.Long) {
+				longs = new long[capacity];
+			} else if (type == Type.Integer) {
+				ints = new int[capacity];
+			} else if (type == Type.Double) {
+				doubles = new double[capacity];
+			} else if (type == Type.Boolean) {
+				booleans = new boolean[capacity];
+			} else if (type == Type.String) {
+				strings = new String[capacity];
+			} else {
+				objects = new Object[capacity];
+			}
+		}
+
+		void grow(int capacity) {
+			int length = present.length;
+			present = copy(present, length, new boolean[capacity]);
+			if (longs != null)
+				longs = copy(longs, length, new long[capacity]);
+			if (ints != null)
+				ints = copy(ints, length, new int[capacity]);
+			if (doubles != null)
+				doubles = copy(doubles, length, new double[capacity]);
+			if (booleans != null)
+				booleans = copy(booleans, length, new boolean[capacity]);
+			if (strings != null)
+				strings = copy(strings, length, new String[capacity]);
+			if (objects != null)
+				objects = copy(objects, length, new Object[capacity]);
+		}
+
+		boolean hasValue(int row) {
+			return present[row];
+		}
+
+		Object get(int row) {
+			if (!present[row])
+				return null;
+			if (longs != null)
+				return longs[row];
+			if (ints != null)
+				return ints[row];
+			if (doubles != null)
+				return doubles[row];
+			if (booleans != null)
+				return booleans[row];
+			if (strings != null)
+				return strings[row];
+			return objects[row];
+		}
+
+		/**
+		 * Read the current value of the parser into the row.
+		 */
+		void read(JsonParser parser, int row) throws IOException {
+			JsonToken token = parser.getCurrentToken();
+			if (token == JsonToken.VALUE_NULL)
+				return;
+			// The common cases, without boxing
+			if (type == Type.Long && token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+				longs[row] = parser.getLongValue();
+			} else if (type == Type.Integer && token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+				ints[row] = parser.getIntValue();
+			} else if (type == Type.Double && (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT)) {
+				doubles[row] = parser.getDoubleValue();
+			} else if (type == Type.Boolean && (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE)) {
+				booleans[row] = token == JsonToken.VALUE_TRUE;
+			} else if (type == Type.String && token == JsonToken.VALUE_STRING) {
+				strings[row] = parser.getText();
+			} else {
+				Object value = readValue(parser);
+				if (type == null) {
+					objects[row] = value;
+				} else {
+					try {
+						set(row, TypeValidation.convert(value, type));
+					} catch (RuntimeException e) {
+						// IllegalArgumentException, or ClassCastException for a scalar in an array column
+						failures++;
+						return;
+					}
+				}
+			}
+			present[row] = true;
+		}
+
+		/**
+		 * Set a converted value.
+		 */
+		void set(int row, Object value) {
+			if (value == null)
+				return;
+			if (type == Type.Long) {
+				longs[row] = ((Number) value).longValue();
+			} else if (type == Type.Integer) {
+				ints[row] = ((Number) value).intValue();
+			} else if (type == Type.Double) {
+				doubles[row] = ((Number) value).doubleValue();
+			} else if (type == Type.Boolean) {
+				booleans[row] = (Boolean) value;
+			} else if (type == Type.String) {
+				strings[row] = value.toString();
+			} else {
+				objects[row] = value;
+			}
+			present[row] = true;
+		}
+
+		ResultColumn toResultColumn(int rowCount) {
+			ResultColumn column = new ResultColumn(id, type);
+			boolean hasNull = false;
+			for (int row = 0; row < rowCount; row++) {
+				hasNull |= !present[row];
+			}
+			if (longs != null) {
+				column.setLongs(copy(longs, rowCount));
+			} else if (ints != null) {
+				column.setInts(copy(ints, rowCount));
+			} else if (doubles != null) {
+				column.setDoubles(copy(doubles, rowCount));
+			} else if (booleans != null) {
+				column.setBooleans(copy(booleans, rowCount));
+			} else if (strings != null) {
+				column.setStrings(copy(strings, rowCount));
+				// a missing string is a null
+				hasNull = false;
+			} else {
+				column.setObjects(copy(objects, rowCount));
+				hasNull = false;
+			}
+			if (hasNull)
+				column.setIsNull(invert(present, rowCount));
+			return column;
+		}
+
+		private static long[] copy(long[] values, int length) {
+			return values.length == length ? values : copy(values, length, new long[length]);
+		}
+
+		private static int[] copy(int[] values, int length) {
+			return values.length == length ? values : copy(values, length, new int[length]);
+		}
+
+		private static double[] copy(double[] values, int length) {
+			return values.length == length ? values : copy(values, length, new double[length]);
+		}
+
+		private static boolean[] copy(boolean[] values, int length) {
+			return values.length == length ? values : copy(values, length, new boolean[length]);
+		}
+
+		private static String[] copy(String[] values, int length) {
+			return values.length == length ? values : copy(values, length, new String[length]);
+		}
+
+		private static Object[] copy(Object[] values, int length) {
+			return values.length == length ? values : copy(values, length, new Object[length]);
+		}
+
+		private static <T> T copy(Object from, int length, T to) {
+			System.arraycopy(from, 0, to, 0, length);
+			return to;
+		}
+
+		private static boolean[] invert(boolean[] present, int length) {
+			boolean[] isNull = new boolean[length];
+			for (int row = 0; row < length; row++) {
+				isNull[row] = !present[row];
+			}
+			return isNull;
+		}
+	}
+}
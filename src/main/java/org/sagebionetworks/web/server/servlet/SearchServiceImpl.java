@@ -1,12 +1,12 @@
 package org.sagebionetworks.web.server.servlet;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.logging.Logger;
 
 import org.sagebionetworks.repo.model.EntityHeader;
@@ -16,7 +16,6 @@ import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.web.client.SearchService;
 import org.sagebionetworks.web.server.ColumnConfigProvider;
 import org.sagebionetworks.web.server.RestTemplateProvider;
-import org.sagebionetworks.web.server.UrlTemplateUtil;
 import org.sagebionetworks.web.shared.ColumnsForType;
 import org.sagebionetworks.web.shared.FilterEnumeration;
 import org.sagebionetworks.web.shared.HeaderData;
@@ -32,7 +31,11 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.google.inject.Inject;
@@ -118,33 +121,42 @@ public class SearchServiceImpl extends RemoteServiceServlet implements
 		URI uri = QueryStringUtils.writeQueryUri(urlProvider.getRepositoryServiceUrl() + "/", params);
 
 
-		HttpHeaders headers = new HttpHeaders();
+		final HttpHeaders headers = new HttpHeaders();
 		// If the user data is stored in a cookie, then fetch it and the session token to the header.
 		UserDataProvider.addUserDataToHeader(this.getThreadLocalRequest(), headers);
 		headers.setContentType(MediaType.APPLICATION_JSON);
-		HttpEntity<String> entity = new HttpEntity<String>("", headers);
 
 		// Make the actual call.
 		try {
-			ResponseEntity<Object> response = templateProvider.getTemplate().exchange(uri, HttpMethod.GET, entity, Object.class);
-			LinkedHashMap<String, Object> body = (LinkedHashMap<String, Object>) response.getBody();
-			List<Map<String, Object>> rows = (List<Map<String, Object>>) body.get(KEY_RESULTS);
-			long end = System.currentTimeMillis();
+			// The rows are read straight into typed columns, and only the required columns are kept.
+			final SearchResultsReader reader = new SearchResultsReader(allColumnHeaderData, params.getLimit());
+			templateProvider.getTemplate().execute(uri, HttpMethod.GET, new RequestCallback() {
+				@Override
+				public void doWithRequest(ClientHttpRequest request) throws IOException {
+					request.getHeaders().putAll(headers);
+				}
+			}, new ResponseExtractor<Object>() {
+				@Override
+				public Object extractData(ClientHttpResponse response) throws IOException {
+					reader.read(response.getBody());
+					return null;
+				}
+			});
 			logger.info("Url GET: " + uri.toString());
-			// Before we set the rows we need to validate types
-			Map<String, HeaderData> allColumnsHeaderMap = createMap(allColumnHeaderData);
-			rows = TypeValidation.validateTypes(rows, allColumnsHeaderMap);
-			// Set the resulting rows.
-			results.setRows(rows);
-			results.setTotalNumberResults((Integer) body
-					.get(KEY_TOTAL_NUMBER_OF_RESULTS));
+			results.setTotalNumberResults(reader.getTotalNumberOfResults());
 			
 			// Add the where clause to the result table if it is not already there
 			// This is a workaround for PLFM-77
-			addWhereClauseToResults(params.getWhere(), rows);
+			if(params.getWhere() != null){
+				for(WhereCondition where: params.getWhere()){
+					reader.fillMissing(where.getId(), where.getValue());
+				}
+			}
 			
 			// The last step is to process all of the url templates
-			UrlTemplateUtil.processUrlTemplates(allColumnHeaderData, rows);
+			reader.expandUrlTemplates();
+			// Set the resulting rows.
+			results.setColumnarRows(reader.getRows());
 		
 			// Create the list of visible column headers to return to the caller
 			List<HeaderData> visibleHeaders = getColumnsForResults(visible);
@@ -164,40 +176,6 @@ public class SearchServiceImpl extends RemoteServiceServlet implements
 		return results;
 	}
 
-	/**
-	 * This is a workaround for PLFM-77
-	 * @param where
-	 * @param rows
-	 */
-	private void addWhereClauseToResults(List<WhereCondition>  list,	List<Map<String, Object>> rows) {
-		// Nothing to do if the where clause is null
-		if(list != null && rows != null){
-			for(Map<String, Object> row: rows){
-				for(WhereCondition where: list){
-					if(!row.containsKey(where.getId())){
-						row.put(where.getId(), where.getValue());
-					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Create a map of column headers to their id.
-	 * @param list
-	 * @return
-	 */
-	private Map<String, HeaderData> createMap(List<HeaderData> list){
-		Map<String, HeaderData> map = new TreeMap<String, HeaderData>();
-		if(list != null){
-			for(HeaderData header: list){
-				map.put(header.getId(), header);
-			}			
-		}
-		return map;
-	}
-
-
 	/**
 	 * If the select columns are null or empty then the defaults will be used.
 	 * 
@@ -7,6 +7,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Logger;
 
 import org.json.JSONException;
@@ -31,6 +33,12 @@ import org.sagebionetworks.web.shared.table.QueryDetails;
 import org.sagebionetworks.web.shared.table.QueryDetails.SortDirection;
 import org.springframework.web.client.HttpClientErrorException;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 public class ServiceUtils {
 
 	private static final String ERROR_REASON = "reason";
@@ -51,6 +59,18 @@ public class ServiceUtils {
 	
 	public static final String AUTHSVC_GET_GROUPS_PATH = "userGroup";
 	
+	public static final long PARSED_QUERY_CACHE_SIZE = 1000;
+	public static final String CACHE_KEY_SEPARATOR = "\u0000";
+	
+	/**
+	 * Parsed table queries, by query text.  Paging and sorting a table re-sends the same query many times.
+	 * The parsed queries are only read (modifyQuery builds a new specification), so they can be shared.
+	 */
+	private static final Cache<String, QuerySpecification> parsedQueries = CacheBuilder.newBuilder()
+			.maximumSize(PARSED_QUERY_CACHE_SIZE)
+			.recordStats()
+			.build();
+	
 	public static final String AUTHSVC_ACL_PRINCIPAL_NAME = "name";
 	public static final String AUTHSVC_ACL_PRINCIPAL_ID = "id";
 	public static final String AUTHSVC_ACL_PRINCIPAL_CREATION_DATE = "creationDate";
@@ -121,6 +141,23 @@ public class ServiceUtils {
 		client.setSessionToken(sessionToken);
 		return client;
 	}
+	
+	/**
+	 * Join the session token and request parameters (nulls allowed) into a
+	 * key for a per-user server cache.
+	 * 
+	 * @param parts
+	 * @return
+	 */
+	public static String createCacheKey(String... parts) {
+		StringBuilder key = new StringBuilder();
+		for (String part : parts) {
+			if (part != null)
+				key.append(part);
+			key.append(CACHE_KEY_SEPARATOR);
+		}
+		return key.toString();
+	}
 
 	
 	
@@ -162,6 +199,33 @@ public class ServiceUtils {
 		return temp;
 	}
 
+	/**
+	 * Parses a TableQuery string, or returns the cached result of parsing the same string before.
+	 * @param query - A table query string
+	 * @return
+	 * @throws BadRequestException
+	 */
+	public static QuerySpecification parseQuery(final String query) throws BadRequestException {
+		try {
+			return parsedQueries.get(query, new Callable<QuerySpecification>() {
+				@Override
+				public QuerySpecification call() throws ParseException {
+					return TableQueryParser.parserQuery(query);
+				}
+			});
+		} catch (ExecutionException e) {
+			throw new BadRequestException("Query is malformed: " + e.getCause().getMessage());
+		} catch (UncheckedExecutionException e) {
+			throw (RuntimeException) e.getCause();
+		} catch (ExecutionError e) {
+			throw (Error) e.getCause();
+		}
+	}
+	
+	public static CacheStats getParsedQueryCacheStats() {
+		return parsedQueries.stats();
+	}
+	
 	/**
 	 * Extracts a QueryDetails object from a TableQuery string
 	 * @param query - A table query string
@@ -169,45 +233,49 @@ public class ServiceUtils {
 	 * @throws BadRequestException
 	 */
 	public static QueryDetails extractQueryDetails(String query) throws BadRequestException {
-		try {			
-			QuerySpecification spec = TableQueryParser.parserQuery(query);			
-			QueryDetails details = new QueryDetails();
-						
-			// extract sorting
-			if (spec != null 
-					&& spec.getTableExpression() != null
-					&& spec.getTableExpression().getOrderByClause() != null
-					&& spec.getTableExpression().getOrderByClause().getSortSpecificationList() != null
-					&& spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications() != null
-					&& spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications().size() > 0) {
-				SortSpecification sortSpec = spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications().get(0);
-				
-				if (sortSpec != null
-						&& sortSpec.getSortKey() != null
-						&& sortSpec.getSortKey().getColumnReference() != null
-						&& sortSpec.getSortKey().getColumnReference().getNameLHS() != null
-						&& sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier() != null
-						&& sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier().getActualIdentifier() != null) {					
-					details.setSortedColumnName(sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier().getActualIdentifier().getRegularIdentifier());
-				}
-				if(sortSpec.getOrderingSpecification() != null) {
-					if(sortSpec.getOrderingSpecification() == OrderingSpecification.ASC) 
-						details.setSortDirection(SortDirection.ASC);
-					else
-						details.setSortDirection(SortDirection.DESC);
-				}
-			}
+		return extractQueryDetails(parseQuery(query));
+	}
+	
+	/**
+	 * Extracts a QueryDetails object from a parsed TableQuery
+	 * @param spec
+	 * @return
+	 */
+	public static QueryDetails extractQueryDetails(QuerySpecification spec) {
+		QueryDetails details = new QueryDetails();
+					
+		// extract sorting
+		if (spec != null 
+				&& spec.getTableExpression() != null
+				&& spec.getTableExpression().getOrderByClause() != null
+				&& spec.getTableExpression().getOrderByClause().getSortSpecificationList() != null
+				&& spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications() != null
+				&& spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications().size() > 0) {
+			SortSpecification sortSpec = spec.getTableExpression().getOrderByClause().getSortSpecificationList().getSortSpecifications().get(0);
 			
-			// extract pagination
-			if(spec != null && spec.getTableExpression() != null && spec.getTableExpression().getPagination() != null) {
-				details.setLimit(spec.getTableExpression().getPagination().getLimit());
-				details.setOffset(spec.getTableExpression().getPagination().getOffset());
+			if (sortSpec != null
+					&& sortSpec.getSortKey() != null
+					&& sortSpec.getSortKey().getColumnReference() != null
+					&& sortSpec.getSortKey().getColumnReference().getNameLHS() != null
+					&& sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier() != null
+					&& sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier().getActualIdentifier() != null) {					
+				details.setSortedColumnName(sortSpec.getSortKey().getColumnReference().getNameLHS().getIdentifier().getActualIdentifier().getRegularIdentifier());
 			}
-			
-			return details;
-		} catch (ParseException e) {
-			throw new BadRequestException("Query is malformed: " + e.getMessage());
-		}		
+			if(sortSpec.getOrderingSpecification() != null) {
+				if(sortSpec.getOrderingSpecification() == OrderingSpecification.ASC) 
+					details.setSortDirection(SortDirection.ASC);
+				else
+					details.setSortDirection(SortDirection.DESC);
+			}
+		}
+		
+		// extract pagination
+		if(spec != null && spec.getTableExpression() != null && spec.getTableExpression().getPagination() != null) {
+			details.setLimit(spec.getTableExpression().getPagination().getLimit());
+			details.setOffset(spec.getTableExpression().getPagination().getOffset());
+		}
+		
+		return details;
 	}
 
 	/**
@@ -219,11 +287,20 @@ public class ServiceUtils {
 	 */
 	public static String modifyQuery(String query, QueryDetails modifyingQd) throws BadRequestException {
 		if(modifyingQd == null) return query;
+		return toSQL(modifyQuery(parseQuery(query), modifyingQd));
+	}
+	
+	/**
+	 * Returns a new parsed TableQuery with modifications given by the provided QueryDetails.  The given spec is not changed.
+	 * @param spec
+	 * @param modifyingQd What to change in the query
+	 * @return
+	 * @throws BadRequestException
+	 */
+	public static QuerySpecification modifyQuery(QuerySpecification spec, QueryDetails modifyingQd) throws BadRequestException {
+		if(modifyingQd == null) return spec;
 		
 		try {
-			// parse
-			QuerySpecification spec = TableQueryParser.parserQuery(query);				
-			
 			// order by
 			OrderByClause newOrderByClause = null;
 			if(modifyingQd.getSortedColumnName() != null && modifyingQd.getSortDirection() != null) {
@@ -250,15 +327,17 @@ public class ServiceUtils {
 			OrderByClause orderByClause = newOrderByClause != null ? newOrderByClause : table.getOrderByClause();
 			
 			TableExpression newTableExpr = new TableExpression(table.getFromClause(), table.getWhereClause(), table.getGroupByClause(), orderByClause, pagination);
-			QuerySpecification executedSpec = new QuerySpecification(spec.getSetQuantifier(), spec.getSelectList(), newTableExpr);
-			 
-			StringBuilder sb = new StringBuilder(); 
-			executedSpec.toSQL(sb);
-			return sb.toString();
+			return new QuerySpecification(spec.getSetQuantifier(), spec.getSelectList(), newTableExpr);
 		} catch (ParseException e) {
 			throw new BadRequestException("Query is malformed: " + e.getMessage());
 		}
 	}
+	
+	public static String toSQL(QuerySpecification spec) {
+		StringBuilder sb = new StringBuilder(); 
+		spec.toSQL(sb);
+		return sb.toString();
+	}
 
 	
 }
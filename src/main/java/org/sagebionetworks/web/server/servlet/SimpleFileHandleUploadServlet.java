@@ -38,6 +38,7 @@ public class SimpleFileHandleUploadServlet extends HttpServlet {
 	@SuppressWarnings("unused")
 	private ServiceUrlProvider urlProvider;
 	private SynapseProvider synapseProvider = new SynapseProviderImpl();
+	private StreamingFileUploader streamingFileUploader = new StreamingFileUploaderImpl();
 	private TokenProvider tokenProvider = new TokenProvider() {
 		@Override
 		public String getSessionToken() {
@@ -50,6 +51,7 @@ public class SimpleFileHandleUploadServlet extends HttpServlet {
 	 *
 	 * @param provider
 	 */
+	@Inject
 	public void setSynapseProvider(SynapseProvider synapseProvider) {
 		this.synapseProvider = synapseProvider;
 	}
@@ -64,6 +66,16 @@ public class SimpleFileHandleUploadServlet extends HttpServlet {
 		this.urlProvider = provider;
 	}
 
+	/**
+	 * Injected with Guice. Uploads share the portal's upload memory budget.
+	 *
+	 * @param streamingFileUploader
+	 */
+	@Inject
+	public void setStreamingFileUploader(StreamingFileUploader streamingFileUploader) {
+		this.streamingFileUploader = streamingFileUploader;
+	}
+
 	/**
 	 * Unit test uses this to provide a mock token provider
 	 *
@@ -99,7 +111,7 @@ public class SimpleFileHandleUploadServlet extends HttpServlet {
 		try {
 			//Connect to synapse
 			SynapseClient client = createNewClient(token);
-			FileHandle newFileHandle = FileHandleServlet.uploadFile(client, request);
+			FileHandle newFileHandle = FileHandleServlet.uploadFile(streamingFileUploader, client, request);
 			FileHandleServlet.fillResponseWithSuccess(response, newFileHandle.getId());
 		} catch (Exception e) {
 			FileHandleServlet.fillResponseWithFailure(response, e);
@@ -0,0 +1,60 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.repo.model.file.FileHandle;
+
+/**
+ * Streams uploaded file content to the file service in chunks, without
+ * spooling it to local disk first. Each upload holds at most one chunk buffer
+ * in memory.
+ */
+public interface StreamingFileUploader {
+
+	/**
+	 * Upload the content of the given stream and create a file handle for it.
+	 * The stream is read to the end but not closed.
+	 *
+	 * @param client
+	 * @param fileName
+	 * @param contentType
+	 *            the content type declared by the browser. If it is missing or
+	 *            generic, it is sniffed from the first bytes of the stream.
+	 * @param stream
+	 * @return
+	 * @throws IOException
+	 * @throws SynapseException
+	 */
+	public FileHandle uploadFile(SynapseClient client, String fileName, String contentType, InputStream stream) throws IOException, SynapseException;
+
+	/**
+	 * Number of uploads that completed.
+	 *
+	 * @return
+	 */
+	public long getUploadCount();
+
+	/**
+	 * Number of uploads that failed.
+	 *
+	 * @return
+	 */
+	public long getFailureCount();
+
+	/**
+	 * Total bytes sent by completed uploads.
+	 *
+	 * @return
+	 */
+	public long getUploadedBytes();
+
+	/**
+	 * Average throughput of completed uploads, in bytes per second.
+	 *
+	 * @return
+	 */
+	public double getBytesPerSecond();
+}
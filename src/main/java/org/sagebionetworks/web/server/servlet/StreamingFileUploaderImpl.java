@@ -0,0 +1,355 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.sagebionetworks.StackConfiguration;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.repo.model.file.ChunkRequest;
+import org.sagebionetworks.repo.model.file.ChunkedFileToken;
+import org.sagebionetworks.repo.model.file.CompleteAllChunksRequest;
+import org.sagebionetworks.repo.model.file.CreateChunkedFileTokenRequest;
+import org.sagebionetworks.repo.model.file.FileHandle;
+import org.sagebionetworks.repo.model.file.State;
+import org.sagebionetworks.repo.model.file.UploadDaemonStatus;
+import org.sagebionetworks.web.server.HttpClientPool;
+import org.sagebionetworks.web.server.HttpUtils;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Reads the upload into a single reusable buffer, and PUTs each full buffer to
+ * a pre-signed chunk URL before reading the next. The content type is sniffed
+ * from the first buffer, so the file is never spooled to disk or read twice.
+ *
+ * Memory use is bounded by the buffer size times the number of concurrent
+ * uploads: the buffers are pooled and reused by the next upload. Uploads that
+ * cannot get a permit within the wait time are rejected.
+ *
+ * The MD5 is computed as the chunks are read and sent with the request that
+ * completes the upload. A chunk that fails with a connection error or a
+ * server error is retried a few times with a fresh pre-signed URL, as long as
+ * the upload has not waited MAX_RETRY_WAIT_MS for retries in total.
+ *
+ */
+public class StreamingFileUploaderImpl implements StreamingFileUploader {
+
+	private static Logger logger = Logger.getLogger(StreamingFileUploaderImpl.class.getName());
+
+	/**
+	 * S3 rejects multipart chunks smaller than 5 MB (other than the last one).
+	 */
+	public static final int MINIMUM_CHUNK_BYTES = 5 * 1024 * 1024;
+	public static final int DEFAULT_CHUNK_BYTES = MINIMUM_CHUNK_BYTES;
+	public static final int DEFAULT_MAX_CONCURRENT_UPLOADS = 10;
+	public static final long DEFAULT_PERMIT_WAIT_MS = 30000;
+	public static final long DEFAULT_DAEMON_TIMEOUT_MS = 5 * 60 * 1000;
+	public static final long DAEMON_POLL_MS = 250;
+	public static final int MAX_CHUNK_ATTEMPTS = 3;
+	public static final long DEFAULT_CHUNK_RETRY_DELAY_MS = 1000;
+	public static final long MAX_RETRY_WAIT_MS = 10000;
+	public static final String APPLICATION_OCTET_STREAM = org.sagebionetworks.client.SynapseClientImpl.APPLICATION_OCTET_STREAM;
+
+	private int chunkBytes;
+	private long permitWaitMs;
+	private long daemonTimeoutMs;
+	private long chunkRetryDelayMs = DEFAULT_CHUNK_RETRY_DELAY_MS;
+	private long maxRetryWaitMs = MAX_RETRY_WAIT_MS;
+	private Semaphore uploadPermits;
+	private BlockingQueue<byte[]> bufferPool;
+	private HttpClientPool httpClientPool;
+
+	private AtomicLong uploadCount = new AtomicLong();
+	private AtomicLong failureCount = new AtomicLong();
+	private AtomicLong uploadedBytes = new AtomicLong();
+	private AtomicLong uploadNanos = new AtomicLong();
+
+	/**
+	 * Used when an uploader is needed outside of Guice (servlet defaults and
+	 * tests).
+	 */
+	public StreamingFileUploaderImpl() {
+		this(DEFAULT_CHUNK_BYTES, DEFAULT_MAX_CONCURRENT_UPLOADS, DEFAULT_PERMIT_WAIT_MS,
+				DEFAULT_DAEMON_TIMEOUT_MS, HttpUtils.getHttpClientPool());
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public StreamingFileUploaderImpl(
+			@Named("org.sagebionetworks.portal.upload.chunk.bytes") int chunkBytes,
+			@Named("org.sagebionetworks.portal.upload.max.concurrent") int maxConcurrentUploads,
+			@Named("org.sagebionetworks.portal.upload.permit.wait.ms") long permitWaitMs,
+			@Named("org.sagebionetworks.portal.upload.daemon.timeout.ms") long daemonTimeoutMs,
+			HttpClientPool httpClientPool) {
+		this.chunkBytes = Math.max(chunkBytes, MINIMUM_CHUNK_BYTES);
+		this.permitWaitMs = permitWaitMs;
+		this.daemonTimeoutMs = daemonTimeoutMs;
+		this.uploadPermits = new Semaphore(maxConcurrentUploads, true);
+		this.bufferPool = new LinkedBlockingQueue<byte[]>(Math.max(1, maxConcurrentUploads));
+		this.httpClientPool = httpClientPool;
+	}
+
+	/**
+	 * For tests.
+	 *
+	 * @param chunkRetryDelayMs
+	 *            the wait before the first retry of a chunk, doubled for each
+	 *            retry after that
+	 */
+	public void setChunkRetryDelayMs(long chunkRetryDelayMs) {
+		this.chunkRetryDelayMs = chunkRetryDelayMs;
+	}
+
+	/**
+	 * For tests.
+	 *
+	 * @param maxRetryWaitMs
+	 *            the total time an upload may wait to retry its chunks
+	 */
+	public void setMaxRetryWaitMs(long maxRetryWaitMs) {
+		this.maxRetryWaitMs = maxRetryWaitMs;
+	}
+
+	@Override
+	public FileHandle uploadFile(SynapseClient client, String fileName, String contentType, InputStream stream) throws IOException, SynapseException {
+		acquirePermit();
+		long start = System.nanoTime();
+		boolean isSuccess = false;
+		byte[] buffer = borrowBuffer();
+		try {
+			MessageDigest digest = createMD5Digest();
+			int length = fill(stream, buffer);
+			digest.update(buffer, 0, length);
+			contentType = resolveContentType(contentType, buffer, length);
+			// the md5 can be given up front when the whole file fits in the first chunk
+			String contentMD5 = null;
+			if (length < buffer.length)
+				contentMD5 = new String(Hex.encodeHex(digest.digest()));
+
+			CreateChunkedFileTokenRequest ccftr = new CreateChunkedFileTokenRequest();
+			ccftr.setFileName(fileName);
+			ccftr.setContentType(contentType);
+			ccftr.setContentMD5(contentMD5);
+			client.setFileEndpoint(StackConfiguration.getFileServiceEndpoint());
+			ChunkedFileToken token = client.createChunkedFileUploadToken(ccftr);
+
+			List<Long> chunkNumbers = new ArrayList<Long>();
+			long totalBytes = 0;
+			long chunkNumber = 1;
+			long retryWaitLeftMs = maxRetryWaitMs;
+			do {
+				retryWaitLeftMs -= putChunk(client, token, chunkNumber, contentType, buffer, length, retryWaitLeftMs);
+				chunkNumbers.add(chunkNumber);
+				totalBytes += length;
+				chunkNumber++;
+				if (length < buffer.length)
+					break;
+				length = fill(stream, buffer);
+				digest.update(buffer, 0, length);
+			} while (length > 0);
+			// otherwise the md5 of the whole file is only known now, so it goes with the token that completes the upload
+			if (contentMD5 == null)
+				contentMD5 = new String(Hex.encodeHex(digest.digest()));
+			token.setContentMD5(contentMD5);
+
+			CompleteAllChunksRequest cacr = new CompleteAllChunksRequest();
+			cacr.setChunkedFileToken(token);
+			cacr.setChunkNumbers(chunkNumbers);
+			UploadDaemonStatus status = waitForDaemon(client, client.startUploadDeamon(cacr));
+			FileHandle handle = client.getRawFileHandle(status.getFileHandleId());
+
+			long elapsedNanos = System.nanoTime() - start;
+			uploadCount.incrementAndGet();
+			uploadedBytes.addAndGet(totalBytes);
+			uploadNanos.addAndGet(elapsedNanos);
+			long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+			logger.info("Uploaded " + totalBytes + " bytes in " + chunkNumbers.size() + " chunk(s) in " + elapsedMs + " ms ("
+					+ (long) getBytesPerSecond(totalBytes, elapsedNanos) / 1024 + " KB/s)");
+			isSuccess = true;
+			return handle;
+		} finally {
+			if (!isSuccess)
+				failureCount.incrementAndGet();
+			bufferPool.offer(buffer);
+			uploadPermits.release();
+		}
+	}
+
+	private void acquirePermit() throws IOException {
+		try {
+			if (!uploadPermits.tryAcquire(permitWaitMs, TimeUnit.MILLISECONDS))
+				throw new IOException("Too many uploads are in progress, please try again later.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to start the upload.");
+		}
+	}
+
+	private byte[] borrowBuffer() {
+		byte[] buffer = bufferPool.poll();
+		return buffer == null ? new byte[chunkBytes] : buffer;
+	}
+
+	/**
+	 * Read until the buffer is full or the stream ends.
+	 *
+	 * @return the number of bytes read
+	 */
+	public static int fill(InputStream stream, byte[] buffer) throws IOException {
+		int length = 0;
+		while (length < buffer.length) {
+			int read = stream.read(buffer, length, buffer.length - length);
+			if (read < 0)
+				break;
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Keep the declared content type unless it is missing or generic, in which
+	 * case let java guess from the first bytes. Some source code files still
+	 * register as application/octet-stream, but the preview manager in the
+	 * backend recognizes those file extensions.
+	 */
+	public static String resolveContentType(String contentType, byte[] buffer, int length) throws IOException {
+		if (contentType != null && !APPLICATION_OCTET_STREAM.equals(contentType.toLowerCase()))
+			return contentType;
+		String guessed = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(buffer, 0, length));
+		return guessed == null ? APPLICATION_OCTET_STREAM : guessed;
+	}
+
+	/**
+	 * PUT a chunk, retrying connection errors and server errors (with a new
+	 * pre-signed URL each time) up to MAX_CHUNK_ATTEMPTS times in total, while
+	 * the waits fit in what is left of the upload's retry wait.
+	 *
+	 * @return the time waited for retries
+	 */
+	private long putChunk(SynapseClient client, ChunkedFileToken token, long chunkNumber, String contentType, byte[] buffer, int length, long retryWaitLeftMs) throws IOException, SynapseException {
+		long delayMs = chunkRetryDelayMs;
+		long waitedMs = 0;
+		for (int attempt = 1;; attempt++) {
+			try {
+				putChunkOnce(client, token, chunkNumber, contentType, buffer, length);
+				return waitedMs;
+			} catch (IOException e) {
+				if (attempt >= MAX_CHUNK_ATTEMPTS || e instanceof ChunkRejectedException || waitedMs + delayMs > retryWaitLeftMs)
+					throw e;
+				logger.warning("Upload of chunk " + chunkNumber + " failed (attempt " + attempt + "), retrying: " + e.getMessage());
+			}
+			try {
+				Thread.sleep(delayMs);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while retrying the upload of chunk " + chunkNumber);
+			}
+			waitedMs += delayMs;
+			delayMs *= 2;
+		}
+	}
+
+	private void putChunkOnce(SynapseClient client, ChunkedFileToken token, long chunkNumber, String contentType, byte[] buffer, int length) throws IOException, SynapseException {
+		ChunkRequest request = new ChunkRequest();
+		request.setChunkedFileToken(token);
+		request.setChunkNumber(chunkNumber);
+		URL url = client.createChunkedPresignedUrl(request);
+		HttpPut put = new HttpPut(url.toString());
+		// the pre-signed url is signed with the content type
+		put.setHeader("Content-Type", contentType);
+		put.setEntity(new ByteArrayEntity(buffer, 0, length));
+		HttpResponse response = httpClientPool.getHttpClient().execute(put);
+		try {
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode >= 400 && statusCode < 500)
+				throw new ChunkRejectedException("Upload of chunk " + chunkNumber + " failed with status " + statusCode);
+			if (statusCode != 200)
+				throw new IOException("Upload of chunk " + chunkNumber + " failed with status " + statusCode);
+		} finally {
+			EntityUtils.consumeQuietly(response.getEntity());
+		}
+	}
+
+	private UploadDaemonStatus waitForDaemon(SynapseClient client, UploadDaemonStatus status) throws IOException, SynapseException {
+		long deadline = System.currentTimeMillis() + daemonTimeoutMs;
+		while (State.PROCESSING == status.getState()) {
+			if (System.currentTimeMillis() > deadline)
+				throw new IOException("Timed out waiting for the upload to complete.");
+			try {
+				Thread.sleep(DAEMON_POLL_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the upload to complete.");
+			}
+			status = client.getCompleteUploadDaemonStatus(status.getDaemonId());
+		}
+		if (State.FAILED == status.getState())
+			throw new IOException(status.getErrorMessage());
+		return status;
+	}
+
+	private static MessageDigest createMD5Digest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * The chunk was rejected (4xx), so sending it again will not help.
+	 */
+	private static class ChunkRejectedException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		public ChunkRejectedException(String message) {
+			super(message);
+		}
+	}
+
+	private static double getBytesPerSecond(long bytes, long nanos) {
+		return nanos == 0 ? 0 : bytes * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+
+	@Override
+	public long getUploadCount() {
+		return uploadCount.get();
+	}
+
+	@Override
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	@Override
+	public long getUploadedBytes() {
+		return uploadedBytes.get();
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		return getBytesPerSecond(uploadedBytes.get(), uploadNanos.get());
+	}
+}
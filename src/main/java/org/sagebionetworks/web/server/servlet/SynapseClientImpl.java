@@ -10,19 +10,23 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
@@ -70,6 +74,7 @@ import org.sagebionetworks.repo.model.UserGroupHeaderResponsePage;
 import org.sagebionetworks.repo.model.UserProfile;
 import org.sagebionetworks.repo.model.VariableContentPaginatedResults;
 import org.sagebionetworks.repo.model.VersionInfo;
+import org.sagebionetworks.repo.model.Versionable;
 import org.sagebionetworks.repo.model.attachment.AttachmentData;
 import org.sagebionetworks.repo.model.attachment.PresignedUrl;
 import org.sagebionetworks.repo.model.auth.UserEntityPermissions;
@@ -92,6 +97,8 @@ import org.sagebionetworks.repo.model.principal.AliasCheckRequest;
 import org.sagebionetworks.repo.model.principal.AliasCheckResponse;
 import org.sagebionetworks.repo.model.principal.AliasType;
 import org.sagebionetworks.repo.model.provenance.Activity;
+import org.sagebionetworks.repo.model.provenance.Used;
+import org.sagebionetworks.repo.model.provenance.UsedEntity;
 import org.sagebionetworks.repo.model.quiz.PassingRecord;
 import org.sagebionetworks.repo.model.quiz.Quiz;
 import org.sagebionetworks.repo.model.quiz.QuizResponse;
@@ -120,10 +127,14 @@ import org.sagebionetworks.schema.adapter.org.json.JSONArrayAdapterImpl;
 import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
 import org.sagebionetworks.web.client.DisplayUtils;
 import org.sagebionetworks.web.client.SynapseClient;
+import org.sagebionetworks.table.query.model.QuerySpecification;
 import org.sagebionetworks.web.client.transform.JSONEntityFactory;
 import org.sagebionetworks.web.client.transform.JSONEntityFactoryImpl;
+import org.sagebionetworks.web.server.PortalMetrics;
+import org.sagebionetworks.web.server.PortalMetricsImpl;
 import org.sagebionetworks.web.shared.AccessRequirementsTransport;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
 import org.sagebionetworks.web.shared.EntityConstants;
 import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.MembershipInvitationBundle;
@@ -131,20 +142,25 @@ import org.sagebionetworks.web.shared.MembershipRequestBundle;
 import org.sagebionetworks.web.shared.SerializableWhitelist;
 import org.sagebionetworks.web.shared.TeamBundle;
 import org.sagebionetworks.web.shared.WebConstants;
+import org.sagebionetworks.web.shared.WikiHtmlBundle;
 import org.sagebionetworks.web.shared.exceptions.BadRequestException;
 import org.sagebionetworks.web.shared.exceptions.ExceptionUtil;
 import org.sagebionetworks.web.shared.exceptions.NotFoundException;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
 import org.sagebionetworks.web.shared.exceptions.TableUnavilableException;
 import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.table.QueryDetails;
 import org.sagebionetworks.web.shared.table.QueryResult;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 @SuppressWarnings("serial")
 public class SynapseClientImpl extends RemoteServiceServlet implements
@@ -156,29 +172,53 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 			SynapseMarkdownProcessor.getInstance();
 		}
 	
-	private Cache<MarkdownCacheRequest, String> wiki2Markdown = CacheBuilder.newBuilder()
-			.maximumSize(35)
-			.expireAfterAccess(1, TimeUnit.HOURS)
+	private WikiPageCache wikiPageCache = new WikiPageCacheImpl();
+	
+	public static final long DEFAULT_WIKI_HTML_CACHE_MAX_SIZE = 500;
+	public static final long DEFAULT_WIKI_HTML_CACHE_EXPIRE_MINUTES = 60;
+	
+	//rendered html for a wiki page, keyed by wiki key, etag, version, preview flag and host prefix
+	private LoadingCache<WikiHtmlCacheRequest, String> wiki2Html = createWikiHtmlCache(DEFAULT_WIKI_HTML_CACHE_MAX_SIZE, DEFAULT_WIKI_HTML_CACHE_EXPIRE_MINUTES);
+	
+	public static final long DEFAULT_ACL_CACHE_MAX_SIZE = 10000;
+	public static final long DEFAULT_ACL_CACHE_EXPIRE_SECONDS = 60;
+	public static final long DEFAULT_BENEFACTOR_CACHE_EXPIRE_SECONDS = 10;
+	
+	//benefactor ACLs, keyed by benefactor id. Many entities share a few benefactors.
+	//Not scoped to the user: a benefactor ACL can be read by anyone who can read an entity below it,
+	//and every lookup is made after the repository let the user read the entity.
+	private Cache<String, AccessControlList> benefactorAcls = createAclCache(DEFAULT_ACL_CACHE_MAX_SIZE, DEFAULT_ACL_CACHE_EXPIRE_SECONDS);
+	//benefactor ids, keyed by entity id. Kept briefly, since moving an entity changes its benefactor
+	private Cache<String, String> entityBenefactors = createAclCache(DEFAULT_ACL_CACHE_MAX_SIZE, DEFAULT_BENEFACTOR_CACHE_EXPIRE_SECONDS);
+	
+	private static <V> Cache<String, V> createAclCache(long maxSize, long expireSeconds) {
+		return CacheBuilder.newBuilder()
+			.maximumSize(maxSize)
+			.expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+			.recordStats()
+			.build();
+	}
+	
+	private LoadingCache<WikiHtmlCacheRequest, String> createWikiHtmlCache(long maxSize, long expireMinutes) {
+		return CacheBuilder.newBuilder()
+			.maximumSize(maxSize)
+			.expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+			.recordStats()
 			.build(
-					new CacheLoader<MarkdownCacheRequest, String>() {
+					new CacheLoader<WikiHtmlCacheRequest, String>() {
 						@Override
-						public String load(MarkdownCacheRequest key)
-								throws Exception {
-							try {
-								org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
-								WikiPage returnPage = null;
-								 if (key.getVersion() == null)
-									 returnPage = synapseClient.getV2WikiPageAsV1(key.getWikiPageKey());
-								 else 
-									 returnPage = synapseClient.getVersionOfV2WikiPageAsV1(key.getWikiPageKey(), key.getVersion());
-
-								return EntityFactory.createJSONStringForEntity(returnPage);
-							} catch(SynapseException e) {
-								throw ExceptionUtil.convertSynapseException(e);
-							}
+						public String load(WikiHtmlCacheRequest key) throws Exception {
+							//the page json itself comes from the wiki2Markdown cache
+							String pageJson = processMarkdownRequest(createSynapseClient(), key.getMarkdownRequest());
+							WikiPage page = EntityFactory.createEntityFromJSONString(pageJson, WikiPage.class);
+							long startTime = System.currentTimeMillis();
+							String html = SynapseMarkdownProcessor.getInstance().markdown2Html(page.getMarkdown(), key.isPreview(), key.getClientHostString());
+							portalMetrics.recordTime("wikiMarkdown2Html", System.currentTimeMillis() - startTime);
+							return html;
 						}
 					}
 				);
+	}
 	
 	private TokenProvider tokenProvider = this;
 	AdapterFactory adapterFactory = new AdapterFactoryImpl();
@@ -212,10 +252,42 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	 * 
 	 * @param provider
 	 */
+	@Inject
 	public void setSynapseProvider(SynapseProvider provider) {
 		this.synapseProvider = provider;
 	}
 
+	/**
+	 * Injected with Guice. Runs independent repository calls concurrently.
+	 */
+	private FanOutExecutor fanOutExecutor = new FanOutExecutorImpl();
+
+	@Inject
+	public void setFanOutExecutor(FanOutExecutor fanOutExecutor) {
+		this.fanOutExecutor = fanOutExecutor;
+	}
+
+	/**
+	 * Injected with Guice. Fans out and briefly caches the per-evaluation
+	 * calls behind the challenge participant RPCs.
+	 */
+	private ChallengeAggregator challengeAggregator = new ChallengeAggregatorImpl();
+
+	@Inject
+	public void setChallengeAggregator(ChallengeAggregator challengeAggregator) {
+		this.challengeAggregator = challengeAggregator;
+	}
+
+	/**
+	 * Injected with Guice. Times markdown rendering and table queries.
+	 */
+	private PortalMetrics portalMetrics = new PortalMetricsImpl();
+
+	@Inject
+	public void setPortalMetrics(PortalMetrics portalMetrics) {
+		this.portalMetrics = portalMetrics;
+	}
+
 	/**
 	 * This allows integration tests to override the token provider.
 	 * 
@@ -225,8 +297,88 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		this.tokenProvider = tokenProvider;
 	}
 	
-	public void setMarkdownCache(Cache<MarkdownCacheRequest, String> wikiToMarkdown) {
-		this.wiki2Markdown = wikiToMarkdown;
+	/**
+	 * Injected via Guice
+	 * @param wikiPageCache
+	 */
+	@Inject
+	public void setWikiPageCache(WikiPageCache wikiPageCache) {
+		this.wikiPageCache = wikiPageCache;
+	}
+	
+	public void setWikiHtmlCache(LoadingCache<WikiHtmlCacheRequest, String> wikiToHtml) {
+		this.wiki2Html = wikiToHtml;
+	}
+	
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 * 
+	 * @param maxSize
+	 * @param expireMinutes
+	 */
+	@Inject
+	public void configureWikiHtmlCache(
+			@Named("org.sagebionetworks.portal.wiki.html.cache.max.size") long maxSize,
+			@Named("org.sagebionetworks.portal.wiki.html.cache.expire.minutes") long expireMinutes) {
+		this.wiki2Html = createWikiHtmlCache(maxSize, expireMinutes);
+	}
+	
+	/**
+	 * When true, entity bundles are fetched as json and each part is forwarded
+	 * as the repository sent it, rather than parsed into model objects and
+	 * written back to json.
+	 */
+	private boolean entityBundlePassthrough = false;
+	
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 * 
+	 * @param passthrough
+	 */
+	@Inject
+	public void setEntityBundlePassthrough(
+			@Named("org.sagebionetworks.portal.entity.bundle.passthrough") boolean passthrough) {
+		this.entityBundlePassthrough = passthrough;
+	}
+	
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 * 
+	 * @param maxSize
+	 * @param expireSeconds
+	 * @param benefactorExpireSeconds
+	 */
+	@Inject
+	public void configureAclCache(
+			@Named("org.sagebionetworks.portal.acl.cache.max.size") long maxSize,
+			@Named("org.sagebionetworks.portal.acl.cache.expire.seconds") long expireSeconds,
+			@Named("org.sagebionetworks.portal.acl.cache.benefactor.expire.seconds") long benefactorExpireSeconds) {
+		this.benefactorAcls = createAclCache(maxSize, expireSeconds);
+		this.entityBenefactors = createAclCache(maxSize, benefactorExpireSeconds);
+	}
+	
+	/**
+	 * Hit, miss and eviction counts for the benefactor ACL cache.
+	 * @return
+	 */
+	public CacheStats getAclCacheStats() {
+		return benefactorAcls.stats();
+	}
+	
+	/**
+	 * Hit, miss and eviction counts for the entity benefactor cache.
+	 * @return
+	 */
+	public CacheStats getBenefactorCacheStats() {
+		return entityBenefactors.stats();
+	}
+	
+	/**
+	 * Hit, miss, load and eviction counts for the rendered wiki html cache.
+	 * @return
+	 */
+	public CacheStats getWikiHtmlCacheStats() {
+		return wiki2Html.stats();
 	}
 	
 	/**
@@ -279,48 +431,156 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	@Override
 	public EntityBundleTransport getEntityBundle(String entityId, int partsMask)
 			throws RestServiceException {
-		try {			
-			org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();			
-			EntityBundle eb;
-			//TODO:remove the try catch when PLFM-1752 is fixed
-			try {
-				eb = synapseClient.getEntityBundle(entityId, partsMask);
-				} catch(SynapseNotFoundException e) {
-				//if we're trying to get the filehandles, then give another try without the filehandles
-				if ((EntityBundleTransport.FILE_HANDLES & partsMask)!=0) {
-					int newPartsMask = (~EntityBundleTransport.FILE_HANDLES) & partsMask;
-					eb = synapseClient.getEntityBundle(entityId, newPartsMask);
+		return getEntityBundle(new EntityBundleClients(partsMask), entityId, null, partsMask);
+	}
+	
+	/**
+	 * Maximum number of bundles a single getEntityBundles call fetches at the same time, so one large table cannot take over the shared fan-out pool.
+	 */
+	public static final int ENTITY_BUNDLE_BATCH_PARALLELISM = 10;
+	
+	@Override
+	public EntityBundleTransportList getEntityBundles(List<String> entityIds, final int partsMask) throws RestServiceException {
+		List<EntityBundleTransport> bundles = new ArrayList<EntityBundleTransport>(entityIds.size());
+		List<RestServiceException> errors = new ArrayList<RestServiceException>(entityIds.size());
+		for (int start = 0; start < entityIds.size(); start += ENTITY_BUNDLE_BATCH_PARALLELISM) {
+			List<Callable<EntityBundleTransport>> calls = new ArrayList<Callable<EntityBundleTransport>>();
+			for (final String entityId : entityIds.subList(start, Math.min(start + ENTITY_BUNDLE_BATCH_PARALLELISM, entityIds.size()))) {
+				//the clients of each entity, created here on the request thread where the session token is available
+				final EntityBundleClients clients = new EntityBundleClients(partsMask);
+				calls.add(new Callable<EntityBundleTransport>() {
+					@Override
+					public EntityBundleTransport call() throws Exception {
+						return getEntityBundle(clients, entityId, null, partsMask);
+					}
+				});
+			}
+			//a failure only affects its own entity
+			for (FanOutResult<EntityBundleTransport> result : fanOutExecutor.invokeAll(calls)) {
+				if (result.isSuccess()) {
+					bundles.add(result.getValue());
+					errors.add(null);
+				} else {
+					bundles.add(null);
+					errors.add(getFanOutError(result));
 				}
-				else throw e;
 			}
-			return convertBundleToTransport(entityId, eb, partsMask);
-		} catch (SynapseException e) {
-			throw ExceptionUtil.convertSynapseException(e);
 		}
+		return new EntityBundleTransportList(bundles, errors);
 	}
 	
 	@Override
 	public EntityBundleTransport getEntityBundleForVersion(String entityId,
 			Long versionNumber, int partsMask) throws RestServiceException {
-		try {			
-			org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
-			EntityBundle eb;
-			//TODO:remove the try catch when PLFM-1752 is fixed
-			try {
-				eb = synapseClient.getEntityBundle(entityId, versionNumber, partsMask);
-			} catch(SynapseNotFoundException e) {
-				//if we're trying to get the filehandles, then give another try without the filehandles
-				if ((EntityBundleTransport.FILE_HANDLES & partsMask)!=0) {
-					int newPartsMask = (~EntityBundleTransport.FILE_HANDLES) & partsMask;
-					eb = synapseClient.getEntityBundle(entityId, versionNumber, newPartsMask);
+		return getEntityBundle(new EntityBundleClients(partsMask), entityId, versionNumber, partsMask);
+	}
+	
+	/**
+	 * The bundle, its file handles and the benefactor ACL are fetched at the
+	 * same time, each with its own client. The clients are created here, on
+	 * the request thread, where the session token is available.
+	 */
+	private class EntityBundleClients {
+		final org.sagebionetworks.client.SynapseClient bundle;
+		final org.sagebionetworks.client.SynapseClient fileHandles;
+		final org.sagebionetworks.client.SynapseClient acl;
+		
+		EntityBundleClients(int partsMask) {
+			bundle = createSynapseClient();
+			fileHandles = (EntityBundleTransport.FILE_HANDLES & partsMask) != 0 ? createSynapseClient() : null;
+			acl = (EntityBundleTransport.ACL & partsMask) != 0 ? createSynapseClient() : null;
+		}
+	}
+	
+	/**
+	 * Counted each time the file handles of an entity bundle are not found
+	 * (PLFM-1752), so the bundle is returned without them.
+	 */
+	public static final String BUNDLE_FILE_HANDLES_NOT_FOUND = "entityBundleFileHandlesNotFound";
+	
+	private EntityBundleTransport getEntityBundle(final EntityBundleClients clients, final String entityId, final Long versionNumber, final int partsMask)
+			throws RestServiceException {
+		//fetch the file handles and the benefactor ACL (in case the ACL is inherited) while the rest of the bundle is fetched
+		List<Callable<Object>> calls = new ArrayList<Callable<Object>>();
+		calls.add(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return fetchEntityBundle(clients.bundle, entityId, versionNumber, (~EntityBundleTransport.FILE_HANDLES) & partsMask);
+			}
+		});
+		int fileHandlesIndex = -1;
+		if (clients.fileHandles != null) {
+			fileHandlesIndex = calls.size();
+			calls.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return fetchEntityBundle(clients.fileHandles, entityId, versionNumber, EntityBundleTransport.FILE_HANDLES);
 				}
-				else throw e;
+			});
+		}
+		int aclIndex = -1;
+		if (clients.acl != null) {
+			aclIndex = calls.size();
+			//the bundle only tells whether the ACL is inherited once it is back, so an entity
+			//with its own ACL costs one benefactor lookup (but no ACL fetch) unless it is cached
+			calls.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return getInheritedAclJson(clients.acl, entityId);
+				}
+			});
+		}
+		List<FanOutResult<Object>> results = fanOutExecutor.invokeAll(calls);
+		EntityBundleTransport ebt = (EntityBundleTransport) getFanOutValue(results.get(0));
+		if (fileHandlesIndex >= 0) {
+			FanOutResult<Object> result = results.get(fileHandlesIndex);
+			if (result.isSuccess()) {
+				ebt.setFileHandlesJson(((EntityBundleTransport) result.getValue()).getFileHandlesJson());
+			} else if (result.getError() instanceof SynapseNotFoundException) {
+				//TODO:remove when PLFM-1752 is fixed. The rest of the bundle was found, so only the file handles are missing.
+				portalMetrics.increment(BUNDLE_FILE_HANDLES_NOT_FOUND);
+			} else {
+				throw getFanOutError(result);
 			}
-			
-			return convertBundleToTransport(entityId, eb, partsMask);
-		} catch (SynapseException e) {
-			throw ExceptionUtil.convertSynapseException(e);
 		}
+		if (aclIndex >= 0 && ebt.getAclJson() == null) {
+			// ACL is inherited
+			FanOutResult<Object> result = results.get(aclIndex);
+			if (result.isSuccess())
+				ebt.setAclJson((String) result.getValue());
+			else
+				log.error("Could not look up the benefactor ACL of " + entityId, result.getError());
+		}
+		ebt.setIsWikiBasedEntity(getWikiBasedEntities().contains(entityId));
+		return ebt;
+	}
+	
+	/**
+	 * The ACL json of the entity's benefactor, or null when the entity is its
+	 * own benefactor (its ACL is in the bundle). The benefactor may come from
+	 * the cache, so this is only used alongside the bundle fetch, which checks
+	 * that the user can read the entity.
+	 */
+	private String getInheritedAclJson(org.sagebionetworks.client.SynapseClient synapseClient, String entityId) throws SynapseException, JSONObjectAdapterException {
+		String benefactorId = entityBenefactors.getIfPresent(entityId);
+		if (benefactorId == null) {
+			benefactorId = synapseClient.getEntityBenefactor(entityId).getId();
+			entityBenefactors.put(entityId, benefactorId);
+		}
+		if (entityId.equals(benefactorId))
+			return null;
+		return EntityFactory.createJSONStringForEntity(getBenefactorAcl(synapseClient, benefactorId));
+	}
+	
+	private EntityBundleTransport fetchEntityBundle(org.sagebionetworks.client.SynapseClient synapseClient, String entityId, Long versionNumber, int partsMask)
+			throws SynapseException, JSONObjectAdapterException, JSONException {
+		if (entityBundlePassthrough) {
+			String uri = "/entity/" + entityId + (versionNumber == null ? "" : "/version/" + versionNumber) + "/bundle?mask=" + partsMask;
+			return createEntityBundleTransport(synapseClient.getEntity(uri), partsMask);
+		}
+		EntityBundle eb = versionNumber == null ? synapseClient.getEntityBundle(entityId, partsMask)
+				: synapseClient.getEntityBundle(entityId, versionNumber, partsMask);
+		return createEntityBundleTransport(eb, partsMask);
 	}
 	
 	@Override
@@ -378,66 +638,93 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	 * Private Methods
 	 */
 
-	// Convert repo-side EntityBundle to serializable EntityBundleTransport
-	private EntityBundleTransport convertBundleToTransport(String entityId, 
-			EntityBundle eb, int partsMask) throws RestServiceException {
+	/**
+	 * Convert repo-side EntityBundle to serializable EntityBundleTransport. An
+	 * inherited ACL is left out (the bundle does not include it).
+	 */
+	public static EntityBundleTransport createEntityBundleTransport(EntityBundle eb, int partsMask) throws JSONObjectAdapterException {
 		EntityBundleTransport ebt = new EntityBundleTransport();
-		try {
-			if ((EntityBundleTransport.ENTITY & partsMask) > 0) {
-				Entity e = eb.getEntity();
-				ebt.setEntityJson(EntityFactory.createJSONStringForEntity(e));
-			}
-			if ((EntityBundleTransport.ANNOTATIONS & partsMask) > 0) {
-				Annotations a = eb.getAnnotations();
-				ebt.setAnnotationsJson(EntityFactory.createJSONStringForEntity(a));
-			}
-			if ((EntityBundleTransport.PERMISSIONS & partsMask) > 0) {
-				UserEntityPermissions uep = eb.getPermissions();
-				ebt.setPermissionsJson(EntityFactory.createJSONStringForEntity(uep));
-			}
-			if ((EntityBundleTransport.ENTITY_PATH & partsMask) > 0) {
-				EntityPath path = eb.getPath();
-				ebt.setEntityPathJson(EntityFactory.createJSONStringForEntity(path));
-			}
-			if ((EntityBundleTransport.ENTITY_REFERENCEDBY & partsMask) > 0) {
-				List<EntityHeader> rbList = eb.getReferencedBy();
-				PaginatedResults<EntityHeader> rb = new PaginatedResults<EntityHeader>();
-				rb.setResults(rbList);
-				ebt.setEntityReferencedByJson(EntityFactory.createJSONStringForEntity(rb));
-			}
-			if ((EntityBundleTransport.HAS_CHILDREN & partsMask) > 0) {
-				Boolean hasChildren = eb.getHasChildren();
-				ebt.setHashChildren(hasChildren);
-			}
-			if ((EntityBundleTransport.ACL & partsMask) > 0) {
-				AccessControlList acl = eb.getAccessControlList();
-				if (acl == null) {
-					// ACL is inherited; fetch benefactor ACL.
-					try {
-						acl = getAcl(entityId);
-					} catch (SynapseException e) {
-						e.printStackTrace();
-					}
-				}
-				ebt.setAclJson(EntityFactory.createJSONStringForEntity(acl));
-			}
-			if ((EntityBundleTransport.ACCESS_REQUIREMENTS & partsMask)!=0) {
-				ebt.setAccessRequirementsJson(createJSONStringFromArray(eb.getAccessRequirements()));
-			}
-			if ((EntityBundleTransport.UNMET_ACCESS_REQUIREMENTS & partsMask)!=0) {
-				ebt.setUnmetAccessRequirementsJson(createJSONStringFromArray(eb.getUnmetAccessRequirements()));
-			}
-			if ((EntityBundleTransport.FILE_HANDLES & partsMask)!=0 && eb.getFileHandles() != null)
-				ebt.setFileHandlesJson(createJSONStringFromArray(eb.getFileHandles()));
-			
-			ebt.setIsWikiBasedEntity(getWikiBasedEntities().contains(entityId));
-			
-		} catch (JSONObjectAdapterException e) {
-			throw new UnknownErrorException(e.getMessage());			
+		if ((EntityBundleTransport.ENTITY & partsMask) > 0) {
+			Entity e = eb.getEntity();
+			ebt.setEntityJson(EntityFactory.createJSONStringForEntity(e));
 		}
+		if ((EntityBundleTransport.ANNOTATIONS & partsMask) > 0) {
+			Annotations a = eb.getAnnotations();
+			ebt.setAnnotationsJson(EntityFactory.createJSONStringForEntity(a));
+		}
+		if ((EntityBundleTransport.PERMISSIONS & partsMask) > 0) {
+			UserEntityPermissions uep = eb.getPermissions();
+			ebt.setPermissionsJson(EntityFactory.createJSONStringForEntity(uep));
+		}
+		if ((EntityBundleTransport.ENTITY_PATH & partsMask) > 0) {
+			EntityPath path = eb.getPath();
+			ebt.setEntityPathJson(EntityFactory.createJSONStringForEntity(path));
+		}
+		if ((EntityBundleTransport.ENTITY_REFERENCEDBY & partsMask) > 0) {
+			List<EntityHeader> rbList = eb.getReferencedBy();
+			PaginatedResults<EntityHeader> rb = new PaginatedResults<EntityHeader>();
+			rb.setResults(rbList);
+			ebt.setEntityReferencedByJson(EntityFactory.createJSONStringForEntity(rb));
+		}
+		if ((EntityBundleTransport.HAS_CHILDREN & partsMask) > 0) {
+			Boolean hasChildren = eb.getHasChildren();
+			ebt.setHashChildren(hasChildren);
+		}
+		if ((EntityBundleTransport.ACL & partsMask) > 0 && eb.getAccessControlList() != null) {
+			ebt.setAclJson(EntityFactory.createJSONStringForEntity(eb.getAccessControlList()));
+		}
+		if ((EntityBundleTransport.ACCESS_REQUIREMENTS & partsMask)!=0) {
+			ebt.setAccessRequirementsJson(createJSONStringFromArray(eb.getAccessRequirements()));
+		}
+		if ((EntityBundleTransport.UNMET_ACCESS_REQUIREMENTS & partsMask)!=0) {
+			ebt.setUnmetAccessRequirementsJson(createJSONStringFromArray(eb.getUnmetAccessRequirements()));
+		}
+		if ((EntityBundleTransport.FILE_HANDLES & partsMask)!=0 && eb.getFileHandles() != null)
+			ebt.setFileHandlesJson(createJSONStringFromArray(eb.getFileHandles()));
 		return ebt;
 	}
 	
+	/**
+	 * Slice the parts of a repository entity bundle response into an
+	 * EntityBundleTransport, as the json the repository sent (no model objects
+	 * are built). An inherited ACL is left out (the bundle does not include it).
+	 */
+	public static EntityBundleTransport createEntityBundleTransport(JSONObject bundle, int partsMask) throws JSONException {
+		EntityBundleTransport ebt = new EntityBundleTransport();
+		if ((EntityBundleTransport.ENTITY & partsMask) > 0)
+			ebt.setEntityJson(getBundlePartJson(bundle, EntityBundle.JSON_ENTITY));
+		if ((EntityBundleTransport.ANNOTATIONS & partsMask) > 0)
+			ebt.setAnnotationsJson(getBundlePartJson(bundle, EntityBundle.JSON_ANNOTATIONS));
+		if ((EntityBundleTransport.PERMISSIONS & partsMask) > 0)
+			ebt.setPermissionsJson(getBundlePartJson(bundle, EntityBundle.JSON_PERMISSIONS));
+		if ((EntityBundleTransport.ENTITY_PATH & partsMask) > 0)
+			ebt.setEntityPathJson(getBundlePartJson(bundle, EntityBundle.JSON_PATH));
+		if ((EntityBundleTransport.ENTITY_REFERENCEDBY & partsMask) > 0) {
+			//the client reads the references as paginated results
+			JSONObject rb = new JSONObject();
+			rb.put("totalNumberOfResults", 0);
+			JSONArray rbList = bundle.optJSONArray(EntityBundle.JSON_REFERENCED_BY);
+			if (rbList != null)
+				rb.put("results", rbList);
+			ebt.setEntityReferencedByJson(rb.toString());
+		}
+		if ((EntityBundleTransport.HAS_CHILDREN & partsMask) > 0 && !bundle.isNull(EntityBundle.JSON_HAS_CHILDREN))
+			ebt.setHashChildren(bundle.getBoolean(EntityBundle.JSON_HAS_CHILDREN));
+		if ((EntityBundleTransport.ACL & partsMask) > 0)
+			ebt.setAclJson(getBundlePartJson(bundle, EntityBundle.JSON_ACL));
+		if ((EntityBundleTransport.ACCESS_REQUIREMENTS & partsMask)!=0)
+			ebt.setAccessRequirementsJson(getBundlePartJson(bundle, EntityBundle.JSON_ACCESS_REQUIREMENTS));
+		if ((EntityBundleTransport.UNMET_ACCESS_REQUIREMENTS & partsMask)!=0)
+			ebt.setUnmetAccessRequirementsJson(getBundlePartJson(bundle, EntityBundle.JSON_UNMET_ACCESS_REQUIREMENTS));
+		if ((EntityBundleTransport.FILE_HANDLES & partsMask)!=0)
+			ebt.setFileHandlesJson(getBundlePartJson(bundle, EntityBundle.JSON_FILE_HANDLES));
+		return ebt;
+	}
+	
+	private static String getBundlePartJson(JSONObject bundle, String key) {
+		return bundle.isNull(key) ? null : bundle.opt(key).toString();
+	}
+	
 	public static String createJSONStringFromArray(List<? extends JSONEntity> list) throws JSONObjectAdapterException {
 		JSONArrayAdapter aa = new JSONArrayAdapterImpl();
 		for (int i=0; i<list.size(); i++) {
@@ -754,6 +1041,71 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		} 
 	}
 	
+	/**
+	 * Maximum number of profiles or teams a single call fetches at the same time.
+	 */
+	public static final int BADGE_BATCH_PARALLELISM = 10;
+	
+	@Override
+	public List<String> getUserProfiles(List<String> userIds) throws RestServiceException {
+		try {
+			List<String> profiles = new ArrayList<String>(userIds.size());
+			for (FanOutResult<UserProfile> result : fetchUserProfiles(userIds)) {
+				profiles.add(result.isSuccess() ? EntityFactory.createJSONStringForEntity(result.getValue()) : null);
+			}
+			return profiles;
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());
+		}
+	}
+	
+	@Override
+	public List<String> getTeams(List<String> teamIds) throws RestServiceException {
+		try {
+			List<String> teams = new ArrayList<String>(teamIds.size());
+			for (FanOutResult<Team> result : fetchTeams(teamIds)) {
+				teams.add(result.isSuccess() ? EntityFactory.createJSONStringForEntity(result.getValue()) : null);
+			}
+			return teams;
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Look up the user profiles on the fan-out pool, at most BADGE_BATCH_PARALLELISM at a time.
+	 * @return the results in id order
+	 */
+	private List<FanOutResult<UserProfile>> fetchUserProfiles(List<String> userIds) {
+		List<FanOutResult<UserProfile>> results = new ArrayList<FanOutResult<UserProfile>>(userIds.size());
+		for (int start = 0; start < userIds.size(); start += BADGE_BATCH_PARALLELISM) {
+			//the clients of a window are only created when it starts
+			List<Callable<UserProfile>> calls = new ArrayList<Callable<UserProfile>>();
+			for (String userId : userIds.subList(start, Math.min(start + BADGE_BATCH_PARALLELISM, userIds.size()))) {
+				calls.add(createGetUserProfileCall(userId));
+			}
+			results.addAll(fanOutExecutor.invokeAll(calls));
+		}
+		return results;
+	}
+	
+	/**
+	 * Look up the teams on the fan-out pool, at most BADGE_BATCH_PARALLELISM at a time.
+	 * @return the results in id order
+	 */
+	private List<FanOutResult<Team>> fetchTeams(List<String> teamIds) {
+		List<FanOutResult<Team>> results = new ArrayList<FanOutResult<Team>>(teamIds.size());
+		for (int start = 0; start < teamIds.size(); start += BADGE_BATCH_PARALLELISM) {
+			//the clients of a window are only created when it starts
+			List<Callable<Team>> calls = new ArrayList<Callable<Team>>();
+			for (String teamId : teamIds.subList(start, Math.min(start + BADGE_BATCH_PARALLELISM, teamIds.size()))) {
+				calls.add(createGetTeamCall(teamId));
+			}
+			results.addAll(fanOutExecutor.invokeAll(calls));
+		}
+		return results;
+	}
+	
 	@Override
 	public EntityWrapper getUserGroupHeadersById(List<String> ids) throws RestServiceException {
 		try {
@@ -866,10 +1218,29 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	}
 	
 	public AccessControlList getAcl(String id) throws SynapseException {
-		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		return getAcl(createSynapseClient(), id);
+	}
+	
+	private AccessControlList getAcl(org.sagebionetworks.client.SynapseClient synapseClient, String id) throws SynapseException {
 		EntityHeader benefactor = synapseClient.getEntityBenefactor(id);
 		String benefactorId = benefactor.getId();
-		return synapseClient.getACL(benefactorId);
+		return getBenefactorAcl(synapseClient, benefactorId);
+	}
+	
+	/**
+	 * The ACL of a benefactor, from the cache when this instance fetched or
+	 * changed it recently. Callers first check that the user can read an
+	 * entity below it (the benefactor lookup, or the bundle fetch), which
+	 * lets the user read the benefactor ACL too.
+	 */
+	private AccessControlList getBenefactorAcl(org.sagebionetworks.client.SynapseClient synapseClient, String benefactorId) throws SynapseException {
+		AccessControlList acl = benefactorAcls.getIfPresent(benefactorId);
+		if (acl == null) {
+			acl = synapseClient.getACL(benefactorId);
+			if (acl != null)
+				benefactorAcls.put(benefactorId, acl);
+		}
+		return acl;
 	}
 	
 	@Override
@@ -893,6 +1264,9 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 			JSONEntityFactory jsonEntityFactory = new JSONEntityFactoryImpl(adapterFactory);
 			AccessControlList acl = jsonEntityFactory.createEntity(aclEW.getEntityJson(), AccessControlList.class);
 			acl = synapseClient.createACL(acl);
+			benefactorAcls.put(acl.getId(), acl);
+			//the entity and the entities inheriting through it have a new benefactor
+			entityBenefactors.invalidateAll();
 			JSONObjectAdapter aclJson = acl
 					.writeToJSONObject(adapterFactory.createNew());
 			return new EntityWrapper(aclJson.toJSONString(), aclJson.getClass().getName());
@@ -915,6 +1289,12 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 			JSONEntityFactory jsonEntityFactory = new JSONEntityFactoryImpl(adapterFactory);
 			AccessControlList acl = jsonEntityFactory.createEntity(aclEW.getEntityJson(), AccessControlList.class);
 			acl = synapseClient.updateACL(acl, recursive);
+			if (recursive) {
+				//the ACLs below were removed
+				benefactorAcls.invalidateAll();
+				entityBenefactors.invalidateAll();
+			}
+			benefactorAcls.put(acl.getId(), acl);
 			JSONObjectAdapter aclJson = acl
 					.writeToJSONObject(adapterFactory.createNew());
 			return new EntityWrapper(aclJson.toJSONString(), aclJson.getClass().getName());
@@ -931,6 +1311,8 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		try {
 			// first delete the ACL
 			synapseClient.deleteACL(ownerEntityId);
+			benefactorAcls.invalidate(ownerEntityId);
+			entityBenefactors.invalidateAll();
 			// now get the ACL governing this entity, which will be some ancestor, the 'permissions benefactor'
 			AccessControlList acl = getAcl(ownerEntityId);
 			JSONObjectAdapter aclJson = acl
@@ -1264,9 +1646,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		try {
 			long startTime = System.currentTimeMillis();
 			String html = SynapseMarkdownProcessor.getInstance().markdown2Html(markdown, isPreview, clientHostString);
-			long endTime = System.currentTimeMillis();
-			float elapsedTime = endTime-startTime;
-			logInfo("Markdown processing took " + (elapsedTime/1000f) + " seconds.  In alpha mode? " + isAlphaMode);
+			portalMetrics.recordTime("markdown2Html", System.currentTimeMillis() - startTime);
 			return html;
 		} catch (IOException e) {
 			throw new RestServiceException(e.getMessage());
@@ -1321,6 +1701,170 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
 	}
 
+	@Override
+	public ProvGraphBundle getProvenanceGraph(String startReferencesJson, int maxDepth) throws RestServiceException {
+		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		try {
+			ReferenceList startList = new ReferenceList(new JSONObjectAdapterImpl(startReferencesJson));
+			Set<Reference> startRefs = resolveCurrentVersions(startList.getReferences());
+			Set<Reference> references = new LinkedHashSet<Reference>(startRefs);
+			Map<Reference, String> generatedByActivityId = new LinkedHashMap<Reference, String>();
+			Map<String, Activity> processedActivities = new LinkedHashMap<String, Activity>();
+			Map<Reference, RestServiceException> failures = new LinkedHashMap<Reference, RestServiceException>();
+			
+			//walk the graph one depth level at a time, looking up every node in a level concurrently
+			List<Reference> level = new ArrayList<Reference>(startRefs);
+			for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+				//activity that generated each reference
+				List<Reference> lookupRefs = new ArrayList<Reference>();
+				List<Callable<Activity>> activityCalls = new ArrayList<Callable<Activity>>();
+				for (Reference ref : level) {
+					String knownActivityId = generatedByActivityId.get(ref);
+					if (!lookupRefs.contains(ref) && !failures.containsKey(ref) && (knownActivityId == null || !processedActivities.containsKey(knownActivityId))) {
+						lookupRefs.add(ref);
+						activityCalls.add(createGetActivityForEntityVersionCall(ref));
+					}
+				}
+				List<FanOutResult<Activity>> activityResults = fanOutExecutor.invokeAll(activityCalls);
+				List<Activity> newActivities = new ArrayList<Activity>();
+				for (int i = 0; i < lookupRefs.size(); i++) {
+					FanOutResult<Activity> result = activityResults.get(i);
+					if (result.isSuccess()) {
+						Activity activity = result.getValue();
+						generatedByActivityId.put(lookupRefs.get(i), activity.getId());
+						if (!processedActivities.containsKey(activity.getId())) {
+							processedActivities.put(activity.getId(), activity);
+							newActivities.add(activity);
+						}
+					} else {
+						failures.put(lookupRefs.get(i), getFanOutError(result));
+					}
+				}
+				
+				//everything else each new activity generated
+				List<Callable<PaginatedResults<Reference>>> generatedCalls = new ArrayList<Callable<PaginatedResults<Reference>>>();
+				for (Activity activity : newActivities) {
+					generatedCalls.add(createGetEntitiesGeneratedByCall(activity.getId()));
+				}
+				List<FanOutResult<PaginatedResults<Reference>>> generatedResults = fanOutExecutor.invokeAll(generatedCalls);
+				for (int i = 0; i < newActivities.size(); i++) {
+					FanOutResult<PaginatedResults<Reference>> result = generatedResults.get(i);
+					//the graph is still useful without these, so failures are ignored
+					if (result.isSuccess() && result.getValue().getResults() != null) {
+						for (Reference ref : result.getValue().getResults()) {
+							generatedByActivityId.put(ref, newActivities.get(i).getId());
+							references.add(ref);
+						}
+					}
+				}
+				
+				//the used entities make up the next level
+				List<Reference> nextLevel = new ArrayList<Reference>();
+				for (Activity activity : newActivities) {
+					if (activity.getUsed() == null)
+						continue;
+					for (Used used : activity.getUsed()) {
+						if (used instanceof UsedEntity && ((UsedEntity) used).getReference() != null) {
+							Reference ref = ((UsedEntity) used).getReference();
+							references.add(ref);
+							nextLevel.add(ref);
+						}
+					}
+				}
+				level = nextLevel;
+			}
+			
+			ProvGraphBundle bundle = new ProvGraphBundle();
+			bundle.setStartReferencesJson(createReferenceListJson(startRefs));
+			bundle.setReferencesJson(createReferenceListJson(references));
+			try {
+				BatchResults<EntityHeader> headers = synapseClient.getEntityHeaderBatch(new ArrayList<Reference>(references));
+				bundle.setEntityHeadersJson(EntityFactory.createJSONStringForEntity(headers));
+			} catch (SynapseException e) {
+				//the client falls back to the entity ids
+				log.warn("Unable to get entity headers for provenance graph: " + e.getMessage());
+			}
+			List<String> activitiesJson = new ArrayList<String>();
+			for (Activity activity : processedActivities.values()) {
+				activitiesJson.add(EntityFactory.createJSONStringForEntity(activity));
+			}
+			bundle.setActivitiesJson(activitiesJson);
+			bundle.setGeneratedByReferencesJson(createReferenceListJson(generatedByActivityId.keySet()));
+			bundle.setGeneratedByActivityIds(new ArrayList<String>(generatedByActivityId.values()));
+			bundle.setFailedReferencesJson(createReferenceListJson(failures.keySet()));
+			bundle.setFailures(new ArrayList<RestServiceException>(failures.values()));
+			return bundle;
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Start references without a version refer to the current version (if the entity is versionable).
+	 */
+	private Set<Reference> resolveCurrentVersions(List<Reference> refs) throws RestServiceException {
+		Set<Reference> resolved = new LinkedHashSet<Reference>();
+		List<Callable<Entity>> entityCalls = new ArrayList<Callable<Entity>>();
+		for (final Reference ref : refs) {
+			if (ref.getTargetVersionNumber() != null) {
+				resolved.add(ref);
+			} else {
+				//a client per call, created here on the request thread
+				final org.sagebionetworks.client.SynapseClient entityClient = createSynapseClient();
+				entityCalls.add(new Callable<Entity>() {
+					@Override
+					public Entity call() throws Exception {
+						return entityClient.getEntityById(ref.getTargetId());
+					}
+				});
+			}
+		}
+		for (FanOutResult<Entity> result : fanOutExecutor.invokeAll(entityCalls)) {
+			Entity entity = getFanOutValue(result);
+			Reference ref = new Reference();
+			ref.setTargetId(entity.getId());
+			if (entity instanceof Versionable) {
+				ref.setTargetVersionNumber(((Versionable) entity).getVersionNumber());
+			}
+			resolved.add(ref);
+		}
+		return resolved;
+	}
+	
+	/**
+	 * Create a call that looks up the generating activity on a fan-out thread. The client
+	 * is created here, on the request thread, where the session token is available.
+	 */
+	private Callable<Activity> createGetActivityForEntityVersionCall(final Reference ref) {
+		final org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		return new Callable<Activity>() {
+			@Override
+			public Activity call() throws Exception {
+				return synapseClient.getActivityForEntityVersion(ref.getTargetId(), ref.getTargetVersionNumber());
+			}
+		};
+	}
+	
+	/**
+	 * Create a call that looks up the entities generated by an activity on a fan-out thread. The client
+	 * is created here, on the request thread, where the session token is available.
+	 */
+	private Callable<PaginatedResults<Reference>> createGetEntitiesGeneratedByCall(final String activityId) {
+		final org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		return new Callable<PaginatedResults<Reference>>() {
+			@Override
+			public PaginatedResults<Reference> call() throws Exception {
+				return synapseClient.getEntitiesGeneratedBy(activityId, Integer.MAX_VALUE, 0);
+			}
+		};
+	}
+	
+	private String createReferenceListJson(Collection<Reference> refs) throws JSONObjectAdapterException {
+		ReferenceList list = new ReferenceList();
+		list.setReferences(new ArrayList<Reference>(refs));
+		return EntityFactory.createJSONStringForEntity(list);
+	}
+
 	@Override
 	public EntityWrapper removeAttachmentFromEntity(String entityId,
 			String attachmentName) throws RestServiceException {
@@ -1575,6 +2119,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
                     @SuppressWarnings("unchecked")
                     V2WikiPage page = jsonEntityFactory.createEntity(wikiPageJson,V2WikiPage.class);
                     V2WikiPage returnPage = synapseClient.updateV2WikiPage(ownerId, ObjectType.valueOf(ownerType), page);
+                    refreshWikiPageCache(synapseClient, ownerId, ownerType, returnPage);
                     return EntityFactory.createJSONStringForEntity(returnPage);
             } catch (SynapseException e) {
                     throw ExceptionUtil.convertSynapseException(e);
@@ -1590,6 +2135,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
             org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
             try {
                     V2WikiPage returnPage = synapseClient.restoreV2WikiPage(ownerId, ObjectType.valueOf(ownerType), wikiId, versionToUpdate);
+                    refreshWikiPageCache(synapseClient, ownerId, ownerType, returnPage);
                     return EntityFactory.createJSONStringForEntity(returnPage);
             } catch (SynapseException e) {
                     throw ExceptionUtil.convertSynapseException(e);
@@ -1762,6 +2308,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	        @SuppressWarnings("unchecked")
 	        WikiPage page = jsonEntityFactory.createEntity(wikiPageJson,WikiPage.class);
 	        WikiPage returnPage = synapseClient.createV2WikiPageWithV1(ownerId, ObjectType.valueOf(ownerType), page);
+	        putWikiPageCache(ownerId, ownerType, returnPage);
 	        return EntityFactory.createJSONStringForEntity(returnPage);
         } catch (SynapseException e) {
             throw ExceptionUtil.convertSynapseException(e);
@@ -1779,6 +2326,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	        @SuppressWarnings("unchecked")
 	        WikiPage page = jsonEntityFactory.createEntity(wikiPageJson,WikiPage.class);
 	        WikiPage returnPage = synapseClient.updateV2WikiPageWithV1(ownerId, ObjectType.valueOf(ownerType), page);
+	        putWikiPageCache(ownerId, ownerType, returnPage);
 	        return EntityFactory.createJSONStringForEntity(returnPage);
 	    } catch (SynapseException e) {
 	        throw ExceptionUtil.convertSynapseException(e);
@@ -1810,7 +2358,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
         
         MarkdownCacheRequest request = new MarkdownCacheRequest(properKey, etag, null);
-        return processMarkdownRequest(request);
+        return processMarkdownRequest(synapseClient, request);
     }
 
 	@Override
@@ -1830,12 +2378,12 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
         
         MarkdownCacheRequest request = new MarkdownCacheRequest(properKey, etag, version);
-        return processMarkdownRequest(request);
+        return processMarkdownRequest(synapseClient, request);
     }
 	
-	private String processMarkdownRequest(MarkdownCacheRequest request) throws RestServiceException {
+	private String processMarkdownRequest(org.sagebionetworks.client.SynapseClient synapseClient, MarkdownCacheRequest request) throws RestServiceException {
 		try {
-			String markdown = wiki2Markdown.get(request);
+			String markdown = wikiPageCache.get(request, createWikiPageLoader(synapseClient, request));
 			return markdown;
 		} catch (ExecutionException e) {
 			if (e.getCause() != null && e.getCause() instanceof SynapseException)
@@ -1844,6 +2392,79 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
 	}
 	
+	/**
+	 * Loads the V1 wiki page json for the cache.  The client is created on the request thread, so the loader can run anywhere.
+	 */
+	private Callable<String> createWikiPageLoader(final org.sagebionetworks.client.SynapseClient synapseClient, final MarkdownCacheRequest request) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				WikiPage returnPage = null;
+				if (request.getVersion() == null)
+					returnPage = synapseClient.getV2WikiPageAsV1(request.getWikiPageKey());
+				else 
+					returnPage = synapseClient.getVersionOfV2WikiPageAsV1(request.getWikiPageKey(), request.getVersion());
+				return EntityFactory.createJSONStringForEntity(returnPage);
+			}
+		};
+	}
+	
+	/**
+	 * The wiki page etag changed, so warm the cache with the new current version in the background.
+	 */
+	private void refreshWikiPageCache(org.sagebionetworks.client.SynapseClient synapseClient, String ownerId, String ownerType, V2WikiPage page) {
+		WikiPageKey properKey = WikiPageKeyHelper.createWikiPageKey(ownerId, ObjectType.valueOf(ownerType), page.getId());
+		MarkdownCacheRequest request = new MarkdownCacheRequest(properKey, page.getEtag(), null);
+		wikiPageCache.refreshAsync(request, createWikiPageLoader(synapseClient, request));
+	}
+	
+	/**
+	 * The page returned from a V1 create or update already has the markdown, so store it as the current version.
+	 */
+	private void putWikiPageCache(String ownerId, String ownerType, WikiPage page) throws JSONObjectAdapterException {
+		WikiPageKey properKey = WikiPageKeyHelper.createWikiPageKey(ownerId, ObjectType.valueOf(ownerType), page.getId());
+		wikiPageCache.put(new MarkdownCacheRequest(properKey, page.getEtag(), null), EntityFactory.createJSONStringForEntity(page));
+	}
+	
+	public CacheStats getWikiPageCacheStats() {
+		return wikiPageCache.getStats();
+	}
+	
+	@Override
+	public WikiHtmlBundle getWikiPageHtml(org.sagebionetworks.web.shared.WikiPageKey key, Long version, Boolean isPreview, String clientHostString) throws RestServiceException {
+		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		WikiPageKey properKey = WikiPageKeyHelper.createWikiPageKey(key.getOwnerObjectId(), ObjectType.valueOf(key.getOwnerObjectType()), getWikiKeyId(synapseClient, key));
+		//the html cache is shared by all users, so the (small) V2 page is always fetched first: it checks that
+		//the caller can read the page, and its etag is the cache key. The markdown and html come from the caches
+		V2WikiPage page;
+		try {
+			if (version == null)
+				page = synapseClient.getV2WikiPage(properKey);
+			else
+				page = synapseClient.getVersionOfV2WikiPage(properKey, version);
+		} catch (SynapseException e) {
+			throw ExceptionUtil.convertSynapseException(e);
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());
+		}
+		
+		MarkdownCacheRequest markdownRequest = new MarkdownCacheRequest(properKey, page.getEtag(), version);
+		WikiHtmlCacheRequest request = new WikiHtmlCacheRequest(markdownRequest, Boolean.TRUE.equals(isPreview), clientHostString);
+		return new WikiHtmlBundle(page.getId(), processWikiHtmlRequest(request));
+	}
+	
+	private String processWikiHtmlRequest(WikiHtmlCacheRequest request) throws RestServiceException {
+		try {
+			return wiki2Html.get(request);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RestServiceException)
+				throw (RestServiceException)e.getCause();
+			else if (e.getCause() instanceof SynapseException)
+				throw ExceptionUtil.convertSynapseException((SynapseException)e.getCause());
+			else throw new RestServiceException(e.getMessage());
+		}
+	}
+	
 	@Override
 	public String addFavorite(String entityId) throws RestServiceException {
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
@@ -2097,18 +2718,47 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		return isMember;
 	}
 	
+	@SuppressWarnings("unchecked")
 	@Override
-	public TeamBundle getTeamBundle(String userId, String teamId, boolean isLoggedIn) throws RestServiceException {
+	public TeamBundle getTeamBundle(final String userId, final String teamId, boolean isLoggedIn) throws RestServiceException {
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
-			PaginatedResults<TeamMember> allMembers = synapseClient.getTeamMembers(teamId, null, 1, ZERO_OFFSET);
+			//the member count, team and membership status are independent, so ask for them at the same time
+			//each call gets its own client, created here on the request thread
+			List<Callable<Object>> calls = new ArrayList<Callable<Object>>();
+			final org.sagebionetworks.client.SynapseClient memberClient = createSynapseClient();
+			calls.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return memberClient.getTeamMembers(teamId, null, 1, ZERO_OFFSET);
+				}
+			});
+			final org.sagebionetworks.client.SynapseClient teamClient = createSynapseClient();
+			calls.add(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return teamClient.getTeam(teamId);
+				}
+			});
+			if (isLoggedIn) {
+				final org.sagebionetworks.client.SynapseClient statusClient = createSynapseClient();
+				calls.add(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						return statusClient.getTeamMembershipStatus(teamId, userId);
+					}
+				});
+			}
+			List<FanOutResult<Object>> results = fanOutExecutor.invokeAll(calls);
+			
+			PaginatedResults<TeamMember> allMembers = (PaginatedResults<TeamMember>) getFanOutValue(results.get(0));
 			long memberCount = allMembers.getTotalNumberOfResults();
 			boolean isAdmin = false;
-			Team team = synapseClient.getTeam(teamId);
+			Team team = (Team) getFanOutValue(results.get(1));
 			String membershipStatusJsonString = null;
 			//get membership state for the current user
 			if (isLoggedIn){
-				TeamMembershipStatus membershipStatus = synapseClient.getTeamMembershipStatus(teamId,userId);
+				TeamMembershipStatus membershipStatus = (TeamMembershipStatus) getFanOutValue(results.get(2));
 				JSONObjectAdapter membershipStatusJson = membershipStatus.writeToJSONObject(adapterFactory.createNew());
 				membershipStatusJsonString = membershipStatusJson.toJSONString();
 				if (membershipStatus.getIsMember()) {
@@ -2131,13 +2781,18 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
 			PaginatedResults<MembershipRequest> requests = synapseClient.getOpenMembershipRequests(teamId, null, MAX_LIMIT, ZERO_OFFSET);
-			//and ask for the team info for each invite, and fill that in the bundle
+			//and ask for the user profile for each request (concurrently), and fill that in the bundle
+			List<String> userIds = new ArrayList<String>();
+			for (MembershipRequest request : requests.getResults()) {
+				userIds.add(request.getUserId());
+			}
+			List<FanOutResult<UserProfile>> profiles = fetchUserProfiles(userIds);
 			
 			List<MembershipRequestBundle> returnList = new ArrayList<MembershipRequestBundle>();
 			//now go through and create a MembershipRequestBundle for each pair
-			
+			int i = 0;
 			for (MembershipRequest request : requests.getResults()) {
-				UserProfile profile = synapseClient.getUserProfile(request.getUserId());
+				UserProfile profile = getFanOutValue(profiles.get(i++));
 				
 				JSONObjectAdapter profileJson = profile.writeToJSONObject(adapterFactory.createNew());
 				JSONObjectAdapter requestJson = request.writeToJSONObject(adapterFactory.createNew());
@@ -2174,13 +2829,18 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
 			PaginatedResults<MembershipInvitation> invitations = synapseClient.getOpenMembershipInvitations(userId,null, MAX_LIMIT, ZERO_OFFSET);
-			//and ask for the team info for each invite, and fill that in the bundle
+			//and ask for the team info for each invite (concurrently), and fill that in the bundle
+			List<String> teamIds = new ArrayList<String>();
+			for (MembershipInvitation invite : invitations.getResults()) {
+				teamIds.add(invite.getTeamId());
+			}
+			List<FanOutResult<Team>> teams = fetchTeams(teamIds);
 			
 			List<MembershipInvitationBundle> returnList = new ArrayList<MembershipInvitationBundle>();
 			//now go through and create a MembershipInvitationBundle for each pair
-			
+			int i = 0;
 			for (MembershipInvitation invite : invitations.getResults()) {
-				Team team = synapseClient.getTeam(invite.getTeamId());
+				Team team = getFanOutValue(teams.get(i++));
 				JSONObjectAdapter teamJson = team.writeToJSONObject(adapterFactory.createNew());
 				JSONObjectAdapter inviteJson = invite.writeToJSONObject(adapterFactory.createNew());
 				MembershipInvitationBundle b = new MembershipInvitationBundle(teamJson.toJSONString(), null, inviteJson.toJSONString());
@@ -2200,13 +2860,18 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
 			PaginatedResults<MembershipInvtnSubmission> invitations = synapseClient.getOpenMembershipInvitationSubmissions(teamId, null, limit, offset);
-			//and ask for the team info for each invite, and fill that in the bundle
+			//and ask for the user profile of each invitee (concurrently), and fill that in the bundle
+			List<String> inviteeIds = new ArrayList<String>();
+			for (MembershipInvtnSubmission invite : invitations.getResults()) {
+				inviteeIds.add(invite.getInviteeId());
+			}
+			List<FanOutResult<UserProfile>> profiles = fetchUserProfiles(inviteeIds);
 			
 			List<MembershipInvitationBundle> returnList = new ArrayList<MembershipInvitationBundle>();
 			//now go through and create a MembershipInvitationBundle for each pair
-			
+			int i = 0;
 			for (MembershipInvtnSubmission invite : invitations.getResults()) {
-				UserProfile profile = synapseClient.getUserProfile(invite.getInviteeId());
+				UserProfile profile = getFanOutValue(profiles.get(i++));
 				JSONObjectAdapter profileJson = profile.writeToJSONObject(adapterFactory.createNew());
 				JSONObjectAdapter inviteJson = invite.writeToJSONObject(adapterFactory.createNew());
 				MembershipInvitationBundle b = new MembershipInvitationBundle(null, profileJson.toJSONString(), inviteJson.toJSONString());
@@ -2221,6 +2886,55 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
 	}
 	
+	/**
+	 * Create a call that looks up a user profile on a fan-out thread. The client
+	 * is created here, on the request thread, where the session token is available.
+	 */
+	private Callable<UserProfile> createGetUserProfileCall(final String userId) {
+		final org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		return new Callable<UserProfile>() {
+			@Override
+			public UserProfile call() throws Exception {
+				return synapseClient.getUserProfile(userId);
+			}
+		};
+	}
+	
+	/**
+	 * Create a call that looks up a team on a fan-out thread. The client
+	 * is created here, on the request thread, where the session token is available.
+	 */
+	private Callable<Team> createGetTeamCall(final String teamId) {
+		final org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		return new Callable<Team>() {
+			@Override
+			public Team call() throws Exception {
+				return synapseClient.getTeam(teamId);
+			}
+		};
+	}
+	
+	/**
+	 * Unwrap the result of a fanned-out repository call, throwing the same
+	 * exception the RPC would have thrown had the call been made serially.
+	 */
+	private static <T> T getFanOutValue(FanOutResult<T> result) throws RestServiceException {
+		if (result.isSuccess())
+			return result.getValue();
+		throw getFanOutError(result);
+	}
+	
+	private static RestServiceException getFanOutError(FanOutResult<?> result) {
+		if (result.isTimedOut())
+			return new UnknownErrorException("Timed out waiting for a response from Synapse");
+		Throwable error = result.getError();
+		if (error instanceof RestServiceException)
+			return (RestServiceException) error;
+		if (error instanceof SynapseException)
+			return ExceptionUtil.convertSynapseException((SynapseException) error);
+		return new UnknownErrorException(error.getMessage());
+	}
+	
 	@Override 
 	public void deleteMembershipInvitation(String invitationId) throws RestServiceException {
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
@@ -2357,6 +3071,24 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		}
 	}
 	
+	@Override
+	public List<String> getChunkedPresignedUrls(List<String> requestJsons) throws RestServiceException{
+		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
+		try {
+			JSONEntityFactory jsonEntityFactory = new JSONEntityFactoryImpl(adapterFactory);
+			List<String> urls = new ArrayList<String>(requestJsons.size());
+			for (String requestJson : requestJsons) {
+				ChunkRequest request = jsonEntityFactory.createEntity(requestJson, ChunkRequest.class);
+				urls.add(synapseClient.createChunkedPresignedUrl(request).toString());
+			}
+			return urls;
+		} catch (SynapseException e) {
+			throw ExceptionUtil.convertSynapseException(e);
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());
+		}
+	}
+	
 	@Override
 	public String combineChunkedFileUpload(List<String> requests) throws RestServiceException {
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
@@ -2533,20 +3265,15 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 		if (entityId == null || entityId.trim().length()==0 ) {
 			throw new BadRequestException("Entity ID must be given");
 		}
-		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
-			//look up the available evaluations
-			PaginatedResults<Evaluation> allEvaluations = synapseClient.getEvaluationByContentSource(entityId, EVALUATION_PAGINATION_OFFSET, EVALUATION_PAGINATION_LIMIT);
-			
+			//the evaluations associated to the entity id, for which I can change permissions
 			ArrayList<String> mySharableEvalauations = new ArrayList<String>();
-			for (Evaluation eval : allEvaluations.getResults()) {
-				//evaluation is associated to entity id.  can I change permissions?
-				UserEvaluationPermissions uep = synapseClient.getUserEvaluationPermissions(eval.getId());
-				if (uep.getCanChangePermissions()) {
-					mySharableEvalauations.add(eval.writeToJSONObject(adapterFactory.createNew()).toJSONString());
-				}
+			for (Evaluation eval : challengeAggregator.getSharableEvaluations(createSynapseClientFactory(), entityId)) {
+				mySharableEvalauations.add(eval.writeToJSONObject(adapterFactory.createNew()).toJSONString());
 			}
 			return mySharableEvalauations;
+		} catch (ExecutionException e) {
+			throw new UnknownErrorException(e.getCause().getMessage());
 		} catch (Exception e) {
 			throw new UnknownErrorException(e.getMessage());
 		}
@@ -2558,6 +3285,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 			JSONEntityFactory jsonEntityFactory = new JSONEntityFactoryImpl(adapterFactory);
 			Submission sub = jsonEntityFactory.createEntity(submissionJson, Submission.class);
 			Submission updatedSubmission = synapseClient.createSubmission(sub, etag);
+			challengeAggregator.invalidate(synapseClient.getCurrentSessionToken());
 			JSONObjectAdapter updatedSubmissionJson = updatedSubmission.writeToJSONObject(adapterFactory.createNew());
 			return updatedSubmissionJson.toJSONString();
 		} catch (Exception e) {
@@ -2592,6 +3320,7 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 			JSONEntityFactory jsonEntityFactory = new JSONEntityFactoryImpl(adapterFactory);
 			AccessControlList acl = jsonEntityFactory.createEntity(aclJson, AccessControlList.class);
 			AccessControlList updatedacl = synapseClient.updateEvaluationAcl(acl);
+			challengeAggregator.invalidate(synapseClient.getCurrentSessionToken());
 			JSONObjectAdapter json = updatedacl.writeToJSONObject(adapterFactory.createNew());
 			return json.toJSONString();
 		} catch (Exception e) {
@@ -2600,44 +3329,16 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	}
 	
 	public String getAvailableEvaluationsSubmitterAliases() throws RestServiceException{
-		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
-			//query for all available evaluations.
-			PaginatedResults<Evaluation> availableEvaluations = synapseClient.getAvailableEvaluationsPaginated(0, MAX_LIMIT);
-			//gather all submissions
-			List<Submission> allSubmissions = new ArrayList<Submission>();
-			for (Evaluation evaluation : availableEvaluations.getResults()) {
-				//query for all submissions for each evaluation
-				PaginatedResults<Submission> submissions = synapseClient.getMySubmissions(evaluation.getId(), 0, MAX_LIMIT);
-				allSubmissions.addAll(submissions.getResults());
-			}
-			
-			//sort by created on
-			Collections.sort(allSubmissions, new Comparator<Submission>() {
-				@Override
-				public int compare(Submission o1, Submission o2) {
-					return o2.getCreatedOn().compareTo(o1.getCreatedOn());
-				}
-			});
-			
-			//run through and only keep unique submitter alias values (first in the list was most recently used)
-			Set<String> uniqueSubmitterAliases = new HashSet<String>();
-			List<String> returnAliases = new ArrayList<String>();
-			for (Submission sub : allSubmissions) {
-				String submitterAlias = sub.getSubmitterAlias();
-				if (!uniqueSubmitterAliases.contains(submitterAlias)) {
-					uniqueSubmitterAliases.add(submitterAlias);
-					returnAliases.add(submitterAlias);
-				}
-			}
-			//if it contains null or empty string, remove
-			returnAliases.remove(null);
-			returnAliases.remove("");
+			//unique submitter aliases across all available evaluations, most recently used first
+			List<String> returnAliases = challengeAggregator.getSubmitterAliases(createSynapseClientFactory());
 			RestResourceList returnList = new RestResourceList();
 			returnList.setList(returnAliases);
 			JSONObjectAdapter returnListJson = returnList.writeToJSONObject(adapterFactory.createNew());
 			return returnListJson.toJSONString();
 			
+		} catch (ExecutionException e) {
+			throw new UnknownErrorException(e.getCause().getMessage());
 		} catch (Exception e) {
 			throw new UnknownErrorException(e.getMessage());
 		}
@@ -2645,23 +3346,31 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 
 	@Override
 	public Boolean hasSubmitted() throws RestServiceException {
-		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
 		try {
-			//get all evaluations for which the user has joined as a participant
-			PaginatedResults<Evaluation> evaluations = synapseClient.getAvailableEvaluationsPaginated(EVALUATION_PAGINATION_OFFSET, EVALUATION_PAGINATION_LIMIT);
-			for (Evaluation evaluation : evaluations.getResults()) {
-				//return true if any of these have a submission
-				PaginatedResults<Submission> res = synapseClient.getMySubmissions(evaluation.getId(), 0, 0);
-				if (res.getTotalNumberOfResults() > 0) {
-					return true;
-				}
-			}
-			return false;
-		} catch (SynapseException e) {
-			throw ExceptionUtil.convertSynapseException(e);
+			//true if any of the evaluations for which the user has joined as a participant has a submission
+			return challengeAggregator.hasSubmitted(createSynapseClientFactory());
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof SynapseException)
+				throw ExceptionUtil.convertSynapseException((SynapseException) cause);
+			throw new UnknownErrorException(cause.getMessage());
 		}
 	}
 	
+	/**
+	 * Gives the challenge aggregator a client of its own for each call it
+	 * makes. It creates them on the request thread, where the session token
+	 * is available.
+	 */
+	private ChallengeAggregator.ClientFactory createSynapseClientFactory() {
+		return new ChallengeAggregator.ClientFactory() {
+			@Override
+			public org.sagebionetworks.client.SynapseClient createClient() {
+				return createSynapseClient();
+			}
+		};
+	}
+
 	@Override
 	public String getSynapseVersions() throws RestServiceException {
 		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
@@ -2794,52 +3503,99 @@ public class SynapseClientImpl extends RemoteServiceServlet implements
 	@Override
 	public QueryResult executeTableQuery(String query, QueryDetails modifyingQueryDetails, boolean includeTotalRowCount) throws RestServiceException {		
 		if(query == null) throw new BadRequestException("query must be defined");
+		long startTime = System.currentTimeMillis();
 		
-		org.sagebionetworks.client.SynapseClient synapseClient = createSynapseClient();
-		// modify query with QueryDetails if requested
-		String executedQuery;
-		if(modifyingQueryDetails != null) executedQuery = ServiceUtils.modifyQuery(query, modifyingQueryDetails);
-		else executedQuery = query;		
+		// modify query with QueryDetails if requested (the parsed query is cached, so paging and sorting do not parse it again)
+		QuerySpecification executedSpec = ServiceUtils.modifyQuery(ServiceUtils.parseQuery(query), modifyingQueryDetails);
+		final String executedQuery = modifyingQueryDetails != null ? ServiceUtils.toSQL(executedSpec) : query;
 		
 		//Extract QueryDetails from executed Query		
-		QueryDetails queryDetails = ServiceUtils.extractQueryDetails(executedQuery);
-			
-		// Get total row count if requested
+		QueryDetails queryDetails = ServiceUtils.extractQueryDetails(executedSpec);
+		portalMetrics.recordTime(TABLE_QUERY_PARSE, System.currentTimeMillis() - startTime);
+		
+		// Execute Query, and get the total row count (if requested) at the same time, each with its own client
+		final org.sagebionetworks.client.SynapseClient pageClient = createSynapseClient();
+		List<Callable<TimedRowSet>> calls = new ArrayList<Callable<TimedRowSet>>();
+		calls.add(new Callable<TimedRowSet>() {
+			@Override
+			public TimedRowSet call() throws Exception {
+				long start = System.currentTimeMillis();
+				RowSet rowSet = pageClient.queryTableEntity(executedQuery);
+				return new TimedRowSet(rowSet, System.currentTimeMillis() - start);
+			}
+		});
+		if(includeTotalRowCount) {
+			final org.sagebionetworks.client.SynapseClient countClient = createSynapseClient();
+			calls.add(new Callable<TimedRowSet>() {
+				@Override
+				public TimedRowSet call() throws Exception {
+					long start = System.currentTimeMillis();
+					RowSet rowSet = countClient.queryTableEntity(executedQuery, true, true);
+					return new TimedRowSet(rowSet, System.currentTimeMillis() - start);
+				}
+			});
+		}
+		List<FanOutResult<TimedRowSet>> results = fanOutExecutor.invokeAll(calls);
+		
+		String json = null;
+		try {
+			RowSet rs = getTableQueryValue(results.get(0), TABLE_QUERY_PAGE);
+			json = rs.writeToJSONObject(adapterFactory.createNew()).toJSONString();
+		} catch (JSONObjectAdapterException e) {
+			throw new UnknownErrorException(e.getMessage());		
+		}
+		
 		Integer totalRowCount = null;
 		if(includeTotalRowCount) {
 			try {
-				RowSet countSet = synapseClient.queryTableEntity(executedQuery, true, true);
+				RowSet countSet = getTableQueryValue(results.get(1), TABLE_QUERY_COUNT);
 				if (countSet != null && countSet.getRows() != null
 						&& countSet.getRows().size() > 0
 						&& countSet.getRows().get(0).getValues() != null
 						&& countSet.getRows().get(0).getValues().size() > 0) {					
 					totalRowCount = Integer.parseInt(countSet.getRows().get(0).getValues().get(0));							
 				}
-			} catch (SynapseTableUnavailableException e) {
-				handleTableUnavailableException(e);
-			} catch (SynapseException e) {
-				logError(e.getMessage());
-				throw ExceptionUtil.convertSynapseException(e);
 			} catch (NumberFormatException e) { 
 				// do nothing 				
 			}
 		}
 		
-		// Execute Query		
-		String json = null;
-		try {
-			RowSet rs = synapseClient.queryTableEntity(executedQuery);
-			 json = rs.writeToJSONObject(adapterFactory.createNew()).toJSONString();
-		} catch (SynapseTableUnavailableException e) {
-			handleTableUnavailableException(e);
-		} catch (SynapseException e) {
-			throw ExceptionUtil.convertSynapseException(e);
-		} catch (JSONObjectAdapterException e) {
-			throw new UnknownErrorException(e.getMessage());		
-		}
-		
+		portalMetrics.recordTime(TABLE_QUERY, System.currentTimeMillis() - startTime);
 		return new QueryResult(json, executedQuery, queryDetails, totalRowCount);
 	}
+	
+	/**
+	 * Timers for the phases of executeTableQuery.
+	 */
+	public static final String TABLE_QUERY = "tableQuery";
+	public static final String TABLE_QUERY_PARSE = "tableQueryParse";
+	public static final String TABLE_QUERY_PAGE = "tableQueryPage";
+	public static final String TABLE_QUERY_COUNT = "tableQueryCount";
+	
+	/**
+	 * A table query result, with how long the call took.
+	 */
+	private static class TimedRowSet {
+		RowSet rowSet;
+		long elapsedMs;
+		
+		TimedRowSet(RowSet rowSet, long elapsedMs) {
+			this.rowSet = rowSet;
+			this.elapsedMs = elapsedMs;
+		}
+	}
+	
+	private RowSet getTableQueryValue(FanOutResult<TimedRowSet> result, String timerName) throws RestServiceException {
+		if (result.isSuccess()) {
+			portalMetrics.recordTime(timerName, result.getValue().elapsedMs);
+			return result.getValue().rowSet;
+		}
+		if (result.getError() instanceof SynapseTableUnavailableException)
+			handleTableUnavailableException((SynapseTableUnavailableException) result.getError());
+		if (result.getError() instanceof SynapseException)
+			logError(result.getError().getMessage());
+		throw getFanOutError(result);
+	}
 
 	private void handleTableUnavailableException(SynapseTableUnavailableException e) throws TableUnavilableException {
 		try {
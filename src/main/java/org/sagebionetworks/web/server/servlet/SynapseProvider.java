@@ -14,4 +14,9 @@ public interface SynapseProvider {
 	 * @return
 	 */
 	public SynapseClient createNewClient();
+
+	/**
+	 * Release the clients kept for reuse.
+	 */
+	public void shutdown();
 }
@@ -1,23 +1,336 @@
 package org.sagebionetworks.web.server.servlet;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.sagebionetworks.client.SynapseClient;
 import org.sagebionetworks.client.SynapseClientImpl;
 import org.sagebionetworks.client.SynapseProfileProxy;
+import org.sagebionetworks.web.server.PortalMetrics;
+
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
- * Very simple implementation.
- * @author John
+ * Hands out clients that reuse configured Synapse clients instead of building
+ * a new one for every call.
+ *
+ * A client returned by {@link #createNewClient()} is a light handle: the
+ * configuration calls made on it (endpoints, user agent, session token, see
+ * {@link #CONFIGURATION_CALLS}) are only recorded. Each repository call borrows an idle Synapse client with
+ * that configuration from a pool, binds the handle's session token to it
+ * just before the call, and gives it back after. So a handle can be
+ * configured as before, be used by fan-out threads, and live next to other
+ * handles (other users) on the same thread. The pools are bounded (see
+ * {@link #MAX_CONFIGURATIONS} and {@link #MAX_IDLE_CLIENTS}) and are emptied
+ * by {@link #shutdown()}.
+ *
+ * The handle is also where the time of each repository call is recorded
+ * (see {@link PortalMetrics#recordSynapseCall(String, long, boolean)}).
+ * Clients handed out without reuse are not timed.
+ *
+ * Profiling (SynapseProfileProxy) is off unless configured.
  *
  */
 public class SynapseProviderImpl implements SynapseProvider {
-	
+
+	/**
+	 * The configurations that get a pool (there are only a few: the services
+	 * differ in endpoints and user agent). Clients of any other configuration
+	 * are built for each call.
+	 */
+	public static final int MAX_CONFIGURATIONS = 8;
+	/**
+	 * The idle clients kept per configuration. Past that, clients given back
+	 * are dropped.
+	 */
+	public static final int MAX_IDLE_CLIENTS = 32;
+	/**
+	 * The calls that are recorded as the configuration of a handle, and so
+	 * are part of its pool key. Any other call (including any other setter)
+	 * is made on the borrowed client.
+	 */
+	private static final Set<String> CONFIGURATION_CALLS = new HashSet<String>(Arrays.asList(
+			"setRepositoryEndpoint", "setAuthEndpoint", "setFileEndpoint",
+			"setUserName", "setApiKey", "appendUserAgent"));
+
+	private boolean reuseClients;
+	private boolean profileClients;
+	private AtomicLong clientsCreated = new AtomicLong();
+	private PortalMetrics portalMetrics;
+	private ConcurrentMap<List<ConfigurationCall>, ClientPool> pools = new ConcurrentHashMap<List<ConfigurationCall>, ClientPool>();
+	private volatile boolean isShutdown = false;
+
+	/**
+	 * Used when the servlet is not created by Guice (tests).
+	 */
+	public SynapseProviderImpl() {
+		this(true, false);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public SynapseProviderImpl(
+			@Named("org.sagebionetworks.portal.synapse.client.reuse") boolean reuseClients,
+			@Named("org.sagebionetworks.portal.synapse.client.profile") boolean profileClients) {
+		this.reuseClients = reuseClients;
+		this.profileClients = profileClients;
+	}
+
+	/**
+	 * Injected with Guice. Repository calls are not timed without it.
+	 */
+	@Inject
+	public void setPortalMetrics(PortalMetrics portalMetrics) {
+		this.portalMetrics = portalMetrics;
+	}
 
 	@Override
 	public SynapseClient createNewClient() {
-		return SynapseProfileProxy.createProfileProxy(new SynapseClientImpl());
-		// ONE LINE CHANGE TO USE STUB SYNAPSE CLIENT:		
-		//return SynapseClientStubUtil.createSynapseClient();		
+		if (!reuseClients)
+			return newClient();
+		return (SynapseClient) Proxy.newProxyInstance(SynapseClient.class.getClassLoader(),
+				new Class<?>[] { SynapseClient.class }, new ClientHandle());
+		// ONE LINE CHANGE TO USE STUB SYNAPSE CLIENT:
+		//return SynapseClientStubUtil.createSynapseClient();
+	}
+
+	/**
+	 * Drop the idle clients. Clients in use are dropped when given back.
+	 */
+	@Override
+	public void shutdown() {
+		isShutdown = true;
+		for (ClientPool pool : pools.values()) {
+			// handles may still hold the pool
+			pool.idle.clear();
+		}
+		pools.clear();
+	}
+
+	/**
+	 * The number of Synapse clients built so far.
+	 */
+	public long getClientsCreated() {
+		return clientsCreated.get();
+	}
+
+	/**
+	 * Build a new, unconfigured Synapse client.
+	 */
+	protected SynapseClient createClient() {
+		return new SynapseClientImpl();
+	}
+
+	private SynapseClient newClient() {
+		clientsCreated.incrementAndGet();
+		SynapseClient client = createClient();
+		return profileClients ? SynapseProfileProxy.createProfileProxy(client) : client;
+	}
+
+	/**
+	 * The pool of the given configuration, shared by every handle configured
+	 * the same way.
+	 */
+	private ClientPool getPool(List<ConfigurationCall> configuration) {
+		ClientPool pool = pools.get(configuration);
+		if (pool == null) {
+			pool = new ClientPool(configuration);
+			if (!isShutdown && pools.size() < MAX_CONFIGURATIONS) {
+				ClientPool existing = pools.putIfAbsent(configuration, pool);
+				if (existing != null)
+					pool = existing;
+			}
+		}
+		return pool;
 	}
 
+	private static Object invoke(SynapseClient client, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(client, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Endpoint, user name and api key setters, and user agent appends.
+	 */
+	private static boolean isConfigurationCall(Method method) {
+		return CONFIGURATION_CALLS.contains(method.getName());
+	}
+
+	/**
+	 * Endpoint and user agent getters answer from the client itself.
+	 */
+	private static boolean isLocalCall(Method method) {
+		String name = method.getName();
+		return name.endsWith("Endpoint") || name.equals("getUserAgent");
+	}
+
+	/**
+	 * Idle clients of one configuration.
+	 */
+	private class ClientPool {
+		private final List<ConfigurationCall> configuration;
+		private final Queue<SynapseClient> idle = new ConcurrentLinkedQueue<SynapseClient>();
+		// the queue does not count in constant time
+		private final AtomicInteger idleCount = new AtomicInteger();
+
+		ClientPool(List<ConfigurationCall> configuration) {
+			this.configuration = configuration;
+		}
+
+		SynapseClient borrow() throws Throwable {
+			SynapseClient client = idle.poll();
+			if (client != null) {
+				idleCount.decrementAndGet();
+				return client;
+			}
+			client = newClient();
+			for (ConfigurationCall call : configuration) {
+				SynapseProviderImpl.invoke(client, call.method, call.args);
+			}
+			return client;
+		}
+
+		void giveBack(SynapseClient client) {
+			if (isShutdown)
+				return;
+			if (idleCount.incrementAndGet() > MAX_IDLE_CLIENTS) {
+				idleCount.decrementAndGet();
+				return;
+			}
+			idle.offer(client);
+		}
+	}
+
+	private class ClientHandle implements InvocationHandler {
+		// in the order they were made, but the session token
+		private volatile List<ConfigurationCall> configuration = Collections.emptyList();
+		// looked up on the first call after the configuration changes
+		private volatile ClientPool pool;
+		private volatile String sessionToken;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (method.getDeclaringClass() == Object.class) {
+				if ("hashCode".equals(name))
+					return System.identityHashCode(proxy);
+				if ("equals".equals(name))
+					return args[0] == proxy;
+				return "SynapseClient" + configuration;
+			}
+			if ("setSessionToken".equals(name)) {
+				sessionToken = (String) args[0];
+				return null;
+			}
+			if ("getCurrentSessionToken".equals(name))
+				return sessionToken;
+			if (isConfigurationCall(method)) {
+				synchronized (this) {
+					List<ConfigurationCall> newConfiguration = new ArrayList<ConfigurationCall>(configuration);
+					newConfiguration.add(new ConfigurationCall(method, args));
+					configuration = new ConfigurationKey(newConfiguration);
+					pool = null;
+				}
+				return null;
+			}
+			ClientPool clientPool = pool;
+			if (clientPool == null) {
+				clientPool = getPool(configuration);
+				pool = clientPool;
+			}
+			SynapseClient client = clientPool.borrow();
+			client.setSessionToken(sessionToken);
+			boolean isTimed = portalMetrics != null && !isLocalCall(method);
+			long start = isTimed ? System.currentTimeMillis() : 0;
+			boolean isError = true;
+			try {
+				Object result = SynapseProviderImpl.invoke(client, method, args);
+				isError = false;
+				return result;
+			} finally {
+				if (isTimed)
+					portalMetrics.recordSynapseCall(name, System.currentTimeMillis() - start, isError);
+				// login and logout change the token
+				sessionToken = client.getCurrentSessionToken();
+				clientPool.giveBack(client);
+			}
+		}
+	}
+
+	/**
+	 * An unmodifiable configuration that computes its hash once.
+	 */
+	private static class ConfigurationKey extends AbstractList<ConfigurationCall> {
+		private final ConfigurationCall[] calls;
+		private final int hashCode;
+
+		ConfigurationKey(List<ConfigurationCall> calls) {
+			this.calls = calls.toArray(new ConfigurationCall[calls.size()]);
+			this.hashCode = super.hashCode();
+		}
+
+		@Override
+		public ConfigurationCall get(int index) {
+			return calls[index];
+		}
+
+		@Override
+		public int size() {
+			return calls.length;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private static class ConfigurationCall {
+		private Method method;
+		private Object[] args;
+
+		public ConfigurationCall(Method method, Object[] args) {
+			this.method = method;
+			this.args = args;
+		}
 
+		@Override
+		public int hashCode() {
+			return 31 * method.hashCode() + Arrays.hashCode(args);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ConfigurationCall))
+				return false;
+			ConfigurationCall other = (ConfigurationCall) obj;
+			return method.equals(other.method) && Arrays.equals(args, other.args);
+		}
+
+		@Override
+		public String toString() {
+			return method.getName() + Arrays.toString(args);
+		}
+	}
 }
@@ -49,6 +49,16 @@ public class UserAccountServiceImpl extends RemoteServiceServlet implements User
 		this.tokenProvider = tokenProvider;
 	}
 
+	/**
+	 * Injected with Guice, tests can override this.
+	 * 
+	 * @param synapseProvider
+	 */
+	@Inject
+	public void setSynapseProvider(SynapseProvider synapseProvider) {
+		this.synapseProvider = synapseProvider;
+	}
+
 	/**
 	 * Validate that the service is ready to go. If any of the injected data is
 	 * missing then it cannot run. Public for tests.
@@ -0,0 +1,64 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.io.Serializable;
+
+/**
+ * Identifies one rendering of a wiki page. The wiki key, etag and version
+ * (from the wrapped {@link MarkdownCacheRequest}) pin the markdown, while the
+ * preview flag and client host prefix change the generated html.
+ */
+public class WikiHtmlCacheRequest implements Serializable {
+	private static final long serialVersionUID = 2791436218766218571L;
+	private MarkdownCacheRequest markdownRequest;
+	private boolean isPreview;
+	private String clientHostString;
+	public WikiHtmlCacheRequest(MarkdownCacheRequest markdownRequest, boolean isPreview, String clientHostString) {
+		super();
+		this.markdownRequest = markdownRequest;
+		this.isPreview = isPreview;
+		this.clientHostString = clientHostString;
+	}
+	public MarkdownCacheRequest getMarkdownRequest() {
+		return markdownRequest;
+	}
+	public boolean isPreview() {
+		return isPreview;
+	}
+	public String getClientHostString() {
+		return clientHostString;
+	}
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result
+				+ ((clientHostString == null) ? 0 : clientHostString.hashCode());
+		result = prime * result + (isPreview ? 1231 : 1237);
+		result = prime * result
+				+ ((markdownRequest == null) ? 0 : markdownRequest.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		WikiHtmlCacheRequest other = (WikiHtmlCacheRequest) obj;
+		if (clientHostString == null) {
+			if (other.clientHostString != null)
+				return false;
+		} else if (!clientHostString.equals(other.clientHostString))
+			return false;
+		if (isPreview != other.isPreview)
+			return false;
+		if (markdownRequest == null) {
+			if (other.markdownRequest != null)
+				return false;
+		} else if (!markdownRequest.equals(other.markdownRequest))
+			return false;
+		return true;
+	}
+}
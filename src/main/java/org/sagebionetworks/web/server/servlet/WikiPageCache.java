@@ -0,0 +1,65 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Cache tier for wiki page json (V1 wiki pages, including the markdown).
+ * 
+ * Entries are keyed by wiki key, etag and version, so a cached page is never
+ * stale. Loaders are supplied by the caller because they need a Synapse
+ * client created on the request thread.
+ */
+public interface WikiPageCache {
+
+	/**
+	 * Get the wiki page json, running the loader on a miss. Concurrent misses
+	 * for the same request share a single load.
+	 * 
+	 * @param request
+	 * @param loader
+	 * @return
+	 * @throws ExecutionException
+	 *             if the loader failed (the cause is the loader exception)
+	 */
+	public String get(MarkdownCacheRequest request, Callable<String> loader) throws ExecutionException;
+
+	/**
+	 * Store a page that is already in hand (for example, the result of an
+	 * update).
+	 * 
+	 * @param request
+	 * @param wikiPageJson
+	 */
+	public void put(MarkdownCacheRequest request, String wikiPageJson);
+
+	/**
+	 * Load the page in the background if it is not already cached. Used when
+	 * the etag of a page changes, so the next reader does not wait on the load.
+	 * 
+	 * @param request
+	 * @param loader
+	 */
+	public void refreshAsync(MarkdownCacheRequest request, Callable<String> loader);
+
+	/**
+	 * Hit, miss, load time and eviction counts.
+	 * 
+	 * @return
+	 */
+	public CacheStats getStats();
+
+	/**
+	 * Approximate heap used by the cached pages, in bytes.
+	 * 
+	 * @return
+	 */
+	public long getWeightInBytes();
+
+	/**
+	 * Stop the background refresh threads.
+	 */
+	public void shutdown();
+}
@@ -0,0 +1,169 @@
+package org.sagebionetworks.web.server.servlet;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+/**
+ * Guava backed wiki page cache, bounded by the (approximate) number of bytes
+ * held rather than by the number of pages.
+ * 
+ */
+public class WikiPageCacheImpl implements WikiPageCache {
+	static private Log log = LogFactory.getLog(WikiPageCacheImpl.class);
+
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+	public static final long DEFAULT_EXPIRE_MINUTES = 60;
+	public static final int DEFAULT_REFRESH_THREADS = 2;
+	// guava splits the maximum weight evenly across this many segments
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 4;
+	private static final int REFRESH_QUEUE_SIZE = 100;
+	// rough per entry cost of the key, the entry and the string header
+	private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+	private Cache<MarkdownCacheRequest, String> cache;
+	private ThreadPoolExecutor refreshExecutor;
+	private AtomicLong weightInBytes = new AtomicLong(0);
+
+	/**
+	 * Used when the servlet is not created by Guice (tests).
+	 */
+	public WikiPageCacheImpl() {
+		this(DEFAULT_MAX_BYTES, DEFAULT_EXPIRE_MINUTES, DEFAULT_REFRESH_THREADS);
+	}
+
+	/**
+	 * Injected via Guice from the ServerConstants.properties file.
+	 */
+	@Inject
+	public WikiPageCacheImpl(
+			@Named("org.sagebionetworks.portal.wiki.cache.max.bytes") long maxBytes,
+			@Named("org.sagebionetworks.portal.wiki.cache.expire.minutes") long expireMinutes,
+			@Named("org.sagebionetworks.portal.wiki.cache.refresh.threads") int refreshThreads) {
+		this(maxBytes, expireMinutes, refreshThreads, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * @param maxBytes
+	 * @param expireMinutes
+	 * @param refreshThreads
+	 * @param concurrencyLevel each of the (concurrencyLevel) segments may hold maxBytes/concurrencyLevel
+	 */
+	public WikiPageCacheImpl(long maxBytes, long expireMinutes, int refreshThreads, int concurrencyLevel) {
+		cache = CacheBuilder.newBuilder()
+				.concurrencyLevel(concurrencyLevel)
+				.maximumWeight(maxBytes)
+				.weigher(new Weigher<MarkdownCacheRequest, String>() {
+					@Override
+					public int weigh(MarkdownCacheRequest key, String value) {
+						return getWeight(value);
+					}
+				})
+				.removalListener(new RemovalListener<MarkdownCacheRequest, String>() {
+					@Override
+					public void onRemoval(RemovalNotification<MarkdownCacheRequest, String> notification) {
+						weightInBytes.addAndGet(-getWeight(notification.getValue()));
+					}
+				})
+				.expireAfterAccess(expireMinutes, TimeUnit.MINUTES)
+				.recordStats()
+				.build();
+		refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads,
+				60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(REFRESH_QUEUE_SIZE),
+				new RefreshThreadFactory(),
+				// a refresh is only an optimization, so drop it when we are busy
+				new ThreadPoolExecutor.DiscardPolicy());
+		refreshExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Java strings use two bytes per character.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static int getWeight(String value) {
+		if (value == null)
+			return ENTRY_OVERHEAD_BYTES;
+		return ENTRY_OVERHEAD_BYTES + 2 * value.length();
+	}
+
+	@Override
+	public String get(MarkdownCacheRequest request, final Callable<String> loader) throws ExecutionException {
+		return cache.get(request, new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				String value = loader.call();
+				weightInBytes.addAndGet(getWeight(value));
+				return value;
+			}
+		});
+	}
+
+	@Override
+	public void put(MarkdownCacheRequest request, String wikiPageJson) {
+		weightInBytes.addAndGet(getWeight(wikiPageJson));
+		cache.put(request, wikiPageJson);
+	}
+
+	@Override
+	public void refreshAsync(final MarkdownCacheRequest request, final Callable<String> loader) {
+		if (cache.getIfPresent(request) != null)
+			return;
+		refreshExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					get(request, loader);
+				} catch (Throwable e) {
+					// the next reader will load (and report) it
+					log.warn("Background load of wiki page failed: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return cache.stats();
+	}
+
+	@Override
+	public long getWeightInBytes() {
+		return weightInBytes.get();
+	}
+
+	@Override
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	private static class RefreshThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "portal-wiki-refresh-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
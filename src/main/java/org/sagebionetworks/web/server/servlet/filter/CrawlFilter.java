@@ -11,7 +11,10 @@ import java.net.URI;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -40,6 +43,9 @@ import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
 import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
 import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
 import org.sagebionetworks.web.client.DisplayConstants;
+import org.sagebionetworks.web.server.servlet.FanOutExecutor;
+import org.sagebionetworks.web.server.servlet.FanOutExecutorImpl;
+import org.sagebionetworks.web.server.servlet.FanOutResult;
 import org.sagebionetworks.web.server.servlet.ServiceUrlProvider;
 import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
@@ -47,6 +53,11 @@ import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.SearchQueryUtils;
 import org.sagebionetworks.web.shared.WikiPageKey;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 /**
  * This filter detects ajax crawler (Google).  If so, it takes over the renders the javascript page and handles the response.
@@ -55,6 +66,24 @@ import org.sagebionetworks.web.shared.exceptions.RestServiceException;
 public class CrawlFilter implements Filter {
 
 	public static final String ESCAPED_FRAGMENT = "_escaped_fragment_=";
+	
+	// Optional filter init-params (web.xml)
+	public static final String SNAPSHOT_TTL_MINUTES_PARAM = "snapshotTtlMinutes";
+	public static final String SNAPSHOT_MAX_SIZE_PARAM = "snapshotMaxSize";
+	public static final String SEARCH_PAGE_SIZE_PARAM = "searchPageSize";
+	public static final String MAX_HOME_PAGE_HITS_PARAM = "maxHomePageHits";
+	public static final String MAX_DESCENDANTS_PARAM = "maxDescendants";
+	public static final String MAX_THREADS_PARAM = "maxThreads";
+	
+	public static final long DEFAULT_SNAPSHOT_TTL_MINUTES = 60;
+	public static final long DEFAULT_SNAPSHOT_MAX_SIZE = 1000;
+	public static final int DEFAULT_SEARCH_PAGE_SIZE = 100;
+	public static final long DEFAULT_MAX_HOME_PAGE_HITS = 20000;
+	public static final int DEFAULT_MAX_DESCENDANTS = 1000;
+	public static final int DEFAULT_MAX_THREADS = 5;
+	public static final int QUEUE_SIZE = 500;
+	public static final long TIMEOUT_MS = 60000;
+	
 	ServletContext sc;
 	
 	/**
@@ -62,10 +91,35 @@ public class CrawlFilter implements Filter {
 	 */
 	private SynapseClientImpl synapseClient;
 	JSONObjectAdapter jsonObjectAdapter;
+	// crawler pages get their own small pool, so crawls cannot starve user requests
+	FanOutExecutor fanOutExecutor;
+	Cache<String, String> snapshotCache;
+	Ticker ticker = Ticker.systemTicker();
+	int searchPageSize;
+	long maxHomePageHits;
+	int maxDescendants;
+	
+	/**
+	 * For tests. Call before init() to use this client instead of creating one.
+	 * @param synapseClient
+	 */
+	public void setSynapseClient(SynapseClientImpl synapseClient) {
+		this.synapseClient = synapseClient;
+	}
+	
+	/**
+	 * For tests. Call before init() to control when cached snapshots expire.
+	 * @param ticker
+	 */
+	public void setTicker(Ticker ticker) {
+		this.ticker = ticker;
+	}
 	
 	@Override
 	public void destroy() {
 		sc = null;
+		if (fanOutExecutor != null)
+			fanOutExecutor.shutdown();
 	}
 	
 	@Override
@@ -80,35 +134,25 @@ public class CrawlFilter implements Filter {
 				int port = request.getServerPort();
 				String domain = request.getServerName();
 				String scheme = request.getScheme();
-				//build an html page for this request
-				String html = "";
-				String fixedQueryString = uri + rewriteQueryString(queryString);
-				if (fixedQueryString.contains("#!Home")) {
-					//send back info about the site
-					html = getHomePageHtml();
-					
-				} else if (fixedQueryString.contains("#!Synapse")) {
-					//index information about the synapse entity
-					String entityId = fixedQueryString.substring(fixedQueryString.indexOf(":",fixedQueryString.indexOf("#!"))+1);
-					html=getEntityHtml(entityId);
-					
-				} else if (fixedQueryString.contains("#!Search")) {
-					//index all projects
-					String searchQueryJson = fixedQueryString.substring(fixedQueryString.indexOf(":",fixedQueryString.indexOf("#!"))+1);
-					html=getAllProjectsHtml(URLDecoder.decode(searchQueryJson));
-				}
-				
+				final String fixedQueryString = uri + rewriteQueryString(queryString);
 				URL url = new URL(scheme, domain, port, fixedQueryString);
-				//replace all relative links with full links due to this Google AJAX crawler support chicken-dance
 				String originalUrl = url.toString();
-				String toPage = originalUrl.substring(0, originalUrl.indexOf("#")+1);
-				String replacedWithFullHrefs = html.replace("href=\"#", "href=\""+toPage);
+				final String toPage = originalUrl.substring(0, originalUrl.indexOf("#")+1);
+				//crawlers ask for the same pages over and over, so each snapshot is rendered once per ttl
+				String html = snapshotCache.get(originalUrl, new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						String html = renderSnapshot(fixedQueryString);
+						//replace all relative links with full links due to this Google AJAX crawler support chicken-dance
+						return html.replace("href=\"#", "href=\""+toPage);
+					}
+				});
 				
 				response.setContentType("text/html");
 				HttpServletResponse httpResponse = (HttpServletResponse) response;
 				httpResponse.setStatus(HttpServletResponse.SC_OK);
 				PrintWriter out = httpResponse.getWriter();
-				out.println(replacedWithFullHrefs);
+				out.println(html);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -117,44 +161,101 @@ public class CrawlFilter implements Filter {
 		}
 	}
 
+	private String renderSnapshot(String fixedQueryString) throws RestServiceException, JSONObjectAdapterException {
+		if (fixedQueryString.contains("#!Home")) {
+			//send back info about the site
+			return getHomePageHtml();
+		} else if (fixedQueryString.contains("#!Synapse")) {
+			//index information about the synapse entity
+			String entityId = fixedQueryString.substring(fixedQueryString.indexOf(":",fixedQueryString.indexOf("#!"))+1);
+			return getEntityHtml(entityId);
+		} else if (fixedQueryString.contains("#!Search")) {
+			//index all projects
+			String searchQueryJson = fixedQueryString.substring(fixedQueryString.indexOf(":",fixedQueryString.indexOf("#!"))+1);
+			return getAllProjectsHtml(URLDecoder.decode(searchQueryJson));
+		}
+		return "";
+	}
+
 	private String getHomePageHtml() throws JSONObjectAdapterException, RestServiceException{
 		StringBuilder html = new StringBuilder();
 		html.append("<!DOCTYPE html><html><head><title>"+DisplayConstants.DEFAULT_PAGE_TITLE+"</title><meta name=\"description\" content=\""+DisplayConstants.DEFAULT_PAGE_DESCRIPTION+"\" /></head><body>");
 		//add direct links to all public projects in the system
 		SearchQuery query = SearchQueryUtils.getDefaultSearchQuery();
+		query.setSize((long) searchPageSize);
 		html.append("<h1>"+DisplayConstants.DEFAULT_PAGE_TITLE+"</h1>" + DisplayConstants.DEFAULT_PAGE_DESCRIPTION + "<br />");
-		String queryJson = "";
-		JSONObjectAdapter adapter = jsonObjectAdapter.createNew();
-		query.writeToJSONObject(adapter);
-		queryJson = adapter.toJSONString();
-
-		EntityWrapper entityWrapper = synapseClient.search(queryJson);
-		SearchResults results = EntityFactory.createEntityFromJSONString(entityWrapper.getEntityJson(), SearchResults.class);
+		SearchResults results = search(query);
+		appendHitLinks(html, results);
 		
-		//append this set to the list
-		while(results.getHits().size() > 0) {
-			for (Hit hit : results.getHits()) {
-				//add links
-				html.append("<a href=\"#!Synapse:"+hit.getId()+"\">"+hit.getName()+"</a><br />");
-			}
-			long newStart = results.getStart() + results.getHits().size();
-			query.setStart(newStart);
-			
-			adapter = jsonObjectAdapter.createNew();
-			query.writeToJSONObject(adapter);
-			queryJson = adapter.toJSONString();
-			
-			entityWrapper = synapseClient.search(queryJson);
-			results = EntityFactory.createEntityFromJSONString(entityWrapper.getEntityJson(), SearchResults.class);
+		//the first page tells us how many there are, fetch the rest of the pages concurrently
+		long found = results.getFound() == null ? 0 : Math.min(results.getFound(), maxHomePageHits);
+		List<Callable<SearchResults>> pageCalls = new ArrayList<Callable<SearchResults>>();
+		for (long start = results.getStart() + results.getHits().size(); start < found && results.getHits().size() > 0; start += searchPageSize) {
+			final SearchQuery pageQuery = SearchQueryUtils.getDefaultSearchQuery();
+			pageQuery.setSize((long) searchPageSize);
+			pageQuery.setStart(start);
+			pageCalls.add(new Callable<SearchResults>() {
+				@Override
+				public SearchResults call() throws Exception {
+					return search(pageQuery);
+				}
+			});
+		}
+		for (FanOutResult<SearchResults> pageResult : fanOutExecutor.invokeAll(pageCalls)) {
+			//a missing page only costs the crawler some links
+			if (pageResult.isSuccess())
+				appendHitLinks(html, pageResult.getValue());
 		}
 		
 		html.append("</body></html>");
 		return html.toString();
 	}
 	
-	private String getEntityHtml(String entityId) throws RestServiceException, JSONObjectAdapterException{
-		int mask = ENTITY | ANNOTATIONS;
-		EntityBundleTransport entityTransport = synapseClient.getEntityBundle(entityId, mask);
+	private SearchResults search(SearchQuery query) throws JSONObjectAdapterException, RestServiceException {
+		JSONObjectAdapter adapter = jsonObjectAdapter.createNew();
+		query.writeToJSONObject(adapter);
+		EntityWrapper entityWrapper = synapseClient.search(adapter.toJSONString());
+		return EntityFactory.createEntityFromJSONString(entityWrapper.getEntityJson(), SearchResults.class);
+	}
+	
+	private void appendHitLinks(StringBuilder html, SearchResults results) {
+		for (Hit hit : results.getHits()) {
+			//add links
+			html.append("<a href=\"#!Synapse:"+hit.getId()+"\">"+hit.getName()+"</a><br />");
+		}
+	}
+	
+	private String getEntityHtml(final String entityId) throws RestServiceException, JSONObjectAdapterException{
+		//the wiki and children do not depend on the entity, so fetch them alongside it
+		List<Callable<Object>> calls = new ArrayList<Callable<Object>>();
+		calls.add(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return synapseClient.getEntityBundle(entityId, ENTITY | ANNOTATIONS);
+			}
+		});
+		calls.add(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				return synapseClient.getV2WikiPageAsV1(new WikiPageKey(entityId, ObjectType.ENTITY.toString(), null));
+			}
+		});
+		calls.add(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				//only the first page of descendants
+				return synapseClient.getDescendants(entityId, maxDescendants, null);
+			}
+		});
+		List<FanOutResult<Object>> results = fanOutExecutor.invokeAll(calls);
+		
+		FanOutResult<Object> bundleResult = results.get(0);
+		if (!bundleResult.isSuccess()) {
+			if (bundleResult.getError() instanceof RestServiceException)
+				throw (RestServiceException) bundleResult.getError();
+			throw new UnknownErrorException("Unable to get entity " + entityId);
+		}
+		EntityBundleTransport entityTransport = (EntityBundleTransport) bundleResult.getValue();
 		Entity entity = EntityFactory.createEntityFromJSONString(entityTransport.getEntityJson(), Entity.class);
 		Annotations annotations = EntityFactory.createEntityFromJSONString(entityTransport.getAnnotationsJson(), Annotations.class);
 		
@@ -175,8 +276,7 @@ public class CrawlFilter implements Filter {
 			createdBy = createdByBuilder.toString();
 		}  catch (Exception e) {}
 		try{
-			String wikiPageJson = synapseClient.getV2WikiPageAsV1(new WikiPageKey(entity.getId(), ObjectType.ENTITY.toString(), null));
-			WikiPage rootPage = EntityFactory.createEntityFromJSONString(wikiPageJson, WikiPage.class);
+			WikiPage rootPage = EntityFactory.createEntityFromJSONString((String) results.get(1).getValue(), WikiPage.class);
 			markdown = escapeHtml(rootPage.getMarkdown());
 		} catch (Exception e) {}
 		
@@ -190,7 +290,7 @@ public class CrawlFilter implements Filter {
 			html.append(description + "<br />");
 		if (createdBy != null)
 			html.append("Created By " + createdBy + "<br />");
-		if (markdown != null)
+		if (markdown != null) {
 			try {
 				String wikiHtml = SynapseMarkdownProcessor.getInstance().markdown2Html(markdown, false, "");
 				//extract plain text from wiki html
@@ -198,6 +298,7 @@ public class CrawlFilter implements Filter {
 			} catch (IOException e) {
 			}
 			html.append(markdown + "<br />");
+		}
 		html.append("<br />");
 		for (String key : annotations.getStringAnnotations().keySet()) {
 			List<String> value = annotations.getStringAnnotations().get(key);
@@ -212,10 +313,9 @@ public class CrawlFilter implements Filter {
 			html.append(escapeHtml(key) + escapeHtml(getValueString(value)) + "<br />");
 		}
 		
-		//and ask for all descendents
+		//and link to the descendents
 		try {
-			String childListJson = synapseClient.getDescendants(entityId, Integer.MAX_VALUE, null);
-			EntityIdList childList = EntityFactory.createEntityFromJSONString(childListJson, EntityIdList.class);
+			EntityIdList childList = EntityFactory.createEntityFromJSONString((String) results.get(2).getValue(), EntityIdList.class);
 			for (EntityId childId : childList.getIdList()) {
 				html.append("<a href=\"#!Synapse:"+childId.getId()+"\">"+childId.getId()+"</a><br />");
 			}} catch(Exception e) {};
@@ -273,8 +373,24 @@ public class CrawlFilter implements Filter {
 	@Override
 	public void init(FilterConfig config) throws ServletException {
 		this.sc = config.getServletContext();
-		synapseClient = new SynapseClientImpl();
-		synapseClient.setServiceUrlProvider(new ServiceUrlProvider());
+		if (synapseClient == null) {
+			synapseClient = new SynapseClientImpl();
+			synapseClient.setServiceUrlProvider(new ServiceUrlProvider());
+		}
 		jsonObjectAdapter = new JSONObjectAdapterImpl();
+		searchPageSize = (int) getLongParameter(config, SEARCH_PAGE_SIZE_PARAM, DEFAULT_SEARCH_PAGE_SIZE);
+		maxHomePageHits = getLongParameter(config, MAX_HOME_PAGE_HITS_PARAM, DEFAULT_MAX_HOME_PAGE_HITS);
+		maxDescendants = (int) getLongParameter(config, MAX_DESCENDANTS_PARAM, DEFAULT_MAX_DESCENDANTS);
+		fanOutExecutor = new FanOutExecutorImpl((int) getLongParameter(config, MAX_THREADS_PARAM, DEFAULT_MAX_THREADS), QUEUE_SIZE, TIMEOUT_MS);
+		snapshotCache = CacheBuilder.newBuilder()
+				.maximumSize(getLongParameter(config, SNAPSHOT_MAX_SIZE_PARAM, DEFAULT_SNAPSHOT_MAX_SIZE))
+				.expireAfterWrite(getLongParameter(config, SNAPSHOT_TTL_MINUTES_PARAM, DEFAULT_SNAPSHOT_TTL_MINUTES), TimeUnit.MINUTES)
+				.ticker(ticker)
+				.build();
     }
+	
+	private static long getLongParameter(FilterConfig config, String name, long defaultValue) {
+		String value = config.getInitParameter(name);
+		return value == null ? defaultValue : Long.parseLong(value.trim());
+	}
 }
@@ -1,31 +1,76 @@
 package org.sagebionetworks.web.server.servlet.filter;
 
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 import java.util.UUID;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.ThreadContext;
+import org.sagebionetworks.web.server.PortalMetrics;
+import org.sagebionetworks.web.server.PortalMetricsImpl;
+
+import com.google.inject.Inject;
 
 /**
- * Logs timing and error messages 
+ * Logs timing and error messages, and records the latency, in-flight count,
+ * errors and payload sizes of every request in the {@link PortalMetrics}.
+ *
+ * GWT RPC requests are recorded per method ("/Portal/synapse.getEntityBundle"):
+ * their (small) body is read up front to decode the method name, and handed
+ * on to the servlet from memory. An RPC call counts as an error when the
+ * servlet answers with an exception ("//EX") as well as on an error status.
+ *
  * @author John
  *
  */
 public class TimingFilter implements Filter {
-	
+
 	public static final String SESSION_ID = "sessionId";
-	
+	public static final String GWT_PERMUTATION_HEADER = "X-GWT-Permutation";
+	public static final String RPC_EXCEPTION_PREFIX = "//EX";
+	public static final String UNKNOWN_METHOD = "unknown";
+	/**
+	 * Set in the flags of a GWT RPC request when an RPC token precedes the
+	 * service interface.
+	 */
+	public static final int RPC_TOKEN_FLAG = 2;
+	/**
+	 * How much of a response is kept to find out whether it is an RPC
+	 * exception (the start of a gzipped response needs more than the prefix).
+	 */
+	public static final int RESPONSE_HEAD_BYTES = 512;
+
 	static private Logger log = LogManager.getLogger(TimingFilter.class);
 
+	private PortalMetrics metrics = new PortalMetricsImpl();
+
+	@Inject
+	public void setPortalMetrics(PortalMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	@Override
 	public void destroy() {
 	}
@@ -39,9 +84,23 @@ public class TimingFilter implements Filter {
 		ThreadContext.put(SESSION_ID, UUID.randomUUID().toString());
 		// Log the time
 		long start = System.currentTimeMillis();
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+		String name = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+		long requestBytes = httpRequest.getContentLength();
+		if (isRpcRequest(httpRequest)) {
+			byte[] body = readFully(httpRequest.getInputStream());
+			requestBytes = body.length;
+			name = name + "." + getRpcMethodName(new String(body, "UTF-8"));
+			httpRequest = new BufferedRequest(httpRequest, body);
+		}
+		MeteredResponse meteredResponse = new MeteredResponse((HttpServletResponse) response);
+		metrics.requestStarted(name);
+		boolean isError = true;
 		try{
 			// Pass it along.
-			chain.doFilter(request, response);
+			chain.doFilter(httpRequest, meteredResponse);
+			meteredResponse.flushBuffer();
+			isError = meteredResponse.isError();
 		}catch (IOException e){
 			// Log any exceptions.
 			log.error(e);
@@ -52,9 +111,9 @@ public class TimingFilter implements Filter {
 			throw e;
 		}finally{
 			// Log the timing.
-			long end = System.currentTimeMillis();
-			HttpServletRequest httpRequest = (HttpServletRequest) request;
-			log.trace(httpRequest.getServletPath()+" elapse: "+(end-start)+" ms");
+			long elapsed = System.currentTimeMillis() - start;
+			metrics.requestFinished(name, elapsed, requestBytes, meteredResponse.getByteCount(), isError);
+			log.trace(name+" elapse: "+elapsed+" ms");
 			// Clear the logging thread context
 			ThreadContext.clear();
 		}
@@ -62,8 +121,225 @@ public class TimingFilter implements Filter {
 
 	@Override
 	public void init(FilterConfig arg0) throws ServletException {
-		// TODO Auto-generated method stub
-		
 	}
 
+	/**
+	 * GWT RPC calls are POSTs that identify the permutation making the call.
+	 */
+	public static boolean isRpcRequest(HttpServletRequest request) {
+		return "POST".equalsIgnoreCase(request.getMethod()) && request.getHeader(GWT_PERMUTATION_HEADER) != null;
+	}
+
+	/**
+	 * The method called by a GWT RPC request. The payload is
+	 * "version|flags|string count|strings...|module base|strong name|[rpc token]|interface|method|...",
+	 * where the last part refers to the (1-based) string table.
+	 *
+	 * @param payload
+	 * @return the method name, or {@link #UNKNOWN_METHOD}
+	 */
+	public static String getRpcMethodName(String payload) {
+		try {
+			String[] fields = payload.split("\\|", -1);
+			int flags = Integer.parseInt(fields[1]);
+			int stringCount = Integer.parseInt(fields[2]);
+			if ((flags & RPC_TOKEN_FLAG) != 0)
+				return UNKNOWN_METHOD;
+			// module base, strong name and service interface come before the method
+			int methodReference = Integer.parseInt(fields[3 + stringCount + 3]);
+			return fields[3 + methodReference - 1];
+		} catch (RuntimeException e) {
+			// not a payload we understand
+			return UNKNOWN_METHOD;
+		}
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int length;
+		while ((length = in.read(buffer)) != -1) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Serves a body that was already read.
+	 */
+	private static class BufferedRequest extends HttpServletRequestWrapper {
+		private byte[] body;
+
+		BufferedRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			final ByteArrayInputStream in = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+				@Override
+				public int read() throws IOException {
+					return in.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					return in.read(b, off, len);
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			String encoding = getCharacterEncoding() == null ? "UTF-8" : getCharacterEncoding();
+			return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+		}
+	}
+
+	/**
+	 * Counts the bytes written, and keeps the status and the start of the
+	 * body to tell errors apart.
+	 */
+	private static class MeteredResponse extends HttpServletResponseWrapper {
+		private int status = SC_OK;
+		private boolean isGzipped = false;
+		private long byteCount = 0;
+		private ByteArrayOutputStream head = new ByteArrayOutputStream();
+		private ServletOutputStream outputStream;
+		private PrintWriter writer;
+
+		MeteredResponse(HttpServletResponse response) {
+			super(response);
+		}
+
+		@Override
+		public void setStatus(int sc) {
+			status = sc;
+			super.setStatus(sc);
+		}
+
+		@SuppressWarnings("deprecation")
+		@Override
+		public void setStatus(int sc, String sm) {
+			status = sc;
+			super.setStatus(sc, sm);
+		}
+
+		@Override
+		public void sendError(int sc) throws IOException {
+			status = sc;
+			super.sendError(sc);
+		}
+
+		@Override
+		public void sendError(int sc, String msg) throws IOException {
+			status = sc;
+			super.sendError(sc, msg);
+		}
+
+		@Override
+		public void setHeader(String name, String value) {
+			checkEncoding(name, value);
+			super.setHeader(name, value);
+		}
+
+		@Override
+		public void addHeader(String name, String value) {
+			checkEncoding(name, value);
+			super.addHeader(name, value);
+		}
+
+		private void checkEncoding(String name, String value) {
+			if ("Content-Encoding".equalsIgnoreCase(name) && value != null && value.toLowerCase().contains("gzip"))
+				isGzipped = true;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			if (outputStream == null) {
+				final ServletOutputStream wrapped = super.getOutputStream();
+				outputStream = new ServletOutputStream() {
+					@Override
+					public void write(int b) throws IOException {
+						wrapped.write(b);
+						count(new byte[] { (byte) b }, 0, 1);
+					}
+
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						wrapped.write(b, off, len);
+						count(b, off, len);
+					}
+
+					@Override
+					public void flush() throws IOException {
+						wrapped.flush();
+					}
+
+					@Override
+					public void close() throws IOException {
+						wrapped.close();
+					}
+				};
+			}
+			return outputStream;
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (writer == null) {
+				String encoding = getCharacterEncoding() == null ? "ISO-8859-1" : getCharacterEncoding();
+				writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), encoding));
+			}
+			return writer;
+		}
+
+		@Override
+		public void flushBuffer() throws IOException {
+			if (writer != null)
+				writer.flush();
+			super.flushBuffer();
+		}
+
+		private void count(byte[] b, int off, int len) {
+			byteCount += len;
+			int keep = Math.min(len, RESPONSE_HEAD_BYTES - head.size());
+			if (keep > 0)
+				head.write(b, off, keep);
+		}
+
+		long getByteCount() {
+			return byteCount;
+		}
+
+		boolean isError() {
+			return status >= 400 || startsWithRpcException();
+		}
+
+		private boolean startsWithRpcException() {
+			byte[] start = head.toByteArray();
+			if (isGzipped) {
+				try {
+					GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(start));
+					byte[] unzipped = new byte[RPC_EXCEPTION_PREFIX.length()];
+					int length = 0;
+					int read;
+					while (length < unzipped.length && (read = in.read(unzipped, length, unzipped.length - length)) > 0) {
+						length += read;
+					}
+					start = length == unzipped.length ? unzipped : new byte[0];
+				} catch (IOException e) {
+					// too little of the response to tell
+					return false;
+				}
+			}
+			try {
+				return new String(start, "UTF-8").startsWith(RPC_EXCEPTION_PREFIX);
+			} catch (UnsupportedEncodingException e) {
+				return false;
+			}
+		}
+	}
 }
@@ -0,0 +1,67 @@
+package org.sagebionetworks.web.shared;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * A page of query results held column by column, which is much smaller on
+ * the wire and on the heap than a map per row.
+ * 
+ */
+public class ColumnarRows implements IsSerializable {
+
+	private int rowCount;
+	private List<ResultColumn> columns;
+
+	public ColumnarRows() {
+	}
+
+	public ColumnarRows(int rowCount, List<ResultColumn> columns) {
+		this.rowCount = rowCount;
+		this.columns = columns;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public List<ResultColumn> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param id
+	 * @return null if there is no such column
+	 */
+	public ResultColumn getColumn(String id) {
+		for (ResultColumn column : columns) {
+			if (column.getId().equals(id))
+				return column;
+		}
+		return null;
+	}
+
+	/**
+	 * The rows as maps of column id to value (cells without a value are left
+	 * out).
+	 * 
+	 * @return
+	 */
+	public List<Map<String, Object>> toRows() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(rowCount);
+		for (int i = 0; i < rowCount; i++) {
+			Map<String, Object> row = new TreeMap<String, Object>();
+			for (ResultColumn column : columns) {
+				Object value = column.get(i);
+				if (value != null)
+					row.put(column.getId(), value);
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+}
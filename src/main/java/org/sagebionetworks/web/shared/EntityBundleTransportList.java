@@ -0,0 +1,47 @@
+package org.sagebionetworks.web.shared;
+
+import java.util.List;
+
+import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * The result of a batch entity bundle request. Both lists are in the order of
+ * the requested entity ids: for each index either the bundle or the error is set.
+ */
+public class EntityBundleTransportList implements IsSerializable {
+
+	private List<EntityBundleTransport> bundles;
+	private List<RestServiceException> errors;
+
+	/**
+	 * Default constructor
+	 */
+	public EntityBundleTransportList() {
+		
+	}
+
+	public EntityBundleTransportList(List<EntityBundleTransport> bundles,
+			List<RestServiceException> errors) {
+		super();
+		this.bundles = bundles;
+		this.errors = errors;
+	}
+
+	public List<EntityBundleTransport> getBundles() {
+		return bundles;
+	}
+
+	public void setBundles(List<EntityBundleTransport> bundles) {
+		this.bundles = bundles;
+	}
+
+	public List<RestServiceException> getErrors() {
+		return errors;
+	}
+
+	public void setErrors(List<RestServiceException> errors) {
+		this.errors = errors;
+	}
+}
@@ -0,0 +1,128 @@
+package org.sagebionetworks.web.shared;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * One column of a {@link ColumnarRows} page. The values of a column with a
+ * scalar type are held in one primitive array (only the array of the column's
+ * type is set), so a page of results costs one array per column rather than
+ * one boxed object per cell.
+ * 
+ */
+public class ResultColumn implements IsSerializable {
+
+	private String id;
+	/**
+	 * Null for columns whose values are held as objects.
+	 */
+	private ColumnInfo.Type type;
+	/**
+	 * Set only for primitive columns that have missing values.
+	 */
+	private boolean[] isNull;
+	private long[] longs;
+	private int[] ints;
+	private double[] doubles;
+	private boolean[] booleans;
+	private String[] strings;
+	/**
+	 * Array types, and columns that are not typed.
+	 */
+	private Object[] objects;
+
+	public ResultColumn() {
+	}
+
+	public ResultColumn(String id, ColumnInfo.Type type) {
+		this.id = id;
+		this.type = type;
+	}
+
+	/**
+	 * The value of a cell, boxed.
+	 * 
+	 * @param row
+	 * @return null if the cell has no value
+	 */
+	public Object get(int row) {
+		if (isNull != null && isNull[row])
+			return null;
+		if (strings != null)
+			return strings[row];
+		if (longs != null)
+			return longs[row];
+		if (ints != null)
+			return ints[row];
+		if (doubles != null)
+			return doubles[row];
+		if (booleans != null)
+			return booleans[row];
+		if (objects != null)
+			return objects[row];
+		return null;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public ColumnInfo.Type getType() {
+		return type;
+	}
+
+	public boolean[] getIsNull() {
+		return isNull;
+	}
+
+	public void setIsNull(boolean[] isNull) {
+		this.isNull = isNull;
+	}
+
+	public long[] getLongs() {
+		return longs;
+	}
+
+	public void setLongs(long[] longs) {
+		this.longs = longs;
+	}
+
+	public int[] getInts() {
+		return ints;
+	}
+
+	public void setInts(int[] ints) {
+		this.ints = ints;
+	}
+
+	public double[] getDoubles() {
+		return doubles;
+	}
+
+	public void setDoubles(double[] doubles) {
+		this.doubles = doubles;
+	}
+
+	public boolean[] getBooleans() {
+		return booleans;
+	}
+
+	public void setBooleans(boolean[] booleans) {
+		this.booleans = booleans;
+	}
+
+	public String[] getStrings() {
+		return strings;
+	}
+
+	public void setStrings(String[] strings) {
+		this.strings = strings;
+	}
+
+	public Object[] getObjects() {
+		return objects;
+	}
+
+	public void setObjects(Object[] objects) {
+		this.objects = objects;
+	}
+}
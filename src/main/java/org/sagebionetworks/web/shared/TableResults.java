@@ -13,6 +13,14 @@ public class TableResults implements IsSerializable {
 	
 	private int totalNumberResults;
 	private List<Map<String, Object>> rows;
+	/**
+	 * The search service sends its rows column by column.
+	 */
+	private ColumnarRows columnarRows;
+	/**
+	 * The columnar rows as maps, built when first asked for.
+	 */
+	private transient List<Map<String, Object>> materializedRows;
 	private RestServiceException exception;
 	
 	/**
@@ -27,11 +35,24 @@ public class TableResults implements IsSerializable {
 		this.totalNumberResults = totalNumberResults;
 	}
 	public List<Map<String, Object>> getRows() {
+		if (rows == null && columnarRows != null) {
+			if (materializedRows == null) {
+				materializedRows = columnarRows.toRows();
+			}
+			return materializedRows;
+		}
 		return rows;
 	}
 	public void setRows(List<Map<String, Object>> rows) {
 		this.rows = rows;
 	}
+	public ColumnarRows getColumnarRows() {
+		return columnarRows;
+	}
+	public void setColumnarRows(ColumnarRows columnarRows) {
+		this.columnarRows = columnarRows;
+		this.materializedRows = null;
+	}
 	public List<HeaderData> getColumnInfoList() {
 		return columnInfoList;
 	}
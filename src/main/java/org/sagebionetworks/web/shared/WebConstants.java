@@ -196,7 +196,9 @@ public class WebConstants {
 	
 	//ClientCache key suffixes (used to avoid collision in the cache)
 	public static final String USER_PROFILE_SUFFIX = "_USER_PROFILE";
+	public static final String TEAM_SUFFIX = "_TEAM";
 	public static final String TEMP_IMAGE_ATTACHMENT_SUFFIX = "_TEMP_IMAGE_ATTACHMENT";
+	public static final String CHUNKED_UPLOAD_SUFFIX = "_CHUNKED_UPLOAD";
 
 	public static final String TABLE_COLUMN_ID = "columnId";
 	public static final String TABLE_ROW_ID = "rowId";
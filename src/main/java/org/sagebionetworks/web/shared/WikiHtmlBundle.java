@@ -0,0 +1,75 @@
+package org.sagebionetworks.web.shared;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * A wiki page rendered to html on the server. Carries the resolved wiki page
+ * id, since the request may have asked for the root page without knowing it.
+ */
+public class WikiHtmlBundle implements IsSerializable {
+
+	private String wikiPageId;
+	private String html;
+
+	/**
+	 * Default constructor
+	 */
+	public WikiHtmlBundle() {
+		
+	}
+
+	public WikiHtmlBundle(String wikiPageId, String html) {
+		super();
+		this.wikiPageId = wikiPageId;
+		this.html = html;
+	}
+
+	public String getWikiPageId() {
+		return wikiPageId;
+	}
+
+	public void setWikiPageId(String wikiPageId) {
+		this.wikiPageId = wikiPageId;
+	}
+
+	public String getHtml() {
+		return html;
+	}
+
+	public void setHtml(String html) {
+		this.html = html;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((html == null) ? 0 : html.hashCode());
+		result = prime * result
+				+ ((wikiPageId == null) ? 0 : wikiPageId.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		WikiHtmlBundle other = (WikiHtmlBundle) obj;
+		if (html == null) {
+			if (other.html != null)
+				return false;
+		} else if (!html.equals(other.html))
+			return false;
+		if (wikiPageId == null) {
+			if (other.wikiPageId != null)
+				return false;
+		} else if (!wikiPageId.equals(other.wikiPageId))
+			return false;
+		return true;
+	}
+
+}
@@ -0,0 +1,100 @@
+package org.sagebionetworks.web.shared.provenance;
+
+import java.util.List;
+
+import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+
+import com.google.gwt.user.client.rpc.IsSerializable;
+
+/**
+ * Everything needed to build a ProvGraph on the client, collected by a single
+ * server side traversal. Repository model objects are passed as json.
+ */
+public class ProvGraphBundle implements IsSerializable {
+
+	// ReferenceList of the start references, with current versions resolved
+	private String startReferencesJson;
+	// ReferenceList of every entity in the graph
+	private String referencesJson;
+	// BatchResults<EntityHeader> for the references (null if the lookup failed)
+	private String entityHeadersJson;
+	// Activity json, one per distinct activity
+	private List<String> activitiesJson;
+	// ReferenceList of generated entities, parallel to generatedByActivityIds
+	private String generatedByReferencesJson;
+	private List<String> generatedByActivityIds;
+	// ReferenceList of entities whose activity lookup failed, parallel to failures
+	private String failedReferencesJson;
+	private List<RestServiceException> failures;
+
+	/**
+	 * Default constructor
+	 */
+	public ProvGraphBundle() {
+		
+	}
+
+	public String getStartReferencesJson() {
+		return startReferencesJson;
+	}
+
+	public void setStartReferencesJson(String startReferencesJson) {
+		this.startReferencesJson = startReferencesJson;
+	}
+
+	public String getReferencesJson() {
+		return referencesJson;
+	}
+
+	public void setReferencesJson(String referencesJson) {
+		this.referencesJson = referencesJson;
+	}
+
+	public String getEntityHeadersJson() {
+		return entityHeadersJson;
+	}
+
+	public void setEntityHeadersJson(String entityHeadersJson) {
+		this.entityHeadersJson = entityHeadersJson;
+	}
+
+	public List<String> getActivitiesJson() {
+		return activitiesJson;
+	}
+
+	public void setActivitiesJson(List<String> activitiesJson) {
+		this.activitiesJson = activitiesJson;
+	}
+
+	public String getGeneratedByReferencesJson() {
+		return generatedByReferencesJson;
+	}
+
+	public void setGeneratedByReferencesJson(String generatedByReferencesJson) {
+		this.generatedByReferencesJson = generatedByReferencesJson;
+	}
+
+	public List<String> getGeneratedByActivityIds() {
+		return generatedByActivityIds;
+	}
+
+	public void setGeneratedByActivityIds(List<String> generatedByActivityIds) {
+		this.generatedByActivityIds = generatedByActivityIds;
+	}
+
+	public String getFailedReferencesJson() {
+		return failedReferencesJson;
+	}
+
+	public void setFailedReferencesJson(String failedReferencesJson) {
+		this.failedReferencesJson = failedReferencesJson;
+	}
+
+	public List<RestServiceException> getFailures() {
+		return failures;
+	}
+
+	public void setFailures(List<RestServiceException> failures) {
+		this.failures = failures;
+	}
+}
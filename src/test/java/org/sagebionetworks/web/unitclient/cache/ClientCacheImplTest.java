@@ -70,4 +70,28 @@ public class ClientCacheImplTest {
 		assertNull(cache.get(key));
 	}
 	
+	@Test
+	public void testAfterReload() {
+		String key = "testkey";
+		String value = "testValue";
+		Long expireTime = System.currentTimeMillis() + 60000L;
+		cache.put(key, value, expireTime);
+		verify(mockStorage).setItem(eq(key + ClientCacheImpl.EXPIRE_TIME_SUFFIX), eq(expireTime.toString()));
+		//a new page only has what is in storage
+		when(mockStorage.getItem(eq(key))).thenReturn(value);
+		when(mockStorage.getItem(eq(key + ClientCacheImpl.EXPIRE_TIME_SUFFIX))).thenReturn(expireTime.toString());
+		cache = new ClientCacheImpl(mockStorage);
+		assertEquals(value, cache.get(key));
+	}
+	
+	@Test
+	public void testExpiredAfterReload() {
+		String key = "testkey";
+		when(mockStorage.getItem(eq(key))).thenReturn("testValue");
+		when(mockStorage.getItem(eq(key + ClientCacheImpl.EXPIRE_TIME_SUFFIX))).thenReturn(Long.toString(System.currentTimeMillis() - 1L));
+		assertNull(cache.get(key));
+		verify(mockStorage).removeItem(eq(key));
+		verify(mockStorage).removeItem(eq(key + ClientCacheImpl.EXPIRE_TIME_SUFFIX));
+	}
+	
 }
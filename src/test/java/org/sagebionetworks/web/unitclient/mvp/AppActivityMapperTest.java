@@ -1,8 +1,13 @@
 package org.sagebionetworks.web.unitclient.mvp;
 
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.times;
@@ -11,19 +16,24 @@ import static org.mockito.Mockito.when;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.sagebionetworks.web.client.GWTWrapper;
 import org.sagebionetworks.web.client.GlobalApplicationState;
 import org.sagebionetworks.web.client.PortalGinInjector;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
 import org.sagebionetworks.web.client.mvp.AppActivityMapper;
 import org.sagebionetworks.web.client.place.Home;
+import org.sagebionetworks.web.client.place.Help;
 import org.sagebionetworks.web.client.place.LoginPlace;
+import org.sagebionetworks.web.client.place.Profile;
 import org.sagebionetworks.web.client.place.Synapse;
 import org.sagebionetworks.web.client.presenter.BulkPresenterProxy;
 import org.sagebionetworks.web.client.presenter.HomePresenter;
 import org.sagebionetworks.web.client.presenter.LoginPresenter;
 import org.sagebionetworks.web.client.presenter.PresenterProxy;
 import org.sagebionetworks.web.client.security.AuthenticationController;
+import org.sagebionetworks.web.client.utils.Callback;
 
 import com.google.gwt.activity.shared.Activity;
 import com.google.gwt.place.shared.Place;
@@ -45,6 +55,7 @@ public class AppActivityMapperTest {
 	String historyToken = "Home:0";
 	AuthenticationController mockAuthenticationController;
 	BulkPresenterProxy mockBulkPresenterProxy;
+	GWTWrapper mockGWT;
 	
 	@Before
 	public void before(){
@@ -55,6 +66,8 @@ public class AppActivityMapperTest {
 		mockSynapseJSNIUtils = Mockito.mock(SynapseJSNIUtils.class);
 		mockAuthenticationController = Mockito.mock(AuthenticationController.class);
 		when(mockInjector.getBulkPresenterProxy()).thenReturn(mockBulkPresenterProxy);
+		mockGWT = Mockito.mock(GWTWrapper.class);
+		when(mockInjector.getGWTWrapper()).thenReturn(mockGWT);
 		
 		// WHENs
 		when(mockAuthenticationController.isLoggedIn()).thenReturn(true);
@@ -118,4 +131,31 @@ public class AppActivityMapperTest {
 		verify(mockGlobalApplicationState).setCurrentPlace(loginPlace2);
 	}
 
+	@Test
+	public void testPrefetchNextPlace() {
+		Place entityPlace = new Synapse("syn123");
+		appActivityMapper.getActivity(entityPlace);
+		ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+		verify(mockGWT).scheduleExecution(captor.capture(), eq(AppActivityMapper.PREFETCH_DELAY_MS));
+		
+		//nothing is downloaded until the delay has passed
+		verify(mockBulkPresenterProxy, never()).start(null, null);
+		captor.getValue().invoke();
+		ArgumentCaptor<Place> placeCaptor = ArgumentCaptor.forClass(Place.class);
+		verify(mockBulkPresenterProxy, times(2)).setPlace(placeCaptor.capture());
+		assertTrue(placeCaptor.getValue() instanceof Profile);
+		verify(mockBulkPresenterProxy).start(null, null);
+		
+		//only prefetched once
+		appActivityMapper.getActivity(new Synapse("syn456"));
+		verify(mockGWT).scheduleExecution(any(Callback.class), anyInt());
+	}
+	
+	@Test
+	public void testGetLikelyNextPlace() {
+		assertTrue(AppActivityMapper.getLikelyNextPlace(new Home("0")) instanceof Synapse);
+		assertTrue(AppActivityMapper.getLikelyNextPlace(new Synapse("syn123")) instanceof Profile);
+		assertNull(AppActivityMapper.getLikelyNextPlace(new Help("0")));
+	}
+
 }
@@ -0,0 +1,94 @@
+package org.sagebionetworks.web.unitclient.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.EntityHeader;
+import org.sagebionetworks.repo.model.EntityPath;
+import org.sagebionetworks.repo.model.ExampleEntity;
+import org.sagebionetworks.repo.model.auth.UserEntityPermissions;
+import org.sagebionetworks.repo.model.file.FileHandle;
+import org.sagebionetworks.repo.model.file.S3FileHandle;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.schema.adapter.org.json.AdapterFactoryImpl;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
+import org.sagebionetworks.web.client.model.EntityBundle;
+import org.sagebionetworks.web.client.transform.JSONEntityFactory;
+import org.sagebionetworks.web.client.transform.JSONEntityFactoryImpl;
+import org.sagebionetworks.web.client.transform.NodeModelCreatorImpl;
+import org.sagebionetworks.web.shared.EntityBundleTransport;
+
+public class NodeModelCreatorImplTest {
+
+	JSONEntityFactory factory;
+	NodeModelCreatorImpl modelCreator;
+	EntityBundleTransport transport;
+	ExampleEntity entity;
+	UserEntityPermissions permissions;
+	EntityPath path;
+	List<FileHandle> fileHandles;
+
+	@Before
+	public void before() throws Exception {
+		factory = new JSONEntityFactoryImpl(new AdapterFactoryImpl());
+		modelCreator = new NodeModelCreatorImpl(factory, new JSONObjectAdapterImpl());
+		entity = new ExampleEntity();
+		entity.setId("syn123");
+		entity.setEntityType(ExampleEntity.class.getName());
+		permissions = new UserEntityPermissions();
+		permissions.setCanEdit(true);
+		path = new EntityPath();
+		path.setPath(new ArrayList<EntityHeader>());
+		EntityHeader header = new EntityHeader();
+		header.setId("syn123");
+		path.getPath().add(header);
+		S3FileHandle handle = new S3FileHandle();
+		handle.setId("4422");
+		handle.setBucketName("bucket");
+		fileHandles = new ArrayList<FileHandle>();
+		fileHandles.add(handle);
+
+		transport = new EntityBundleTransport();
+		transport.setEntityJson(EntityFactory.createJSONStringForEntity(entity));
+		transport.setPermissionsJson(EntityFactory.createJSONStringForEntity(permissions));
+		transport.setEntityPathJson(EntityFactory.createJSONStringForEntity(path));
+		transport.setFileHandlesJson("[" + EntityFactory.createJSONStringForEntity(handle) + "]");
+		transport.setHashChildren(true);
+	}
+
+	@Test
+	public void testCreateEntityBundle() throws Exception {
+		EntityBundle bundle = modelCreator.createEntityBundle(transport);
+		assertEquals(entity, bundle.getEntity());
+		assertEquals(permissions, bundle.getPermissions());
+		assertEquals(path, bundle.getPath());
+		assertEquals(fileHandles, bundle.getFileHandles());
+		assertEquals(Boolean.TRUE, bundle.getHasChildren());
+		// parts that were not sent
+		assertNull(bundle.getAnnotations());
+		assertNull(bundle.getAccessRequirements());
+		assertNull(bundle.getUnmetAccessRequirements());
+	}
+
+	@Test (expected=JSONObjectAdapterException.class)
+	public void testCreateEntityBundleBadPart() throws Exception {
+		// a bad part fails the bundle (and reaches the caller's onFailure), not a later getter
+		transport.setEntityPathJson("{not json");
+		modelCreator.createEntityBundle(transport);
+	}
+
+	@Test
+	public void testEquals() throws Exception {
+		EntityBundle created = modelCreator.createEntityBundle(transport);
+		EntityBundle expected = new EntityBundle(entity, null, permissions, path, null, null, fileHandles);
+		expected.setChildCount(true);
+		assertEquals(expected, created);
+		assertEquals(expected.hashCode(), modelCreator.createEntityBundle(transport).hashCode());
+	}
+}
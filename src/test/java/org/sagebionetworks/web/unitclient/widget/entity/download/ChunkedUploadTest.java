@@ -0,0 +1,138 @@
+package org.sagebionetworks.web.unitclient.widget.entity.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.file.ChunkedFileToken;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapter;
+import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
+import org.sagebionetworks.web.client.ClientProperties;
+import org.sagebionetworks.web.client.widget.entity.download.ChunkedUpload;
+import org.sagebionetworks.web.client.widget.entity.download.ChunkedUpload.Chunk;
+
+public class ChunkedUploadTest {
+
+	private static final long MB = (long) ClientProperties.MB;
+	JSONObjectAdapter jsonObjectAdapter = new JSONObjectAdapterImpl();
+	ChunkedFileToken token;
+
+	@Before
+	public void before() {
+		token = new ChunkedFileToken();
+		token.setFileName("testFile.txt");
+		token.setKey("key");
+		token.setUploadId("uploadId");
+	}
+
+	@Test
+	public void testByteRanges() {
+		ChunkedUpload upload = new ChunkedUpload(token, ChunkedUpload.MIN_CHUNK_SIZE + 1024);
+		Chunk first = upload.nextChunk();
+		assertEquals(1, first.getNumber());
+		assertEquals(0, first.getStart());
+		assertEquals(ChunkedUpload.MIN_CHUNK_SIZE - 1, first.getEnd());
+		Chunk second = upload.nextChunk();
+		assertEquals(2, second.getNumber());
+		assertEquals(ChunkedUpload.MIN_CHUNK_SIZE, second.getStart());
+		assertEquals(ChunkedUpload.MIN_CHUNK_SIZE + 1024 - 1, second.getEnd());
+		//both are in flight
+		assertNull(upload.nextChunk());
+		assertFalse(upload.isComplete());
+	}
+
+	@Test
+	public void testSmallFile() {
+		ChunkedUpload upload = new ChunkedUpload(token, 1024);
+		Chunk chunk = upload.nextChunk();
+		assertEquals(0, chunk.getStart());
+		assertEquals(1023, chunk.getEnd());
+		assertNull(upload.nextChunk());
+		upload.chunkUploaded(chunk, 100);
+		assertTrue(upload.isComplete());
+		assertEquals(1.0, upload.getProgress(), 0.0);
+	}
+
+	@Test
+	public void testEmptyFile() {
+		ChunkedUpload upload = new ChunkedUpload(token, 0);
+		assertEquals(Arrays.asList(1L), upload.getUpcomingChunkNumbers(6));
+		Chunk chunk = upload.nextChunk();
+		assertEquals(0, chunk.getSize());
+		assertNull(upload.nextChunk());
+		upload.chunkUploaded(chunk, 100);
+		assertTrue(upload.isComplete());
+	}
+
+	@Test
+	public void testFailedChunkIsHandedOutAgain() {
+		ChunkedUpload upload = new ChunkedUpload(token, 3 * ChunkedUpload.MIN_CHUNK_SIZE);
+		Chunk first = upload.nextChunk();
+		upload.nextChunk();
+		upload.chunkFailed(first);
+		assertEquals(Arrays.asList(1L, 3L), upload.getUpcomingChunkNumbers(6));
+		assertEquals(first, upload.nextChunk());
+	}
+
+	@Test
+	public void testAdaptiveChunkSize() {
+		ChunkedUpload upload = new ChunkedUpload(token, 1000 * MB);
+		assertEquals(ChunkedUpload.MIN_CHUNK_SIZE, upload.getChunkSize());
+		//fast: the chunks grow, up to the max
+		for (int i = 0; i < 10; i++) {
+			upload.chunkUploaded(upload.nextChunk(), 1000);
+		}
+		assertEquals(ChunkedUpload.MAX_CHUNK_SIZE, upload.getChunkSize());
+		//slow: they shrink, down to the min
+		for (int i = 0; i < 5; i++) {
+			upload.chunkUploaded(upload.nextChunk(), 10 * ChunkedUpload.TARGET_CHUNK_MS);
+		}
+		assertEquals(ChunkedUpload.MIN_CHUNK_SIZE, upload.getChunkSize());
+		assertEquals(0, upload.getChunkSize() % MB);
+	}
+
+	@Test
+	public void testChunkCountLimit() {
+		long fileSize = ChunkedUpload.MIN_CHUNK_SIZE * ChunkedUpload.MAX_CHUNK_COUNT * 2;
+		ChunkedUpload upload = new ChunkedUpload(token, fileSize);
+		assertTrue(upload.getChunkSize() * ChunkedUpload.MAX_CHUNK_COUNT >= fileSize);
+	}
+
+	@Test
+	public void testProgress() {
+		ChunkedUpload upload = new ChunkedUpload(token, 2 * ChunkedUpload.MIN_CHUNK_SIZE);
+		Chunk first = upload.nextChunk();
+		Chunk second = upload.nextChunk();
+		upload.chunkUploaded(first, 0);
+		second.setProgress(.5);
+		assertEquals(.75, upload.getProgress(), 0.0001);
+	}
+
+	@Test
+	public void testJSONRoundTrip() throws Exception {
+		ChunkedUpload upload = new ChunkedUpload(token, 3 * ChunkedUpload.MIN_CHUNK_SIZE);
+		Chunk first = upload.nextChunk();
+		Chunk second = upload.nextChunk();
+		upload.chunkUploaded(second, 0);
+		assertFalse(upload.isResumed());
+
+		ChunkedUpload resumed = ChunkedUpload.fromJSON(upload.toJSON(jsonObjectAdapter), jsonObjectAdapter);
+		assertTrue(resumed.isResumed());
+		assertEquals(token, resumed.getToken());
+		assertEquals(upload.getFileSize(), resumed.getFileSize());
+		assertEquals(Arrays.asList(2L), resumed.getDoneChunkNumbers());
+		//the chunk that was in flight goes again, then the rest of the file
+		Chunk next = resumed.nextChunk();
+		assertEquals(1, next.getNumber());
+		assertEquals(first.getStart(), next.getStart());
+		assertEquals(first.getEnd(), next.getEnd());
+		next = resumed.nextChunk();
+		assertEquals(3, next.getNumber());
+		assertEquals(2 * ChunkedUpload.MIN_CHUNK_SIZE, next.getStart());
+	}
+}
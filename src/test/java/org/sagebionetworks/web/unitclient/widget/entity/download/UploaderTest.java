@@ -1,22 +1,28 @@
 package org.sagebionetworks.web.unitclient.widget.entity.download;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.*;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sagebionetworks.repo.model.AutoGenFactory;
 import org.sagebionetworks.repo.model.Data;
 import org.sagebionetworks.repo.model.FileEntity;
@@ -30,11 +36,11 @@ import org.sagebionetworks.schema.adapter.AdapterFactory;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapter;
 import org.sagebionetworks.schema.adapter.org.json.AdapterFactoryImpl;
 import org.sagebionetworks.schema.adapter.org.json.JSONObjectAdapterImpl;
-import org.sagebionetworks.web.client.ClientProperties;
 import org.sagebionetworks.web.client.GWTWrapper;
 import org.sagebionetworks.web.client.ProgressCallback;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
+import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.callback.MD5Callback;
 import org.sagebionetworks.web.client.events.CancelEvent;
 import org.sagebionetworks.web.client.events.CancelHandler;
@@ -47,6 +53,7 @@ import org.sagebionetworks.web.client.transform.NodeModelCreatorImpl;
 import org.sagebionetworks.web.client.utils.Callback;
 import org.sagebionetworks.web.client.utils.CallbackP;
 import org.sagebionetworks.web.client.widget.entity.JiraURLHelper;
+import org.sagebionetworks.web.client.widget.entity.download.ChunkedUpload;
 import org.sagebionetworks.web.client.widget.entity.download.Uploader;
 import org.sagebionetworks.web.client.widget.entity.download.UploaderView;
 import org.sagebionetworks.web.shared.EntityWrapper;
@@ -76,6 +83,7 @@ public class UploaderTest {
 	AutoGenFactory autogenFactory;
 	Uploader uploader;
 	GWTWrapper gwt;
+	ClientCache clientCache;
 	FileEntity testEntity;
 	CancelHandler cancelHandler;
 	
@@ -88,6 +96,7 @@ public class UploaderTest {
 		synapseJsniUtils=mock(SynapseJSNIUtils.class);
 		autogenFactory=mock(AutoGenFactory.class);
 		gwt = mock(GWTWrapper.class);
+		clientCache = mock(ClientCache.class);
 		AsyncMockStubber.callSuccessWith("syn123").when(synapseClient).createOrUpdateEntity(anyString(), anyString(), anyBoolean(), any(AsyncCallback.class));
 		testEntity = new FileEntity();
 		testEntity.setName("test file");
@@ -110,6 +119,19 @@ public class UploaderTest {
 		when(synapseJsniUtils.getContentType(anyString())).thenReturn("image/png");
 		AsyncMockStubber.callSuccessWith(tokenJson).when(synapseClient).getChunkedFileToken(anyString(), anyString(), anyString(), any(AsyncCallback.class));
 		AsyncMockStubber.callSuccessWith("http://fakepresignedurl.uploader.test").when(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				//one url per request
+				List<String> requests = (List<String>) invocation.getArguments()[0];
+				List<String> urls = new ArrayList<String>();
+				for (int i = 0; i < requests.size(); i++) {
+					urls.add("http://fakepresignedurl.uploader.test/" + i);
+				}
+				((AsyncCallback<List<String>>) invocation.getArguments()[1]).onSuccess(urls);
+				return null;
+			}
+		}).when(synapseClient).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
 		UploadDaemonStatus status = new UploadDaemonStatus();
 		status.setState(State.COMPLETED);
 		status.setFileHandleId("fake handle");
@@ -130,7 +152,7 @@ public class UploaderTest {
 		uploader = new Uploader(view, nodeModelCreator,
 				synapseClient,
 				jsonObjectAdapter, synapseJsniUtils,
-				gwt, authenticationController);
+				gwt, authenticationController, clientCache);
 		uploader.addCancelHandler(cancelHandler);
 		String parentEntityId = "syn1234";
 		uploader.asWidget(parentEntityId, null);
@@ -234,7 +256,7 @@ public class UploaderTest {
 		uploader = new Uploader(view, nodeModelCreator,
 				synapseClient,
 				jsonObjectAdapter, synapseJsniUtils,
-				gwt, authenticationController);
+				gwt, authenticationController, clientCache);
 		uploader.addCancelHandler(cancelHandler);
 		String parentEntityId = "syn1234";
 		uploader.asWidget(parentEntityId, null);
@@ -244,7 +266,7 @@ public class UploaderTest {
 		
 		uploader.directUploadStep3("newFile.txt", "plain/text", "6771718afc12275aa4e58b9bf3a49afe");
 		verify(synapseClient).getChunkedFileToken(anyString(), anyString(), anyString(), any(AsyncCallback.class));
-		verify(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
+		verify(synapseClient).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
 		verify(synapseJsniUtils).uploadFileChunk(anyString(), anyString(), anyLong(), anyLong(), anyString(), any(XMLHttpRequest.class), any(ProgressCallback.class));
 		//kick off what would happen after a successful upload
 		uploader.directUploadStep5(false, null, 1);
@@ -295,14 +317,51 @@ public class UploaderTest {
 		verifyUploadError();
 	}
 
+	/**
+	 * Start an upload of a file of the given size, up to step 4.
+	 */
+	private void startDirectUpload(long fileSize) {
+		when(synapseJsniUtils.getFileSize(anyString())).thenReturn((double)fileSize);
+		uploader.directUploadStep3("newFile.txt", "plain/text", "6771718afc12275aa4e58b9bf3a49afe");
+	}
+	
 	@Test
 	public void testDirectUploadStep4Failure() throws Exception {
 		when(synapseJsniUtils.isDirectUploadSupported()).thenReturn(true);
-		AsyncMockStubber.callFailureWith(new IllegalArgumentException()).when(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
-		uploader.directUploadStep4("", 0, 0, 1, 12345, new ArrayList<String>());
+		AsyncMockStubber.callFailureWith(new IllegalArgumentException()).when(synapseClient).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
+		startDirectUpload(12345);
 		executeScheduledCallback();
 		//should have called twice
-		verify(synapseClient, Mockito.times(2)).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
+		verify(synapseClient, Mockito.times(2)).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
+	}
+	
+	@Test
+	public void testDirectUploadStep4Parallel() throws Exception {
+		startDirectUpload(Uploader.BYTES_PER_CHUNK * 10);
+		//the first chunks start at once, and the urls for the next few are fetched in the same call
+		verify(synapseClient).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
+		ArgumentCaptor<Long> startCaptor = ArgumentCaptor.forClass(Long.class);
+		verify(synapseJsniUtils, Mockito.times(Uploader.DEFAULT_MAX_CONCURRENT_CHUNKS)).uploadFileChunk(anyString(), anyString(), startCaptor.capture(), anyLong(), anyString(), any(XMLHttpRequest.class), any(ProgressCallback.class));
+		assertEquals(Arrays.asList(0L, Uploader.BYTES_PER_CHUNK, 2 * Uploader.BYTES_PER_CHUNK), startCaptor.getAllValues());
+		
+		//a finished chunk is saved, and the next one starts with a url that was fetched ahead
+		ChunkedUpload upload = uploader.getUpload();
+		uploader.chunkUploadSuccess("plain/text", upload, upload.getChunks().get(0), 1000);
+		verify(clientCache).put(anyString(), anyString(), anyLong());
+		verify(synapseClient).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
+	}
+	
+	@Test
+	public void testDirectUploadResume() throws Exception {
+		ChunkedFileToken token = new ChunkedFileToken();
+		token.setFileName("newFile.txt");
+		ChunkedUpload saved = new ChunkedUpload(token, Uploader.BYTES_PER_CHUNK * 2);
+		saved.chunkUploaded(saved.nextChunk(), 1000);
+		when(clientCache.get(anyString())).thenReturn(saved.toJSON(jsonObjectAdapter));
+		startDirectUpload(Uploader.BYTES_PER_CHUNK * 2);
+		//the token is not requested again, and only the second chunk is uploaded
+		verify(synapseClient, never()).getChunkedFileToken(anyString(), anyString(), anyString(), any(AsyncCallback.class));
+		verify(synapseJsniUtils).uploadFileChunk(anyString(), anyString(), eq(Uploader.BYTES_PER_CHUNK), anyLong(), anyString(), any(XMLHttpRequest.class), any(ProgressCallback.class));
 	}
 
 	/**
@@ -318,9 +377,13 @@ public class UploaderTest {
 	@Test
 	public void testDirectUploadStep4FailureFinalAttempt() throws Exception {
 		when(synapseJsniUtils.isDirectUploadSupported()).thenReturn(true);
-		AsyncMockStubber.callFailureWith(new IllegalArgumentException()).when(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
-		int attempt = Uploader.MAX_RETRY;
-		uploader.directUploadStep4("", 0, attempt, 1, 12345, new ArrayList<String>());
+		startDirectUpload(12345);
+		ChunkedUpload upload = uploader.getUpload();
+		ChunkedUpload.Chunk chunk = upload.getChunks().get(0);
+		for (int i = 1; i < Uploader.MAX_RETRY; i++) {
+			chunk.addFailure();
+		}
+		uploader.chunkUploadFailure("", upload, chunk, "");
 		verifyUploadError();
 	}
 	
@@ -359,70 +422,48 @@ public class UploaderTest {
 		verifyUploadError();
 	}
 	
-	@Test
-	public void testByteRange() {
-		//test chunk sizes
-		Uploader.ByteRange range;
-		//case when total file size is less than chunk size
-		range = uploader.getByteRange(1, Uploader.BYTES_PER_CHUNK - 1024);
-		assertEquals(0, range.getStart());
-		assertEquals(Uploader.BYTES_PER_CHUNK - 1024 - 1, range.getEnd());
-		
-		//case when total file size is equal to chunk size
-		range = uploader.getByteRange(1, Uploader.BYTES_PER_CHUNK);
-		assertEquals(0, range.getStart());
-		assertEquals(Uploader.BYTES_PER_CHUNK-1, range.getEnd());
-
-		//case when total file size is greater than chunk size
-		range = uploader.getByteRange(1, Uploader.BYTES_PER_CHUNK + 1024); 
-		assertEquals(0, range.getStart());
-		assertEquals(Uploader.BYTES_PER_CHUNK-1, range.getEnd());
-		//also verify second chunk has the expected range
-		range = uploader.getByteRange(2, Uploader.BYTES_PER_CHUNK + 1024);
-		assertEquals(Uploader.BYTES_PER_CHUNK, range.getStart());
-		assertEquals(Uploader.BYTES_PER_CHUNK+1024-1, range.getEnd());
-		
-		//verify byte range is valid in later chunk in large file
-		range = uploader.getByteRange(430, (long)(4 * ClientProperties.GB));
-		assertTrue(range.getStart() > -1);
-		assertTrue(range.getEnd() > -1);
-	}
-	
 	@Test
 	public void testChunkUploadSuccessWithMoreChunksToUpload() throws RestServiceException {
-		//verify that request json is added to the list, and it calls step 2 (upload the next chunk) since there are more chunks to upload.
-		List<String> requestList = new ArrayList<String>();
-		uploader.chunkUploadSuccess("new request json", "content type",1, 2, 1024, requestList);
-		assertTrue(requestList.size() == 1);
-		//and it should try to get the url for the next chunk
-		verify(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
+		startDirectUpload(Uploader.BYTES_PER_CHUNK * 10);
+		ChunkedUpload upload = uploader.getUpload();
+		uploader.chunkUploadSuccess("content type", upload, upload.getChunks().get(0), 1000);
+		assertEquals(1, upload.getDoneChunkNumbers().size());
+		//and it should upload another chunk
+		verify(synapseJsniUtils, Mockito.times(Uploader.DEFAULT_MAX_CONCURRENT_CHUNKS + 1)).uploadFileChunk(anyString(), anyString(), anyLong(), anyLong(), anyString(), any(XMLHttpRequest.class), any(ProgressCallback.class));
+		verify(synapseClient, never()).combineChunkedFileUpload(any(List.class), any(AsyncCallback.class));
 	}
 	
 	@Test
 	public void testChunkUploadSuccessWithFinalChunk() throws RestServiceException {
-		//verify that request json is added to the list, and it calls step 3 since the current chunk number is equal to the total chunk count
-		List<String> requestList = new ArrayList<String>();
-		uploader.chunkUploadSuccess("new request json", "content type",2, 2, 1024, requestList);
-		assertTrue(requestList.size() == 1);
-		//and it should try to get the url for the next chunk
-		verify(synapseClient).combineChunkedFileUpload(any(List.class), any(AsyncCallback.class));
+		startDirectUpload(1024);
+		ChunkedUpload upload = uploader.getUpload();
+		//the only chunk is in flight
+		assertNull(upload.nextChunk());
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		uploader.chunkUploadSuccess("content type", upload, upload.getChunks().get(0), 1000);
+		assertTrue(upload.isComplete());
+		//combines the chunks
+		verify(synapseClient).combineChunkedFileUpload(captor.capture(), any(AsyncCallback.class));
+		assertEquals(1, captor.getValue().size());
 	}
 	
 	@Test
 	public void testChunkUploadFailureFirstAttempt() throws RestServiceException, InterruptedException {
-		List<String> requestList = new ArrayList<String>();
-		int attempt = 1;
-		uploader.chunkUploadFailure("content type",2, attempt, 2, 1024, requestList, "");
+		startDirectUpload(1024);
+		ChunkedUpload upload = uploader.getUpload();
+		uploader.chunkUploadFailure("content type", upload, upload.getChunks().get(0), "");
 		executeScheduledCallback();
-		verify(synapseClient).getChunkedPresignedUrl(anyString(), any(AsyncCallback.class));
+		//tries again with a new url
+		verify(synapseClient, Mockito.times(2)).getChunkedPresignedUrls(any(List.class), any(AsyncCallback.class));
 	}
 	
 	@Test
-	public void testChunkUploadFailureFinalAttempt() throws RestServiceException {
-		List<String> requestList = new ArrayList<String>();
-		int attempt = Uploader.MAX_RETRY;
-		uploader.chunkUploadFailure("content type",2, attempt, 2, 1024, requestList, "");
-		verifyUploadError();
+	public void testChunkUploadFailureIgnoredAfterCancel() throws RestServiceException {
+		startDirectUpload(1024);
+		ChunkedUpload upload = uploader.getUpload();
+		uploader.cancelClicked();
+		uploader.chunkUploadFailure("content type", upload, upload.getChunks().get(0), "");
+		verify(gwt, never()).scheduleExecution(any(Callback.class), anyInt());
 	}
 	
 	@Test
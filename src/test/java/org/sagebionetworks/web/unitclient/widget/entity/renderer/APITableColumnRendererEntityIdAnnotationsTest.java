@@ -0,0 +1,79 @@
+package org.sagebionetworks.web.unitclient.widget.entity.renderer;
+
+import static junit.framework.Assert.*;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.schema.adapter.AdapterFactory;
+import org.sagebionetworks.web.client.EntitySchemaCache;
+import org.sagebionetworks.web.client.SynapseClientAsync;
+import org.sagebionetworks.web.client.transform.NodeModelCreator;
+import org.sagebionetworks.web.client.widget.entity.editor.APITableColumnConfig;
+import org.sagebionetworks.web.client.widget.entity.renderer.APITableColumnRendererEntityIdAnnotations;
+import org.sagebionetworks.web.client.widget.entity.renderer.APITableInitializedColumnRenderer;
+import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
+import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.test.helper.AsyncMockStubber;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+public class APITableColumnRendererEntityIdAnnotationsTest {
+		
+	SynapseClientAsync mockSynapseClient;
+	NodeModelCreator mockNodeModelCreator;
+	APITableColumnRendererEntityIdAnnotations renderer;
+	Map<String, List<String>> columnData;
+	APITableColumnConfig config;
+	AsyncCallback<APITableInitializedColumnRenderer> mockCallback;
+	String inputColumnName = "id";
+	
+	@Before
+	public void setup() {
+		mockSynapseClient = mock(SynapseClientAsync.class);
+		mockNodeModelCreator = mock(NodeModelCreator.class);
+		renderer = new APITableColumnRendererEntityIdAnnotations(mock(AdapterFactory.class), mock(EntitySchemaCache.class), mockSynapseClient, mockNodeModelCreator);
+		columnData = new HashMap<String, List<String>>();
+		config = new APITableColumnConfig();
+		HashSet<String> inputColumnNames = new HashSet<String>();
+		inputColumnNames.add(inputColumnName);
+		config.setInputColumnNames(inputColumnNames);
+		mockCallback = mock(AsyncCallback.class);
+		//the same entity appears in two rows
+		columnData.put(inputColumnName, new ArrayList<String>(Arrays.asList("syn1", "syn1")));
+	}
+	
+	@Test
+	public void testSingleBatchCall() {
+		EntityBundleTransportList result = new EntityBundleTransportList(
+				Arrays.asList(new EntityBundleTransport[] {null}), 
+				Arrays.asList(new RestServiceException[] {new NotFoundException("not found")}));
+		AsyncMockStubber.callSuccessWith(result).when(mockSynapseClient).getEntityBundles(anyList(), anyInt(), any(AsyncCallback.class));
+		renderer.init(columnData, config, mockCallback);
+		
+		verify(mockSynapseClient).getEntityBundles(eq(Arrays.asList("syn1")), anyInt(), any(AsyncCallback.class));
+		verify(mockSynapseClient, never()).getEntityBundle(anyString(), anyInt(), any(AsyncCallback.class));
+		APITableInitializedColumnRenderer initializedRenderer = APITableTestUtils.getInitializedRenderer(mockCallback);
+		assertTrue(initializedRenderer.getColumnNames().isEmpty());
+	}
+	
+	@Test
+	public void testBatchFailure() {
+		AsyncMockStubber.callFailureWith(new Exception("error")).when(mockSynapseClient).getEntityBundles(anyList(), anyInt(), any(AsyncCallback.class));
+		renderer.init(columnData, config, mockCallback);
+		//still initializes, without any annotation columns
+		APITableInitializedColumnRenderer initializedRenderer = APITableTestUtils.getInitializedRenderer(mockCallback);
+		assertTrue(initializedRenderer.getColumnNames().isEmpty());
+	}
+}
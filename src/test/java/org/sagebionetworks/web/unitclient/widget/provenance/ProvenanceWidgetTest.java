@@ -8,6 +8,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -46,7 +47,6 @@ import org.sagebionetworks.web.client.DisplayConstants;
 import org.sagebionetworks.web.client.ProgressCallback;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.SynapseJSNIUtils;
-import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.callback.MD5Callback;
 import org.sagebionetworks.web.client.security.AuthenticationController;
 import org.sagebionetworks.web.client.services.LayoutServiceAsync;
@@ -57,14 +57,17 @@ import org.sagebionetworks.web.client.widget.provenance.ProvenanceWidgetView;
 import org.sagebionetworks.web.client.widget.provenance.nchart.LayoutResult;
 import org.sagebionetworks.web.client.widget.provenance.nchart.NChartCharacters;
 import org.sagebionetworks.web.client.widget.provenance.nchart.NChartLayersArray;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
-import org.sagebionetworks.web.shared.EntityWrapper;
-import org.sagebionetworks.web.shared.PaginatedResults;
 import org.sagebionetworks.web.shared.WikiPageKey;
 import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
 import org.sagebionetworks.web.shared.provenance.ActivityGraphNode;
 import org.sagebionetworks.web.shared.provenance.EntityGraphNode;
+import org.sagebionetworks.web.shared.provenance.ExpandGraphNode;
 import org.sagebionetworks.web.shared.provenance.ProvGraph;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.provenance.ProvGraphEdge;
 import org.sagebionetworks.web.shared.provenance.ProvGraphNode;
 import org.sagebionetworks.web.test.helper.AsyncMockStubber;
@@ -85,7 +88,7 @@ public class ProvenanceWidgetTest {
 	AdapterFactory adapterFactory;
 	SynapseClientAsync mockSynapseClient;
 	LayoutServiceAsync mockLayoutService;
-	ClientCache mockClientCache;
+	BadgeBatchLoader mockBatchLoader;
 	SynapseJSNIUtils synapseJsniUtils = implJSNIUtils();	
 	
 	Data outputEntity;
@@ -100,6 +103,9 @@ public class ProvenanceWidgetTest {
 	Map<String, String> descriptor;
 	Activity act;
 	UserProfile modifiedByUserProfile;
+	ProvGraphBundle bundle;
+	Reference ref123;
+	String startReferencesJSON;
 	
 	@SuppressWarnings("unchecked")
 	@Before
@@ -111,8 +117,8 @@ public class ProvenanceWidgetTest {
 		mockLayoutService = mock(LayoutServiceAsync.class);
 		adapterFactory = new AdapterFactoryImpl();
 		jsoProvider = new JsoProviderTestImpl();
-		mockClientCache = mock(ClientCache.class);
-		provenanceWidget = new ProvenanceWidget(mockView, mockSynapseClient, mockNodeModelCreator, mockAuthController, mockLayoutService, adapterFactory, synapseJsniUtils, jsoProvider, mockClientCache);
+		mockBatchLoader = mock(BadgeBatchLoader.class);
+		provenanceWidget = new ProvenanceWidget(mockView, mockSynapseClient, mockNodeModelCreator, mockAuthController, mockLayoutService, adapterFactory, synapseJsniUtils, jsoProvider, mockBatchLoader);
 		verify(mockView).setPresenter(provenanceWidget);
 		
 		outputEntity = new Data();
@@ -120,7 +126,7 @@ public class ProvenanceWidgetTest {
 		outputEntity.setVersionNumber(1L);
 		act = new Activity();
 		act.setId("789");
-		Reference ref123 = new Reference();
+		ref123 = new Reference();
 		ref123.setTargetId(outputEntity.getId());
 		ref123.setTargetVersionNumber(outputEntity.getVersionNumber());
 		Reference ref456 = new Reference();
@@ -142,22 +148,25 @@ public class ProvenanceWidgetTest {
 		referenceHeaders = new BatchResults<EntityHeader>();
 		referenceHeaders.setResults(new ArrayList<EntityHeader>(Arrays.asList(new EntityHeader[] { header456, header123 })));
 		
-		String generatedResult = "generatedPaginatedResults";
-		PaginatedResults<Reference> generatedBy = new PaginatedResults<Reference>();
-		generatedBy.setResults(Arrays.asList(new Reference[] { ref123 }));		
-						
-		EntityWrapper ew = new EntityWrapper(outputEntity.writeToJSONObject(adapterFactory.createNew()).toJSONString(), Data.class.getName());		
 		activityJSON = act.writeToJSONObject(adapterFactory.createNew()).toJSONString();
 		referenceListJSON = referenceList.writeToJSONObject(adapterFactory.createNew()).toJSONString();
 		referenceHeadersJSON = referenceHeaders.writeToJSONObject(adapterFactory.createNew()).toJSONString();
+		startReferencesJSON = createReferenceListJSON(ref123);
 		
-		AsyncMockStubber.callSuccessWith(ew).when(mockSynapseClient).getEntity(eq(outputEntity.getId()), any(AsyncCallback.class));
-		when(mockNodeModelCreator.createEntity(ew)).thenReturn(outputEntity);
-		AsyncMockStubber.callSuccessWith(activityJSON).when(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
+		// the server resolves the current version of syn123 and walks the graph
+		bundle = new ProvGraphBundle();
+		bundle.setStartReferencesJson(startReferencesJSON);
+		bundle.setReferencesJson(referenceListJSON);
+		bundle.setEntityHeadersJson(referenceHeadersJSON);
+		bundle.setActivitiesJson(Arrays.asList(new String[] { activityJSON }));
+		bundle.setGeneratedByReferencesJson(startReferencesJSON);
+		bundle.setGeneratedByActivityIds(Arrays.asList(new String[] { act.getId() }));
+		bundle.setFailedReferencesJson(createReferenceListJSON());
+		bundle.setFailures(new ArrayList<RestServiceException>());
+		
+		AsyncMockStubber.callSuccessWith(bundle).when(mockSynapseClient).getProvenanceGraph(anyString(), anyInt(), any(AsyncCallback.class));
 		AsyncMockStubber.callSuccessWith(referenceHeadersJSON).when(mockSynapseClient).getEntityHeaderBatch(anyString(), any(AsyncCallback.class));		
 		Mockito.<BatchResults<?>>when(mockNodeModelCreator.createBatchResults(anyString(), eq(EntityHeader.class))).thenReturn((BatchResults<EntityHeader>)referenceHeaders);
-		AsyncMockStubber.callSuccessWith(generatedResult).when(mockSynapseClient).getEntitiesGeneratedBy(eq(act.getId()), anyInt(), anyInt(), any(AsyncCallback.class));
-		Mockito.<PaginatedResults<?>>when(mockNodeModelCreator.createPaginatedResults(generatedResult, Reference.class)).thenReturn(generatedBy);
 		
 		
 		descriptor = new HashMap<String, String>();
@@ -173,8 +182,7 @@ public class ProvenanceWidgetTest {
 		modifiedByUserProfile = new UserProfile();
 		modifiedByUserProfile.setUserName("007");
 		modifiedByUserProfile.setFirstName("James");
-		AsyncMockStubber.callSuccessWith("").when(mockSynapseClient).getUserProfile(anyString(), any(AsyncCallback.class));
-		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(UserProfile.class))).thenReturn(modifiedByUserProfile);
+		AsyncMockStubber.callSuccessWith(modifiedByUserProfile).when(mockBatchLoader).getUserProfile(anyString(), any(AsyncCallback.class));
 
 	}
 	
@@ -218,10 +226,10 @@ public class ProvenanceWidgetTest {
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testBuildTreeFailGetActivity() throws Exception {
-		AsyncMockStubber.callFailureWith(someException).when(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
+		setActivityLookupFailure(new UnknownErrorException());
 		
 		provenanceWidget.configure(null, descriptor, null, null);	
-		verify(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));		
+		verify(mockSynapseClient).getProvenanceGraph(anyString(), anyInt(), any(AsyncCallback.class));		
 		ProvGraph graph = captureGraph();
 		
 		assertNotNull(graph);
@@ -245,11 +253,10 @@ public class ProvenanceWidgetTest {
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testBuildTreeFailGetActivity404() throws Exception {
-		AsyncMockStubber.callFailureWith(new NotFoundException()).when(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
+		setActivityLookupFailure(new NotFoundException());
 		
 		provenanceWidget.configure(null, descriptor, null, null);	
-		verify(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
-		verify(mockSynapseClient).getEntityHeaderBatch(anyString(), any(AsyncCallback.class));
+		verify(mockSynapseClient).getProvenanceGraph(anyString(), anyInt(), any(AsyncCallback.class));
 		ProvGraph graph = captureGraph();
 		
 		assertNotNull(graph);
@@ -273,14 +280,35 @@ public class ProvenanceWidgetTest {
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testBuildTreeFailHeaderBatch() throws Exception {
-		AsyncMockStubber.callFailureWith(someException).when(mockSynapseClient).getEntityHeaderBatch(anyString(), any(AsyncCallback.class));
+		bundle.setEntityHeadersJson(null);
 		
 		provenanceWidget.configure(null, descriptor, null, null);	
-		verify(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
-		verify(mockSynapseClient).getEntityHeaderBatch(eq(referenceListJSON), any(AsyncCallback.class));
-		ProvGraph graph = captureGraph();
+		ProvGraph graph = verifyBuildGraphCalls();
 
 		verifySuccessGraphStructure(graph);
+		verify(mockNodeModelCreator, never()).createBatchResults(anyString(), eq(EntityHeader.class));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testBuildTreeFailure() throws Exception {
+		AsyncMockStubber.callFailureWith(someException).when(mockSynapseClient).getProvenanceGraph(anyString(), anyInt(), any(AsyncCallback.class));
+		provenanceWidget.configure(null, descriptor, null, null);	
+		verify(mockView).showErrorMessage(DisplayConstants.ERROR_PROVENANCE);
+		verify(mockView, never()).setGraph(any(ProvGraph.class));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testExpand() throws Exception {
+		provenanceWidget.configure(null, descriptor, null, null);	
+		reset(mockView);
+		provenanceWidget.expand(new ExpandGraphNode("expandId", entity456Id, 1L));
+		Reference ref456 = new Reference();
+		ref456.setTargetId(entity456Id);
+		ref456.setTargetVersionNumber(1L);
+		verify(mockSynapseClient).getProvenanceGraph(eq(createReferenceListJSON(ref456)), eq(1), any(AsyncCallback.class));
+		verifySuccessGraphStructure(captureGraph());
 	}
 		
 	@Test
@@ -334,11 +362,32 @@ public class ProvenanceWidgetTest {
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	private ProvGraph verifyBuildGraphCalls() throws Exception {
-		verify(mockSynapseClient).getActivityForEntityVersion(eq(outputEntity.getId()), eq(outputEntity.getVersionNumber()), any(AsyncCallback.class));
-		verify(mockSynapseClient).getEntityHeaderBatch(eq(referenceListJSON), any(AsyncCallback.class));		
+		// one request for the whole graph. The start reference has no version, so the server looks up the current version
+		Reference requested = new Reference();
+		requested.setTargetId(outputEntity.getId());
+		verify(mockSynapseClient).getProvenanceGraph(eq(createReferenceListJSON(requested)), eq(1), any(AsyncCallback.class));
 		return captureGraph();
 	}
+	
+	private String createReferenceListJSON(Reference... refs) throws Exception {
+		ReferenceList list = new ReferenceList();
+		list.setReferences(new ArrayList<Reference>(Arrays.asList(refs)));
+		return list.writeToJSONObject(adapterFactory.createNew()).toJSONString();
+	}
+	
+	private void setActivityLookupFailure(RestServiceException failure) throws Exception {
+		Reference ref123Only = new Reference();
+		ref123Only.setTargetId(ref123.getTargetId());
+		ref123Only.setTargetVersionNumber(ref123.getTargetVersionNumber());
+		bundle.setReferencesJson(createReferenceListJSON(ref123Only));
+		bundle.setActivitiesJson(new ArrayList<String>());
+		bundle.setGeneratedByReferencesJson(createReferenceListJSON());
+		bundle.setGeneratedByActivityIds(new ArrayList<String>());
+		bundle.setFailedReferencesJson(createReferenceListJSON(ref123Only));
+		bundle.setFailures(Arrays.asList(new RestServiceException[] { failure }));
+	}
 
 	private ProvGraph captureGraph() {
 		ArgumentCaptor<ProvGraph> argument = ArgumentCaptor.forClass(ProvGraph.class);		
@@ -0,0 +1,150 @@
+package org.sagebionetworks.web.unitclient.widget.user;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.repo.model.Team;
+import org.sagebionetworks.repo.model.UserProfile;
+import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.web.client.GWTWrapper;
+import org.sagebionetworks.web.client.SynapseClientAsync;
+import org.sagebionetworks.web.client.cache.ClientCache;
+import org.sagebionetworks.web.client.transform.NodeModelCreator;
+import org.sagebionetworks.web.client.utils.Callback;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoaderImpl;
+import org.sagebionetworks.web.shared.WebConstants;
+import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+import org.sagebionetworks.web.test.helper.AsyncMockStubber;
+
+import com.google.gwt.user.client.rpc.AsyncCallback;
+
+public class BadgeBatchLoaderImplTest {
+
+	SynapseClientAsync mockSynapseClient;
+	NodeModelCreator mockNodeModelCreator;
+	ClientCache mockCache;
+	GWTWrapper mockGWT;
+	BadgeBatchLoaderImpl loader;
+	UserProfile profile;
+	Team team;
+	
+	@Before
+	public void before() throws JSONObjectAdapterException {
+		mockSynapseClient = mock(SynapseClientAsync.class);
+		mockNodeModelCreator = mock(NodeModelCreator.class);
+		mockCache = mock(ClientCache.class);
+		mockGWT = mock(GWTWrapper.class);
+		profile = new UserProfile();
+		profile.setOwnerId("1");
+		team = new Team();
+		team.setId("2");
+		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(UserProfile.class))).thenReturn(profile);
+		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(Team.class))).thenReturn(team);
+		loader = new BadgeBatchLoaderImpl(mockSynapseClient, mockNodeModelCreator, mockCache, mockGWT);
+	}
+	
+	/**
+	 * Run the deferred flush(es), as the browser would after the current event.
+	 */
+	private void flush(int expectedFlushes) {
+		ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+		verify(mockGWT, times(expectedFlushes)).scheduleDeferred(captor.capture());
+		for (Callback callback : captor.getAllValues()) {
+			callback.invoke();
+		}
+	}
+	
+	@Test
+	public void testCoalesce() throws Exception {
+		AsyncMockStubber.callSuccessWith(Arrays.asList("profile1 json", "profile3 json")).when(mockSynapseClient).getUserProfiles(anyList(), any(AsyncCallback.class));
+		AsyncCallback<UserProfile> mockCallback1 = mock(AsyncCallback.class);
+		AsyncCallback<UserProfile> mockCallback2 = mock(AsyncCallback.class);
+		AsyncCallback<UserProfile> mockCallback3 = mock(AsyncCallback.class);
+		loader.getUserProfile("1", mockCallback1);
+		loader.getUserProfile("1", mockCallback2);
+		loader.getUserProfile("3", mockCallback3);
+		//nothing is sent until the flush
+		verify(mockSynapseClient, never()).getUserProfiles(anyList(), any(AsyncCallback.class));
+		flush(1);
+		
+		ArgumentCaptor<List> idsCaptor = ArgumentCaptor.forClass(List.class);
+		verify(mockSynapseClient).getUserProfiles(idsCaptor.capture(), any(AsyncCallback.class));
+		assertEquals(Arrays.asList("1", "3"), idsCaptor.getValue());
+		verify(mockCallback1).onSuccess(profile);
+		verify(mockCallback2).onSuccess(profile);
+		verify(mockCallback3).onSuccess(profile);
+		verify(mockCache).put("1" + WebConstants.USER_PROFILE_SUFFIX, "profile1 json");
+		
+		//now served from memory, without another call or parse
+		AsyncCallback<UserProfile> mockCallback4 = mock(AsyncCallback.class);
+		loader.getUserProfile("1", mockCallback4);
+		verify(mockCallback4).onSuccess(profile);
+		verify(mockGWT, times(1)).scheduleDeferred(any(Callback.class));
+		verify(mockNodeModelCreator, times(2)).createJSONEntity(anyString(), eq(UserProfile.class));
+	}
+	
+	@Test
+	public void testFromClientCache() throws Exception {
+		when(mockCache.get("2" + WebConstants.TEAM_SUFFIX)).thenReturn("team json");
+		AsyncCallback<Team> mockCallback = mock(AsyncCallback.class);
+		loader.getTeam("2", mockCallback);
+		verify(mockCallback).onSuccess(team);
+		verify(mockGWT, never()).scheduleDeferred(any(Callback.class));
+	}
+	
+	@Test
+	public void testNotFound() throws Exception {
+		List<String> results = new ArrayList<String>();
+		results.add(null);
+		AsyncMockStubber.callSuccessWith(results).when(mockSynapseClient).getTeams(anyList(), any(AsyncCallback.class));
+		AsyncCallback<Team> mockCallback = mock(AsyncCallback.class);
+		loader.getTeam("404", mockCallback);
+		flush(1);
+		ArgumentCaptor<Throwable> captor = ArgumentCaptor.forClass(Throwable.class);
+		verify(mockCallback).onFailure(captor.capture());
+		assertTrue(captor.getValue() instanceof NotFoundException);
+		verify(mockCache, never()).put(anyString(), anyString());
+	}
+	
+	@Test
+	public void testFailure() throws Exception {
+		Exception ex = new Exception("unavailable");
+		AsyncMockStubber.callFailureWith(ex).when(mockSynapseClient).getUserProfiles(anyList(), any(AsyncCallback.class));
+		AsyncCallback<UserProfile> mockCallback1 = mock(AsyncCallback.class);
+		AsyncCallback<UserProfile> mockCallback2 = mock(AsyncCallback.class);
+		loader.getUserProfile("1", mockCallback1);
+		loader.getUserProfile("3", mockCallback2);
+		flush(1);
+		verify(mockCallback1).onFailure(ex);
+		verify(mockCallback2).onFailure(ex);
+	}
+	
+	@Test
+	public void testLargeBatchSplit() throws Exception {
+		AsyncCallback<UserProfile> mockCallback = mock(AsyncCallback.class);
+		for (int i = 0; i < BadgeBatchLoaderImpl.MAX_BATCH_SIZE + 1; i++) {
+			loader.getUserProfile(Integer.toString(i), mockCallback);
+		}
+		flush(1);
+		ArgumentCaptor<List> idsCaptor = ArgumentCaptor.forClass(List.class);
+		verify(mockSynapseClient, times(2)).getUserProfiles(idsCaptor.capture(), any(AsyncCallback.class));
+		assertEquals(BadgeBatchLoaderImpl.MAX_BATCH_SIZE, idsCaptor.getAllValues().get(0).size());
+		assertEquals(1, idsCaptor.getAllValues().get(1).size());
+	}
+}
@@ -14,6 +14,7 @@ import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
 import org.sagebionetworks.web.client.widget.team.TeamBadge;
 import org.sagebionetworks.web.client.widget.team.TeamBadgeView;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
 import org.sagebionetworks.web.client.widget.user.UserBadge;
 import org.sagebionetworks.web.client.widget.user.UserBadgeView;
 import org.sagebionetworks.web.test.helper.AsyncMockStubber;
@@ -30,6 +31,7 @@ public class TeamBadgeTest {
 	SynapseClientAsync mockSynapseClient;
 	TeamBadgeView mockView;
 	TeamBadge badge;
+	BadgeBatchLoader mockBatchLoader;
 	Team team;
 	String principalId = "id1";
 	int max = 10;
@@ -43,7 +45,8 @@ public class TeamBadgeTest {
 		mockNodeModelCreator = mock(NodeModelCreator.class);
 		mockSynapseClient = Mockito.mock(SynapseClientAsync.class);
 		mockView = mock(TeamBadgeView.class);
-		badge = new TeamBadge(mockView, mockSynapseClient, mockNodeModelCreator);
+		mockBatchLoader = mock(BadgeBatchLoader.class);
+		badge = new TeamBadge(mockView, mockSynapseClient, mockNodeModelCreator, mockBatchLoader);
 	}
 	
 	@Test
@@ -54,16 +57,16 @@ public class TeamBadgeTest {
 	
 	@Test
 	public void testConfigureAsync() throws Exception {
-		AsyncMockStubber.callSuccessWith("").when(mockSynapseClient).getTeam(eq(principalId), any(AsyncCallback.class));
-		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(Team.class))).thenReturn(team);
+		AsyncMockStubber.callSuccessWith(team).when(mockBatchLoader).getTeam(eq(principalId), any(AsyncCallback.class));
 		badge.setMaxNameLength(max);
-		badge.configure(team);
+		badge.configure(principalId);
 		verify(mockView).setTeam(team, max);
+		verify(mockSynapseClient, never()).getTeam(anyString(), any(AsyncCallback.class));
 	}
 	
 	@Test
 	public void testConfigureAsyncFail() throws Exception {
-		AsyncMockStubber.callFailureWith(new Exception()).when(mockSynapseClient).getTeam(eq(principalId), any(AsyncCallback.class));		
+		AsyncMockStubber.callFailureWith(new Exception()).when(mockBatchLoader).getTeam(eq(principalId), any(AsyncCallback.class));		
 		badge.configure(principalId);
 		verify(mockView).showLoadError(principalId);
 	}
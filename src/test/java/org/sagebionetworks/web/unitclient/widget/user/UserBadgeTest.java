@@ -8,9 +8,12 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.sagebionetworks.repo.model.UserProfile;
 import org.sagebionetworks.schema.adapter.JSONObjectAdapterException;
+import org.sagebionetworks.web.client.GWTWrapper;
 import org.sagebionetworks.web.client.SynapseClientAsync;
 import org.sagebionetworks.web.client.cache.ClientCache;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoader;
+import org.sagebionetworks.web.client.widget.user.BadgeBatchLoaderImpl;
 import org.sagebionetworks.web.client.widget.user.UserBadge;
 import org.sagebionetworks.web.client.widget.user.UserBadgeView;
 import org.sagebionetworks.web.test.helper.AsyncMockStubber;
@@ -30,6 +33,7 @@ public class UserBadgeTest {
 	UserBadge userBadge;
 	UserProfile profile;
 	ClientCache mockCache;
+	BadgeBatchLoader mockBatchLoader;
 	String principalId = "id1";
 	int max=10;
 	
@@ -43,7 +47,8 @@ public class UserBadgeTest {
 		mockSynapseClient = Mockito.mock(SynapseClientAsync.class);
 		mockView = mock(UserBadgeView.class);
 		mockCache = mock(ClientCache.class);
-		userBadge = new UserBadge(mockView, mockSynapseClient, mockNodeModelCreator, mockCache);
+		mockBatchLoader = mock(BadgeBatchLoader.class);
+		userBadge = new UserBadge(mockView, mockSynapseClient, mockNodeModelCreator, mockCache, mockBatchLoader);
 	}
 	
 	@Test
@@ -54,33 +59,34 @@ public class UserBadgeTest {
 	
 	@Test
 	public void testConfigureAsync() throws Exception {
-		AsyncMockStubber.callSuccessWith("").when(mockSynapseClient).getUserProfile(eq(principalId), any(AsyncCallback.class));
-		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(UserProfile.class))).thenReturn(profile);
-		profile.setDisplayName("name");
+		AsyncMockStubber.callSuccessWith(profile).when(mockBatchLoader).getUserProfile(eq(principalId), any(AsyncCallback.class));
 		userBadge.setMaxNameLength(max);
-		userBadge.configure(profile);
+		userBadge.configure(principalId);
+		verify(mockView).showLoading();
 		verify(mockView).setProfile(profile, max);
+		//profiles are looked up through the batch loader
+		verify(mockSynapseClient, never()).getUserProfile(anyString(), any(AsyncCallback.class));
 	}
 	
 	@Test
 	public void testConfigureAsyncFail() throws Exception {
-		AsyncMockStubber.callFailureWith(new Exception()).when(mockSynapseClient).getUserProfile(eq(principalId), any(AsyncCallback.class));		
-		profile.setDisplayName("name");
+		AsyncMockStubber.callFailureWith(new Exception()).when(mockBatchLoader).getUserProfile(eq(principalId), any(AsyncCallback.class));		
 		userBadge.configure(principalId);
 		verify(mockView).showLoadError(principalId);
 	}
 	
 	@Test
 	public void testConfigureFromCache() throws Exception {
-		AsyncMockStubber.callSuccessWith("").when(mockSynapseClient).getUserProfile(eq(principalId), any(AsyncCallback.class));
 		when(mockCache.get(anyString())).thenReturn("user profile json");
 		when(mockNodeModelCreator.createJSONEntity(anyString(), eq(UserProfile.class))).thenReturn(profile);
-		profile.setDisplayName("name");
+		BadgeBatchLoader batchLoader = new BadgeBatchLoaderImpl(mockSynapseClient, mockNodeModelCreator, mockCache, mock(GWTWrapper.class));
+		userBadge = new UserBadge(mockView, mockSynapseClient, mockNodeModelCreator, mockCache, batchLoader);
 		userBadge.setMaxNameLength(max);
 		userBadge.configure(principalId);
 		verify(mockView).setProfile(profile, max);
 		//did not use the synapse client, used cache instead
 		verify(mockSynapseClient, never()).getUserProfile(anyString(), any(AsyncCallback.class));
+		verify(mockSynapseClient, never()).getUserProfiles(anyList(), any(AsyncCallback.class));
 	}
 		
 	@Test
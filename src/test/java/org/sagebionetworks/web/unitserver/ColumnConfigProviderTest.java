@@ -2,6 +2,7 @@ package org.sagebionetworks.web.unitserver;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -171,6 +172,32 @@ public class ColumnConfigProviderTest {
 		assertEquals(cft, cache.get(ObjectType.dataset.name()));
 	}
 	
+	@Test
+	public void testColumnsForTypeCompiledOnInjection(){
+		providerWithCycles.setDefaultDatasetColumns(b.getId()+","+a.getId());
+		// Built with the injection, not by the first search
+		Map<String, ColumnsForType> cache = providerWithCycles.getColumnsForTypeCache();
+		assertEquals(1, cache.size());
+		ColumnsForType cft = cache.get(ObjectType.dataset.name());
+		assertNotNull(cft);
+		assertSame(cft, providerWithCycles.getColumnsForType(ObjectType.dataset.name()));
+		// Injecting the additional columns replaces it
+		providerWithCycles.setAdditionalDatasetColumns(c.getId());
+		ColumnsForType withAdditional = providerWithCycles.getColumnsForType(ObjectType.dataset.name());
+		assertEquals(1, withAdditional.getAdditionalColumns().size());
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testColumnsForTypeUnknownColumn(){
+		providerWithCycles.setDefaultDatasetColumns(a.getId()+",unknownColumn");
+		providerWithCycles.getColumnsForType(ObjectType.dataset.name());
+	}
+	
+	@Test (expected=UnsupportedOperationException.class)
+	public void testDependenciesImmutable(){
+		providerWithCycles.getColumnDependancies(a.getId()).add(d.getId());
+	}
+	
 	@Test
 	public void testGetFilterEnumerations(){
 		List<FilterEnumeration> list = provider.getFilterEnumerations();
@@ -0,0 +1,48 @@
+package org.sagebionetworks.web.unitserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.HttpClientPoolImpl;
+import org.sagebionetworks.web.server.RestTemplateProviderImpl;
+
+public class HttpClientPoolImplTest {
+
+	HttpClientPoolImpl pool;
+
+	@Before
+	public void before() {
+		pool = new HttpClientPoolImpl(42, 7, 1000, 2000, 3000, 4000, 5000);
+	}
+
+	@After
+	public void after() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testStats() {
+		PoolStats stats = pool.getTotalStats();
+		assertEquals(42, stats.getMax());
+		assertEquals(0, stats.getLeased());
+		assertEquals(0, stats.getPending());
+		assertEquals(0, stats.getAvailable());
+	}
+
+	@Test
+	public void testClientIsShared() {
+		assertNotNull(pool.getHttpClient());
+		assertSame(pool.getHttpClient(), pool.getHttpClient());
+	}
+
+	@Test
+	public void testRestTemplateUsesPool() {
+		RestTemplateProviderImpl provider = new RestTemplateProviderImpl(pool);
+		assertNotNull(provider.getTemplate());
+	}
+}
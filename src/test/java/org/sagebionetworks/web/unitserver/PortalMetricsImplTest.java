@@ -0,0 +1,89 @@
+package org.sagebionetworks.web.unitserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.LatencyHistogram;
+import org.sagebionetworks.web.server.PortalMetricsImpl;
+
+public class PortalMetricsImplTest {
+
+	PortalMetricsImpl metrics;
+
+	@Before
+	public void before() {
+		metrics = new PortalMetricsImpl();
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentileMs(50));
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i, i > 98);
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(2, histogram.getErrorCount());
+		assertEquals(100, histogram.getMaxMs());
+		assertEquals(50.5, histogram.getMeanMs(), 0.001);
+		// reported as the upper bound of the bucket
+		assertEquals(50, histogram.getPercentileMs(50));
+		assertEquals(100, histogram.getPercentileMs(90));
+		assertEquals(100, histogram.getPercentileMs(99));
+	}
+
+	@Test
+	public void testHistogramOverflow() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(120000, false);
+		assertEquals(120000, histogram.getPercentileMs(50));
+	}
+
+	@Test
+	public void testRequests() throws Exception {
+		metrics.requestStarted("/Portal/synapse.getEntity");
+		metrics.requestStarted("/Portal/synapse.getEntity");
+		metrics.requestFinished("/Portal/synapse.getEntity", 12, 300, 4000, false);
+		JSONObject request = metrics.toJSON().getJSONObject("requests").getJSONObject("/Portal/synapse.getEntity");
+		assertEquals(1, request.getInt("inFlight"));
+		assertEquals(1, request.getInt("count"));
+		assertEquals(0, request.getInt("errors"));
+		assertEquals(300, request.getLong("requestBytes"));
+		assertEquals(4000, request.getLong("responseBytes"));
+		assertEquals(12, request.getLong("p50Ms"));
+	}
+
+	@Test
+	public void testNamesCapped() throws Exception {
+		for (int i = 0; i < PortalMetricsImpl.MAX_NAMES + 10; i++) {
+			metrics.recordTime("timer" + i, 1);
+		}
+		JSONObject timers = metrics.toJSON().getJSONObject("timers");
+		assertEquals(PortalMetricsImpl.MAX_NAMES + 1, timers.length());
+		assertEquals(10, timers.getJSONObject(PortalMetricsImpl.OTHER).getInt("count"));
+	}
+
+	@Test
+	public void testCounters() throws Exception {
+		metrics.increment("fallback");
+		metrics.increment("fallback");
+		JSONObject counters = metrics.toJSON().getJSONObject("counters");
+		assertEquals(2, counters.getLong("fallback"));
+	}
+
+	@Test
+	public void testRecordSynapseCall() throws Exception {
+		metrics.recordSynapseCall("getEntityById", 10, false);
+		metrics.recordSynapseCall("getEntityById", 30, true);
+
+		JSONObject calls = metrics.toJSON().getJSONObject("synapseCalls");
+		assertEquals(1, calls.length());
+		JSONObject getEntity = calls.getJSONObject("getEntityById");
+		assertEquals(2, getEntity.getInt("count"));
+		assertEquals(1, getEntity.getInt("errors"));
+		assertTrue(getEntity.getLong("maxMs") >= 30);
+	}
+}
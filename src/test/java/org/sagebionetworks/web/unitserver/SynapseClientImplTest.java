@@ -5,6 +5,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyList;
@@ -12,13 +13,17 @@ import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.ACCESS_REQUIREMENTS;
+import static org.sagebionetworks.web.shared.EntityBundleTransport.ACL;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.ANNOTATIONS;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.ENTITY;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.ENTITY_PATH;
+import static org.sagebionetworks.web.shared.EntityBundleTransport.FILE_HANDLES;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.HAS_CHILDREN;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.PERMISSIONS;
 import static org.sagebionetworks.web.shared.EntityBundleTransport.UNMET_ACCESS_REQUIREMENTS;
@@ -33,13 +38,17 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sagebionetworks.client.SynapseClient;
 import org.sagebionetworks.client.exceptions.SynapseException;
 import org.sagebionetworks.client.exceptions.SynapseForbiddenException;
@@ -71,6 +80,7 @@ import org.sagebionetworks.repo.model.MembershipRequest;
 import org.sagebionetworks.repo.model.MembershipRqstSubmission;
 import org.sagebionetworks.repo.model.ObjectType;
 import org.sagebionetworks.repo.model.PaginatedResults;
+import org.sagebionetworks.repo.model.Reference;
 import org.sagebionetworks.repo.model.ResourceAccess;
 import org.sagebionetworks.repo.model.RestResourceList;
 import org.sagebionetworks.repo.model.RestrictableObjectDescriptor;
@@ -94,15 +104,22 @@ import org.sagebionetworks.repo.model.file.CompleteAllChunksRequest;
 import org.sagebionetworks.repo.model.file.CompleteChunkedFileRequest;
 import org.sagebionetworks.repo.model.file.CreateChunkedFileTokenRequest;
 import org.sagebionetworks.repo.model.file.ExternalFileHandle;
+import org.sagebionetworks.repo.model.file.FileHandle;
 import org.sagebionetworks.repo.model.file.FileHandleResults;
 import org.sagebionetworks.repo.model.file.S3FileHandle;
 import org.sagebionetworks.repo.model.file.State;
 import org.sagebionetworks.repo.model.file.UploadDaemonStatus;
 import org.sagebionetworks.repo.model.message.MessageToUser;
 import org.sagebionetworks.repo.model.principal.AddEmailInfo;
+import org.sagebionetworks.repo.model.provenance.Activity;
+import org.sagebionetworks.repo.model.provenance.Used;
+import org.sagebionetworks.repo.model.provenance.UsedEntity;
 import org.sagebionetworks.repo.model.quiz.PassingRecord;
 import org.sagebionetworks.repo.model.quiz.Quiz;
 import org.sagebionetworks.repo.model.quiz.QuizResponse;
+import org.sagebionetworks.repo.model.request.ReferenceList;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
 import org.sagebionetworks.repo.model.v2.wiki.V2WikiHeader;
 import org.sagebionetworks.repo.model.v2.wiki.V2WikiHistorySnapshot;
 import org.sagebionetworks.repo.model.v2.wiki.V2WikiPage;
@@ -118,22 +135,34 @@ import org.sagebionetworks.web.client.transform.JSONEntityFactory;
 import org.sagebionetworks.web.client.transform.JSONEntityFactoryImpl;
 import org.sagebionetworks.web.client.transform.NodeModelCreator;
 import org.sagebionetworks.web.client.transform.NodeModelCreatorImpl;
+import org.sagebionetworks.web.server.PortalMetricsImpl;
+import org.sagebionetworks.web.server.servlet.ChallengeAggregator;
+import org.sagebionetworks.web.server.servlet.FanOutExecutorImpl;
 import org.sagebionetworks.web.server.servlet.MarkdownCacheRequest;
 import org.sagebionetworks.web.server.servlet.ServiceUrlProvider;
 import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
 import org.sagebionetworks.web.server.servlet.SynapseProvider;
 import org.sagebionetworks.web.server.servlet.TokenProvider;
+import org.sagebionetworks.web.server.servlet.WikiPageCache;
 import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityBundleTransportList;
 import org.sagebionetworks.web.shared.EntityWrapper;
 import org.sagebionetworks.web.shared.MembershipInvitationBundle;
+import org.sagebionetworks.web.shared.MembershipRequestBundle;
 import org.sagebionetworks.web.shared.TeamBundle;
+import org.sagebionetworks.web.shared.WikiHtmlBundle;
 import org.sagebionetworks.web.shared.WikiPageKey;
+import org.sagebionetworks.web.shared.exceptions.ForbiddenException;
 import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+import org.sagebionetworks.web.shared.table.QueryDetails;
+import org.sagebionetworks.web.shared.table.QueryDetails.SortDirection;
+import org.sagebionetworks.web.shared.table.QueryResult;
 import org.sagebionetworks.web.shared.exceptions.RestServiceException;
+import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
+import org.sagebionetworks.web.shared.provenance.ProvGraphBundle;
 import org.sagebionetworks.web.shared.users.AclUtils;
 import org.sagebionetworks.web.shared.users.PermissionLevel;
 
-import com.google.common.cache.Cache;
 
 /**
  * Test for the SynapseClientImpl
@@ -426,6 +455,260 @@ public class SynapseClientImplTest {
 		assertNull(bundle.getUnmetAccessRequirementsJson());
 	}
 	
+	@Test
+	public void testGetEntityBundlePassthrough() throws Exception {
+		int mask = ENTITY | ANNOTATIONS | PERMISSIONS | ENTITY_PATH | HAS_CHILDREN
+		| ACCESS_REQUIREMENTS | UNMET_ACCESS_REQUIREMENTS;
+		EntityBundleTransport expected = synapseClient.getEntityBundle(entityId, mask);
+		EntityBundle bundle = mockSynapse.getEntityBundle(entityId, mask);
+		when(mockSynapse.getEntity("/entity/" + entityId + "/bundle?mask=" + mask)).thenReturn(new JSONObject(EntityFactory.createJSONStringForEntity(bundle)));
+		synapseClient.setEntityBundlePassthrough(true);
+		EntityBundleTransport transport = synapseClient.getEntityBundle(entityId, mask);
+		//the same parts, as the repository sent them
+		assertEquals(entity, EntityFactory.createEntityFromJSONString(transport.getEntityJson(), ExampleEntity.class));
+		assertEquals(annos, EntityFactory.createEntityFromJSONString(transport.getAnnotationsJson(), Annotations.class));
+		assertEquals(path, EntityFactory.createEntityFromJSONString(transport.getEntityPathJson(), EntityPath.class));
+		assertEquals(expected.getPermissionsJson(), EntityFactory.createJSONStringForEntity(EntityFactory.createEntityFromJSONString(transport.getPermissionsJson(), UserEntityPermissions.class)));
+		assertEquals(expected.getHasChildren(), transport.getHasChildren());
+		assertEquals(new JSONArray(expected.getAccessRequirementsJson()).length(), new JSONArray(transport.getAccessRequirementsJson()).length());
+		assertNotNull(transport.getUnmetAccessRequirementsJson());
+		assertNull(transport.getFileHandlesJson());
+	}
+	
+	@Test
+	public void testGetEntityBundlePassthroughInheritedAcl() throws Exception {
+		int mask = ENTITY | ACL | FILE_HANDLES;
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		PortalMetricsImpl metrics = new PortalMetricsImpl();
+		synapseClient.setPortalMetrics(metrics);
+		//PLFM-1752: the file handles are not found
+		when(mockSynapse.getEntity("/entity/" + entityId + "/version/2/bundle?mask=" + FILE_HANDLES)).thenThrow(new SynapseNotFoundException());
+		when(mockSynapse.getEntity("/entity/" + entityId + "/version/2/bundle?mask=" + (ENTITY | ACL))).thenReturn(new JSONObject(EntityFactory.createJSONStringForEntity(bundle)));
+		synapseClient.setEntityBundlePassthrough(true);
+		EntityBundleTransport transport = synapseClient.getEntityBundleForVersion(entityId, 2L, mask);
+		assertNotNull(transport.getEntityJson());
+		assertNull(transport.getFileHandlesJson());
+		//the rest of the bundle is not fetched again
+		verify(mockSynapse, times(2)).getEntity(anyString());
+		assertEquals(1, metrics.toJSON().getJSONObject("counters").getLong(SynapseClientImpl.BUNDLE_FILE_HANDLES_NOT_FOUND));
+		//the ACL is inherited, so the benefactor ACL is fetched
+		assertEquals(acl, EntityFactory.createEntityFromJSONString(transport.getAclJson(), AccessControlList.class));
+		//the bundle, the file handles and the ACL each have their own client
+		verify(mockSynapseProvider, times(3)).createNewClient();
+	}
+	
+	@Test
+	public void testGetEntityBundleFileHandles() throws Exception {
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		S3FileHandle handle = new S3FileHandle();
+		handle.setId("4422");
+		EntityBundle fileHandlesBundle = new EntityBundle();
+		fileHandlesBundle.setFileHandles(new ArrayList<FileHandle>(Arrays.asList(handle)));
+		when(mockSynapse.getEntityBundle(anyString(), eq(ENTITY))).thenReturn(bundle);
+		when(mockSynapse.getEntityBundle(anyString(), eq(FILE_HANDLES))).thenReturn(fileHandlesBundle);
+		EntityBundleTransport transport = synapseClient.getEntityBundle(entityId, ENTITY | FILE_HANDLES);
+		//the file handles are fetched on their own, and merged into the bundle
+		assertEquals(entity, EntityFactory.createEntityFromJSONString(transport.getEntityJson(), ExampleEntity.class));
+		S3FileHandle clone = EntityFactory.createEntityFromJSONString(new JSONArray(transport.getFileHandlesJson()).getJSONObject(0).toString(), S3FileHandle.class);
+		assertEquals(handle, clone);
+		verify(mockSynapse, never()).getEntityBundle(anyString(), eq(ENTITY | FILE_HANDLES));
+	}
+	
+	@Test
+	public void testGetEntityBundleFileHandlesError() throws Exception {
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		when(mockSynapse.getEntityBundle(anyString(), eq(ENTITY))).thenReturn(bundle);
+		when(mockSynapse.getEntityBundle(anyString(), eq(FILE_HANDLES))).thenThrow(new SynapseForbiddenException());
+		try {
+			synapseClient.getEntityBundle(entityId, ENTITY | FILE_HANDLES);
+			fail("Expected a ForbiddenException");
+		} catch (ForbiddenException e) {
+			//only a missing file handle is tolerated
+		}
+	}
+	
+	@Test
+	public void testGetEntityBundleInheritedAclCached() throws Exception {
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		when(mockSynapse.getEntityBundle(anyString(), eq(ENTITY | ACL))).thenReturn(bundle);
+		//two entities below the same benefactor
+		EntityBundleTransport transport = synapseClient.getEntityBundle("syn1", ENTITY | ACL);
+		assertEquals(acl, EntityFactory.createEntityFromJSONString(transport.getAclJson(), AccessControlList.class));
+		transport = synapseClient.getEntityBundle("syn2", ENTITY | ACL);
+		assertEquals(acl, EntityFactory.createEntityFromJSONString(transport.getAclJson(), AccessControlList.class));
+		verify(mockSynapse, times(2)).getEntityBenefactor(anyString());
+		verify(mockSynapse, times(1)).getACL("syn999");
+		assertEquals(1, synapseClient.getAclCacheStats().hitCount());
+		
+		//a warm bundle makes no extra calls for the ACL
+		synapseClient.getEntityBundle("syn1", ENTITY | ACL);
+		verify(mockSynapse, times(2)).getEntityBenefactor(anyString());
+		verify(mockSynapse, times(1)).getACL("syn999");
+		assertEquals(1, synapseClient.getBenefactorCacheStats().hitCount());
+		
+		//a new ACL may change the benefactor, so it is looked up again
+		AccessControlList newAcl = new AccessControlList();
+		newAcl.setId("syn1");
+		when(mockSynapse.createACL(any(AccessControlList.class))).thenReturn(newAcl);
+		EntityWrapper in = new EntityWrapper();
+		in.setEntityJson(EntityFactory.createJSONObjectForEntity(newAcl).toString());
+		synapseClient.createAcl(in);
+		synapseClient.getEntityBundle("syn1", ENTITY | ACL);
+		verify(mockSynapse, times(3)).getEntityBenefactor(anyString());
+	}
+	
+	@Test
+	public void testGetEntityBundleOwnAcl() throws Exception {
+		AccessControlList ownAcl = new AccessControlList();
+		ownAcl.setId("syn999");
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		bundle.setAccessControlList(ownAcl);
+		when(mockSynapse.getEntityBundle(anyString(), eq(ENTITY | ACL))).thenReturn(bundle);
+		EntityBundleTransport transport = synapseClient.getEntityBundle("syn999", ENTITY | ACL);
+		assertEquals(ownAcl, EntityFactory.createEntityFromJSONString(transport.getAclJson(), AccessControlList.class));
+		//the entity is its own benefactor, so its ACL is the one in the bundle
+		verify(mockSynapse, never()).getACL(anyString());
+	}
+	
+	@Test
+	public void testUpdateAclReplacesCachedAcl() throws Exception {
+		synapseClient.getNodeAcl("syn101");
+		AccessControlList updated = new AccessControlList();
+		updated.setId("syn999");
+		updated.setEtag("new etag");
+		when(mockSynapse.updateACL(any(AccessControlList.class), eq(false))).thenReturn(updated);
+		EntityWrapper in = new EntityWrapper();
+		in.setEntityJson(EntityFactory.createJSONObjectForEntity(updated).toString());
+		synapseClient.updateAcl(in);
+		EntityWrapper ew = synapseClient.getNodeAcl("syn101");
+		assertEquals(updated, EntityFactory.createEntityFromJSONString(ew.getEntityJson(), AccessControlList.class));
+		verify(mockSynapse, times(1)).getACL("syn999");
+		//and a deleted ACL is fetched again
+		synapseClient.deleteAcl("syn999");
+		synapseClient.getNodeAcl("syn101");
+		verify(mockSynapse, times(2)).getACL("syn999");
+	}
+	
+	@Test
+	public void testGetEntityBundles() throws Exception {
+		when(mockSynapse.getEntityBundle(eq("syn404"), anyInt())).thenThrow(new SynapseNotFoundException());
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < SynapseClientImpl.ENTITY_BUNDLE_BATCH_PARALLELISM + 2; i++) {
+			ids.add(entityId);
+		}
+		ids.add(1, "syn404");
+		EntityBundleTransportList result = synapseClient.getEntityBundles(ids, 0x0);
+		assertEquals(ids.size(), result.getBundles().size());
+		assertEquals(ids.size(), result.getErrors().size());
+		//the failure is reported in place, and does not affect the other entities
+		assertNotNull(result.getBundles().get(0));
+		assertNull(result.getErrors().get(0));
+		assertNull(result.getBundles().get(1));
+		assertTrue(result.getErrors().get(1) instanceof NotFoundException);
+		for (int i = 2; i < ids.size(); i++) {
+			assertNotNull(result.getBundles().get(i));
+		}
+		verify(mockSynapse, Mockito.times(ids.size() - 1)).getEntityBundle(eq(entityId), anyInt());
+		//every entity is fetched with its own client, created on the request thread
+		verify(mockSynapseProvider, Mockito.times(ids.size())).createNewClient();
+		verify(mockSynapse, Mockito.times(ids.size())).setSessionToken(anyString());
+	}
+	
+	@Test
+	public void testGetUserProfiles() throws Exception {
+		UserProfile profile = new UserProfile();
+		profile.setOwnerId("111");
+		when(mockSynapse.getUserProfile(anyString())).thenReturn(profile);
+		when(mockSynapse.getUserProfile(eq("404"))).thenThrow(new SynapseNotFoundException());
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < SynapseClientImpl.BADGE_BATCH_PARALLELISM + 2; i++) {
+			ids.add("111");
+		}
+		ids.add(1, "404");
+		List<String> result = synapseClient.getUserProfiles(ids);
+		assertEquals(ids.size(), result.size());
+		assertEquals(EntityFactory.createJSONStringForEntity(profile), result.get(0));
+		//the missing profile is null, and does not affect the others
+		assertNull(result.get(1));
+		assertNotNull(result.get(ids.size() - 1));
+		//a client per profile
+		verify(mockSynapseProvider, times(ids.size())).createNewClient();
+	}
+	
+	@Test
+	public void testGetTeams() throws Exception {
+		Team team = new Team();
+		team.setId("222");
+		when(mockSynapse.getTeam(anyString())).thenReturn(team);
+		when(mockSynapse.getTeam(eq("404"))).thenThrow(new SynapseNotFoundException());
+		List<String> result = synapseClient.getTeams(Arrays.asList("404", "222"));
+		assertEquals(2, result.size());
+		assertNull(result.get(0));
+		assertEquals(EntityFactory.createJSONStringForEntity(team), result.get(1));
+		//a client per team
+		verify(mockSynapseProvider, times(2)).createNewClient();
+	}
+	
+	@Test
+	public void testExecuteTableQuery() throws Exception {
+		RowSet page = new RowSet();
+		page.setTableId("syn123");
+		page.setEtag("etag");
+		page.setHeaders(Arrays.asList("1"));
+		page.setRows(new ArrayList<Row>());
+		when(mockSynapse.queryTableEntity(anyString())).thenReturn(page);
+		Row countRow = new Row();
+		countRow.setValues(Arrays.asList("42"));
+		RowSet count = new RowSet();
+		count.setRows(Arrays.asList(countRow));
+		when(mockSynapse.queryTableEntity(anyString(), eq(true), eq(true))).thenReturn(count);
+		PortalMetricsImpl metrics = new PortalMetricsImpl();
+		synapseClient.setPortalMetrics(metrics);
+		
+		QueryResult result = synapseClient.executeTableQuery("SELECT * FROM syn123", new QueryDetails(10L, 5L, "foo", SortDirection.DESC), true);
+		String executedQuery = "SELECT * FROM syn123 ORDER BY foo DESC LIMIT 5 OFFSET 10";
+		assertEquals(executedQuery, result.getExecutedQuery());
+		assertEquals(new QueryDetails(10L, 5L, "foo", SortDirection.DESC), result.getQueryDetails());
+		assertEquals(new Integer(42), result.getTotalRowCount());
+		assertEquals(EntityFactory.createJSONStringForEntity(page), result.getRowSetJson());
+		verify(mockSynapse).queryTableEntity(executedQuery);
+		verify(mockSynapse).queryTableEntity(executedQuery, true, true);
+		//the page and the count each have their own client
+		verify(mockSynapseProvider, times(2)).createNewClient();
+		//and each phase is timed
+		JSONObject timers = metrics.toJSON().getJSONObject("timers");
+		assertEquals(1, timers.getJSONObject(SynapseClientImpl.TABLE_QUERY).getInt("count"));
+		assertEquals(1, timers.getJSONObject(SynapseClientImpl.TABLE_QUERY_PARSE).getInt("count"));
+		assertEquals(1, timers.getJSONObject(SynapseClientImpl.TABLE_QUERY_PAGE).getInt("count"));
+		assertEquals(1, timers.getJSONObject(SynapseClientImpl.TABLE_QUERY_COUNT).getInt("count"));
+	}
+	
+	@Test
+	public void testExecuteTableQueryNoCount() throws Exception {
+		RowSet page = new RowSet();
+		page.setTableId("syn123");
+		page.setEtag("etag");
+		page.setHeaders(Arrays.asList("1"));
+		page.setRows(new ArrayList<Row>());
+		when(mockSynapse.queryTableEntity(anyString())).thenReturn(page);
+		String query = "SELECT * FROM syn123";
+		QueryResult result = synapseClient.executeTableQuery(query, null, false);
+		assertEquals(query, result.getExecutedQuery());
+		assertNull(result.getTotalRowCount());
+		verify(mockSynapse, never()).queryTableEntity(anyString(), anyBoolean(), anyBoolean());
+	}
+	
+	@Test (expected=NotFoundException.class)
+	public void testExecuteTableQueryPageFailure() throws Exception {
+		when(mockSynapse.queryTableEntity(anyString())).thenThrow(new SynapseNotFoundException());
+		synapseClient.executeTableQuery("SELECT * FROM syn123", null, true);
+	}
+	
 	@Test (expected=IllegalArgumentException.class)
 	public void testParseEntityFromJsonNoType() throws JSONObjectAdapterException{
 		ExampleEntity example = new ExampleEntity();
@@ -840,6 +1123,35 @@ public class SynapseClientImplTest {
         synapseClient.getVersionOfV2WikiPageAsV1(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), new Long(0));
         verify(mockSynapse, Mockito.times(1)).getVersionOfV2WikiPageAsV1(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class), any(Long.class));
  	}
+
+ 	@Test
+ 	public void testGetWikiPageHtml() throws Exception {
+ 		Mockito.when(mockSynapse.getV2WikiPageAsV1(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class))).thenReturn(page);
+ 		Mockito.when(mockSynapse.getV2WikiPage(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class))).thenReturn(v2Page);
+ 		WikiHtmlBundle result = synapseClient.getWikiPageHtml(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), null, false, "http://localhost/");
+ 		assertEquals(v2Page.getId(), result.getWikiPageId());
+ 		assertTrue(result.getHtml().contains("my markdown"));
+ 		//asking for the same page twice should be served from the rendered html cache
+ 		synapseClient.getWikiPageHtml(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), null, false, "http://localhost/");
+ 		verify(mockSynapse, Mockito.times(1)).getV2WikiPageAsV1(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class));
+ 		//but the V2 page is fetched every time, to check that the caller can read it
+ 		verify(mockSynapse, Mockito.times(2)).getV2WikiPage(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class));
+ 		assertEquals(1, synapseClient.getWikiHtmlCacheStats().hitCount());
+ 		assertEquals(1, synapseClient.getWikiHtmlCacheStats().missCount());
+ 		
+ 		//a different preview flag is rendered separately
+ 		synapseClient.getWikiPageHtml(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), null, true, "http://localhost/");
+ 		assertEquals(2, synapseClient.getWikiHtmlCacheStats().missCount());
+ 	}
+ 	
+ 	@Test (expected=ForbiddenException.class)
+ 	public void testGetWikiPageHtmlForbidden() throws Exception {
+ 		Mockito.when(mockSynapse.getV2WikiPageAsV1(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class))).thenReturn(page);
+ 		Mockito.when(mockSynapse.getV2WikiPage(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class))).thenReturn(v2Page).thenThrow(new SynapseForbiddenException());
+ 		synapseClient.getWikiPageHtml(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), null, false, "http://localhost/");
+ 		//the html is cached now, but the next caller cannot read the page
+ 		synapseClient.getWikiPageHtml(new WikiPageKey("syn123", ObjectType.ENTITY.toString(), "20"), null, false, "http://localhost/");
+ 	}
  	
 	private void resetUpdateExternalFileHandleMocks(String testId, FileEntity file, ExternalFileHandle handle) throws SynapseException, JSONObjectAdapterException {
 		reset(mockSynapse);
@@ -1071,6 +1383,17 @@ public class SynapseClientImplTest {
 		assertEquals(testUrl.toString(), presignedUrl);
 	}
 	
+	@Test
+	public void testGetChunkedPresignedUrls() throws SynapseException, RestServiceException, MalformedURLException, JSONObjectAdapterException {
+		URL testUrl = new URL("http://test.presignedurl.com/foo");
+		when(mockSynapse.createChunkedPresignedUrl(any(ChunkRequest.class))).thenReturn(testUrl);
+		List<String> chunkRequests = getTestChunkRequestJson();
+		List<String> presignedUrls = synapseClient.getChunkedPresignedUrls(chunkRequests);
+		verify(mockSynapse, times(chunkRequests.size())).createChunkedPresignedUrl(any(ChunkRequest.class));
+		assertEquals(chunkRequests.size(), presignedUrls.size());
+		assertEquals(testUrl.toString(), presignedUrls.get(0));
+	}
+	
 	@Test
 	public void testGetAvailableEvaluations() throws SynapseException, RestServiceException, MalformedURLException, JSONObjectAdapterException {
 		PaginatedResults<Evaluation> testResults = new PaginatedResults<Evaluation>();
@@ -1169,6 +1492,17 @@ public class SynapseClientImplTest {
 		assertEquals(submissionJson, returnSubmissionJson);
 	}
 	
+	@Test
+	public void testCreateSubmissionInvalidatesChallengeAnswers() throws SynapseException, RestServiceException, JSONObjectAdapterException {
+		ChallengeAggregator mockChallengeAggregator = Mockito.mock(ChallengeAggregator.class);
+		synapseClient.setChallengeAggregator(mockChallengeAggregator);
+		when(mockSynapse.getCurrentSessionToken()).thenReturn("token");
+		when(mockSynapse.createSubmission(any(Submission.class), anyString())).thenReturn(new Submission());
+		synapseClient.createSubmission(EntityFactory.createJSONStringForEntity(new Submission()), "fakeEtag");
+		//hasSubmitted and the submitter aliases must not be answered from before the submission
+		verify(mockChallengeAggregator).invalidate("token");
+	}
+	
 	private void setupTestSubmitterAliases() throws SynapseException{
 		//set up 2 available evaluations
 		PaginatedResults<Evaluation> availableEvaluations = new PaginatedResults<Evaluation>();
@@ -1228,6 +1562,8 @@ public class SynapseClientImplTest {
 		List<String> submitterAliasList = resourceList.getList();
 		//3 unique submitter aliases across the evaluations
 		assertEquals(3, submitterAliasList.size());
+		//a client to list the evaluations, and one for each evaluation
+		verify(mockSynapseProvider, times(3)).createNewClient();
 		
 		//order should be Alias 0, Alias 1, Alias 2
 		for (int i = 0; i < submitterAliasList.size(); i++) {
@@ -1373,6 +1709,123 @@ public class SynapseClientImplTest {
 		assertEquals(testMemberCount, bundle.getTotalMemberCount());
 	}
 	
+	@Test
+	public void testGetTeamBundlePartialFailure() throws SynapseException, RestServiceException {
+		when(mockSynapse.getTeamMembers(anyString(), anyString(), anyLong(), anyLong())).thenReturn(new PaginatedResults<TeamMember>());
+		when(mockSynapse.getTeam(anyString())).thenThrow(new SynapseNotFoundException());
+		try {
+			synapseClient.getTeamBundle("myUserId", "myTeamId", false);
+			fail("Expected a NotFoundException");
+		} catch (NotFoundException e) {
+			//the same exception as had the calls been made one after another
+		}
+	}
+	
+	@Test
+	public void testGetTeamBundleTimeout() throws SynapseException, RestServiceException {
+		FanOutExecutorImpl executor = new FanOutExecutorImpl(4, 10, 100);
+		synapseClient.setFanOutExecutor(executor);
+		try {
+			when(mockSynapse.getTeamMembers(anyString(), anyString(), anyLong(), anyLong())).thenReturn(new PaginatedResults<TeamMember>());
+			when(mockSynapse.getTeam(anyString())).thenAnswer(new Answer<Team>() {
+				@Override
+				public Team answer(InvocationOnMock invocation) throws Throwable {
+					Thread.sleep(5000);
+					return new Team();
+				}
+			});
+			try {
+				synapseClient.getTeamBundle("myUserId", "myTeamId", false);
+				fail("Expected an UnknownErrorException");
+			} catch (UnknownErrorException e) {
+				assertTrue(e.getMessage().contains("Timed out"));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testGetOpenRequests() throws SynapseException, RestServiceException, JSONObjectAdapterException {
+		PaginatedResults<MembershipRequest> requests = new PaginatedResults<MembershipRequest>();
+		List<MembershipRequest> requestList = new ArrayList<MembershipRequest>();
+		for (String userId : new String[]{"111", "222"}) {
+			MembershipRequest request = new MembershipRequest();
+			request.setUserId(userId);
+			requestList.add(request);
+			UserProfile profile = new UserProfile();
+			profile.setOwnerId(userId);
+			when(mockSynapse.getUserProfile(userId)).thenReturn(profile);
+		}
+		requests.setResults(requestList);
+		when(mockSynapse.getOpenMembershipRequests(anyString(), anyString(), anyLong(), anyLong())).thenReturn(requests);
+		List<MembershipRequestBundle> bundles = synapseClient.getOpenRequests("myTeamId");
+		//one bundle per request, in order, each with the requester profile
+		assertEquals(2, bundles.size());
+		assertEquals("111", EntityFactory.createEntityFromJSONString(bundles.get(0).getUserProfileJson(), UserProfile.class).getOwnerId());
+		assertEquals("222", EntityFactory.createEntityFromJSONString(bundles.get(1).getUserProfileJson(), UserProfile.class).getOwnerId());
+		
+		//a failed profile lookup fails the call
+		when(mockSynapse.getUserProfile("222")).thenThrow(new SynapseForbiddenException());
+		try {
+			synapseClient.getOpenRequests("myTeamId");
+			fail("Expected a ForbiddenException");
+		} catch (ForbiddenException e) {
+		}
+	}
+	
+	@Test
+	public void testGetOpenRequestsInWindows() throws Exception {
+		PaginatedResults<MembershipRequest> requests = new PaginatedResults<MembershipRequest>();
+		List<MembershipRequest> requestList = new ArrayList<MembershipRequest>();
+		for (int i = 0; i < SynapseClientImpl.BADGE_BATCH_PARALLELISM + 2; i++) {
+			MembershipRequest request = new MembershipRequest();
+			request.setUserId("111");
+			requestList.add(request);
+		}
+		requests.setResults(requestList);
+		when(mockSynapse.getOpenMembershipRequests(anyString(), anyString(), anyLong(), anyLong())).thenReturn(requests);
+		when(mockSynapse.getUserProfile(anyString())).thenReturn(new UserProfile());
+		FanOutExecutorImpl executor = Mockito.spy(new FanOutExecutorImpl());
+		synapseClient.setFanOutExecutor(executor);
+		try {
+			assertEquals(requestList.size(), synapseClient.getOpenRequests("myTeamId").size());
+			//the profiles are fetched a window at a time
+			verify(executor, times(2)).invokeAll(anyList());
+			//with a client per profile, and one for the requests
+			verify(mockSynapseProvider, times(requestList.size() + 1)).createNewClient();
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testGetOpenInvitations() throws SynapseException, RestServiceException, JSONObjectAdapterException {
+		PaginatedResults<MembershipInvitation> invitations = new PaginatedResults<MembershipInvitation>();
+		List<MembershipInvitation> invitationList = new ArrayList<MembershipInvitation>();
+		for (String teamId : new String[]{"1", "2"}) {
+			MembershipInvitation invitation = new MembershipInvitation();
+			invitation.setTeamId(teamId);
+			invitationList.add(invitation);
+			Team team = new Team();
+			team.setId(teamId);
+			when(mockSynapse.getTeam(teamId)).thenReturn(team);
+		}
+		invitations.setResults(invitationList);
+		when(mockSynapse.getOpenMembershipInvitations(anyString(), anyString(), anyLong(), anyLong())).thenReturn(invitations);
+		List<MembershipInvitationBundle> bundles = synapseClient.getOpenInvitations("myUserId");
+		assertEquals(2, bundles.size());
+		assertEquals("1", EntityFactory.createEntityFromJSONString(bundles.get(0).getTeamJson(), Team.class).getId());
+		assertEquals("2", EntityFactory.createEntityFromJSONString(bundles.get(1).getTeamJson(), Team.class).getId());
+		
+		when(mockSynapse.getTeam("2")).thenThrow(new SynapseNotFoundException());
+		try {
+			synapseClient.getOpenInvitations("myUserId");
+			fail("Expected a NotFoundException");
+		} catch (NotFoundException e) {
+		}
+	}
+	
 	@Test
 	public void testGetEntityHeaderBatch() throws SynapseException, RestServiceException, MalformedURLException, JSONObjectAdapterException {
 		List<String> headers = synapseClient.getEntityHeaderBatch(new ArrayList());
@@ -1445,26 +1898,96 @@ public class SynapseClientImplTest {
 	
 	@Test
 	public void testMarkdownCache() throws Exception {
-		Cache<MarkdownCacheRequest, String> mockCache = Mockito.mock(Cache.class);
-		synapseClient.setMarkdownCache(mockCache);
+		WikiPageCache mockCache = Mockito.mock(WikiPageCache.class);
+		synapseClient.setWikiPageCache(mockCache);
 		String pageJson = "test only";
-		when(mockCache.get(any(MarkdownCacheRequest.class))).thenReturn(pageJson);
+		when(mockCache.get(any(MarkdownCacheRequest.class), any(Callable.class))).thenReturn(pageJson);
 		Mockito.when(mockSynapse.getV2WikiPage(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class))).thenReturn(v2Page);
 		String actualResult = synapseClient.getV2WikiPageAsV1(new WikiPageKey(entity.getId(), ObjectType.ENTITY.toString(), "12"));
 		assertEquals(pageJson, actualResult);
-		verify(mockCache).get(any(MarkdownCacheRequest.class));
+		verify(mockCache).get(any(MarkdownCacheRequest.class), any(Callable.class));
 	}
 	
 	@Test
 	public void testMarkdownCacheWithVersion() throws Exception {
-		Cache<MarkdownCacheRequest, String> mockCache = Mockito.mock(Cache.class);
-		synapseClient.setMarkdownCache(mockCache);
+		WikiPageCache mockCache = Mockito.mock(WikiPageCache.class);
+		synapseClient.setWikiPageCache(mockCache);
 		String pageJson = "test only";
-		when(mockCache.get(any(MarkdownCacheRequest.class))).thenReturn(pageJson);
+		when(mockCache.get(any(MarkdownCacheRequest.class), any(Callable.class))).thenReturn(pageJson);
 		Mockito.when(mockSynapse.getVersionOfV2WikiPage(any(org.sagebionetworks.repo.model.dao.WikiPageKey.class), anyLong())).thenReturn(v2Page);
 		String actualResult = synapseClient.getVersionOfV2WikiPageAsV1(new WikiPageKey(entity.getId(), ObjectType.ENTITY.toString(), "12"), 5L);
 		assertEquals(pageJson, actualResult);
-		verify(mockCache).get(any(MarkdownCacheRequest.class));
+		verify(mockCache).get(any(MarkdownCacheRequest.class), any(Callable.class));
+	}
+	
+	private Reference createReference(String id, Long version) {
+		Reference ref = new Reference();
+		ref.setTargetId(id);
+		ref.setTargetVersionNumber(version);
+		return ref;
+	}
+	
+	private String createReferenceListJson(Reference... refs) throws JSONObjectAdapterException {
+		ReferenceList list = new ReferenceList();
+		list.setReferences(new ArrayList<Reference>(Arrays.asList(refs)));
+		return EntityFactory.createJSONStringForEntity(list);
+	}
+	
+	@Test
+	public void testGetProvenanceGraph() throws Exception {
+		FileEntity file = new FileEntity();
+		file.setId("syn1");
+		file.setVersionNumber(3L);
+		when(mockSynapse.getEntityById("syn1")).thenReturn(file);
+		Reference ref1 = createReference("syn1", 3L);
+		Reference ref2 = createReference("syn2", 1L);
+		Reference ref3 = createReference("syn3", 1L);
+		//syn1 and syn3 were generated by a1, which used syn2.  syn2 was generated by a2
+		Activity a1 = new Activity();
+		a1.setId("a1");
+		UsedEntity used = new UsedEntity();
+		used.setReference(ref2);
+		a1.setUsed(new HashSet<Used>(Arrays.asList(new Used[] {used})));
+		Activity a2 = new Activity();
+		a2.setId("a2");
+		when(mockSynapse.getActivityForEntityVersion("syn1", 3L)).thenReturn(a1);
+		when(mockSynapse.getActivityForEntityVersion("syn2", 1L)).thenReturn(a2);
+		PaginatedResults<Reference> generatedByA1 = new PaginatedResults<Reference>();
+		generatedByA1.setResults(Arrays.asList(new Reference[] {ref1, ref3}));
+		when(mockSynapse.getEntitiesGeneratedBy(eq("a1"), anyInt(), anyInt())).thenReturn(generatedByA1);
+		PaginatedResults<Reference> generatedByA2 = new PaginatedResults<Reference>();
+		generatedByA2.setResults(Arrays.asList(new Reference[] {ref2}));
+		when(mockSynapse.getEntitiesGeneratedBy(eq("a2"), anyInt(), anyInt())).thenReturn(generatedByA2);
+		
+		//start with the current version of syn1
+		ProvGraphBundle bundle = synapseClient.getProvenanceGraph(createReferenceListJson(createReference("syn1", null)), 2);
+		
+		assertEquals(createReferenceListJson(ref1), bundle.getStartReferencesJson());
+		assertEquals(createReferenceListJson(ref1, ref3, ref2), bundle.getReferencesJson());
+		assertEquals(2, bundle.getActivitiesJson().size());
+		assertEquals(createReferenceListJson(ref1, ref3, ref2), bundle.getGeneratedByReferencesJson());
+		assertEquals(Arrays.asList("a1", "a1", "a2"), bundle.getGeneratedByActivityIds());
+		assertTrue(bundle.getFailures().isEmpty());
+		assertNotNull(bundle.getEntityHeadersJson());
+		//each activity is only looked up once
+		verify(mockSynapse).getActivityForEntityVersion("syn1", 3L);
+		verify(mockSynapse).getActivityForEntityVersion("syn2", 1L);
+		verify(mockSynapse, never()).getActivityForEntityVersion(eq("syn3"), anyLong());
+		verify(mockSynapse).getEntitiesGeneratedBy(eq("a1"), anyInt(), anyInt());
+		verify(mockSynapse).getEntitiesGeneratedBy(eq("a2"), anyInt(), anyInt());
+	}
+	
+	@Test
+	public void testGetProvenanceGraphNoActivity() throws Exception {
+		Reference ref1 = createReference("syn1", 3L);
+		when(mockSynapse.getActivityForEntityVersion("syn1", 3L)).thenThrow(new SynapseNotFoundException());
+		ProvGraphBundle bundle = synapseClient.getProvenanceGraph(createReferenceListJson(ref1), 1);
+		
+		assertTrue(bundle.getActivitiesJson().isEmpty());
+		assertEquals(createReferenceListJson(ref1), bundle.getFailedReferencesJson());
+		assertEquals(1, bundle.getFailures().size());
+		assertTrue(bundle.getFailures().get(0) instanceof NotFoundException);
+		verify(mockSynapse, never()).getEntityById(anyString());
 	}
 	
 	@Test
@@ -5,12 +5,14 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sagebionetworks.web.server.CompiledUrlTemplate;
 import org.sagebionetworks.web.server.UrlTemplateUtil;
 import org.sagebionetworks.web.shared.ColumnInfo.Type;
 import org.sagebionetworks.web.shared.HeaderData;
@@ -73,4 +75,30 @@ public class UrlTemplateUtilTest {
 		assertEquals("http://example.com/datasets/dsid1/samples?sample=sample1", urlResult);
 	}
 
+	@Test (expected=IllegalArgumentException.class)
+	public void testProcessUrlTempalteMissingVariable(){
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		HashMap<String, Object> row = new HashMap<String, Object>();
+		row.put(datasetId, "dsid0");
+		rows.add(row);
+		UrlTemplateUtil.processUrlTempalte(meta, rows);
+	}
+
+	@Test
+	public void testCompiledTemplateMatchesSpring(){
+		String[][] values = new String[][]{
+				{"syn123", "s-1.2_~"},
+				{"a b", "x/y?z"},
+				{"caf\u00e9", "100%"},
+		};
+		CompiledUrlTemplate template = new CompiledUrlTemplate(tempalte);
+		assertEquals(Arrays.asList(datasetId, sampleId), template.getVariableNames());
+		for(String[] value: values){
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put(datasetId, value[0]);
+			row.put(sampleId, value[1]);
+			assertEquals(UrlTemplateUtil.expandUrl(tempalte, row).toString(), template.expand(value));
+		}
+	}
+
 }
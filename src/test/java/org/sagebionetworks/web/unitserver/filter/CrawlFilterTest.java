@@ -0,0 +1,230 @@
+package org.sagebionetworks.web.unitserver.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.EntityId;
+import org.sagebionetworks.repo.model.EntityIdList;
+import org.sagebionetworks.repo.model.Project;
+import org.sagebionetworks.repo.model.search.Hit;
+import org.sagebionetworks.repo.model.search.SearchResults;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
+import org.sagebionetworks.web.server.servlet.filter.CrawlFilter;
+import org.sagebionetworks.web.shared.EntityBundleTransport;
+import org.sagebionetworks.web.shared.EntityWrapper;
+import org.sagebionetworks.web.shared.WikiPageKey;
+import org.sagebionetworks.web.shared.exceptions.NotFoundException;
+import org.sagebionetworks.web.shared.exceptions.UnknownErrorException;
+
+import com.google.common.base.Ticker;
+
+public class CrawlFilterTest {
+
+	public static final String ENTITY_ID = "syn123";
+
+	CrawlFilter filter;
+	SynapseClientImpl mockSynapseClient;
+	FilterConfig mockConfig;
+	FilterChain mockChain;
+	FakeTicker ticker;
+	EntityBundleTransport bundle;
+
+	/**
+	 * Lets the test move the snapshot cache clock.
+	 */
+	static class FakeTicker extends Ticker {
+		long nanos = 0;
+
+		@Override
+		public long read() {
+			return nanos;
+		}
+
+		public void advance(long time, TimeUnit unit) {
+			nanos += unit.toNanos(time);
+		}
+	}
+
+	@Before
+	public void before() throws Exception {
+		mockSynapseClient = mock(SynapseClientImpl.class);
+		mockConfig = mock(FilterConfig.class);
+		mockChain = mock(FilterChain.class);
+		// the web.xml settings
+		when(mockConfig.getInitParameter(CrawlFilter.SNAPSHOT_TTL_MINUTES_PARAM)).thenReturn("60");
+		when(mockConfig.getInitParameter(CrawlFilter.MAX_DESCENDANTS_PARAM)).thenReturn("1000");
+		when(mockConfig.getInitParameter(CrawlFilter.SEARCH_PAGE_SIZE_PARAM)).thenReturn("1");
+
+		Project project = new Project();
+		project.setId(ENTITY_ID);
+		project.setName("my project");
+		project.setCreatedBy("42");
+		project.setEntityType(Project.class.getName());
+		Annotations annotations = new Annotations();
+		annotations.setStringAnnotations(new HashMap<String, List<String>>());
+		annotations.setLongAnnotations(new HashMap<String, List<Long>>());
+		annotations.setDoubleAnnotations(new HashMap<String, List<Double>>());
+		annotations.getStringAnnotations().put("tissue", Collections.singletonList("brain"));
+		bundle = new EntityBundleTransport();
+		bundle.setEntityJson(EntityFactory.createJSONStringForEntity(project));
+		bundle.setAnnotationsJson(EntityFactory.createJSONStringForEntity(annotations));
+		when(mockSynapseClient.getEntityBundle(eq(ENTITY_ID), anyInt())).thenReturn(bundle);
+
+		EntityIdList children = new EntityIdList();
+		List<EntityId> ids = new ArrayList<EntityId>();
+		EntityId child = new EntityId();
+		child.setId("syn456");
+		ids.add(child);
+		children.setIdList(ids);
+		when(mockSynapseClient.getDescendants(eq(ENTITY_ID), anyInt(), anyString())).thenReturn(EntityFactory.createJSONStringForEntity(children));
+		when(mockSynapseClient.getV2WikiPageAsV1(any(WikiPageKey.class))).thenThrow(new NotFoundException());
+		when(mockSynapseClient.getUserProfile(anyString())).thenThrow(new NotFoundException());
+
+		ticker = new FakeTicker();
+		filter = new CrawlFilter();
+		filter.setSynapseClient(mockSynapseClient);
+		filter.setTicker(ticker);
+		filter.init(mockConfig);
+	}
+
+	@After
+	public void after() {
+		filter.destroy();
+	}
+
+	private String crawl(String fragment) throws Exception {
+		HttpServletRequest mockRequest = mock(HttpServletRequest.class);
+		when(mockRequest.getQueryString()).thenReturn(CrawlFilter.ESCAPED_FRAGMENT + fragment);
+		when(mockRequest.getRequestURI()).thenReturn("/");
+		when(mockRequest.getServerPort()).thenReturn(80);
+		when(mockRequest.getServerName()).thenReturn("www.synapse.org");
+		when(mockRequest.getScheme()).thenReturn("http");
+		HttpServletResponse mockResponse = mock(HttpServletResponse.class);
+		StringWriter written = new StringWriter();
+		when(mockResponse.getWriter()).thenReturn(new PrintWriter(written));
+		filter.doFilter(mockRequest, mockResponse, mockChain);
+		return written.toString();
+	}
+
+	private SearchResults createSearchResults(long found, long start, String... hitIds) {
+		SearchResults results = new SearchResults();
+		results.setFound(found);
+		results.setStart(start);
+		List<Hit> hits = new ArrayList<Hit>();
+		for (String hitId : hitIds) {
+			Hit hit = new Hit();
+			hit.setId(hitId);
+			hit.setName("name of " + hitId);
+			hits.add(hit);
+		}
+		results.setHits(hits);
+		return results;
+	}
+
+	private EntityWrapper createSearchResultsWrapper(SearchResults results) throws Exception {
+		return new EntityWrapper(EntityFactory.createJSONStringForEntity(results), SearchResults.class.getName());
+	}
+
+	@Test
+	public void testEntityPage() throws Exception {
+		String html = crawl("Synapse:" + ENTITY_ID);
+		assertTrue(html.contains("<h1>my project</h1>"));
+		assertTrue(html.contains("tissue: brain"));
+		// relative links are made absolute
+		assertTrue(html.contains("<a href=\"http://www.synapse.org:80/#!Synapse:syn456\">syn456</a>"));
+	}
+
+	@Test
+	public void testSnapshotCachedUntilExpired() throws Exception {
+		String html = crawl("Synapse:" + ENTITY_ID);
+		assertEquals(html, crawl("Synapse:" + ENTITY_ID));
+		// the second crawl was served from the cache
+		verify(mockSynapseClient, times(1)).getEntityBundle(eq(ENTITY_ID), anyInt());
+
+		ticker.advance(59, TimeUnit.MINUTES);
+		crawl("Synapse:" + ENTITY_ID);
+		verify(mockSynapseClient, times(1)).getEntityBundle(eq(ENTITY_ID), anyInt());
+
+		// rendered again once the snapshot expires
+		ticker.advance(2, TimeUnit.MINUTES);
+		assertEquals(html, crawl("Synapse:" + ENTITY_ID));
+		verify(mockSynapseClient, times(2)).getEntityBundle(eq(ENTITY_ID), anyInt());
+	}
+
+	@Test
+	public void testFailedRenderNotCached() throws Exception {
+		when(mockSynapseClient.getEntityBundle(eq(ENTITY_ID), anyInt())).thenThrow(new UnknownErrorException("down")).thenReturn(bundle);
+		assertEquals("", crawl("Synapse:" + ENTITY_ID));
+		// the failure was not cached, so the next crawl renders the page
+		assertTrue(crawl("Synapse:" + ENTITY_ID).contains("<h1>my project</h1>"));
+		verify(mockSynapseClient, times(2)).getEntityBundle(eq(ENTITY_ID), anyInt());
+	}
+
+	@Test
+	public void testDescendantsCapped() throws Exception {
+		crawl("Synapse:" + ENTITY_ID);
+		// only the first page of (at most maxDescendants) descendants is requested
+		verify(mockSynapseClient).getDescendants(eq(ENTITY_ID), eq(1000), (String) isNull());
+	}
+
+	@Test
+	public void testEntityPagePartialFailure() throws Exception {
+		// the wiki and the profile were not found (see before()), and the descendants fail
+		when(mockSynapseClient.getDescendants(eq(ENTITY_ID), anyInt(), anyString())).thenThrow(new UnknownErrorException("down"));
+		String html = crawl("Synapse:" + ENTITY_ID);
+		// the page is still rendered from the entity
+		assertTrue(html.contains("<h1>my project</h1>"));
+		assertTrue(html.contains("tissue: brain"));
+		assertFalse(html.contains("syn456"));
+		assertFalse(html.contains("Created By"));
+	}
+
+	@Test
+	public void testEntityNotFound() throws Exception {
+		when(mockSynapseClient.getEntityBundle(eq(ENTITY_ID), anyInt())).thenThrow(new NotFoundException());
+		assertEquals("", crawl("Synapse:" + ENTITY_ID));
+	}
+
+	@Test
+	public void testHomePagePartialFailure() throws Exception {
+		// one hit per page: the first page is fetched, then the other two concurrently, one of which fails
+		when(mockSynapseClient.search(anyString()))
+				.thenReturn(createSearchResultsWrapper(createSearchResults(3, 0, "syn1")))
+				.thenReturn(createSearchResultsWrapper(createSearchResults(3, 1, "syn2")))
+				.thenThrow(new UnknownErrorException("down"));
+		String html = crawl("Home:0");
+		verify(mockSynapseClient, times(3)).search(anyString());
+		// the links that were found are still there
+		assertTrue(html.contains("#!Synapse:syn1\""));
+		assertTrue(html.contains("#!Synapse:syn2\""));
+		assertTrue(html.contains("</body></html>"));
+	}
+}
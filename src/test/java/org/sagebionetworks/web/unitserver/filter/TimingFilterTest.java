@@ -0,0 +1,151 @@
+package org.sagebionetworks.web.unitserver.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.PortalMetrics;
+import org.sagebionetworks.web.server.servlet.filter.TimingFilter;
+
+public class TimingFilterTest {
+
+	public static final String PAYLOAD = "7|0|7|http://localhost/Portal/|4F6C9A3E|org.sagebionetworks.web.client.SynapseClient|getEntityBundle|java.lang.String/2004016611|I|syn123|1|2|3|4|2|5|6|7|63|";
+
+	TimingFilter filter;
+	PortalMetrics mockMetrics;
+	HttpServletRequest mockRequest;
+	HttpServletResponse mockResponse;
+	ByteArrayOutputStream written;
+
+	@Before
+	public void before() throws IOException {
+		mockMetrics = mock(PortalMetrics.class);
+		filter = new TimingFilter();
+		filter.setPortalMetrics(mockMetrics);
+		mockRequest = mock(HttpServletRequest.class);
+		when(mockRequest.getContextPath()).thenReturn("");
+		when(mockRequest.getRequestURI()).thenReturn("/Portal/synapse");
+		when(mockRequest.getMethod()).thenReturn("POST");
+		when(mockRequest.getContentLength()).thenReturn(PAYLOAD.length());
+		when(mockRequest.getHeader(TimingFilter.GWT_PERMUTATION_HEADER)).thenReturn("4F6C9A3E");
+		final ByteArrayInputStream body = new ByteArrayInputStream(PAYLOAD.getBytes("UTF-8"));
+		when(mockRequest.getInputStream()).thenReturn(new ServletInputStream() {
+			@Override
+			public int read() throws IOException {
+				return body.read();
+			}
+		});
+		mockResponse = mock(HttpServletResponse.class);
+		written = new ByteArrayOutputStream();
+		when(mockResponse.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				written.write(b);
+			}
+		});
+	}
+
+	private FilterChain respondWith(final String response) {
+		return new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response2) throws IOException, ServletException {
+				// the servlet still gets the whole body
+				ByteArrayOutputStream read = new ByteArrayOutputStream();
+				byte[] buffer = new byte[16];
+				int length;
+				while ((length = request.getInputStream().read(buffer, 0, buffer.length)) != -1) {
+					read.write(buffer, 0, length);
+				}
+				assertEquals(PAYLOAD, new String(read.toByteArray(), "UTF-8"));
+				response2.getOutputStream().write(response.getBytes("UTF-8"));
+			}
+		};
+	}
+
+	@Test
+	public void testGetRpcMethodName() {
+		assertEquals("getEntityBundle", TimingFilter.getRpcMethodName(PAYLOAD));
+	}
+
+	@Test
+	public void testGetRpcMethodNameWithRpcToken() {
+		assertEquals(TimingFilter.UNKNOWN_METHOD, TimingFilter.getRpcMethodName(PAYLOAD.replaceFirst("7\\|0\\|", "7|2|")));
+	}
+
+	@Test
+	public void testGetRpcMethodNameMalformed() {
+		assertEquals(TimingFilter.UNKNOWN_METHOD, TimingFilter.getRpcMethodName(""));
+		assertEquals(TimingFilter.UNKNOWN_METHOD, TimingFilter.getRpcMethodName("7|0|3|a|b"));
+	}
+
+	@Test
+	public void testIsRpcRequest() {
+		assertTrue(TimingFilter.isRpcRequest(mockRequest));
+		when(mockRequest.getMethod()).thenReturn("GET");
+		assertFalse(TimingFilter.isRpcRequest(mockRequest));
+	}
+
+	@Test
+	public void testRpcSuccess() throws Exception {
+		String response = "//OK[1,[\"syn123\"],0,7]";
+		filter.doFilter(mockRequest, mockResponse, respondWith(response));
+		assertEquals(response, written.toString("UTF-8"));
+		String name = "/Portal/synapse.getEntityBundle";
+		verify(mockMetrics).requestStarted(name);
+		verify(mockMetrics).requestFinished(eq(name), anyLong(), eq((long) PAYLOAD.length()), eq((long) response.length()), eq(false));
+	}
+
+	@Test
+	public void testRpcException() throws Exception {
+		String response = "//EX[2,1,[\"NotFoundException\",\"not found\"],0,7]";
+		filter.doFilter(mockRequest, mockResponse, respondWith(response));
+		verify(mockMetrics).requestFinished(eq("/Portal/synapse.getEntityBundle"), anyLong(), eq((long) PAYLOAD.length()), eq((long) response.length()), eq(true));
+	}
+
+	@Test
+	public void testErrorStatus() throws Exception {
+		when(mockRequest.getMethod()).thenReturn("GET");
+		when(mockRequest.getRequestURI()).thenReturn("/Portal/filehandle");
+		filter.doFilter(mockRequest, mockResponse, new FilterChain() {
+			@Override
+			public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+				((HttpServletResponse) response).sendError(404);
+			}
+		});
+		verify(mockMetrics).requestFinished(eq("/Portal/filehandle"), anyLong(), eq((long) PAYLOAD.length()), eq(0L), eq(true));
+	}
+
+	@Test (expected=ServletException.class)
+	public void testFailure() throws Exception {
+		try {
+			filter.doFilter(mockRequest, mockResponse, new FilterChain() {
+				@Override
+				public void doFilter(ServletRequest request, ServletResponse response) throws IOException, ServletException {
+					throw new ServletException("boom");
+				}
+			});
+		} finally {
+			verify(mockMetrics).requestFinished(eq("/Portal/synapse.getEntityBundle"), anyLong(), anyLong(), eq(0L), eq(true));
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.evaluation.model.Evaluation;
+import org.sagebionetworks.evaluation.model.Submission;
+import org.sagebionetworks.evaluation.model.UserEvaluationPermissions;
+import org.sagebionetworks.repo.model.PaginatedResults;
+import org.sagebionetworks.web.server.servlet.ChallengeAggregator.ClientFactory;
+import org.sagebionetworks.web.server.servlet.ChallengeAggregatorImpl;
+import org.sagebionetworks.web.server.servlet.FanOutExecutorImpl;
+
+public class ChallengeAggregatorImplTest {
+
+	FanOutExecutorImpl executor;
+	ChallengeAggregatorImpl aggregator;
+	SynapseClient mockSynapse;
+	AtomicInteger clientsCreated;
+	ClientFactory clients;
+
+	@Before
+	public void before() throws Exception {
+		executor = new FanOutExecutorImpl(4, 10, 5000);
+		aggregator = new ChallengeAggregatorImpl(executor, 100, 60);
+		mockSynapse = mock(SynapseClient.class);
+		clientsCreated = new AtomicInteger();
+		clients = new ClientFactory() {
+			@Override
+			public SynapseClient createClient() {
+				clientsCreated.incrementAndGet();
+				return mockSynapse;
+			}
+		};
+		when(mockSynapse.getCurrentSessionToken()).thenReturn("token");
+		PaginatedResults<Evaluation> evaluations = new PaginatedResults<Evaluation>();
+		evaluations.setResults(Arrays.asList(createEvaluation("eval1"), createEvaluation("eval2"), createEvaluation("eval3")));
+		evaluations.setTotalNumberOfResults(3);
+		when(mockSynapse.getAvailableEvaluationsPaginated(anyInt(), anyInt())).thenReturn(evaluations);
+		when(mockSynapse.getEvaluationByContentSource(anyString(), anyInt(), anyInt())).thenReturn(evaluations);
+		when(mockSynapse.getMySubmissions(anyString(), anyLong(), anyLong())).thenReturn(createSubmissions());
+	}
+
+	@After
+	public void after() {
+		executor.shutdown();
+	}
+
+	private static Evaluation createEvaluation(String id) {
+		Evaluation evaluation = new Evaluation();
+		evaluation.setId(id);
+		return evaluation;
+	}
+
+	private static Submission createSubmission(String alias, long createdOn) {
+		Submission submission = new Submission();
+		submission.setSubmitterAlias(alias);
+		submission.setCreatedOn(new Date(createdOn));
+		return submission;
+	}
+
+	private static PaginatedResults<Submission> createSubmissions(Submission... submissions) {
+		PaginatedResults<Submission> results = new PaginatedResults<Submission>();
+		results.setResults(new ArrayList<Submission>(Arrays.asList(submissions)));
+		results.setTotalNumberOfResults(submissions.length);
+		return results;
+	}
+
+	@Test
+	public void testHasSubmitted() throws Exception {
+		assertFalse(aggregator.hasSubmitted(clients));
+		// only the count is asked for
+		verify(mockSynapse).getMySubmissions("eval1", 0, 0);
+		// one client to list the evaluations, and one per evaluation
+		assertEquals(4, clientsCreated.get());
+		// a new client for the same user gets the cached answer
+		when(mockSynapse.getMySubmissions(eq("eval2"), anyLong(), anyLong())).thenReturn(createSubmissions(new Submission()));
+		assertFalse(aggregator.hasSubmitted(clients));
+		// until the user submits
+		aggregator.invalidate("token");
+		assertTrue(aggregator.hasSubmitted(clients));
+		verify(mockSynapse, times(2)).getAvailableEvaluationsPaginated(anyInt(), anyInt());
+	}
+
+	@Test
+	public void testHasSubmittedFailure() throws Exception {
+		SynapseException error = new SynapseException("bad");
+		when(mockSynapse.getMySubmissions(anyString(), anyLong(), anyLong())).thenThrow(error);
+		try {
+			aggregator.hasSubmitted(clients);
+			fail("Expected an ExecutionException");
+		} catch (ExecutionException e) {
+			assertEquals(error, e.getCause());
+		}
+		// failures are not cached
+		doReturn(createSubmissions(new Submission())).when(mockSynapse).getMySubmissions(anyString(), anyLong(), anyLong());
+		assertTrue(aggregator.hasSubmitted(clients));
+	}
+
+	@Test
+	public void testAnonymousNotCached() throws Exception {
+		when(mockSynapse.getCurrentSessionToken()).thenReturn(null);
+		aggregator.hasSubmitted(clients);
+		aggregator.hasSubmitted(clients);
+		verify(mockSynapse, times(2)).getAvailableEvaluationsPaginated(anyInt(), anyInt());
+		assertEquals(0, aggregator.getStats().requestCount());
+	}
+
+	@Test
+	public void testGetSubmitterAliases() throws Exception {
+		when(mockSynapse.getMySubmissions(eq("eval1"), anyLong(), anyLong())).thenReturn(
+				createSubmissions(createSubmission("a", 10), createSubmission("b", 50), createSubmission(null, 90)));
+		when(mockSynapse.getMySubmissions(eq("eval2"), anyLong(), anyLong())).thenReturn(
+				createSubmissions(createSubmission("c", 30), createSubmission("a", 60), createSubmission("", 80)));
+		when(mockSynapse.getMySubmissions(eq("eval3"), anyLong(), anyLong())).thenReturn(
+				createSubmissions(createSubmission("d", 20)));
+		// each alias by its latest use
+		assertEquals(Arrays.asList("a", "b", "c", "d"), aggregator.getSubmitterAliases(clients));
+		assertEquals(4, clientsCreated.get());
+	}
+
+	@Test
+	public void testSortByLastUsed() {
+		Map<String, Long> lastUsed = new HashMap<String, Long>();
+		for (int i = 0; i < 100; i++) {
+			lastUsed.put("alias" + i, (long) (i * 7919 % 100));
+		}
+		lastUsed.put("tied", 99L);
+		List<String> aliases = ChallengeAggregatorImpl.sortByLastUsed(lastUsed);
+		// every alias is kept
+		assertEquals(101, aliases.size());
+		assertEquals(Long.valueOf(99), lastUsed.get(aliases.get(0)));
+		assertEquals("tied", aliases.get(1));
+		assertEquals(Long.valueOf(98), lastUsed.get(aliases.get(2)));
+		assertEquals(Long.valueOf(0), lastUsed.get(aliases.get(100)));
+		assertTrue(ChallengeAggregatorImpl.sortByLastUsed(new HashMap<String, Long>()).isEmpty());
+	}
+
+	@Test
+	public void testGetSharableEvaluations() throws Exception {
+		UserEvaluationPermissions canShare = new UserEvaluationPermissions();
+		canShare.setCanChangePermissions(true);
+		UserEvaluationPermissions cannotShare = new UserEvaluationPermissions();
+		cannotShare.setCanChangePermissions(false);
+		when(mockSynapse.getUserEvaluationPermissions("eval1")).thenReturn(cannotShare);
+		when(mockSynapse.getUserEvaluationPermissions("eval2")).thenReturn(canShare);
+		when(mockSynapse.getUserEvaluationPermissions("eval3")).thenReturn(canShare);
+		List<Evaluation> sharable = aggregator.getSharableEvaluations(clients, "syn123");
+		assertEquals(4, clientsCreated.get());
+		assertEquals(2, sharable.size());
+		assertEquals("eval2", sharable.get(0).getId());
+		assertEquals("eval3", sharable.get(1).getId());
+		aggregator.getSharableEvaluations(clients, "syn123");
+		verify(mockSynapse, times(1)).getUserEvaluationPermissions("eval2");
+		assertEquals(1, aggregator.getStats().hitCount());
+	}
+}
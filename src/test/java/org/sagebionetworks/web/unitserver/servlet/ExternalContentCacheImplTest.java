@@ -0,0 +1,203 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.CacheValidators;
+import org.sagebionetworks.web.server.ConditionalContent;
+import org.sagebionetworks.web.server.servlet.CacheProvider;
+import org.sagebionetworks.web.server.servlet.ConditionalCacheProvider;
+import org.sagebionetworks.web.server.servlet.ExternalContentCacheImpl;
+
+public class ExternalContentCacheImplTest {
+
+	private static final long HOUR_MS = 60 * 60 * 1000L;
+
+	ExternalContentCacheImpl cache;
+
+	@Before
+	public void before() {
+		cache = new ExternalContentCacheImpl(2, 500, 60);
+	}
+
+	@After
+	public void after() {
+		cache.shutdown();
+	}
+
+	/**
+	 * Returns the values in order, failing on a null value.
+	 */
+	private static class TestProvider implements CacheProvider {
+		String id;
+		String[] values;
+		AtomicInteger calls = new AtomicInteger();
+
+		TestProvider(String id, String... values) {
+			this.id = id;
+			this.values = values;
+		}
+
+		@Override
+		public String getCacheProviderId() {
+			return id;
+		}
+
+		@Override
+		public String getValueToCache() {
+			String value = values[Math.min(calls.getAndIncrement(), values.length - 1)];
+			if (value == null)
+				throw new IllegalArgumentException("source is down");
+			return value;
+		}
+	}
+
+	@Test
+	public void testGetWaitsForFirstLoad() {
+		cache.register(new TestProvider("a", "first"), HOUR_MS);
+		assertTrue(cache.isRegistered("a"));
+		assertEquals("first", cache.get("a"));
+	}
+
+	@Test
+	public void testNotRegistered() {
+		assertFalse(cache.isRegistered("unknown"));
+		assertNull(cache.get("unknown"));
+	}
+
+	@Test
+	public void testStaleOnFailure() {
+		TestProvider provider = new TestProvider("a", "first", null);
+		cache.register(provider, HOUR_MS);
+		assertEquals("first", cache.get("a"));
+		cache.refreshAll();
+		assertEquals(2, provider.calls.get());
+		// keeps serving the last good copy
+		assertEquals("first", cache.get("a"));
+	}
+
+	@Test
+	public void testFailingProviderDoesNotStopOthers() {
+		cache.register(new TestProvider("down", (String) null), HOUR_MS);
+		cache.register(new TestProvider("up", "content"), HOUR_MS);
+		cache.refreshAll();
+		assertNull(cache.get("down"));
+		assertEquals("content", cache.get("up"));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		cache.register(new CacheProvider() {
+			@Override
+			public String getCacheProviderId() {
+				return "slow";
+			}
+			@Override
+			public String getValueToCache() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// cancelled
+				}
+				return "too late";
+			}
+		}, HOUR_MS);
+		long start = System.currentTimeMillis();
+		assertNull(cache.get("slow"));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		release.countDown();
+	}
+
+	@Test
+	public void testConditionalProvider() {
+		final AtomicInteger calls = new AtomicInteger();
+		cache.register(new ConditionalCacheProvider() {
+			@Override
+			public String getCacheProviderId() {
+				return "feed";
+			}
+			@Override
+			public String getValueToCache() {
+				throw new IllegalStateException("should use the conditional get");
+			}
+			@Override
+			public ConditionalContent getValueToCacheIfModified(CacheValidators validators) {
+				calls.incrementAndGet();
+				if ("\"v1\"".equals(validators.getEtag()))
+					return null;
+				return new ConditionalContent("feed v1", new CacheValidators("\"v1\"", null));
+			}
+		}, HOUR_MS);
+		assertEquals("feed v1", cache.get("feed"));
+		cache.refreshAll();
+		// not modified
+		assertEquals(2, calls.get());
+		assertEquals("feed v1", cache.get("feed"));
+	}
+
+	@Test
+	public void testValidatorsKeptWithTheirValue() {
+		final List<String> sentEtags = Collections.synchronizedList(new ArrayList<String>());
+		cache.register(new ConditionalCacheProvider() {
+			@Override
+			public String getCacheProviderId() {
+				return "feed";
+			}
+			@Override
+			public String getValueToCache() {
+				throw new IllegalStateException("should use the conditional get");
+			}
+			@Override
+			public ConditionalContent getValueToCacheIfModified(CacheValidators validators) {
+				sentEtags.add(validators.getEtag());
+				if (sentEtags.size() == 1)
+					return new ConditionalContent("feed v1", new CacheValidators("\"v1\"", null));
+				if (sentEtags.size() == 2) {
+					// v2 was fetched, but could not be parsed
+					throw new IllegalArgumentException("Could not parse the given feed");
+				}
+				if (sentEtags.size() == 3) {
+					// v2 arrives after the timeout
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException e) {
+						// cancelled
+					}
+					return new ConditionalContent("feed v2", new CacheValidators("\"v2\"", null));
+				}
+				return null;
+			}
+		}, HOUR_MS);
+		assertEquals("feed v1", cache.get("feed"));
+		cache.refreshAll();
+		cache.refreshAll();
+		cache.refreshAll();
+		// neither the failed nor the abandoned load replaced the validators of v1
+		assertEquals(Arrays.asList(null, "\"v1\"", "\"v1\"", "\"v1\""), sentEtags);
+		assertEquals("feed v1", cache.get("feed"));
+	}
+
+	@Test
+	public void testGetNextDelayMs() {
+		long max = TimeUnit.MINUTES.toMillis(60);
+		assertEquals(HOUR_MS, ExternalContentCacheImpl.getNextDelayMs(HOUR_MS, 0, max));
+		assertEquals(ExternalContentCacheImpl.INITIAL_BACKOFF_MS, ExternalContentCacheImpl.getNextDelayMs(HOUR_MS, 1, max));
+		assertEquals(2 * ExternalContentCacheImpl.INITIAL_BACKOFF_MS, ExternalContentCacheImpl.getNextDelayMs(HOUR_MS, 2, max));
+		assertEquals(4 * ExternalContentCacheImpl.INITIAL_BACKOFF_MS, ExternalContentCacheImpl.getNextDelayMs(HOUR_MS, 3, max));
+		assertEquals(max, ExternalContentCacheImpl.getNextDelayMs(HOUR_MS, 100, max));
+	}
+}
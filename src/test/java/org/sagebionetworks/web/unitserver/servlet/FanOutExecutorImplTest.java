@@ -0,0 +1,220 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.servlet.FanOutExecutorImpl;
+import org.sagebionetworks.web.server.servlet.FanOutResult;
+
+import com.google.common.base.Predicate;
+
+public class FanOutExecutorImplTest {
+
+	FanOutExecutorImpl executor;
+
+	@Before
+	public void before() {
+		executor = new FanOutExecutorImpl(4, 10, 5000);
+	}
+
+	@After
+	public void after() {
+		executor.shutdown();
+	}
+
+	private Callable<String> createCall(final String value) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return value;
+			}
+		};
+	}
+
+	@Test
+	public void testResultsInTaskOrder() {
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		for (int i = 0; i < 20; i++) {
+			calls.add(createCall("value" + i));
+		}
+		List<FanOutResult<String>> results = executor.invokeAll(calls);
+		assertEquals(20, results.size());
+		for (int i = 0; i < 20; i++) {
+			assertTrue(results.get(i).isSuccess());
+			assertEquals("value" + i, results.get(i).getValue());
+		}
+	}
+
+	@Test
+	public void testRunsConcurrently() {
+		// each call waits for the other, so this only completes if both run at the same time
+		final CountDownLatch latch = new CountDownLatch(2);
+		Callable<String> call = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				latch.countDown();
+				assertTrue(latch.await(2, TimeUnit.SECONDS));
+				return "done";
+			}
+		};
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		calls.add(call);
+		calls.add(call);
+		List<FanOutResult<String>> results = executor.invokeAll(calls);
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+	}
+
+	@Test
+	public void testPartialFailure() {
+		final IllegalStateException error = new IllegalStateException("bad");
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		calls.add(createCall("good"));
+		calls.add(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw error;
+			}
+		});
+		List<FanOutResult<String>> results = executor.invokeAll(calls);
+		assertTrue(results.get(0).isSuccess());
+		assertEquals("good", results.get(0).getValue());
+		assertFalse(results.get(1).isSuccess());
+		assertFalse(results.get(1).isTimedOut());
+		assertEquals(error, results.get(1).getError());
+	}
+
+	@Test
+	public void testDeadline() {
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		calls.add(createCall("fast"));
+		calls.add(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				Thread.sleep(10000);
+				return "slow";
+			}
+		});
+		List<FanOutResult<String>> results = executor.invokeAll(calls, 100, TimeUnit.MILLISECONDS);
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isTimedOut());
+		assertFalse(results.get(1).isSuccess());
+	}
+
+	@Test
+	public void testSaturatedPoolRunsOnCaller() {
+		// a single thread and a single queue slot, so most tasks must be run by the caller
+		FanOutExecutorImpl small = new FanOutExecutorImpl(1, 1, 5000);
+		try {
+			List<Callable<String>> calls = new ArrayList<Callable<String>>();
+			for (int i = 0; i < 10; i++) {
+				calls.add(createCall("value" + i));
+			}
+			List<FanOutResult<String>> results = small.invokeAll(calls);
+			for (int i = 0; i < 10; i++) {
+				assertEquals("value" + i, results.get(i).getValue());
+			}
+		} finally {
+			small.shutdown();
+		}
+	}
+
+	private static final Predicate<String> IS_HIT = new Predicate<String>() {
+		@Override
+		public boolean apply(String value) {
+			return value.startsWith("hit");
+		}
+	};
+
+	@Test
+	public void testInvokeFirstStopsAtHit() {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		calls.add(createCall("miss"));
+		calls.add(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+				}
+				return "hit slow";
+			}
+		});
+		calls.add(createCall("hit"));
+		long start = System.currentTimeMillis();
+		FanOutResult<String> result = executor.invokeFirst(calls, IS_HIT);
+		assertTrue(result.isSuccess());
+		assertEquals("hit", result.getValue());
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		// the slow call is no longer needed
+		try {
+			assertTrue(cancelled.await(2, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Test
+	public void testInvokeFirstNoHit() {
+		final IllegalStateException error = new IllegalStateException("bad");
+		List<Callable<String>> calls = new ArrayList<Callable<String>>();
+		calls.add(createCall("miss"));
+		assertTrue(executor.invokeFirst(calls, IS_HIT).isSuccess());
+		assertNull(executor.invokeFirst(calls, IS_HIT).getValue());
+		// a failure is reported when nothing else hit
+		calls.add(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				throw error;
+			}
+		});
+		assertEquals(error, executor.invokeFirst(calls, IS_HIT).getError());
+		// but a hit wins over a failure
+		calls.add(createCall("hit"));
+		assertEquals("hit", executor.invokeFirst(calls, IS_HIT).getValue());
+	}
+
+	@Test
+	public void testNestedFanOutRunsOnPoolThread() {
+		// a single thread, so a nested fan-out that waited on the pool would never finish
+		final FanOutExecutorImpl small = new FanOutExecutorImpl(1, 10, 5000);
+		try {
+			Callable<String> nested = new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					List<Callable<String>> calls = new ArrayList<Callable<String>>();
+					calls.add(createCall("a"));
+					calls.add(createCall("b"));
+					List<FanOutResult<String>> results = small.invokeAll(calls);
+					return results.get(0).getValue() + results.get(1).getValue();
+				}
+			};
+			List<Callable<String>> calls = new ArrayList<Callable<String>>();
+			calls.add(nested);
+			calls.add(nested);
+			List<FanOutResult<String>> results = small.invokeAll(calls);
+			assertEquals("ab", results.get(0).getValue());
+			assertEquals("ab", results.get(1).getValue());
+		} finally {
+			small.shutdown();
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		assertTrue(executor.invokeAll(new ArrayList<Callable<String>>()).isEmpty());
+	}
+}
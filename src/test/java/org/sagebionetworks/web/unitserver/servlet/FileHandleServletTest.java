@@ -22,6 +22,7 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.sagebionetworks.client.SynapseClient;
 import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.client.exceptions.SynapseNotFoundException;
 import org.sagebionetworks.repo.model.dao.WikiPageKey;
 import org.sagebionetworks.repo.model.file.FileHandleResults;
 import org.sagebionetworks.repo.model.ObjectType;
@@ -277,6 +278,39 @@ public class FileHandleServletTest {
 		verify(mockResponse).setDateHeader(eq(WebConstants.EXPIRES_KEY), eq(0L));
 	}
 
+	@Test
+	public void testResolvedUrlCachedPerUser() throws Exception {
+		setupFileEntity();
+		when(mockRequest.getParameter(WebConstants.FILE_HANDLE_PREVIEW_PARAM_KEY)).thenReturn("true");
+		when(mockTokenProvider.getSessionToken()).thenReturn("user1");
+		servlet.doGet(mockRequest, mockResponse);
+		servlet.doGet(mockRequest, mockResponse);
+		verify(mockSynapse, Mockito.times(1)).getFileEntityPreviewTemporaryUrlForVersion(anyString(), anyLong());
+		verify(mockResponse, Mockito.times(2)).sendRedirect("http://localhost/file.png");
+		
+		// another user resolves their own url
+		when(mockTokenProvider.getSessionToken()).thenReturn("user2");
+		servlet.doGet(mockRequest, mockResponse);
+		verify(mockSynapse, Mockito.times(2)).getFileEntityPreviewTemporaryUrlForVersion(anyString(), anyLong());
+	}
+	
+	@Test
+	public void testPreviewNotFound() throws Exception {
+		setupFileEntity();
+		when(mockRequest.getParameter(WebConstants.FILE_HANDLE_PREVIEW_PARAM_KEY)).thenReturn("true");
+		when(mockRequest.getRequestURL()).thenReturn(new StringBuffer("http://localhost/Portal/filehandle"));
+		when(mockRequest.getRequestURI()).thenReturn("/Portal/filehandle");
+		when(mockRequest.getContextPath()).thenReturn("");
+		when(mockSynapse.getFileEntityPreviewTemporaryUrlForVersion(anyString(), anyLong())).thenThrow(new SynapseNotFoundException());
+		servlet.doGet(mockRequest, mockResponse);
+		// placeholder right away (no blocking retry)
+		verify(mockResponse).sendRedirect("http://localhost/" + WebConstants.PREVIEW_UNAVAILABLE_PATH);
+		
+		// the failure was not cached
+		servlet.doGet(mockRequest, mockResponse);
+		verify(mockSynapse, Mockito.times(2)).getFileEntityPreviewTemporaryUrlForVersion(anyString(), anyLong());
+	}
+
 
 	
 }	
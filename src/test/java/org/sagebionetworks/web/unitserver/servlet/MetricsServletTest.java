@@ -0,0 +1,58 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.sagebionetworks.web.server.PortalMetrics;
+import org.sagebionetworks.web.server.servlet.MetricsServlet;
+
+public class MetricsServletTest {
+
+	private HttpServletRequest createRequest(String remoteAddr, String forwardedFor) {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRemoteAddr()).thenReturn(remoteAddr);
+		when(request.getHeader(MetricsServlet.HEADER_X_FORWARDED_FOR)).thenReturn(forwardedFor);
+		return request;
+	}
+
+	@Test
+	public void testIsInternalRequest() {
+		assertTrue(MetricsServlet.isInternalRequest(createRequest("127.0.0.1", null)));
+		assertTrue(MetricsServlet.isInternalRequest(createRequest("0:0:0:0:0:0:0:1", null)));
+		assertTrue(MetricsServlet.isInternalRequest(createRequest("10.1.2.3", null)));
+		assertTrue(MetricsServlet.isInternalRequest(createRequest("192.168.0.7", null)));
+	}
+
+	@Test
+	public void testIsInternalRequestPublicAddress() {
+		assertFalse(MetricsServlet.isInternalRequest(createRequest("54.12.1.9", null)));
+		assertFalse(MetricsServlet.isInternalRequest(createRequest(null, null)));
+	}
+
+	@Test
+	public void testIsInternalRequestForwarded() {
+		// the load balancer is on the private network, the caller is not
+		assertFalse(MetricsServlet.isInternalRequest(createRequest("10.1.2.3", "54.12.1.9")));
+	}
+
+	@Test
+	public void testForbidden() throws Exception {
+		PortalMetrics mockMetrics = mock(PortalMetrics.class);
+		MetricsServlet servlet = new MetricsServlet();
+		servlet.setPortalMetrics(mockMetrics);
+		HttpServletRequest request = createRequest("10.1.2.3", "54.12.1.9");
+		when(request.getMethod()).thenReturn("GET");
+		HttpServletResponse mockResponse = mock(HttpServletResponse.class);
+		servlet.service(request, mockResponse);
+		verify(mockResponse).sendError(HttpServletResponse.SC_FORBIDDEN);
+		verifyZeroInteractions(mockMetrics);
+	}
+}
@@ -0,0 +1,129 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.servlet.PresignedUrlCacheImpl;
+
+public class PresignedUrlCacheImplTest {
+
+	PresignedUrlCacheImpl cache;
+	AtomicInteger loadCount;
+
+	@Before
+	public void before() {
+		cache = new PresignedUrlCacheImpl(100, 60, 10);
+		loadCount = new AtomicInteger(0);
+	}
+
+	private Callable<URL> createLoader(final URL url) {
+		return new Callable<URL>() {
+			@Override
+			public URL call() throws Exception {
+				loadCount.incrementAndGet();
+				return url;
+			}
+		};
+	}
+
+	@Test
+	public void testHit() throws Exception {
+		URL url = new URL("http://localhost/file.png");
+		assertEquals(url, cache.get("key", createLoader(url)));
+		assertEquals(url, cache.get("key", createLoader(url)));
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testNullNotCached() throws Exception {
+		assertNull(cache.get("team", createLoader(null)));
+		// the icon may have failed to load, so it is asked for again
+		URL url = new URL("http://localhost/icon.png");
+		assertEquals(url, cache.get("team", createLoader(url)));
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void testConcurrentMissesLoadOnce() throws Exception {
+		final URL url = new URL("http://localhost/preview.png");
+		final Callable<URL> slowLoader = new Callable<URL>() {
+			@Override
+			public URL call() throws Exception {
+				loadCount.incrementAndGet();
+				Thread.sleep(200);
+				return url;
+			}
+		};
+		Thread[] threads = new Thread[5];
+		final AtomicInteger found = new AtomicInteger(0);
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (url.equals(cache.get("preview", slowLoader)))
+							found.incrementAndGet();
+					} catch (ExecutionException e) {
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(threads.length, found.get());
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testExpiringUrlNotCached() throws Exception {
+		// expires within the safety margin
+		long expires = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 5;
+		URL url = new URL("https://s3.amazonaws.com/bucket/file.png?Expires=" + expires + "&Signature=abc");
+		cache.get("key", createLoader(url));
+		cache.get("key", createLoader(url));
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void testLoaderFailure() throws Exception {
+		Callable<URL> loader = new Callable<URL>() {
+			@Override
+			public URL call() throws Exception {
+				loadCount.incrementAndGet();
+				throw new IllegalStateException("not found");
+			}
+		};
+		for (int i = 0; i < 2; i++) {
+			try {
+				cache.get("key", loader);
+				fail("Expected an ExecutionException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+		// failures are not cached
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void testGetExpiresOn() throws Exception {
+		assertNull(PresignedUrlCacheImpl.getExpiresOn(new URL("http://localhost/file.png")));
+		assertEquals(new Long(1400000000000L), PresignedUrlCacheImpl.getExpiresOn(new URL("https://s3.amazonaws.com/b/f?AWSAccessKeyId=x&Expires=1400000000&Signature=y")));
+		// 2014-05-13T16:53:20Z plus 30 seconds
+		assertEquals(new Long(1400000030000L), PresignedUrlCacheImpl.getExpiresOn(new URL("https://s3.amazonaws.com/b/f?X-Amz-Date=20140513T165320Z&X-Amz-Expires=30")));
+		assertNull(PresignedUrlCacheImpl.getExpiresOn(new URL("https://s3.amazonaws.com/b/f?Expires=soon")));
+	}
+}
@@ -0,0 +1,128 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Vector;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.web.server.HttpClientPool;
+import org.sagebionetworks.web.server.servlet.ProxyDownloaderImpl;
+
+public class ProxyDownloaderImplTest {
+
+	HttpClientPool mockPool;
+	HttpClient mockHttpClient;
+	HttpResponse mockUpstream;
+	HttpServletRequest mockRequest;
+	HttpServletResponse mockResponse;
+	ServletOutputStream mockOutputStream;
+	byte[] content;
+	URL url;
+
+	@Before
+	public void before() throws Exception {
+		mockPool = mock(HttpClientPool.class);
+		mockHttpClient = mock(HttpClient.class);
+		when(mockPool.getHttpClient()).thenReturn(mockHttpClient);
+		mockUpstream = mock(HttpResponse.class);
+		StatusLine mockStatusLine = mock(StatusLine.class);
+		when(mockStatusLine.getStatusCode()).thenReturn(206);
+		when(mockUpstream.getStatusLine()).thenReturn(mockStatusLine);
+		content = "partial content".getBytes("UTF-8");
+		when(mockUpstream.getEntity()).thenReturn(new ByteArrayEntity(content));
+		when(mockUpstream.getFirstHeader(anyString())).thenReturn(null);
+		when(mockUpstream.getFirstHeader("ETag")).thenReturn(new BasicHeader("ETag", "\"abc\""));
+		when(mockUpstream.getFirstHeader("Content-Range")).thenReturn(new BasicHeader("Content-Range", "bytes 0-14/100"));
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenReturn(mockUpstream);
+
+		mockRequest = mock(HttpServletRequest.class);
+		when(mockRequest.getHeaders(anyString())).thenReturn(Collections.enumeration(Collections.<String>emptyList()));
+		Vector<String> range = new Vector<String>();
+		range.add("bytes=0-14");
+		when(mockRequest.getHeaders("Range")).thenReturn(range.elements());
+		mockResponse = mock(HttpServletResponse.class);
+		mockOutputStream = mock(ServletOutputStream.class);
+		when(mockResponse.getOutputStream()).thenReturn(mockOutputStream);
+		url = new URL("http://s3.amazonaws.com/preview.png");
+	}
+
+	@Test
+	public void testProxyRange() throws Exception {
+		ProxyDownloaderImpl downloader = new ProxyDownloaderImpl(2, 1024, 0, 100, mockPool);
+		downloader.proxy(mockRequest, mockResponse, url);
+
+		ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+		verify(mockHttpClient).execute(captor.capture());
+		assertEquals("bytes=0-14", captor.getValue().getFirstHeader("Range").getValue());
+		verify(mockResponse).setStatus(206);
+		verify(mockResponse).setHeader("ETag", "\"abc\"");
+		verify(mockResponse).setHeader("Content-Range", "bytes 0-14/100");
+		verify(mockOutputStream).write(any(byte[].class), eq(0), eq(content.length));
+		assertEquals(content.length, downloader.getDownloadedBytes());
+		assertEquals(0, downloader.getActiveDownloads());
+	}
+
+	@Test
+	public void testTooManyDownloads() throws Exception {
+		ProxyDownloaderImpl downloader = new ProxyDownloaderImpl(0, 1024, 0, 10, mockPool);
+		downloader.proxy(mockRequest, mockResponse, url);
+		verify(mockResponse).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+		verify(mockHttpClient, never()).execute(any(HttpUriRequest.class));
+		assertEquals(1, downloader.getRejectedCount());
+	}
+
+	@Test
+	public void testClientGoneAbortsUpstream() throws Exception {
+		doThrow(new IOException("broken pipe")).when(mockOutputStream).write(any(byte[].class), anyInt(), anyInt());
+		ProxyDownloaderImpl downloader = new ProxyDownloaderImpl(1, 1024, 0, 10, mockPool);
+		try {
+			downloader.proxy(mockRequest, mockResponse, url);
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+		verify(mockHttpClient).execute(captor.capture());
+		assertTrue(((HttpGet) captor.getValue()).isAborted());
+		// the slot was released
+		assertEquals(0, downloader.getActiveDownloads());
+	}
+
+	@Test
+	public void testThrottle() throws Exception {
+		content = new byte[2000];
+		when(mockUpstream.getEntity()).thenReturn(new ByteArrayEntity(content));
+		// 2000 bytes at 10 KB/s should take around 200 ms
+		ProxyDownloaderImpl downloader = new ProxyDownloaderImpl(1, 500, 10000, 10, mockPool);
+		long start = System.currentTimeMillis();
+		downloader.proxy(mockRequest, mockResponse, url);
+		assertTrue(System.currentTimeMillis() - start >= 150);
+	}
+}
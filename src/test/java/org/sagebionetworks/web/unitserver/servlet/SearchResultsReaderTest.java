@@ -0,0 +1,147 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.web.server.servlet.SearchResultsReader;
+import org.sagebionetworks.web.shared.ColumnInfo;
+import org.sagebionetworks.web.shared.ColumnInfo.Type;
+import org.sagebionetworks.web.shared.ColumnarRows;
+import org.sagebionetworks.web.shared.HeaderData;
+import org.sagebionetworks.web.shared.ResultColumn;
+import org.sagebionetworks.web.shared.TableResults;
+import org.sagebionetworks.web.shared.UrlTemplate;
+
+public class SearchResultsReaderTest {
+
+	List<HeaderData> columns;
+
+	@Before
+	public void setup() {
+		columns = new ArrayList<HeaderData>();
+		columns.add(new ColumnInfo("id", Type.String.name(), "Id", "desc"));
+		columns.add(new ColumnInfo("count", Type.Long.name(), "Count", "desc"));
+		columns.add(new ColumnInfo("samples", Type.Integer.name(), "Samples", "desc"));
+		columns.add(new ColumnInfo("weight", Type.Double.name(), "Weight", "desc"));
+		columns.add(new ColumnInfo("public", Type.Boolean.name(), "Public", "desc"));
+		columns.add(new ColumnInfo("tags", Type.StringArray.name(), "Tags", "desc"));
+		columns.add(new UrlTemplate("/datasets/{id}", "link", Type.String.name(), "Link", "desc"));
+	}
+
+	private ColumnarRows read(String json, int expectedRows) throws Exception {
+		SearchResultsReader reader = new SearchResultsReader(columns, expectedRows);
+		reader.read(json.replace('\'', '"'));
+		reader.expandUrlTemplates();
+		return reader.getRows();
+	}
+
+	@Test
+	public void testTypedColumns() throws Exception {
+		SearchResultsReader reader = new SearchResultsReader(columns, 10);
+		String json = "{'totalNumberOfResults':42,'results':["
+				+ "{'id':'syn1','count':3000000000,'samples':12,'weight':7,'public':true,'tags':['a','b'],'notAColumn':{'x':[1,2]}},"
+				+ "{'id':'syn2','count':4,'samples':13,'weight':1.5,'public':false}"
+				+ "]}";
+		reader.read(new ByteArrayInputStream(json.replace('\'', '"').getBytes("UTF-8")));
+		assertEquals(42, reader.getTotalNumberOfResults());
+		assertEquals(2, reader.getRowCount());
+		ColumnarRows rows = reader.getRows();
+		assertEquals(2, rows.getRowCount());
+		assertArrayEquals(new String[] { "syn1", "syn2" }, rows.getColumn("id").getStrings());
+		assertArrayEquals(new long[] { 3000000000L, 4 }, rows.getColumn("count").getLongs());
+		assertEquals(13, rows.getColumn("samples").getInts()[1]);
+		assertEquals(7.0, rows.getColumn("weight").getDoubles()[0], 0.0);
+		assertEquals(1.5, rows.getColumn("weight").getDoubles()[1], 0.0);
+		assertTrue(rows.getColumn("public").getBooleans()[0]);
+		assertFalse(rows.getColumn("public").getBooleans()[1]);
+		assertArrayEquals(new String[] { "a", "b" }, (String[]) rows.getColumn("tags").get(0));
+		assertNull(rows.getColumn("tags").get(1));
+		// Filtered
+		assertNull(rows.getColumn("notAColumn"));
+	}
+
+	@Test
+	public void testConversion() throws Exception {
+		String json = "{'results':["
+				+ "{'count':'12','samples':3000000000,'weight':'2.5','public':'yes'},"
+				+ "{'count':1.5,'samples':'7','weight':null}"
+				+ "]}";
+		ColumnarRows rows = read(json, 2);
+		// Converted like TypeValidation
+		assertEquals(12L, rows.getColumn("count").get(0));
+		assertEquals(2.5, rows.getColumn("weight").get(0));
+		assertEquals(7, rows.getColumn("samples").get(1));
+		// Values that cannot be converted are dropped
+		assertNull(rows.getColumn("samples").get(0));
+		assertNull(rows.getColumn("public").get(0));
+		assertNull(rows.getColumn("count").get(1));
+		assertNull(rows.getColumn("weight").get(1));
+		assertNull(rows.getColumn("id").get(0));
+	}
+
+	@Test
+	public void testGrowBeyondExpectedRows() throws Exception {
+		StringBuilder json = new StringBuilder("{'results':[");
+		for (int i = 0; i < 25; i++) {
+			if (i > 0)
+				json.append(',');
+			json.append("{'count':").append(i).append('}');
+		}
+		json.append("]}");
+		ColumnarRows rows = read(json.toString(), 1);
+		assertEquals(25, rows.getRowCount());
+		ResultColumn count = rows.getColumn("count");
+		assertEquals(25, count.getLongs().length);
+		for (int i = 0; i < 25; i++) {
+			assertEquals((long) i, count.get(i));
+		}
+		// a page without a value in a primitive column
+		assertNotNull(rows.getColumn("weight").getIsNull());
+	}
+
+	@Test
+	public void testFillMissing() throws Exception {
+		SearchResultsReader reader = new SearchResultsReader(columns, 2);
+		reader.read("{'results':[{'id':'syn1'},{'id':'syn2','count':5}]}".replace('\'', '"'));
+		// This is a workaround for PLFM-77
+		reader.fillMissing("count", "9");
+		reader.fillMissing("parentId", "syn0");
+		ColumnarRows rows = reader.getRows();
+		assertEquals(9L, rows.getColumn("count").get(0));
+		assertEquals(5L, rows.getColumn("count").get(1));
+		assertArrayEquals(new String[] { "syn0", "syn0" }, rows.getColumn("parentId").getStrings());
+	}
+
+	@Test
+	public void testExpandUrlTemplates() throws Exception {
+		ColumnarRows rows = read("{'results':[{'id':'syn1'},{'id':'a b'},{}]}", 3);
+		ResultColumn link = rows.getColumn("link");
+		assertEquals("/datasets/syn1", link.get(0));
+		assertEquals("/datasets/a%20b", link.get(1));
+		assertEquals("/datasets/", link.get(2));
+	}
+
+	@Test
+	public void testTableResultsRows() throws Exception {
+		TableResults results = new TableResults();
+		results.setColumnarRows(read("{'results':[{'id':'syn1','count':3}]}", 1));
+		List<Map<String, Object>> rows = results.getRows();
+		assertEquals(1, rows.size());
+		assertEquals("syn1", rows.get(0).get("id"));
+		assertEquals(3L, rows.get(0).get("count"));
+		assertEquals("/datasets/syn1", rows.get(0).get("link"));
+		// cells without a value are left out
+		assertFalse(rows.get(0).containsKey("weight"));
+	}
+}
@@ -1,6 +1,8 @@
 package org.sagebionetworks.web.unitserver.servlet;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
@@ -18,6 +20,7 @@ import java.util.logging.Logger;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.table.query.model.QuerySpecification;
 import org.sagebionetworks.web.server.servlet.ServiceUrlProvider;
 import org.sagebionetworks.web.server.servlet.ServiceUtils;
 import org.sagebionetworks.web.server.servlet.TokenProvider;
@@ -143,6 +146,29 @@ public class ServiceUtilsTest {
 		assertEquals(queryDetails, ServiceUtils.extractQueryDetails(ServiceUtils.modifyQuery(query, queryDetails)));
 	}
 	
+	@Test
+	public void testParseQueryCached() throws Exception {
+		String query = "SELECT * FROM syn456 ORDER BY bar ASC";
+		long hits = ServiceUtils.getParsedQueryCacheStats().hitCount();
+		QuerySpecification spec = ServiceUtils.parseQuery(query);
+		assertSame(spec, ServiceUtils.parseQuery(query));
+		assertEquals(hits + 1, ServiceUtils.getParsedQueryCacheStats().hitCount());
+		//modifying does not change the cached query
+		ServiceUtils.modifyQuery(query, new QueryDetails(6L, 5L, "foo", SortDirection.DESC));
+		assertEquals(query, ServiceUtils.toSQL(ServiceUtils.parseQuery(query)));
+	}
+	
+	@Test (expected=BadRequestException.class)
+	public void testParseQueryMalformed() throws Exception {
+		ServiceUtils.parseQuery("SELECT * FROM");
+	}
+	
+	@Test
+	public void testCreateCacheKey() {
+		assertFalse(ServiceUtils.createCacheKey("a", null, "b").equals(ServiceUtils.createCacheKey("a", "b", null)));
+		assertEquals(ServiceUtils.createCacheKey("a", "b"), ServiceUtils.createCacheKey("a", "b"));
+	}
+	
 	/*
 	 * Private Methods
 	 */
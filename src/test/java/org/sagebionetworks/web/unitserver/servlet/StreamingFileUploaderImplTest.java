@@ -0,0 +1,201 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.repo.model.file.ChunkRequest;
+import org.sagebionetworks.repo.model.file.ChunkedFileToken;
+import org.sagebionetworks.repo.model.file.CompleteAllChunksRequest;
+import org.sagebionetworks.repo.model.file.CreateChunkedFileTokenRequest;
+import org.sagebionetworks.repo.model.file.FileHandle;
+import org.sagebionetworks.repo.model.file.S3FileHandle;
+import org.sagebionetworks.repo.model.file.State;
+import org.sagebionetworks.repo.model.file.UploadDaemonStatus;
+import org.sagebionetworks.web.server.HttpClientPool;
+import org.sagebionetworks.web.server.servlet.StreamingFileUploaderImpl;
+
+public class StreamingFileUploaderImplTest {
+
+	SynapseClient mockSynapse;
+	HttpClientPool mockPool;
+	HttpClient mockHttpClient;
+	StatusLine mockStatusLine;
+	S3FileHandle handle;
+	StreamingFileUploaderImpl uploader;
+
+	@Before
+	public void before() throws Exception {
+		mockSynapse = mock(SynapseClient.class);
+		mockPool = mock(HttpClientPool.class);
+		mockHttpClient = mock(HttpClient.class);
+		when(mockPool.getHttpClient()).thenReturn(mockHttpClient);
+		HttpResponse mockResponse = mock(HttpResponse.class);
+		mockStatusLine = mock(StatusLine.class);
+		when(mockStatusLine.getStatusCode()).thenReturn(200);
+		when(mockResponse.getStatusLine()).thenReturn(mockStatusLine);
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenReturn(mockResponse);
+
+		when(mockSynapse.createChunkedFileUploadToken(any(CreateChunkedFileTokenRequest.class))).thenReturn(new ChunkedFileToken());
+		when(mockSynapse.createChunkedPresignedUrl(any(ChunkRequest.class))).thenReturn(new URL("http://s3.amazonaws.com/chunk"));
+		UploadDaemonStatus processing = new UploadDaemonStatus();
+		processing.setDaemonId("99");
+		processing.setState(State.PROCESSING);
+		UploadDaemonStatus completed = new UploadDaemonStatus();
+		completed.setDaemonId("99");
+		completed.setState(State.COMPLETED);
+		completed.setFileHandleId("123");
+		when(mockSynapse.startUploadDeamon(any(CompleteAllChunksRequest.class))).thenReturn(processing);
+		when(mockSynapse.getCompleteUploadDaemonStatus(anyString())).thenReturn(completed);
+		handle = new S3FileHandle();
+		handle.setId("123");
+		when(mockSynapse.getRawFileHandle("123")).thenReturn(handle);
+
+		uploader = new StreamingFileUploaderImpl(StreamingFileUploaderImpl.MINIMUM_CHUNK_BYTES, 1, 100, 10000, mockPool);
+		uploader.setChunkRetryDelayMs(1);
+	}
+
+	@Test
+	public void testSingleChunkSniffsContentType() throws Exception {
+		byte[] content = "<html><body>hello</body></html>".getBytes("UTF-8");
+		FileHandle result = uploader.uploadFile(mockSynapse, "page", "application/octet-stream", new ByteArrayInputStream(content));
+		assertEquals(handle, result);
+
+		ArgumentCaptor<CreateChunkedFileTokenRequest> tokenCaptor = ArgumentCaptor.forClass(CreateChunkedFileTokenRequest.class);
+		verify(mockSynapse).createChunkedFileUploadToken(tokenCaptor.capture());
+		assertEquals("text/html", tokenCaptor.getValue().getContentType());
+		// whole file was in hand, so the md5 is known
+		assertNotNull(tokenCaptor.getValue().getContentMD5());
+		verify(mockHttpClient).execute(any(HttpUriRequest.class));
+
+		ArgumentCaptor<CompleteAllChunksRequest> completeCaptor = ArgumentCaptor.forClass(CompleteAllChunksRequest.class);
+		verify(mockSynapse).startUploadDeamon(completeCaptor.capture());
+		assertEquals(Arrays.asList(1L), completeCaptor.getValue().getChunkNumbers());
+		assertEquals(DigestUtils.md5Hex(content), completeCaptor.getValue().getChunkedFileToken().getContentMD5());
+		assertEquals(1, uploader.getUploadCount());
+		assertEquals(content.length, uploader.getUploadedBytes());
+	}
+
+	@Test
+	public void testMultipleChunks() throws Exception {
+		byte[] content = new byte[StreamingFileUploaderImpl.MINIMUM_CHUNK_BYTES * 2 + 10];
+		new Random(7).nextBytes(content);
+		uploader.uploadFile(mockSynapse, "data.bin", "image/png", new ByteArrayInputStream(content));
+
+		ArgumentCaptor<CreateChunkedFileTokenRequest> tokenCaptor = ArgumentCaptor.forClass(CreateChunkedFileTokenRequest.class);
+		verify(mockSynapse).createChunkedFileUploadToken(tokenCaptor.capture());
+		// declared content type is kept
+		assertEquals("image/png", tokenCaptor.getValue().getContentType());
+		assertNull(tokenCaptor.getValue().getContentMD5());
+		verify(mockHttpClient, times(3)).execute(any(HttpUriRequest.class));
+
+		ArgumentCaptor<CompleteAllChunksRequest> completeCaptor = ArgumentCaptor.forClass(CompleteAllChunksRequest.class);
+		verify(mockSynapse).startUploadDeamon(completeCaptor.capture());
+		assertEquals(Arrays.asList(1L, 2L, 3L), completeCaptor.getValue().getChunkNumbers());
+		// the md5 of the whole file is computed as the chunks are read, and sent when completing the upload
+		assertEquals(DigestUtils.md5Hex(content), completeCaptor.getValue().getChunkedFileToken().getContentMD5());
+		assertEquals(content.length, uploader.getUploadedBytes());
+	}
+
+	@Test
+	public void testExactChunkMultiple() throws Exception {
+		byte[] content = new byte[StreamingFileUploaderImpl.MINIMUM_CHUNK_BYTES];
+		uploader.uploadFile(mockSynapse, "data.bin", "image/png", new ByteArrayInputStream(content));
+		// no trailing empty chunk
+		verify(mockHttpClient, times(1)).execute(any(HttpUriRequest.class));
+		ArgumentCaptor<CompleteAllChunksRequest> completeCaptor = ArgumentCaptor.forClass(CompleteAllChunksRequest.class);
+		verify(mockSynapse).startUploadDeamon(completeCaptor.capture());
+		assertEquals(DigestUtils.md5Hex(content), completeCaptor.getValue().getChunkedFileToken().getContentMD5());
+	}
+
+	@Test
+	public void testChunkFailure() throws Exception {
+		when(mockStatusLine.getStatusCode()).thenReturn(403);
+		try {
+			uploader.uploadFile(mockSynapse, "file.txt", "text/plain", new ByteArrayInputStream(new byte[10]));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		// a rejected chunk is not retried
+		verify(mockHttpClient, times(1)).execute(any(HttpUriRequest.class));
+		assertEquals(0, uploader.getUploadCount());
+		assertEquals(1, uploader.getFailureCount());
+		// the only permit was released
+		when(mockStatusLine.getStatusCode()).thenReturn(200);
+		uploader.uploadFile(mockSynapse, "file.txt", "text/plain", new ByteArrayInputStream(new byte[10]));
+	}
+
+	@Test
+	public void testChunkRetry() throws Exception {
+		HttpResponse mockResponse = mock(HttpResponse.class);
+		when(mockResponse.getStatusLine()).thenReturn(mockStatusLine);
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenThrow(new IOException("connection reset")).thenReturn(mockResponse);
+		uploader.uploadFile(mockSynapse, "file.txt", "text/plain", new ByteArrayInputStream(new byte[10]));
+		// a fresh pre-signed url for the second attempt
+		verify(mockHttpClient, times(2)).execute(any(HttpUriRequest.class));
+		verify(mockSynapse, times(2)).createChunkedPresignedUrl(any(ChunkRequest.class));
+		assertEquals(1, uploader.getUploadCount());
+	}
+
+	@Test
+	public void testChunkRetryGivesUp() throws Exception {
+		when(mockStatusLine.getStatusCode()).thenReturn(503);
+		try {
+			uploader.uploadFile(mockSynapse, "file.txt", "text/plain", new ByteArrayInputStream(new byte[10]));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		verify(mockHttpClient, times(StreamingFileUploaderImpl.MAX_CHUNK_ATTEMPTS)).execute(any(HttpUriRequest.class));
+		verify(mockSynapse, never()).startUploadDeamon(any(CompleteAllChunksRequest.class));
+		assertEquals(1, uploader.getFailureCount());
+	}
+
+	@Test
+	public void testChunkRetryWaitLimited() throws Exception {
+		when(mockStatusLine.getStatusCode()).thenReturn(503);
+		// room for the first retry (10 ms), but not the second (20 ms more)
+		uploader.setChunkRetryDelayMs(10);
+		uploader.setMaxRetryWaitMs(25);
+		try {
+			uploader.uploadFile(mockSynapse, "file.txt", "text/plain", new ByteArrayInputStream(new byte[10]));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		verify(mockHttpClient, times(2)).execute(any(HttpUriRequest.class));
+		assertEquals(1, uploader.getFailureCount());
+	}
+
+	@Test
+	public void testResolveContentType() throws Exception {
+		byte[] png = new byte[] { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+		assertEquals("image/png", StreamingFileUploaderImpl.resolveContentType(null, png, png.length));
+		assertEquals("text/csv", StreamingFileUploaderImpl.resolveContentType("text/csv", png, png.length));
+		assertEquals("application/octet-stream", StreamingFileUploaderImpl.resolveContentType("APPLICATION/OCTET-STREAM", new byte[4], 4));
+	}
+}
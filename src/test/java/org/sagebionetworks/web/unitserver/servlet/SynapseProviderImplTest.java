@@ -0,0 +1,287 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseNotFoundException;
+import org.sagebionetworks.repo.model.Entity;
+import org.sagebionetworks.repo.model.UserSessionData;
+import org.sagebionetworks.repo.model.auth.Session;
+import org.sagebionetworks.web.server.PortalMetricsImpl;
+import org.sagebionetworks.web.server.servlet.SynapseProviderImpl;
+
+public class SynapseProviderImplTest {
+
+	List<SynapseClient> created;
+	SynapseProviderImpl provider;
+
+	@Before
+	public void before() {
+		// fan-out threads create their own clients
+		created = Collections.synchronizedList(new ArrayList<SynapseClient>());
+		provider = new SynapseProviderImpl() {
+			@Override
+			protected SynapseClient createClient() {
+				SynapseClient client = createMockClient();
+				created.add(client);
+				return client;
+			}
+		};
+	}
+
+	/**
+	 * A mock that keeps the session token it is given.
+	 */
+	private SynapseClient createMockClient() {
+		final SynapseClient client = mock(SynapseClient.class);
+		final String[] token = new String[1];
+		doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				token[0] = (String) invocation.getArguments()[0];
+				return null;
+			}
+		}).when(client).setSessionToken(anyString());
+		try {
+			when(client.getCurrentSessionToken()).thenAnswer(new Answer<String>() {
+				@Override
+				public String answer(InvocationOnMock invocation) throws Throwable {
+					return token[0];
+				}
+			});
+			when(client.getUserSessionData()).thenAnswer(new Answer<UserSessionData>() {
+				@Override
+				public UserSessionData answer(InvocationOnMock invocation) throws Throwable {
+					Session session = new Session();
+					session.setSessionToken(token[0]);
+					UserSessionData data = new UserSessionData();
+					data.setSession(session);
+					return data;
+				}
+			});
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return client;
+	}
+
+	private SynapseClient createClient(String sessionToken, String repoEndpoint) {
+		SynapseClient client = provider.createNewClient();
+		client.setSessionToken(sessionToken);
+		client.setRepositoryEndpoint(repoEndpoint);
+		client.appendUserAgent("portal");
+		return client;
+	}
+
+	private String getBoundToken(SynapseClient client) throws Exception {
+		return client.getUserSessionData().getSession().getSessionToken();
+	}
+
+	@Test
+	public void testReusedOnThread() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			SynapseClient client = createClient("token" + i, "http://repo");
+			assertEquals("token" + i, getBoundToken(client));
+		}
+		assertEquals(1, provider.getClientsCreated());
+		// configured once
+		verify(created.get(0), times(1)).setRepositoryEndpoint("http://repo");
+		verify(created.get(0), times(1)).appendUserAgent("portal");
+	}
+
+	@Test
+	public void testInterleavedHandles() throws Exception {
+		SynapseClient alice = createClient("alice", "http://repo");
+		SynapseClient anonymous = createClient(null, "http://repo");
+		SynapseClient other = createClient("bob", "http://other");
+		assertEquals("alice", getBoundToken(alice));
+		assertNull(getBoundToken(anonymous));
+		assertEquals("alice", getBoundToken(alice));
+		assertEquals("bob", getBoundToken(other));
+		assertEquals("alice", alice.getCurrentSessionToken());
+		// one client per configuration
+		assertEquals(2, provider.getClientsCreated());
+	}
+
+	@Test
+	public void testFanOutThreads() throws Exception {
+		final SynapseClient client = createClient("alice", "http://repo");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Callable<String>> calls = new ArrayList<Callable<String>>();
+			for (int i = 0; i < 4; i++) {
+				calls.add(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return getBoundToken(client);
+					}
+				});
+			}
+			for (Future<String> token : executor.invokeAll(calls)) {
+				assertEquals("alice", token.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLoginToken() throws Exception {
+		final SynapseClient client = createClient(null, "http://repo");
+		client.getUserSessionData();
+		final SynapseClient threadClient = created.get(0);
+		when(threadClient.login("user", "password")).thenAnswer(new Answer<Session>() {
+			@Override
+			public Session answer(InvocationOnMock invocation) throws Throwable {
+				threadClient.setSessionToken("new");
+				return new Session();
+			}
+		});
+		client.login("user", "password");
+		// the handle keeps the token the login set
+		assertEquals("new", client.getCurrentSessionToken());
+		assertEquals("new", getBoundToken(client));
+	}
+
+	@Test
+	public void testRequestSetterNotRecorded() throws Exception {
+		SynapseClient alice = createClient("alice", "http://repo");
+		alice.setNotificationEmail("alice@example.com");
+		// the next borrower gets the same client, with its own token
+		SynapseClient bob = createClient("bob", "http://repo");
+		assertEquals("bob", getBoundToken(bob));
+		assertEquals(1, provider.getClientsCreated());
+		// made once, as a repository call, and not replayed as configuration
+		verify(created.get(0), times(1)).setNotificationEmail("alice@example.com");
+	}
+
+	/**
+	 * Make the given number of calls at once: each holds its client until all
+	 * of them have one.
+	 */
+	private void callAtOnce(final SynapseClient client, int count, final CyclicBarrier[] barrier) throws Exception {
+		barrier[0] = new CyclicBarrier(count);
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		try {
+			List<Callable<Entity>> calls = new ArrayList<Callable<Entity>>();
+			for (int i = 0; i < count; i++) {
+				calls.add(new Callable<Entity>() {
+					@Override
+					public Entity call() throws Exception {
+						return client.getEntityById("syn1");
+					}
+				});
+			}
+			for (Future<Entity> call : executor.invokeAll(calls)) {
+				call.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testIdleClientsBounded() throws Exception {
+		final CyclicBarrier[] barrier = new CyclicBarrier[1];
+		provider = new SynapseProviderImpl() {
+			@Override
+			protected SynapseClient createClient() {
+				SynapseClient client = createMockClient();
+				try {
+					when(client.getEntityById("syn1")).thenAnswer(new Answer<Entity>() {
+						@Override
+						public Entity answer(InvocationOnMock invocation) throws Throwable {
+							barrier[0].await(10, TimeUnit.SECONDS);
+							return null;
+						}
+					});
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				return client;
+			}
+		};
+		SynapseClient client = createClient("alice", "http://repo");
+		int concurrent = SynapseProviderImpl.MAX_IDLE_CLIENTS + 8;
+		callAtOnce(client, concurrent, barrier);
+		assertEquals(concurrent, provider.getClientsCreated());
+		// only MAX_IDLE_CLIENTS were kept
+		callAtOnce(client, SynapseProviderImpl.MAX_IDLE_CLIENTS + 1, barrier);
+		assertEquals(concurrent + 1, provider.getClientsCreated());
+	}
+
+	@Test
+	public void testShutdown() throws Exception {
+		SynapseClient client = createClient("alice", "http://repo");
+		getBoundToken(client);
+		assertEquals(1, provider.getClientsCreated());
+		provider.shutdown();
+		// still works, but nothing is kept
+		assertEquals("alice", getBoundToken(client));
+		assertEquals("alice", getBoundToken(client));
+		assertEquals(3, provider.getClientsCreated());
+	}
+
+	@Test
+	public void testCallsTimed() throws Exception {
+		PortalMetricsImpl metrics = new PortalMetricsImpl();
+		provider.setPortalMetrics(metrics);
+		SynapseClient client = createClient("alice", "http://repo");
+		client.getUserSessionData();
+		SynapseClient threadClient = created.get(0);
+		when(threadClient.getEntityById("syn1")).thenThrow(new SynapseNotFoundException());
+		try {
+			client.getEntityById("syn1");
+			fail("expected the client's exception");
+		} catch (SynapseNotFoundException e) {
+			// expected
+		}
+		client.getRepoEndpoint();
+
+		JSONObject calls = metrics.toJSON().getJSONObject("synapseCalls");
+		// configuration and endpoint getters are not repository calls
+		assertEquals(2, calls.length());
+		assertEquals(1, calls.getJSONObject("getUserSessionData").getInt("count"));
+		assertEquals(0, calls.getJSONObject("getUserSessionData").getInt("errors"));
+		assertEquals(1, calls.getJSONObject("getEntityById").getInt("errors"));
+	}
+
+	@Test
+	public void testNoReuse() throws Exception {
+		provider = new SynapseProviderImpl(false, false) {
+			@Override
+			protected SynapseClient createClient() {
+				SynapseClient client = createMockClient();
+				created.add(client);
+				return client;
+			}
+		};
+		SynapseClient client = createClient("alice", "http://repo");
+		assertEquals(created.get(0), client);
+		createClient("alice", "http://repo");
+		assertEquals(2, provider.getClientsCreated());
+	}
+}
@@ -0,0 +1,136 @@
+package org.sagebionetworks.web.unitserver.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.repo.model.ObjectType;
+import org.sagebionetworks.repo.model.dao.WikiPageKeyHelper;
+import org.sagebionetworks.web.server.servlet.MarkdownCacheRequest;
+import org.sagebionetworks.web.server.servlet.WikiPageCacheImpl;
+
+public class WikiPageCacheImplTest {
+
+	WikiPageCacheImpl cache;
+	AtomicInteger loadCount;
+
+	@Before
+	public void before() {
+		// a single segment, so the whole 10k is available to every entry
+		cache = new WikiPageCacheImpl(10000, 60, 1, 1);
+		loadCount = new AtomicInteger(0);
+	}
+
+	@After
+	public void after() {
+		cache.shutdown();
+	}
+
+	private MarkdownCacheRequest createRequest(String wikiId, String etag) {
+		return new MarkdownCacheRequest(WikiPageKeyHelper.createWikiPageKey("syn123", ObjectType.ENTITY, wikiId), etag, null);
+	}
+
+	private Callable<String> createLoader(final String value) {
+		return new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				loadCount.incrementAndGet();
+				return value;
+			}
+		};
+	}
+
+	private String createValue(int length) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			sb.append('x');
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testHitAndMiss() throws Exception {
+		assertEquals("page", cache.get(createRequest("1", "a"), createLoader("page")));
+		assertEquals("page", cache.get(createRequest("1", "a"), createLoader("page")));
+		assertEquals(1, loadCount.get());
+		assertEquals(1, cache.getStats().hitCount());
+		assertEquals(1, cache.getStats().missCount());
+		//a new etag is a different entry
+		assertEquals("page2", cache.get(createRequest("1", "b"), createLoader("page2")));
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	public void testEvictsByWeight() throws Exception {
+		// each entry weighs about 4k, so only two of them fit in 10k
+		String value = createValue(2000);
+		cache.get(createRequest("1", "a"), createLoader(value));
+		cache.get(createRequest("2", "a"), createLoader(value));
+		cache.get(createRequest("3", "a"), createLoader(value));
+		// the least recently used entry was evicted, the other two are kept
+		assertEquals(1, cache.getStats().evictionCount());
+		assertEquals(2 * WikiPageCacheImpl.getWeight(value), cache.getWeightInBytes());
+		assertEquals(3, loadCount.get());
+		cache.get(createRequest("3", "a"), createLoader(value));
+		cache.get(createRequest("2", "a"), createLoader(value));
+		assertEquals(3, loadCount.get());
+	}
+
+	@Test
+	public void testPut() throws Exception {
+		cache.put(createRequest("1", "a"), "page");
+		assertEquals("page", cache.get(createRequest("1", "a"), createLoader("other")));
+		assertEquals(0, loadCount.get());
+		assertEquals(WikiPageCacheImpl.getWeight("page"), cache.getWeightInBytes());
+	}
+
+	@Test
+	public void testRefreshAsync() throws Exception {
+		final CountDownLatch loaded = new CountDownLatch(1);
+		cache.refreshAsync(createRequest("1", "a"), new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				loadCount.incrementAndGet();
+				loaded.countDown();
+				return "page";
+			}
+		});
+		assertTrue(loaded.await(5, TimeUnit.SECONDS));
+		// wait for the entry to land
+		for (int i = 0; i < 50 && cache.getStats().loadSuccessCount() == 0; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals("page", cache.get(createRequest("1", "a"), createLoader("other")));
+		assertEquals(1, loadCount.get());
+		//already cached, so this should not load again
+		cache.refreshAsync(createRequest("1", "a"), createLoader("other"));
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	public void testLoadFailure() throws Exception {
+		final Exception error = new Exception("not found");
+		try {
+			cache.get(createRequest("1", "a"), new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw error;
+				}
+			});
+			fail("expected the load failure");
+		} catch (ExecutionException e) {
+			assertEquals(error, e.getCause());
+		}
+		//failures are not cached
+		assertEquals("page", cache.get(createRequest("1", "a"), createLoader("page")));
+	}
+}
@@ -0,0 +1,183 @@
+package org.sagebionetworks.web.util;
+
+/**
+ * Latency, error rate and data volumes of a {@link SimulatedSynapseProvider}.
+ *
+ * The defaults describe a small, fast and reliable repository; benchmarks
+ * turn the knobs they care about.
+ *
+ */
+public class SimulatedSynapseConfig {
+
+	private long seed = 12345L;
+	private long latencyMs = 0;
+	private long latencyJitterMs = 0;
+	private double errorRate = 0.0;
+	private int numberOfEntities = 100;
+	private int numberOfUsers = 50;
+	private int numberOfTeams = 10;
+	private int membersPerTeam = 20;
+	private int wikiPagesPerOwner = 10;
+	private int wikiFanOut = 3;
+	private int wikiWords = 200;
+	private int tableColumns = 10;
+	private int tableRows = 1000;
+	private int provenanceDepth = 5;
+	private int searchRows = 500;
+
+	/**
+	 * Seeds the structure of the generated data, the latency jitter and which
+	 * calls fail.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Fixed delay added to every repository call.
+	 */
+	public long getLatencyMs() {
+		return latencyMs;
+	}
+
+	public void setLatencyMs(long latencyMs) {
+		this.latencyMs = latencyMs;
+	}
+
+	/**
+	 * Up to this much extra delay is added to each call. The jitter of a call
+	 * depends only on the method and its arguments.
+	 */
+	public long getLatencyJitterMs() {
+		return latencyJitterMs;
+	}
+
+	public void setLatencyJitterMs(long latencyJitterMs) {
+		this.latencyJitterMs = latencyJitterMs;
+	}
+
+	/**
+	 * Fraction (0 to 1) of calls that fail with a SynapseException. Each
+	 * invocation of a call (method and arguments) is drawn separately, so
+	 * retries and repeated calls also fail at this rate. With the same seed,
+	 * the nth invocation of a call always has the same outcome.
+	 */
+	public double getErrorRate() {
+		return errorRate;
+	}
+
+	public void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	public int getNumberOfEntities() {
+		return numberOfEntities;
+	}
+
+	public void setNumberOfEntities(int numberOfEntities) {
+		this.numberOfEntities = numberOfEntities;
+	}
+
+	public int getNumberOfUsers() {
+		return numberOfUsers;
+	}
+
+	public void setNumberOfUsers(int numberOfUsers) {
+		this.numberOfUsers = numberOfUsers;
+	}
+
+	public int getNumberOfTeams() {
+		return numberOfTeams;
+	}
+
+	public void setNumberOfTeams(int numberOfTeams) {
+		this.numberOfTeams = numberOfTeams;
+	}
+
+	public int getMembersPerTeam() {
+		return membersPerTeam;
+	}
+
+	public void setMembersPerTeam(int membersPerTeam) {
+		this.membersPerTeam = membersPerTeam;
+	}
+
+	/**
+	 * Size of the wiki tree of each entity.
+	 */
+	public int getWikiPagesPerOwner() {
+		return wikiPagesPerOwner;
+	}
+
+	public void setWikiPagesPerOwner(int wikiPagesPerOwner) {
+		this.wikiPagesPerOwner = wikiPagesPerOwner;
+	}
+
+	/**
+	 * Number of sub-pages under each wiki page.
+	 */
+	public int getWikiFanOut() {
+		return wikiFanOut;
+	}
+
+	public void setWikiFanOut(int wikiFanOut) {
+		this.wikiFanOut = wikiFanOut;
+	}
+
+	/**
+	 * Length of the markdown of each wiki page.
+	 */
+	public int getWikiWords() {
+		return wikiWords;
+	}
+
+	public void setWikiWords(int wikiWords) {
+		this.wikiWords = wikiWords;
+	}
+
+	public int getTableColumns() {
+		return tableColumns;
+	}
+
+	public void setTableColumns(int tableColumns) {
+		this.tableColumns = tableColumns;
+	}
+
+	/**
+	 * Rows of the (single) table every table query runs against.
+	 */
+	public int getTableRows() {
+		return tableRows;
+	}
+
+	public void setTableRows(int tableRows) {
+		this.tableRows = tableRows;
+	}
+
+	/**
+	 * Length of each chain of entities generated by an activity that used the
+	 * next entity.
+	 */
+	public int getProvenanceDepth() {
+		return provenanceDepth;
+	}
+
+	public void setProvenanceDepth(int provenanceDepth) {
+		this.provenanceDepth = provenanceDepth;
+	}
+
+	/**
+	 * Rows returned by the (legacy) query service used by SearchServiceImpl.
+	 */
+	public int getSearchRows() {
+		return searchRows;
+	}
+
+	public void setSearchRows(int searchRows) {
+		this.searchRows = searchRows;
+	}
+}
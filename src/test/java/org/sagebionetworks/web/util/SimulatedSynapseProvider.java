@@ -0,0 +1,400 @@
+package org.sagebionetworks.web.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.json.JSONObject;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.client.exceptions.SynapseNotFoundException;
+import org.sagebionetworks.repo.model.BatchResults;
+import org.sagebionetworks.repo.model.EntityHeader;
+import org.sagebionetworks.repo.model.Reference;
+import org.sagebionetworks.repo.model.dao.WikiPageKey;
+import org.sagebionetworks.schema.adapter.org.json.EntityFactory;
+import org.sagebionetworks.web.server.ColumnConfigProvider;
+import org.sagebionetworks.web.server.RestTemplateProvider;
+import org.sagebionetworks.web.server.servlet.QueryStringUtils;
+import org.sagebionetworks.web.server.servlet.ServiceUrlProvider;
+import org.sagebionetworks.web.server.servlet.SynapseProvider;
+import org.sagebionetworks.web.shared.SearchParameters;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * An in-process, deterministic stand-in for the Synapse repository, so that
+ * SynapseClientImpl, FileHandleServlet and SearchServiceImpl can be load
+ * tested without a stack:
+ *
+ * <pre>
+ * SimulatedSynapseConfig config = new SimulatedSynapseConfig();
+ * config.setLatencyMs(50);
+ * config.setErrorRate(0.01);
+ * SimulatedSynapseProvider simulated = new SimulatedSynapseProvider(config, columnConfig);
+ * synapseClientImpl.setSynapseProvider(simulated);
+ * synapseClientImpl.setServiceUrlProvider(simulated.getServiceUrlProvider());
+ * searchServiceImpl.setRestTemplate(simulated.getRestTemplateProvider());
+ * </pre>
+ *
+ * Clients are dynamic proxies of the SynapseClient interface. The calls the
+ * portal makes most (entities and bundles, headers, wikis, users, teams, table
+ * queries, provenance and temporary file urls) are answered from a
+ * {@link SimulatedSynapseRepository}; like an unstubbed mock, any other call
+ * returns null (or zero, or false). Configuration calls (endpoints, session
+ * token, user agent) are free; every other call first sleeps for the
+ * configured latency, then may fail with a SynapseException.
+ *
+ */
+public class SimulatedSynapseProvider implements SynapseProvider {
+
+	public static final String REPOSITORY_URL = "http://simulated.synapse.org/repo/v1";
+	public static final String AUTH_URL = "http://simulated.synapse.org/auth/v1";
+	public static final String FILE_URL = "https://simulated.synapse.org/file/";
+	public static final long FILE_URL_TTL_MS = TimeUnit.HOURS.toMillis(1);
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+	private static final Pattern BUNDLE_URI = Pattern.compile("/entity/([^/]+)(/version/\\d+)?/bundle\\?mask=\\d+");
+
+	private SimulatedSynapseConfig config;
+	private SimulatedSynapseRepository repository;
+	private AtomicLong callCount = new AtomicLong();
+	private AtomicLong failureCount = new AtomicLong();
+	// how many times each call has been made
+	private ConcurrentMap<String, AtomicLong> invocationCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+	public SimulatedSynapseProvider(SimulatedSynapseConfig config, ColumnConfigProvider columnConfig) {
+		this.config = config;
+		this.repository = new SimulatedSynapseRepository(config, columnConfig);
+	}
+
+	@Override
+	public SynapseClient createNewClient() {
+		return (SynapseClient) Proxy.newProxyInstance(SynapseClient.class.getClassLoader(),
+				new Class<?>[] { SynapseClient.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return SimulatedSynapseProvider.this.invoke(proxy, method, args == null ? new Object[0] : args);
+					}
+				});
+	}
+
+	@Override
+	public void shutdown() {
+		// nothing is pooled
+	}
+
+	/**
+	 * Urls that point at the simulated repository.
+	 */
+	public ServiceUrlProvider getServiceUrlProvider() {
+		ServiceUrlProvider urlProvider = new ServiceUrlProvider();
+		urlProvider.setRepositoryServiceUrl(REPOSITORY_URL);
+		urlProvider.setAuthServicePrivateUrl(AUTH_URL);
+		urlProvider.setAuthServicePublicUrl(AUTH_URL);
+		return urlProvider;
+	}
+
+	/**
+	 * Answers the legacy query service calls of SearchServiceImpl with the
+	 * same latency and error rate as the clients.
+	 */
+	public RestTemplateProvider getRestTemplateProvider() {
+		final RestTemplate template = new RestTemplate() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T> ResponseEntity<T> exchange(URI url, HttpMethod method, HttpEntity<?> requestEntity, Class<T> responseType) throws RestClientException {
+				return new ResponseEntity<T>((T) query(url), HttpStatus.OK);
+			}
+
+			@Override
+			public <T> T execute(URI url, HttpMethod method, RequestCallback requestCallback, ResponseExtractor<T> responseExtractor) throws RestClientException {
+				try {
+					return responseExtractor.extractData(new QueryResponse(JSON_MAPPER.writeValueAsBytes(query(url))));
+				} catch (IOException e) {
+					throw new ResourceAccessException(e.getMessage(), e);
+				}
+			}
+		};
+		return new RestTemplateProvider() {
+			@Override
+			public RestTemplate getTemplate() {
+				return template;
+			}
+		};
+	}
+
+	private Object query(URI url) {
+		String call = "query " + url;
+		callCount.incrementAndGet();
+		Random random = getCallRandom(call);
+		delay(random);
+		if (isFailure(random)) {
+			failureCount.incrementAndGet();
+			throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		SearchParameters params = QueryStringUtils.parseQueryString(url.toString());
+		return repository.query(params.getOffset(), params.getLimit());
+	}
+
+	/**
+	 * A query service response body, as JSON.
+	 */
+	private static class QueryResponse implements ClientHttpResponse {
+		private final byte[] body;
+
+		QueryResponse(byte[] body) {
+			this.body = body;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() {
+			return HttpStatus.OK;
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return HttpStatus.OK.value();
+		}
+
+		@Override
+		public String getStatusText() {
+			return HttpStatus.OK.getReasonPhrase();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			HttpHeaders headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_JSON);
+			return headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(body);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	public SimulatedSynapseRepository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Repository calls made, not counting client configuration.
+	 */
+	public long getCallCount() {
+		return callCount.get();
+	}
+
+	/**
+	 * Calls that failed because of the configured error rate.
+	 */
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+	private Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if (method.getDeclaringClass() == Object.class)
+			return invokeObjectMethod(proxy, name, args);
+		if (name.startsWith("set") || name.startsWith("append") || name.endsWith("Endpoint") || name.equals("getUserAgent"))
+			return getDefaultValue(method.getReturnType());
+		String call = name + Arrays.deepToString(args);
+		callCount.incrementAndGet();
+		Random random = getCallRandom(call);
+		delay(random);
+		if (isFailure(random) && declaresSynapseException(method)) {
+			failureCount.incrementAndGet();
+			throw new SynapseException("Simulated failure of " + name);
+		}
+		Object result = answer(name, args);
+		if (result == null)
+			return getDefaultValue(method.getReturnType());
+		return result;
+	}
+
+	private Object answer(String name, Object[] args) throws Exception {
+		if ("getEntityById".equals(name))
+			return found(repository.getEntity((String) args[0]));
+		if ("getEntityBundle".equals(name))
+			return found(repository.getEntityBundle((String) args[0]));
+		if ("getEntity".equals(name) && args.length == 1 && args[0] instanceof String)
+			return getJSONEntity((String) args[0]);
+		if ("getEntityHeaderBatch".equals(name)) {
+			@SuppressWarnings("unchecked")
+			List<Reference> references = (List<Reference>) args[0];
+			BatchResults<EntityHeader> results = new BatchResults<EntityHeader>();
+			results.setResults(repository.getEntityHeaders(references));
+			results.setTotalNumberOfResults(results.getResults().size());
+			return results;
+		}
+		if ("getV2WikiHeaderTree".equals(name))
+			return SimulatedSynapseRepository.paginate(found(repository.getWikiHeaderTree((String) args[0])), Long.MAX_VALUE, 0);
+		if ("getV2RootWikiPage".equals(name))
+			return found(repository.getV2WikiPage((String) args[0], null));
+		if ("getRootWikiPage".equals(name))
+			return found(repository.getWikiPage((String) args[0], null));
+		if ("getV2WikiPage".equals(name) || "getVersionOfV2WikiPage".equals(name)) {
+			WikiPageKey key = (WikiPageKey) args[0];
+			return found(repository.getV2WikiPage(key.getOwnerObjectId(), key.getWikiPageId()));
+		}
+		if ("getWikiPage".equals(name) || "getV2WikiPageAsV1".equals(name) || "getVersionOfV2WikiPageAsV1".equals(name)) {
+			WikiPageKey key = (WikiPageKey) args[0];
+			return found(repository.getWikiPage(key.getOwnerObjectId(), key.getWikiPageId()));
+		}
+		if ("getUserProfile".equals(name))
+			return found(repository.getUserProfile((String) args[0]));
+		if ("getMyProfile".equals(name))
+			return repository.getUserProfile(Long.toString(SimulatedSynapseRepository.FIRST_USER_ID));
+		if ("getTeam".equals(name))
+			return found(repository.getTeam((String) args[0]));
+		if ("getTeamMembers".equals(name))
+			return SimulatedSynapseRepository.paginate(found(repository.getTeamMembers((String) args[0])), toLong(args[2]), toLong(args[3]));
+		if ("getTeamsForUser".equals(name))
+			return SimulatedSynapseRepository.paginate(found(repository.getTeamsForUser((String) args[0])), toLong(args[1]), toLong(args[2]));
+		if ("queryTableEntity".equals(name))
+			return repository.queryTable((String) args[0], args.length > 2 && Boolean.TRUE.equals(args[2]));
+		if ("getActivityForEntityVersion".equals(name) || "getActivityForEntity".equals(name))
+			return found(repository.getActivityForEntity((String) args[0]));
+		if ("getEntitiesGeneratedBy".equals(name))
+			return SimulatedSynapseRepository.paginate(repository.getEntitiesGeneratedBy((String) args[0]), Long.MAX_VALUE, 0);
+		if (name.endsWith("TemporaryUrl") || name.endsWith("TemporaryUrlForCurrentVersion")
+				|| name.endsWith("TemporaryUrlForVersion") || "getTeamIcon".equals(name))
+			return createFileUrl(name, args);
+		return null;
+	}
+
+	/**
+	 * The raw json calls: only entity bundles (of any version) are answered.
+	 */
+	private JSONObject getJSONEntity(String uri) throws Exception {
+		Matcher matcher = BUNDLE_URI.matcher(uri);
+		if (!matcher.matches())
+			return null;
+		return new JSONObject(EntityFactory.createJSONStringForEntity(found(repository.getEntityBundle(matcher.group(1)))));
+	}
+
+	/**
+	 * A pre-signed looking url, so the portal's url caching behaves as it
+	 * does against S3.
+	 */
+	private URL createFileUrl(String name, Object[] args) throws MalformedURLException {
+		long expires = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() + FILE_URL_TTL_MS);
+		return new URL(FILE_URL + Math.abs(Arrays.deepHashCode(args)) + "/" + name + "?Expires=" + expires + "&Signature=simulated");
+	}
+
+	private static <T> T found(T value) throws SynapseNotFoundException {
+		if (value == null)
+			throw new SynapseNotFoundException();
+		return value;
+	}
+
+	private static long toLong(Object value) {
+		return value == null ? Long.MAX_VALUE : ((Number) value).longValue();
+	}
+
+	/**
+	 * Derive a generator from the seed, the call itself and how many times it
+	 * has been made, so that the latency and the outcome of a call do not
+	 * depend on the order (or the concurrency) of other calls, while repeats
+	 * of the same call still fail at the configured error rate.
+	 */
+	private Random getCallRandom(String call) {
+		AtomicLong count = invocationCounts.get(call);
+		if (count == null) {
+			AtomicLong created = new AtomicLong();
+			count = invocationCounts.putIfAbsent(call, created);
+			if (count == null)
+				count = created;
+		}
+		long invocation = count.getAndIncrement();
+		return new Random((config.getSeed() * 31 + call.hashCode()) * 31 + invocation);
+	}
+
+	private void delay(Random random) {
+		long delayMs = config.getLatencyMs();
+		// always draw, so the failure draw is the same with or without jitter
+		double jitter = random.nextDouble();
+		if (config.getLatencyJitterMs() > 0)
+			delayMs += (long) (jitter * config.getLatencyJitterMs());
+		if (delayMs <= 0)
+			return;
+		try {
+			Thread.sleep(delayMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private boolean isFailure(Random random) {
+		if (config.getErrorRate() <= 0)
+			return false;
+		return random.nextDouble() < config.getErrorRate();
+	}
+
+	private static boolean declaresSynapseException(Method method) {
+		for (Class<?> type : method.getExceptionTypes()) {
+			if (type.isAssignableFrom(SynapseException.class))
+				return true;
+		}
+		return false;
+	}
+
+	private static Object invokeObjectMethod(Object proxy, String name, Object[] args) {
+		if ("hashCode".equals(name))
+			return System.identityHashCode(proxy);
+		if ("equals".equals(name))
+			return args[0] == proxy;
+		return "SimulatedSynapseClient";
+	}
+
+	private static Object getDefaultValue(Class<?> type) {
+		if (!type.isPrimitive() || type == void.class)
+			return null;
+		if (type == boolean.class)
+			return Boolean.FALSE;
+		if (type == char.class)
+			return Character.valueOf((char) 0);
+		if (type == byte.class)
+			return Byte.valueOf((byte) 0);
+		if (type == short.class)
+			return Short.valueOf((short) 0);
+		if (type == int.class)
+			return Integer.valueOf(0);
+		if (type == long.class)
+			return Long.valueOf(0);
+		if (type == float.class)
+			return Float.valueOf(0);
+		return Double.valueOf(0);
+	}
+}
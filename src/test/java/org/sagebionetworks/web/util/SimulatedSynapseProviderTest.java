@@ -0,0 +1,151 @@
+package org.sagebionetworks.web.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.net.URL;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.sagebionetworks.client.SynapseClient;
+import org.sagebionetworks.client.exceptions.SynapseException;
+import org.sagebionetworks.client.exceptions.SynapseNotFoundException;
+import org.sagebionetworks.repo.model.EntityBundle;
+import org.sagebionetworks.repo.model.ObjectType;
+import org.sagebionetworks.repo.model.PaginatedResults;
+import org.sagebionetworks.repo.model.TeamMember;
+import org.sagebionetworks.repo.model.provenance.Activity;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.repo.model.v2.wiki.V2WikiHeader;
+import org.sagebionetworks.web.server.servlet.PresignedUrlCacheImpl;
+import org.sagebionetworks.web.server.servlet.SynapseClientImpl;
+import org.sagebionetworks.web.server.servlet.TokenProvider;
+
+public class SimulatedSynapseProviderTest {
+
+	SimulatedSynapseConfig config;
+	SimulatedSynapseProvider provider;
+
+	@Before
+	public void before() {
+		config = new SimulatedSynapseConfig();
+		config.setNumberOfEntities(25);
+		config.setTableRows(30);
+		config.setProvenanceDepth(3);
+		provider = new SimulatedSynapseProvider(config, null);
+	}
+
+	@Test
+	public void testEntityBundle() throws Exception {
+		SynapseClient client = provider.createNewClient();
+		String id = SimulatedSynapseRepository.getEntityId(12);
+		EntityBundle bundle = client.getEntityBundle(id, 0xFF);
+		assertEquals(id, bundle.getEntity().getId());
+		// syn1012 is under syn1001, which is under the root syn1000
+		assertEquals(3, bundle.getPath().getPath().size());
+		assertEquals(SimulatedSynapseRepository.getEntityId(0), bundle.getPath().getPath().get(0).getId());
+		assertFalse(bundle.getHasChildren());
+		assertTrue(client.getEntityBundle(SimulatedSynapseRepository.getEntityId(0), 0xFF).getHasChildren());
+		try {
+			client.getEntityById("syn1");
+			fail("Expected a SynapseNotFoundException");
+		} catch (SynapseNotFoundException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testWikiTeamsTablesAndProvenance() throws Exception {
+		SynapseClient client = provider.createNewClient();
+		String id = SimulatedSynapseRepository.getEntityId(3);
+		PaginatedResults<V2WikiHeader> tree = client.getV2WikiHeaderTree(id, ObjectType.ENTITY);
+		assertEquals(config.getWikiPagesPerOwner(), tree.getResults().size());
+		assertNull(tree.getResults().get(0).getParentId());
+
+		String teamId = Long.toString(SimulatedSynapseRepository.FIRST_TEAM_ID);
+		PaginatedResults<TeamMember> members = client.getTeamMembers(teamId, null, 5, 0);
+		assertEquals(5, members.getResults().size());
+		assertEquals(config.getMembersPerTeam(), members.getTotalNumberOfResults());
+
+		RowSet page = client.queryTableEntity("SELECT * FROM " + SimulatedSynapseRepository.TABLE_ID + " LIMIT 10 OFFSET 25");
+		assertEquals(5, page.getRows().size());
+		assertEquals(config.getTableColumns(), page.getHeaders().size());
+		RowSet count = client.queryTableEntity("SELECT COUNT(*) FROM " + SimulatedSynapseRepository.TABLE_ID, true, true);
+		assertEquals("30", count.getRows().get(0).getValues().get(0));
+
+		// chains of three: syn1000 <- syn1001 <- syn1002
+		Activity activity = client.getActivityForEntityVersion(SimulatedSynapseRepository.getEntityId(0), 1L);
+		assertEquals(1, activity.getUsed().size());
+		assertNull(client.getActivityForEntityVersion(SimulatedSynapseRepository.getEntityId(2), 1L));
+
+		URL url = client.getFileEntityTemporaryUrlForCurrentVersion(id);
+		assertNotNull(PresignedUrlCacheImpl.getExpiresOn(url));
+		// configuration is not a repository call
+		client.setSessionToken("token");
+		assertEquals(7, provider.getCallCount());
+	}
+
+	@Test
+	public void testErrorRateIsDeterministic() throws Exception {
+		config.setErrorRate(0.5);
+		SimulatedSynapseProvider other = new SimulatedSynapseProvider(config, null);
+		int failures = 0;
+		for (int i = 0; i < 20; i++) {
+			String id = SimulatedSynapseRepository.getEntityId(i);
+			boolean failed = isFailure(provider.createNewClient(), id);
+			// the same seed gives the same outcome
+			assertEquals(failed, isFailure(other.createNewClient(), id));
+			if (failed)
+				failures++;
+		}
+		assertTrue(failures > 0 && failures < 20);
+		assertEquals(failures, provider.getFailureCount());
+	}
+
+	@Test
+	public void testErrorRateHoldsForRepeatedCalls() throws Exception {
+		config.setErrorRate(0.25);
+		SynapseClient client = provider.createNewClient();
+		String id = SimulatedSynapseRepository.getEntityId(1);
+		int failures = 0;
+		for (int i = 0; i < 400; i++) {
+			if (isFailure(client, id))
+				failures++;
+		}
+		// repeating a call does not repeat its outcome
+		assertTrue("failures: " + failures, failures > 50 && failures < 150);
+	}
+
+	private boolean isFailure(SynapseClient client, String id) {
+		try {
+			client.getEntityById(id);
+			return false;
+		} catch (SynapseException e) {
+			return true;
+		}
+	}
+
+	@Test
+	public void testLatency() throws Exception {
+		config.setLatencyMs(50);
+		long start = System.currentTimeMillis();
+		provider.createNewClient().getTeam(Long.toString(SimulatedSynapseRepository.FIRST_TEAM_ID));
+		assertTrue(System.currentTimeMillis() - start >= 50);
+	}
+
+	@Test
+	public void testSynapseClientImpl() throws Exception {
+		SynapseClientImpl synapseClient = new SynapseClientImpl();
+		synapseClient.setSynapseProvider(provider);
+		synapseClient.setServiceUrlProvider(provider.getServiceUrlProvider());
+		synapseClient.setTokenProvider(mock(TokenProvider.class));
+		String json = synapseClient.getV2WikiHeaderTree(SimulatedSynapseRepository.getEntityId(1), ObjectType.ENTITY.toString());
+		assertEquals(config.getWikiPagesPerOwner(), new JSONObject(json).getJSONArray("results").length());
+	}
+}
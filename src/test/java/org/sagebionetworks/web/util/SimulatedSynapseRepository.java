@@ -0,0 +1,454 @@
+package org.sagebionetworks.web.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sagebionetworks.repo.model.AccessControlList;
+import org.sagebionetworks.repo.model.AccessRequirement;
+import org.sagebionetworks.repo.model.Annotations;
+import org.sagebionetworks.repo.model.Entity;
+import org.sagebionetworks.repo.model.EntityBundle;
+import org.sagebionetworks.repo.model.EntityHeader;
+import org.sagebionetworks.repo.model.EntityPath;
+import org.sagebionetworks.repo.model.PaginatedResults;
+import org.sagebionetworks.repo.model.Reference;
+import org.sagebionetworks.repo.model.Study;
+import org.sagebionetworks.repo.model.Team;
+import org.sagebionetworks.repo.model.TeamMember;
+import org.sagebionetworks.repo.model.UserGroupHeader;
+import org.sagebionetworks.repo.model.UserProfile;
+import org.sagebionetworks.repo.model.auth.UserEntityPermissions;
+import org.sagebionetworks.repo.model.provenance.Activity;
+import org.sagebionetworks.repo.model.provenance.Used;
+import org.sagebionetworks.repo.model.provenance.UsedEntity;
+import org.sagebionetworks.repo.model.table.Row;
+import org.sagebionetworks.repo.model.table.RowSet;
+import org.sagebionetworks.repo.model.v2.wiki.V2WikiHeader;
+import org.sagebionetworks.repo.model.v2.wiki.V2WikiPage;
+import org.sagebionetworks.repo.model.wiki.WikiPage;
+import org.sagebionetworks.web.server.ColumnConfigProvider;
+import org.sagebionetworks.web.shared.ColumnInfo;
+import org.sagebionetworks.web.shared.HeaderData;
+
+/**
+ * The data behind a {@link SimulatedSynapseProvider}: entities (a tree with
+ * ten children per node), their wiki trees and provenance chains, users,
+ * teams, one table and the rows of the legacy query service.
+ *
+ * Everything is generated up front with {@link RandomDataset},
+ * {@link RandomStrings} and {@link RandomColumnData}, so look-ups cost no more
+ * than a map read and never skew a benchmark. Those utilities use fixed seeds
+ * that are shared by the whole JVM: the first repository created in a JVM
+ * always holds the same data.
+ *
+ */
+public class SimulatedSynapseRepository {
+
+	public static final long FIRST_ENTITY_ID = 1000L;
+	public static final long FIRST_USER_ID = 100000L;
+	public static final long FIRST_TEAM_ID = 200000L;
+	public static final String TABLE_ID = "syn" + (FIRST_ENTITY_ID - 1);
+	public static final int ENTITY_FAN_OUT = 10;
+	public static final String ACTIVITY_PREFIX = "act";
+
+	private static final String[] TABLE_COLUMN_TYPES = new String[] {
+		ColumnInfo.Type.String.name(), ColumnInfo.Type.Long.name(),
+		ColumnInfo.Type.Double.name(), ColumnInfo.Type.Boolean.name()
+	};
+	private static final Pattern LIMIT = Pattern.compile("(?i)\\bLIMIT\\s+(\\d+)");
+	private static final Pattern OFFSET = Pattern.compile("(?i)\\bOFFSET\\s+(\\d+)");
+
+	private SimulatedSynapseConfig config;
+	private Map<String, Entity> entities = new HashMap<String, Entity>();
+	private Map<String, List<V2WikiHeader>> wikiTrees = new HashMap<String, List<V2WikiHeader>>();
+	private Map<String, String> wikiMarkdown = new HashMap<String, String>();
+	private Map<String, UserProfile> users = new HashMap<String, UserProfile>();
+	private Map<String, Team> teams = new HashMap<String, Team>();
+	private Map<String, List<TeamMember>> teamMembers = new HashMap<String, List<TeamMember>>();
+	private Map<String, List<Team>> userTeams = new HashMap<String, List<Team>>();
+	private List<String> tableHeaders = new ArrayList<String>();
+	private List<Row> tableRows = new ArrayList<Row>();
+	private List<Map<String, Object>> searchRows = new ArrayList<Map<String, Object>>();
+
+	/**
+	 * @param config
+	 * @param columnConfig
+	 *            the columns of the legacy query service rows, may be null
+	 *            when SearchServiceImpl is not exercised
+	 */
+	public SimulatedSynapseRepository(SimulatedSynapseConfig config, ColumnConfigProvider columnConfig) {
+		this.config = config;
+		// the random utilities share static generators
+		synchronized (RandomDataset.class) {
+			Random random = new Random(config.getSeed());
+			createEntities(random);
+			createUsersAndTeams(random);
+			createTable();
+			createSearchRows(columnConfig);
+		}
+	}
+
+	private void createEntities(Random random) {
+		for (int i = 0; i < config.getNumberOfEntities(); i++) {
+			Study entity = RandomDataset.createRandomDataset();
+			String id = getEntityId(i);
+			entity.setId(id);
+			entity.setEntityType(Study.class.getName());
+			entity.setEtag(Long.toString(random.nextLong()));
+			if (i > 0)
+				entity.setParentId(getEntityId((i - 1) / ENTITY_FAN_OUT));
+			entities.put(id, entity);
+
+			List<V2WikiHeader> tree = new ArrayList<V2WikiHeader>();
+			for (int page = 0; page < config.getWikiPagesPerOwner(); page++) {
+				V2WikiHeader header = new V2WikiHeader();
+				header.setId(getWikiId(i, page));
+				header.setTitle(RandomStrings.generateRandomString(3, 10));
+				if (page > 0)
+					header.setParentId(getWikiId(i, (page - 1) / Math.max(1, config.getWikiFanOut())));
+				tree.add(header);
+				wikiMarkdown.put(header.getId(), createMarkdown());
+			}
+			wikiTrees.put(id, tree);
+		}
+	}
+
+	private String createMarkdown() {
+		StringBuilder markdown = new StringBuilder("# ");
+		markdown.append(RandomStrings.generateRandomString(3, 10)).append("\n\n");
+		int remaining = config.getWikiWords();
+		while (remaining > 0) {
+			int words = Math.min(remaining, 50);
+			markdown.append(RandomStrings.generateRandomString(words, 10)).append("\n\n");
+			remaining -= words;
+		}
+		return markdown.toString();
+	}
+
+	private void createUsersAndTeams(Random random) {
+		List<String> userIds = new ArrayList<String>();
+		for (int i = 0; i < config.getNumberOfUsers(); i++) {
+			UserProfile profile = new UserProfile();
+			String ownerId = Long.toString(FIRST_USER_ID + i);
+			profile.setOwnerId(ownerId);
+			profile.setUserName("user" + ownerId);
+			profile.setFirstName(RandomStrings.generateRandomString(1, 10));
+			profile.setLastName(RandomStrings.generateRandomString(1, 12));
+			profile.setEtag(Long.toString(random.nextLong()));
+			users.put(ownerId, profile);
+			userIds.add(ownerId);
+			userTeams.put(ownerId, new ArrayList<Team>());
+		}
+		for (int i = 0; i < config.getNumberOfTeams(); i++) {
+			Team team = new Team();
+			String teamId = Long.toString(FIRST_TEAM_ID + i);
+			team.setId(teamId);
+			team.setName(RandomStrings.generateRandomString(2, 12));
+			team.setDescription(RandomStrings.generateRandomString(12, 10));
+			team.setEtag(Long.toString(random.nextLong()));
+			teams.put(teamId, team);
+			List<TeamMember> members = new ArrayList<TeamMember>();
+			int size = Math.min(config.getMembersPerTeam(), userIds.size());
+			int first = userIds.isEmpty() ? 0 : random.nextInt(userIds.size());
+			for (int j = 0; j < size; j++) {
+				UserProfile profile = users.get(userIds.get((first + j) % userIds.size()));
+				UserGroupHeader header = new UserGroupHeader();
+				header.setOwnerId(profile.getOwnerId());
+				header.setUserName(profile.getUserName());
+				header.setIsIndividual(true);
+				TeamMember member = new TeamMember();
+				member.setTeamId(teamId);
+				member.setMember(header);
+				member.setIsAdmin(j == 0);
+				members.add(member);
+				userTeams.get(profile.getOwnerId()).add(team);
+			}
+			teamMembers.put(teamId, members);
+		}
+	}
+
+	private void createTable() {
+		List<String> types = new ArrayList<String>();
+		for (int i = 0; i < config.getTableColumns(); i++) {
+			tableHeaders.add(Integer.toString(i + 1));
+			types.add(TABLE_COLUMN_TYPES[i % TABLE_COLUMN_TYPES.length]);
+		}
+		for (int i = 0; i < config.getTableRows(); i++) {
+			List<String> values = new ArrayList<String>();
+			for (String type : types) {
+				values.add(String.valueOf(RandomColumnData.createRandomValue(type)));
+			}
+			Row row = new Row();
+			row.setRowId((long) i);
+			row.setVersionNumber(1L);
+			row.setValues(values);
+			tableRows.add(row);
+		}
+	}
+
+	private void createSearchRows(ColumnConfigProvider columnConfig) {
+		if (columnConfig == null)
+			return;
+		List<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+		Iterator<String> it = columnConfig.getKeyIterator();
+		while (it.hasNext()) {
+			HeaderData header = columnConfig.get(it.next());
+			if (header instanceof ColumnInfo)
+				columns.add((ColumnInfo) header);
+		}
+		searchRows = RandomColumnData.createRandomRows(config.getSearchRows(), columns);
+	}
+
+	public static String getEntityId(int index) {
+		return "syn" + (FIRST_ENTITY_ID + index);
+	}
+
+	private static String getWikiId(int entityIndex, int page) {
+		return Long.toString((FIRST_ENTITY_ID + entityIndex) * 1000 + page);
+	}
+
+	private static int getEntityIndex(String entityId) {
+		if (entityId == null)
+			return -1;
+		try {
+			return (int) (Long.parseLong(entityId.toLowerCase().replace("syn", "")) - FIRST_ENTITY_ID);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	public Entity getEntity(String entityId) {
+		return entities.get(entityId);
+	}
+
+	public EntityHeader getEntityHeader(String entityId) {
+		Entity entity = entities.get(entityId);
+		if (entity == null)
+			return null;
+		EntityHeader header = new EntityHeader();
+		header.setId(entity.getId());
+		header.setName(entity.getName());
+		header.setType(entity.getEntityType());
+		return header;
+	}
+
+	/**
+	 * The full bundle, whatever the mask. Every entity can be read, edited and
+	 * downloaded, and none has access restrictions.
+	 */
+	public EntityBundle getEntityBundle(String entityId) {
+		Entity entity = entities.get(entityId);
+		if (entity == null)
+			return null;
+		EntityBundle bundle = new EntityBundle();
+		bundle.setEntity(entity);
+		Annotations annotations = new Annotations();
+		annotations.setId(entityId);
+		annotations.setEtag(entity.getEtag());
+		bundle.setAnnotations(annotations);
+		UserEntityPermissions permissions = new UserEntityPermissions();
+		permissions.setCanView(true);
+		permissions.setCanEdit(true);
+		permissions.setCanDownload(true);
+		permissions.setCanPublicRead(true);
+		permissions.setOwnerPrincipalId(FIRST_USER_ID);
+		bundle.setPermissions(permissions);
+		List<EntityHeader> ancestors = new ArrayList<EntityHeader>();
+		for (String id = entityId; id != null; id = entities.get(id).getParentId()) {
+			ancestors.add(0, getEntityHeader(id));
+		}
+		EntityPath path = new EntityPath();
+		path.setPath(ancestors);
+		bundle.setPath(path);
+		bundle.setHasChildren(getEntityIndex(entityId) * ENTITY_FAN_OUT + 1 < config.getNumberOfEntities());
+		AccessControlList acl = new AccessControlList();
+		acl.setId(entityId);
+		bundle.setAccessControlList(acl);
+		bundle.setAccessRequirements(new ArrayList<AccessRequirement>());
+		bundle.setUnmetAccessRequirements(new ArrayList<AccessRequirement>());
+		return bundle;
+	}
+
+	public List<EntityHeader> getEntityHeaders(List<Reference> references) {
+		List<EntityHeader> headers = new ArrayList<EntityHeader>();
+		for (Reference reference : references) {
+			EntityHeader header = getEntityHeader(reference.getTargetId());
+			if (header != null)
+				headers.add(header);
+		}
+		return headers;
+	}
+
+	public List<V2WikiHeader> getWikiHeaderTree(String ownerId) {
+		return wikiTrees.get(ownerId);
+	}
+
+	/**
+	 * @param wikiId
+	 *            null for the root page
+	 */
+	public WikiPage getWikiPage(String ownerId, String wikiId) {
+		V2WikiHeader header = getWikiHeader(ownerId, wikiId);
+		if (header == null)
+			return null;
+		WikiPage page = new WikiPage();
+		page.setId(header.getId());
+		page.setParentWikiId(header.getParentId());
+		page.setTitle(header.getTitle());
+		page.setMarkdown(wikiMarkdown.get(header.getId()));
+		page.setAttachmentFileHandleIds(new ArrayList<String>());
+		page.setEtag(header.getId());
+		return page;
+	}
+
+	/**
+	 * @param wikiId
+	 *            null for the root page
+	 */
+	public V2WikiPage getV2WikiPage(String ownerId, String wikiId) {
+		V2WikiHeader header = getWikiHeader(ownerId, wikiId);
+		if (header == null)
+			return null;
+		V2WikiPage page = new V2WikiPage();
+		page.setId(header.getId());
+		page.setParentWikiId(header.getParentId());
+		page.setTitle(header.getTitle());
+		page.setMarkdownFileHandleId(header.getId());
+		page.setAttachmentFileHandleIds(new ArrayList<String>());
+		page.setEtag(header.getId());
+		return page;
+	}
+
+	private V2WikiHeader getWikiHeader(String ownerId, String wikiId) {
+		List<V2WikiHeader> tree = wikiTrees.get(ownerId);
+		if (tree == null || tree.isEmpty())
+			return null;
+		if (wikiId == null)
+			return tree.get(0);
+		for (V2WikiHeader header : tree) {
+			if (wikiId.equals(header.getId()))
+				return header;
+		}
+		return null;
+	}
+
+	public UserProfile getUserProfile(String ownerId) {
+		return users.get(ownerId);
+	}
+
+	public Team getTeam(String teamId) {
+		return teams.get(teamId);
+	}
+
+	public List<TeamMember> getTeamMembers(String teamId) {
+		return teamMembers.get(teamId);
+	}
+
+	public List<Team> getTeamsForUser(String ownerId) {
+		return userTeams.get(ownerId);
+	}
+
+	/**
+	 * Entities belong to chains of the configured provenance depth: each one
+	 * was generated by an activity that used the next entity of its chain.
+	 *
+	 * @return null when the entity was not generated by an activity
+	 */
+	public Activity getActivityForEntity(String entityId) {
+		int index = getEntityIndex(entityId);
+		int depth = Math.max(1, config.getProvenanceDepth());
+		if (!entities.containsKey(entityId) || index % depth == depth - 1)
+			return null;
+		Activity activity = new Activity();
+		activity.setId(ACTIVITY_PREFIX + index);
+		activity.setName("step " + (index % depth));
+		if (entities.containsKey(getEntityId(index + 1))) {
+			Reference reference = new Reference();
+			reference.setTargetId(getEntityId(index + 1));
+			UsedEntity used = new UsedEntity();
+			used.setReference(reference);
+			activity.setUsed(new HashSet<Used>(Arrays.asList(new Used[] { used })));
+		} else {
+			activity.setUsed(new HashSet<Used>());
+		}
+		return activity;
+	}
+
+	public List<Reference> getEntitiesGeneratedBy(String activityId) {
+		List<Reference> references = new ArrayList<Reference>();
+		if (activityId != null && activityId.startsWith(ACTIVITY_PREFIX)) {
+			Reference reference = new Reference();
+			reference.setTargetId(getEntityId(Integer.parseInt(activityId.substring(ACTIVITY_PREFIX.length()))));
+			references.add(reference);
+		}
+		return references;
+	}
+
+	/**
+	 * Run a table query: only the LIMIT and OFFSET of the SQL are honored.
+	 *
+	 * @param countOnly
+	 *            return a single row holding the total number of rows
+	 */
+	public RowSet queryTable(String sql, boolean countOnly) {
+		RowSet rowSet = new RowSet();
+		rowSet.setTableId(TABLE_ID);
+		rowSet.setEtag(TABLE_ID);
+		if (countOnly) {
+			Row row = new Row();
+			row.setValues(Arrays.asList(Integer.toString(tableRows.size())));
+			rowSet.setHeaders(Arrays.asList("COUNT(*)"));
+			rowSet.setRows(Arrays.asList(row));
+			return rowSet;
+		}
+		int offset = getInt(OFFSET, sql, 0);
+		int limit = getInt(LIMIT, sql, tableRows.size());
+		rowSet.setHeaders(new ArrayList<String>(tableHeaders));
+		rowSet.setRows(new ArrayList<Row>(page(tableRows, offset, limit)));
+		return rowSet;
+	}
+
+	/**
+	 * A page of the legacy query service response (offsets start at 1).
+	 */
+	public LinkedHashMap<String, Object> query(int offset, int limit) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		for (Map<String, Object> row : page(searchRows, Math.max(0, offset - 1), limit)) {
+			// the portal modifies the rows it receives
+			rows.add(new HashMap<String, Object>(row));
+		}
+		LinkedHashMap<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("totalNumberOfResults", searchRows.size());
+		body.put("results", rows);
+		return body;
+	}
+
+	private static <T> List<T> page(List<T> list, int offset, int limit) {
+		int from = Math.min(offset, list.size());
+		int to = (int) Math.min((long) from + limit, list.size());
+		return list.subList(from, to);
+	}
+
+	private static int getInt(Pattern pattern, String sql, int defaultValue) {
+		Matcher matcher = pattern.matcher(sql == null ? "" : sql);
+		return matcher.find() ? Integer.parseInt(matcher.group(1)) : defaultValue;
+	}
+
+	public static <T> PaginatedResults<T> paginate(List<T> list, long limit, long offset) {
+		PaginatedResults<T> results = new PaginatedResults<T>();
+		if (list == null)
+			list = new ArrayList<T>();
+		results.setResults(new ArrayList<T>(page(list, (int) Math.min(offset, Integer.MAX_VALUE), (int) Math.min(limit, Integer.MAX_VALUE))));
+		results.setTotalNumberOfResults(list.size());
+		return results;
+	}
+}